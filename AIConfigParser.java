@@ -1,12 +1,17 @@
 /*
  * AIConfigParser.java - 解析 AI 响应并映射到配置变更
- * 将自然语言描述转换为结构化的配置修改
+ * 将自然语言描述转换为结构化的配置修改；回复用 JsonReader 单遍读取，变更按字段表校验类型
  */
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class AIConfigParser {
 
@@ -19,6 +24,7 @@ public class AIConfigParser {
         public String oldValue; // 旧值
         public String newValue; // 新值
         public String fieldType; // 字段类型: double, int, string, boolean
+        public Object value; // 按字段类型校验后的新值: Double, Integer, Boolean, String
 
         public ConfigChange(String fieldName, String fieldLabel, String oldValue, String newValue, String fieldType) {
             this.fieldName = fieldName;
@@ -42,14 +48,16 @@ public class AIConfigParser {
         public String message; // AI 的说明/回复
         public List<ConfigChange> changes; // 配置变更列表
         public String error; // 错误信息
+        public List<String> rejected; // 未通过字段表校验而忽略的变更及原因
 
         public ParseResult() {
             this.changes = new ArrayList<>();
+            this.rejected = new ArrayList<>();
         }
     }
 
-    // 字段信息映射
-    private static final Map<String, String[]> FIELD_INFO = new HashMap<>();
+    // 字段信息映射（保持插入顺序，提示词中的字段表逐字节稳定）
+    private static final Map<String, String[]> FIELD_INFO = new LinkedHashMap<>();
 
     static {
         // 格式: fieldName -> [中文名, 类型, 单位]
@@ -90,26 +98,50 @@ public class AIConfigParser {
         FIELD_INFO.put("animationMaxFrames", new String[] { "最大帧数", "int", "" });
     }
 
+    // 数值字段的取值范围 {下限, 上限, 下限是否不可取 (1/0)}；未列出的字段不限
+    private static final Map<String, double[]> FIELD_RANGE = new HashMap<>();
+
+    static {
+        for (String field : new String[] { "domainWidth", "domainHeight", "cylinderRadius", "inletVelocity", "density",
+                "dynamicViscosity", "meshMaxSize", "meshMinSize", "cylinderMeshMaxSize", "endTime", "timeStep" }) {
+            FIELD_RANGE.put(field, new double[] { 0, Double.POSITIVE_INFINITY, 1 });
+        }
+        FIELD_RANGE.put("startTime", new double[] { 0, Double.POSITIVE_INFINITY, 0 });
+        FIELD_RANGE.put("meshSizeLevel", new double[] { 1, 9, 0 });
+        FIELD_RANGE.put("animationFps", new double[] { 1, Double.POSITIVE_INFINITY, 0 });
+        FIELD_RANGE.put("animationMaxFrames", new double[] { 1, Double.POSITIVE_INFINITY, 0 });
+    }
+
+    // 系统提示词的静态部分：只构建一次，每次请求逐字节相同，服务端的前缀缓存 (prompt caching) 可以命中
+    private static String staticPrompt;
+
     /**
-     * 生成系统提示词（告诉 AI 如何解析和响应）
+     * 生成系统提示词（告诉 AI 如何解析和响应）：静态前缀 + 与默认值不同的配置字段
      */
     public static String generateSystemPrompt(SimulationConfig currentConfig) {
+        return staticPrompt() + configDelta(currentConfig);
+    }
+
+    /**
+     * 静态前缀：角色说明、字段表（含默认值）、常用预设、响应格式
+     */
+    public static synchronized String staticPrompt() {
+        if (staticPrompt != null) {
+            return staticPrompt;
+        }
+        SimulationConfig defaults = new SimulationConfig();
         StringBuilder sb = new StringBuilder();
 
         sb.append("你是一个 COMSOL 圆柱绕流（卡门涡街）仿真配置助手。用户会用自然语言描述想要修改的仿真参数，你需要理解用户意图并输出结构化的配置修改。\n\n");
 
-        sb.append("## 当前配置\n");
-        sb.append("```json\n");
-        sb.append(configToJson(currentConfig));
-        sb.append("\n```\n\n");
-
         sb.append("## 可用配置字段\n");
-        sb.append("| 字段名 | 中文名 | 类型 | 单位 |\n");
-        sb.append("|--------|--------|------|------|\n");
+        sb.append("| 字段名 | 中文名 | 类型 | 单位 | 默认值 |\n");
+        sb.append("|--------|--------|------|------|--------|\n");
         for (Map.Entry<String, String[]> entry : FIELD_INFO.entrySet()) {
             String[] info = entry.getValue();
             sb.append("| ").append(entry.getKey()).append(" | ").append(info[0])
-                    .append(" | ").append(info[1]).append(" | ").append(info[2]).append(" |\n");
+                    .append(" | ").append(info[1]).append(" | ").append(info[2])
+                    .append(" | ").append(getFieldValue(defaults, entry.getKey())).append(" |\n");
         }
         sb.append("\n");
 
@@ -136,279 +168,541 @@ public class AIConfigParser {
         sb.append("4. 布尔字段用 true/false\n");
         sb.append("5. 如果用户的请求不涉及配置修改（如普通问候或问题），返回 changes 为空数组，只在 message 中回复\n");
         sb.append("6. 如果用户要切换流体（如\"使用水\"），同时更新 fluidName、density、dynamicViscosity\n");
+        sb.append("7. 当前配置只列出与默认值不同的字段，未列出的字段等于默认值\n\n");
 
-        return sb.toString();
+        staticPrompt = sb.toString();
+        return staticPrompt;
     }
 
     /**
-     * 将当前配置转为 JSON 字符串
+     * 每次请求变化的部分：与默认值不同的字段，紧凑 JSON 一行
      */
-    private static String configToJson(SimulationConfig cfg) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{\n");
-        sb.append("  \"domainWidth\": ").append(cfg.domainWidth).append(",\n");
-        sb.append("  \"domainHeight\": ").append(cfg.domainHeight).append(",\n");
-        sb.append("  \"cylinderRadius\": ").append(cfg.cylinderRadius).append(",\n");
-        sb.append("  \"cylinderX\": ").append(cfg.cylinderX).append(",\n");
-        sb.append("  \"cylinderY\": ").append(cfg.cylinderY).append(",\n");
-        sb.append("  \"inletType\": \"").append(cfg.inletType).append("\",\n");
-        sb.append("  \"inletVelocity\": ").append(cfg.inletVelocity).append(",\n");
-        sb.append("  \"inletPressure\": ").append(cfg.inletPressure).append(",\n");
-        sb.append("  \"outletType\": \"").append(cfg.outletType).append("\",\n");
-        sb.append("  \"outletPressure\": ").append(cfg.outletPressure).append(",\n");
-        sb.append("  \"outletVelocity\": ").append(cfg.outletVelocity).append(",\n");
-        sb.append("  \"topBoundaryType\": \"").append(cfg.topBoundaryType).append("\",\n");
-        sb.append("  \"bottomBoundaryType\": \"").append(cfg.bottomBoundaryType).append("\",\n");
-        sb.append("  \"cylinderWallType\": \"").append(cfg.cylinderWallType).append("\",\n");
-        sb.append("  \"cylinderWallCondition\": \"").append(cfg.cylinderWallCondition).append("\",\n");
-        sb.append("  \"flowType\": \"").append(cfg.flowType).append("\",\n");
-        sb.append("  \"equationForm\": \"").append(cfg.equationForm).append("\",\n");
-        sb.append("  \"fluidName\": \"").append(cfg.fluidName).append("\",\n");
-        sb.append("  \"density\": ").append(cfg.density).append(",\n");
-        sb.append("  \"dynamicViscosity\": ").append(cfg.dynamicViscosity).append(",\n");
-        sb.append("  \"meshSizeLevel\": ").append(cfg.meshSizeLevel).append(",\n");
-        sb.append("  \"meshMaxSize\": ").append(cfg.meshMaxSize).append(",\n");
-        sb.append("  \"meshMinSize\": ").append(cfg.meshMinSize).append(",\n");
-        sb.append("  \"cylinderMeshMaxSize\": ").append(cfg.cylinderMeshMaxSize).append(",\n");
-        sb.append("  \"startTime\": ").append(cfg.startTime).append(",\n");
-        sb.append("  \"endTime\": ").append(cfg.endTime).append(",\n");
-        sb.append("  \"timeStep\": ").append(cfg.timeStep).append(",\n");
-        sb.append("  \"outputDir\": \"").append(cfg.outputDir).append("\",\n");
-        sb.append("  \"modelFileName\": \"").append(cfg.modelFileName).append("\",\n");
-        sb.append("  \"exportVelocity\": ").append(cfg.exportVelocity).append(",\n");
-        sb.append("  \"exportVorticity\": ").append(cfg.exportVorticity).append(",\n");
-        sb.append("  \"exportAnimation\": ").append(cfg.exportAnimation).append(",\n");
-        sb.append("  \"animationFps\": ").append(cfg.animationFps).append(",\n");
-        sb.append("  \"animationMaxFrames\": ").append(cfg.animationMaxFrames).append("\n");
-        sb.append("}");
-        return sb.toString();
+    public static String configDelta(SimulationConfig cfg) {
+        return "## 当前配置\n" + configJson(cfg, new SimulationConfig()) + "\n";
     }
 
     /**
-     * 解析 AI 响应，提取配置变更
+     * 配置字段的紧凑 JSON；baseline 不为 null 时只输出与其不同的字段
      */
-    public static ParseResult parseAIResponse(String aiResponse, SimulationConfig currentConfig) {
-        ParseResult result = new ParseResult();
-
-        try {
-            // 尝试提取 JSON 部分（AI 可能会包含 ```json ... ``` 代码块）
-            String json = extractJson(aiResponse);
-            if (json == null) {
-                result.success = false;
-                result.error = "无法从 AI 响应中提取 JSON";
-                result.message = aiResponse; // 显示原始响应
-                return result;
+    static String configJson(SimulationConfig cfg, SimulationConfig baseline) {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, String[]> entry : FIELD_INFO.entrySet()) {
+            String field = entry.getKey();
+            String value = getFieldValue(cfg, field);
+            if (baseline != null && value.equals(getFieldValue(baseline, field))) {
+                continue;
             }
-
-            // 解析 message
-            result.message = extractStringField(json, "message");
-            if (result.message == null) {
-                result.message = "AI 未提供说明";
+            if (sb.length() > 1) {
+                sb.append(',');
             }
-
-            // 解析 changes 数组
-            String changesArray = extractArrayField(json, "changes");
-            if (changesArray != null && !changesArray.isEmpty()) {
-                parseChanges(changesArray, currentConfig, result);
+            sb.append('"').append(field).append("\":");
+            if ("string".equals(entry.getValue()[1])) {
+                sb.append('"').append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            } else {
+                sb.append(value);
             }
-
-            result.success = true;
-
-        } catch (Exception e) {
-            result.success = false;
-            result.error = "解析错误: " + e.getMessage();
-            result.message = aiResponse;
         }
-
-        return result;
+        return sb.append('}').toString();
     }
 
     /**
-     * 从响应中提取 JSON
+     * 粗略的 token 估算：中日韩字符约 1 token/字，其余约 4 字符/token
      */
-    private static String extractJson(String response) {
-        // 尝试查找 ```json ... ``` 代码块
-        int start = response.indexOf("```json");
-        if (start != -1) {
-            start = response.indexOf("\n", start) + 1;
-            int end = response.indexOf("```", start);
-            if (end != -1) {
-                return response.substring(start, end).trim();
+    static int estimateTokens(String text) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN || (c >= 0xFF00 && c <= 0xFFEF)
+                    || (c >= 0x3000 && c <= 0x303F)) {
+                cjk++;
+            } else {
+                other++;
             }
         }
+        return cjk + (other + 3) / 4;
+    }
+
+    // 回复前的说明文字里也可能有 '{'：从后续的 '{' 重试的最多次数
+    private static final int MAX_JSON_STARTS = 8;
 
-        // 尝试查找 ``` ... ``` 代码块
-        start = response.indexOf("```");
-        if (start != -1) {
-            start = response.indexOf("\n", start) + 1;
-            int end = response.indexOf("```", start);
-            if (end != -1) {
-                String content = response.substring(start, end).trim();
-                if (content.startsWith("{")) {
-                    return content;
+    /**
+     * 解析 AI 响应，提取配置变更。
+     * 单遍读取：从 JSON 起点用 JsonReader 读取顶层对象，message 与 changes 在同一遍中得到，
+     * changes 中的每一项按字段表校验类型后转为 ConfigChange，不合格的项记入 rejected
+     */
+    public static ParseResult parseAIResponse(String aiResponse, SimulationConfig currentConfig) {
+        IOException lastError = null;
+        // 既没有 message 也没有 changes 的对象（如说明文字里的 {"Re": 100}）：继续找，找不到才使用
+        ParseResult keyless = null;
+        int start = jsonStart(aiResponse);
+        for (int tries = 0; start >= 0 && tries < MAX_JSON_STARTS; tries++) {
+            ParseResult result = new ParseResult();
+            JsonReader reader = new JsonReader(aiResponse, start, aiResponse.length());
+            int next = start + 1;
+            try {
+                boolean found = readResponse(reader, currentConfig, result);
+                result.success = true;
+                if (result.message == null) {
+                    result.message = "AI 未提供说明";
+                }
+                if (found) {
+                    return result;
                 }
+                if (keyless == null) {
+                    keyless = result;
+                }
+                // 完整读完的对象里的 '{' 不必再逐个重试
+                next = reader.position();
+            } catch (IOException e) {
+                lastError = e;
             }
+            start = objectStart(aiResponse, next);
         }
-
-        // 直接查找 { ... }
-        start = response.indexOf("{");
-        if (start != -1) {
-            int end = response.lastIndexOf("}");
-            if (end > start) {
-                return response.substring(start, end + 1);
-            }
+        if (keyless != null) {
+            return keyless;
         }
 
-        return null;
+        ParseResult result = new ParseResult();
+        result.success = false;
+        result.error = lastError != null ? "解析错误: " + lastError.getMessage() : "无法从 AI 响应中提取 JSON";
+        result.message = aiResponse; // 显示原始响应
+        return result;
     }
 
     /**
-     * 提取 JSON 中的字符串字段
+     * 流式回复的增量解析：每收到一段文本调用 feed，
+     * message 字段边接收边解码，changes 数组一闭合就立即解析，不必等整个回复结束
      */
-    private static String extractStringField(String json, String fieldName) {
-        String pattern = "\"" + fieldName + "\"";
-        int start = json.indexOf(pattern);
-        if (start == -1)
-            return null;
+    public static class StreamParser {
+        private final SimulationConfig cfg;
+        private final StringBuilder text = new StringBuilder();
+        private final StringBuilder message = new StringBuilder();
+        private final StringBuilder key = new StringBuilder();
+        private final StringBuilder unicode = new StringBuilder();
+        private int scanned = 0;
+        private int depth = 0;
+        private boolean started = false;
+        private boolean closed = false;
+        private boolean inString = false;
+        private boolean escape = false;
+        private boolean expectKey = false;
+        private boolean readingKey = false;
+        private boolean inMessage = false;
+        private boolean hasMessage = false;
+        private String currentKey = null;
+        private int changesStart = -1;
+        private ParseResult changes = null;
+
+        public StreamParser(SimulationConfig cfg) {
+            this.cfg = cfg;
+        }
 
-        start = json.indexOf(":", start) + 1;
-        while (start < json.length() && Character.isWhitespace(json.charAt(start)))
-            start++;
+        /**
+         * 追加一段回复文本；返回 true 表示 changes 数组在这一段中刚刚闭合并完成解析
+         */
+        public boolean feed(String delta) {
+            text.append(delta);
+            boolean changesCompleted = false;
+            for (; scanned < text.length() && !closed; scanned++) {
+                char c = text.charAt(scanned);
+                if (!started) {
+                    if (c == '{') {
+                        // 与 objectStart 相同：'{' 后（允许空白）为 '"' 或 '}' 才是对象起点，散文里的 {Re} 跳过
+                        int next = scanned + 1;
+                        while (next < text.length() && Character.isWhitespace(text.charAt(next))) {
+                            next++;
+                        }
+                        if (next == text.length()) {
+                            break; // 等下一段再判断
+                        }
+                        if (text.charAt(next) == '"' || text.charAt(next) == '}') {
+                            started = true;
+                            depth = 1;
+                            expectKey = true;
+                        }
+                    }
+                    continue;
+                }
+                if (inString) {
+                    stringChar(c);
+                    continue;
+                }
+                switch (c) {
+                    case '"':
+                        inString = true;
+                        readingKey = depth == 1 && expectKey;
+                        inMessage = depth == 1 && !expectKey && "message".equals(currentKey);
+                        if (readingKey) {
+                            key.setLength(0);
+                        } else if (inMessage) {
+                            message.setLength(0);
+                            hasMessage = true;
+                        }
+                        break;
+                    case ':':
+                        if (depth == 1) {
+                            expectKey = false;
+                        }
+                        break;
+                    case ',':
+                        if (depth == 1) {
+                            expectKey = true;
+                        }
+                        break;
+                    case '{':
+                    case '[':
+                        depth++;
+                        if (c == '[' && depth == 2 && "changes".equals(currentKey)) {
+                            changesStart = scanned;
+                        }
+                        break;
+                    case '}':
+                    case ']':
+                        depth--;
+                        if (c == ']' && depth == 1 && changesStart >= 0 && changes == null) {
+                            changes = new ParseResult();
+                            try {
+                                readChanges(new JsonReader(text, changesStart, scanned + 1), cfg, changes);
+                            } catch (IOException e) {
+                                changes.rejected.add("changes 解析错误: " + e.getMessage());
+                            }
+                            changesCompleted = true;
+                        }
+                        if (depth == 0) {
+                            if (hasMessage || changesStart >= 0) {
+                                closed = true;
+                            } else {
+                                restart(); // 不是回复对象（如 {"Re": 100}），继续找下一个
+                            }
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return changesCompleted;
+        }
 
-        if (json.charAt(start) != '"')
-            return null;
-        start++;
+        private void restart() {
+            started = false;
+            expectKey = false;
+            readingKey = false;
+            currentKey = null;
+        }
 
-        StringBuilder sb = new StringBuilder();
-        boolean escaped = false;
-        for (int i = start; i < json.length(); i++) {
-            char c = json.charAt(i);
-            if (escaped) {
+        private void stringChar(char c) {
+            if (unicode.length() > 0) {
+                unicode.append(c);
+                if (unicode.length() == 5) { // u + 4 位十六进制
+                    if (inMessage) {
+                        try {
+                            message.append((char) Integer.parseInt(unicode.substring(1), 16));
+                        } catch (NumberFormatException e) {
+                            message.append('?');
+                        }
+                    }
+                    unicode.setLength(0);
+                }
+                return;
+            }
+            if (escape) {
+                escape = false;
+                if (c == 'u') {
+                    unicode.append(c);
+                    return;
+                }
+                char decoded;
                 switch (c) {
                     case 'n':
-                        sb.append('\n');
+                        decoded = '\n';
                         break;
                     case 't':
-                        sb.append('\t');
+                        decoded = '\t';
                         break;
                     case 'r':
-                        sb.append('\r');
+                        decoded = '\r';
+                        break;
+                    case 'b':
+                        decoded = '\b';
+                        break;
+                    case 'f':
+                        decoded = '\f';
                         break;
                     default:
-                        sb.append(c);
+                        decoded = c;
                 }
-                escaped = false;
+                append(decoded);
             } else if (c == '\\') {
-                escaped = true;
+                escape = true;
             } else if (c == '"') {
-                break;
+                inString = false;
+                if (readingKey) {
+                    currentKey = key.toString();
+                    readingKey = false;
+                }
+                inMessage = false;
             } else {
-                sb.append(c);
+                append(c);
+            }
+        }
+
+        private void append(char c) {
+            if (readingKey) {
+                key.append(c);
+            } else if (inMessage) {
+                message.append(c);
             }
         }
 
-        return sb.toString();
+        /**
+         * 到目前为止收到的 message 内容（尚未出现 message 字段时为 null）
+         */
+        public String getMessage() {
+            return hasMessage ? message.toString() : null;
+        }
+
+        /**
+         * changes 数组已完整收到时返回解析出的变更，否则返回 null
+         */
+        public List<ConfigChange> getChanges() {
+            return changes != null ? changes.changes : null;
+        }
+
+        public String getText() {
+            return text.toString();
+        }
+
+        /**
+         * 回复结束：changes 数组已增量解析时直接使用结果；否则（对象未闭合、没有 changes、
+         * changes 写成对象形式）按完整文本重新解析，与 parseAIResponse 的结果一致
+         */
+        public ParseResult finish() {
+            if (!closed || changes == null) {
+                return parseAIResponse(text.toString(), cfg);
+            }
+            ParseResult result = new ParseResult();
+            result.success = true;
+            result.message = hasMessage ? message.toString() : "AI 未提供说明";
+            result.changes = changes.changes;
+            result.rejected = changes.rejected;
+            return result;
+        }
     }
 
     /**
-     * 提取 JSON 中的数组字段
+     * JSON 起点：```json / ``` 代码块内的第一个对象起点，没有代码块时为第一个对象起点；找不到返回 -1
      */
-    private static String extractArrayField(String json, String fieldName) {
-        String pattern = "\"" + fieldName + "\"";
-        int start = json.indexOf(pattern);
-        if (start == -1)
-            return null;
-
-        start = json.indexOf("[", start);
-        if (start == -1)
-            return null;
-
-        int depth = 0;
-        int end = start;
-        for (int i = start; i < json.length(); i++) {
-            char c = json.charAt(i);
-            if (c == '[')
-                depth++;
-            else if (c == ']') {
-                depth--;
-                if (depth == 0) {
-                    end = i;
-                    break;
-                }
+    private static int jsonStart(String response) {
+        int fence = response.indexOf("```");
+        if (fence != -1) {
+            int brace = objectStart(response, fence);
+            if (brace != -1) {
+                return brace;
             }
         }
-
-        return json.substring(start, end + 1);
+        return objectStart(response, 0);
     }
 
     /**
-     * 解析 changes 数组
+     * from 之后第一个可能是 JSON 对象起点的 '{'（其后为 '"' 或 '}'，允许空白）；
+     * 散文里的 {Re} 之类直接跳过，不必让 JsonReader 抛出异常再重试
      */
-    private static void parseChanges(String changesArray, SimulationConfig cfg, ParseResult result) {
-        // 简单解析数组中的每个对象
-        int pos = 1; // 跳过 [
-
-        while (pos < changesArray.length()) {
-            int objStart = changesArray.indexOf("{", pos);
-            if (objStart == -1)
-                break;
-
-            int objEnd = changesArray.indexOf("}", objStart);
-            if (objEnd == -1)
-                break;
-
-            String obj = changesArray.substring(objStart, objEnd + 1);
-
-            String field = extractStringField(obj, "field");
-            String value = extractValue(obj, "value");
-
-            if (field != null && value != null && FIELD_INFO.containsKey(field)) {
-                String[] info = FIELD_INFO.get(field);
-                String oldValue = getFieldValue(cfg, field);
-
-                ConfigChange change = new ConfigChange(field, info[0], oldValue, value, info[1]);
-                result.changes.add(change);
+    private static int objectStart(String response, int from) {
+        int brace = response.indexOf('{', from);
+        while (brace != -1) {
+            int i = brace + 1;
+            while (i < response.length() && Character.isWhitespace(response.charAt(i))) {
+                i++;
             }
-
-            pos = objEnd + 1;
+            if (i < response.length() && (response.charAt(i) == '"' || response.charAt(i) == '}')) {
+                return brace;
+            }
+            brace = response.indexOf('{', i);
         }
+        return -1;
     }
 
     /**
-     * 提取值（可以是字符串、数字或布尔）
+     * 读取顶层对象 {"message": ..., "changes": [...]}，其他字段跳过；返回是否含 message 或 changes
      */
-    private static String extractValue(String json, String fieldName) {
-        String pattern = "\"" + fieldName + "\"";
-        int start = json.indexOf(pattern);
-        if (start == -1)
-            return null;
+    private static boolean readResponse(JsonReader reader, SimulationConfig cfg, ParseResult result)
+            throws IOException {
+        boolean found = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("message".equals(name) && reader.peek() == JsonReader.Token.STRING) {
+                result.message = reader.nextString();
+                found = true;
+            } else if ("changes".equals(name)) {
+                readChanges(reader, cfg, result);
+                found = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return found;
+    }
 
-        start = json.indexOf(":", start) + 1;
-        while (start < json.length() && Character.isWhitespace(json.charAt(start)))
-            start++;
+    /**
+     * 读取 changes：数组 [{"field": ..., "value": ...}]，也接受对象形式 {"字段名": 值}
+     */
+    private static void readChanges(JsonReader reader, SimulationConfig cfg, ParseResult result)
+            throws IOException {
+        JsonReader.Token t = reader.peek();
+        if (t == JsonReader.Token.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    result.rejected.add("变更项不是对象");
+                    continue;
+                }
+                String field = null;
+                String value = null;
+                boolean scalar = false;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if ("field".equals(name) && reader.peek() == JsonReader.Token.STRING) {
+                        field = reader.nextString();
+                    } else if ("value".equals(name)) {
+                        value = readScalar(reader);
+                        scalar = true;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                addChange(field, scalar ? value : null, cfg, result);
+            }
+            reader.endArray();
+        } else if (t == JsonReader.Token.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                addChange(field, readScalar(reader), cfg, result);
+            }
+            reader.endObject();
+        } else {
+            reader.skipValue(); // null 或其他：没有变更
+        }
+    }
 
-        char firstChar = json.charAt(start);
+    /**
+     * 字符串、数字、布尔按字面读取；null 与嵌套对象/数组返回 null
+     */
+    private static String readScalar(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+            case BOOLEAN:
+                return reader.nextString();
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
 
-        if (firstChar == '"') {
-            // 字符串值
-            return extractStringField(json, fieldName);
-        } else {
-            // 数字或布尔值
-            int end = start;
-            while (end < json.length()) {
-                char c = json.charAt(end);
-                if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c))
+    /**
+     * 按字段表校验一项变更并规范化取值（数值统一格式，整数字段接受 2.0 这类写法）；
+     * 同一字段出现多次时以最后一次为准
+     */
+    static void addChange(String field, String value, SimulationConfig cfg, ParseResult result) {
+        if (field == null) {
+            result.rejected.add("变更项缺少 field");
+            return;
+        }
+        String[] info = FIELD_INFO.get(field);
+        if (info == null) {
+            result.rejected.add(field + ": 未知字段");
+            return;
+        }
+        if (value == null) {
+            result.rejected.add(field + ": value 缺失或不是单个值");
+            return;
+        }
+        Object typed;
+        String text = value.trim();
+        try {
+            switch (info[1]) {
+                case "double": {
+                    double d = Double.parseDouble(text);
+                    if (Double.isNaN(d) || Double.isInfinite(d)) {
+                        throw new NumberFormatException();
+                    }
+                    typed = d;
+                    break;
+                }
+                case "int": {
+                    double d = Double.parseDouble(text);
+                    if (d != Math.rint(d) || Math.abs(d) > Integer.MAX_VALUE) {
+                        throw new NumberFormatException();
+                    }
+                    typed = (int) d;
                     break;
-                end++;
+                }
+                case "boolean":
+                    if (!"true".equalsIgnoreCase(text) && !"false".equalsIgnoreCase(text)) {
+                        throw new NumberFormatException();
+                    }
+                    typed = Boolean.valueOf(text.toLowerCase());
+                    break;
+                default:
+                    typed = value;
+            }
+        } catch (NumberFormatException e) {
+            result.rejected.add(field + ": \"" + value + "\" 不是有效的 " + info[1]);
+            return;
+        }
+        double[] range = FIELD_RANGE.get(field);
+        if (range != null) {
+            double d = ((Number) typed).doubleValue();
+            if ((range[2] != 0 ? d <= range[0] : d < range[0]) || d > range[1]) {
+                result.rejected.add(field + ": " + typed + " " + describeRange(range));
+                return;
             }
-            return json.substring(start, end).trim();
         }
+
+        result.changes.removeIf(c -> c.fieldName.equals(field));
+        ConfigChange change = new ConfigChange(field, info[0], getFieldValue(cfg, field), String.valueOf(typed),
+                info[1]);
+        change.value = typed;
+        result.changes.add(change);
+    }
+
+    /**
+     * 取值范围的提示文字，用于拒绝原因
+     */
+    private static String describeRange(double[] range) {
+        String min = BigDecimal.valueOf(range[0]).stripTrailingZeros().toPlainString();
+        if (Double.isInfinite(range[1])) {
+            return (range[2] != 0 ? "必须大于 " : "不能小于 ") + min;
+        }
+        String max = BigDecimal.valueOf(range[1]).stripTrailingZeros().toPlainString();
+        return "必须在 " + min + " 到 " + max + " 之间";
+    }
+
+    /**
+     * 字段表中的全部字段名（提示词中的顺序）
+     */
+    static Set<String> fieldNames() {
+        return Collections.unmodifiableSet(FIELD_INFO.keySet());
+    }
+
+    /**
+     * 字段表中的 [中文名, 类型, 单位]；未知字段返回 null
+     */
+    static String[] fieldInfo(String field) {
+        return FIELD_INFO.get(field);
     }
 
     /**
      * 获取配置字段的当前值
      */
-    private static String getFieldValue(SimulationConfig cfg, String field) {
+    static String getFieldValue(SimulationConfig cfg, String field) {
         switch (field) {
             case "domainWidth":
                 return String.valueOf(cfg.domainWidth);
@@ -472,6 +766,8 @@ public class AIConfigParser {
                 return String.valueOf(cfg.exportVelocity);
             case "exportVorticity":
                 return String.valueOf(cfg.exportVorticity);
+            case "exportPressure":
+                return String.valueOf(cfg.exportPressure);
             case "exportAnimation":
                 return String.valueOf(cfg.exportAnimation);
             case "animationFps":
@@ -591,6 +887,9 @@ public class AIConfigParser {
                 case "exportVorticity":
                     cfg.exportVorticity = Boolean.parseBoolean(value);
                     break;
+                case "exportPressure":
+                    cfg.exportPressure = Boolean.parseBoolean(value);
+                    break;
                 case "exportAnimation":
                     cfg.exportAnimation = Boolean.parseBoolean(value);
                     break;
@@ -605,4 +904,50 @@ public class AIConfigParser {
             System.err.println("无法解析字段 " + field + " 的值: " + value);
         }
     }
+
+    // 测试方法：模拟一次 GUI 会话，逐条比较每次请求发送的提示词 token（估算）
+    public static void main(String[] args) {
+        SimulationConfig cfg = new SimulationConfig();
+        String[][] session = {
+                { "你好", null, null },
+                { "使用水", "fluidName", "Water" },
+                { "使用水", "density", "998.0" },
+                { "使用水", "dynamicViscosity", "1.002e-3" },
+                { "速度改为0.05", "inletVelocity", "0.05" },
+                { "加密网格", "meshSizeLevel", "2" },
+                { "仿真时间延长到 300 秒", "endTime", "300" },
+        };
+        String prefix = staticPrompt();
+        if (!prefix.equals(staticPrompt()) || !generateSystemPrompt(cfg).startsWith(prefix)) {
+            throw new IllegalStateException("static prefix is not stable");
+        }
+        int intro = estimateTokens(prefix.substring(0, prefix.indexOf("## ")));
+        // 以前的字段表没有默认值列
+        SimulationConfig defaults = new SimulationConfig();
+        int defaultColumn = estimateTokens("| 默认值 |--------|");
+        for (String field : FIELD_INFO.keySet()) {
+            defaultColumn += estimateTokens(" | " + getFieldValue(defaults, field));
+        }
+        System.out.println(String.format("%-24s %10s %10s %10s %10s", "request", "old total", "old cached",
+                "new total", "new cached"));
+        double sumFull = 0, sumSent = 0;
+        for (String[] step : session) {
+            if (step[1] != null) {
+                List<ConfigChange> changes = new ArrayList<>();
+                changes.add(new ConfigChange(step[1], "", "", step[2], FIELD_INFO.get(step[1])[1]));
+                applyChanges(cfg, changes);
+            }
+            // 以前的格式：完整配置 JSON 放在字段表之前，服务端前缀缓存只能命中开头的角色说明
+            int full = estimateTokens(prefix) - defaultColumn + estimateTokens("## 当前配置\n```json\n" + configJson(cfg, null) + "\n```\n\n");
+            int prompt = estimateTokens(generateSystemPrompt(cfg));
+            int uncached = prompt - estimateTokens(prefix);
+            sumFull += full - intro;
+            sumSent += uncached;
+            System.out.println(String.format("%-24s %10d %10d %10d %10d", step[0], full, intro, prompt,
+                    estimateTokens(prefix)));
+        }
+        System.out.println(String.format("uncached prompt tokens per request: %.0f -> %.0f (%.1fx fewer)",
+                sumFull / session.length, sumSent / session.length, sumFull / Math.max(1, sumSent)));
+        System.out.println("delta now: " + configDelta(cfg).trim());
+    }
 }
@@ -0,0 +1,450 @@
+/*
+ * AIConfigParserBenchmark.java - AI 回复解析性能与正确性对比
+ * 旧实现 (indexOf 提取 message / changes 子串再逐个截取) vs AIConfigParser (JsonReader 单遍 + 字段表校验)
+ *
+ * 输入：典型回复、大回复（约 50 KB 说明 + 30 项变更）和若干对抗性回复
+ * （字符串中的引号/花括号/"changes"、嵌套 value、代码块前的散文、整数写成 2.0、对象形式的 changes）。
+ * 正确性另外检查 StreamParser 逐段接收同一回复的结果（GUI 实际使用的路径）。
+ * 与 ConfigCodecBenchmark 相同的固定时长预热 + 多轮测量。
+ * 运行: java AIConfigParserBenchmark [测量轮数]
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AIConfigParserBenchmark {
+
+    private static final long WARMUP_MS = 1000;
+    private static final long ROUND_MS = 500;
+
+    private static volatile double blackhole;
+
+    private interface Op {
+        double run() throws Exception;
+    }
+
+    /**
+     * 一个输入及其应得到的变更（字段 -> 按字段类型的值）与说明
+     */
+    private static class Case {
+        final String name;
+        final String response;
+        final String message;
+        final Map<String, Object> expected = new LinkedHashMap<>();
+
+        Case(String name, String response, String message) {
+            this.name = name;
+            this.response = response;
+            this.message = message;
+        }
+
+        Case expect(String field, Object value) {
+            expected.put(field, value);
+            return this;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        final SimulationConfig cfg = new SimulationConfig();
+        List<Case> cases = cases();
+
+        System.out.println(String.format("%-26s %8s %14s %14s %9s %9s", "input", "chars", "legacy us/op",
+                "new us/op", "new MB/s", "speedup"));
+        for (final Case c : cases) {
+            double legacy = measure(rounds, new Op() {
+                @Override
+                public double run() {
+                    return legacyParse(c.response).size();
+                }
+            });
+            double parsed = measure(rounds, new Op() {
+                @Override
+                public double run() {
+                    return AIConfigParser.parseAIResponse(c.response, cfg).changes.size();
+                }
+            });
+            System.out.println(String.format("%-26s %8d %14.2f %14.2f %9.1f %8.1fx", c.name, c.response.length(),
+                    legacy, parsed, c.response.length() * 2 / parsed, legacy / parsed));
+        }
+
+        // 正确性：变更按应用时的类型比较（旧实现的 "2.0" 写进 int 字段会在应用时失败）
+        System.out.println();
+        System.out.println(String.format("%-26s %-22s %-22s %-22s", "input", "legacy", "new", "new (streamed)"));
+        int legacyOk = 0;
+        int newOk = 0;
+        int streamOk = 0;
+        for (Case c : cases) {
+            String legacy = checkLegacy(c);
+            String parsed = checkNew(c, AIConfigParser.parseAIResponse(c.response, cfg));
+            String streamed = checkNew(c, streamParse(c.response, cfg));
+            legacyOk += legacy.equals("ok") ? 1 : 0;
+            newOk += parsed.equals("ok") ? 1 : 0;
+            streamOk += streamed.equals("ok") ? 1 : 0;
+            System.out.println(String.format("%-26s %-22s %-22s %-22s", c.name, legacy, parsed, streamed));
+        }
+        System.out.println(String.format("%-26s %-22s %-22s %-22s", "correct", legacyOk + "/" + cases.size(),
+                newOk + "/" + cases.size(), streamOk + "/" + cases.size()));
+    }
+
+    /**
+     * GUI 的路径：回复按 7 个字符一段交给 StreamParser，结束时 finish()
+     */
+    private static AIConfigParser.ParseResult streamParse(String response, SimulationConfig cfg) {
+        AIConfigParser.StreamParser parser = new AIConfigParser.StreamParser(cfg);
+        for (int i = 0; i < response.length(); i += 7) {
+            parser.feed(response.substring(i, Math.min(response.length(), i + 7)));
+        }
+        return parser.finish();
+    }
+
+    private static List<Case> cases() {
+        List<Case> cases = new ArrayList<>();
+        cases.add(new Case("typical",
+                "好的，已为您修改。\n```json\n{\n  \"message\": \"好的，已将流体改为水，并把入口速度调整为 0.05 m/s。\",\n"
+                        + "  \"changes\": [\n    {\"field\": \"fluidName\", \"value\": \"Water\"},\n"
+                        + "    {\"field\": \"density\", \"value\": 998},\n"
+                        + "    {\"field\": \"dynamicViscosity\", \"value\": 0.001002},\n"
+                        + "    {\"field\": \"inletVelocity\", \"value\": 0.05}\n  ]\n}\n```",
+                "好的，已将流体改为水，并把入口速度调整为 0.05 m/s。")
+                .expect("fluidName", "Water").expect("density", 998.0).expect("dynamicViscosity", 0.001002)
+                .expect("inletVelocity", 0.05));
+
+        String[] fields = { "domainWidth", "domainHeight", "cylinderRadius", "cylinderX", "cylinderY",
+                "inletVelocity", "outletPressure", "density", "dynamicViscosity", "meshMaxSize", "meshMinSize",
+                "cylinderMeshMaxSize", "startTime", "endTime", "timeStep" };
+        StringBuilder message = new StringBuilder();
+        while (message.length() < 50_000) {
+            message.append("圆柱绕流的雷诺数 Re = ρUD/μ，卡门涡街在 Re > 47 后出现；\\n");
+        }
+        StringBuilder large = new StringBuilder("{\"message\": \"").append(message).append("\", \"changes\": [");
+        Map<String, Object> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 30; i++) {
+            // 前 15 个字段各出现两次，后一次为准
+            String field = fields[i % fields.length];
+            double value = 0.001 * (i + 1);
+            large.append(i > 0 ? ", " : "").append("{\"field\": \"").append(field).append("\", \"value\": ")
+                    .append(value).append("}");
+            expected.put(field, value);
+        }
+        large.append("]}");
+        Case big = new Case("large (50 KB, 30 changes)", large.toString(), message.toString().replace("\\n", "\n"));
+        big.expected.putAll(expected);
+        cases.add(big);
+
+        cases.add(new Case("escaped quotes",
+                "{\"message\": \"已把 \\\"入口速度\\\" 改为 0.05\", \"changes\": [{\"field\": \"inletVelocity\", \"value\": 0.05}]}",
+                "已把 \"入口速度\" 改为 0.05").expect("inletVelocity", 0.05));
+        cases.add(new Case("\"changes\" in nested object",
+                "{\"meta\": {\"changes\": []}, \"message\": \"延长仿真\", \"changes\": [{\"field\": \"endTime\", \"value\": 300}]}",
+                "延长仿真").expect("endTime", 300.0));
+        cases.add(new Case("braces in string value",
+                "{\"message\": \"改名\", \"changes\": [{\"field\": \"modelFileName\", \"value\": \"run_{Re}}.mph\"},"
+                        + " {\"field\": \"endTime\", \"value\": 120}]}",
+                "改名").expect("modelFileName", "run_{Re}}.mph").expect("endTime", 120.0));
+        cases.add(new Case("nested value object",
+                "{\"message\": \"修改密度\", \"changes\": [{\"field\": \"density\", \"value\": {\"v\": 998, \"unit\": \"kg/m3\"}},"
+                        + " {\"field\": \"endTime\", \"value\": 300}]}",
+                "修改密度").expect("endTime", 300.0));
+        cases.add(new Case("prose '{' before JSON",
+                "注意 {Re} 是占位符，会在后续替换。\n{\"message\": \"已加密网格\", \"changes\": [{\"field\": \"meshSizeLevel\", \"value\": 2}]}",
+                "已加密网格").expect("meshSizeLevel", 2));
+        cases.add(new Case("prose '{' before code fence",
+                "按 {Re} 的要求修改：```json {\"message\": \"提高入口速度\", \"changes\": [{\"field\": \"inletVelocity\", \"value\": 0.05}]}```",
+                "提高入口速度").expect("inletVelocity", 0.05));
+        cases.add(new Case("prose object before JSON",
+                "当前 {\"Re\": 100}，需要提高。\n{\"message\": \"提高入口速度\", \"changes\": [{\"field\": \"inletVelocity\", \"value\": 0.05}]}",
+                "提高入口速度").expect("inletVelocity", 0.05));
+        cases.add(new Case("int written as 2.0",
+                "{\"message\": \"已加密网格\", \"changes\": [{\"value\": 2.0, \"field\": \"meshSizeLevel\"}]}",
+                "已加密网格").expect("meshSizeLevel", 2));
+        cases.add(new Case("changes as object",
+                "{\"message\": \"使用水\", \"changes\": {\"fluidName\": \"Water\", \"exportAnimation\": true}}",
+                "使用水").expect("fluidName", "Water").expect("exportAnimation", true));
+
+        // 对抗性输入：未知字段嵌套 10000 层，跳过时不能耗尽调用栈
+        StringBuilder deep = new StringBuilder("{\"message\": \"x\", \"extra\": ");
+        for (int i = 0; i < 10_000; i++) {
+            deep.append('[');
+        }
+        for (int i = 0; i < 10_000; i++) {
+            deep.append(']');
+        }
+        deep.append(", \"changes\": [{\"field\": \"inletVelocity\", \"value\": 0.05}]}");
+        cases.add(new Case("deep nesting (10k levels)", deep.toString(), "x").expect("inletVelocity", 0.05));
+        return cases;
+    }
+
+    /**
+     * 平均每次调用的微秒数
+     */
+    private static double measure(int rounds, Op op) throws Exception {
+        long deadline = System.currentTimeMillis() + WARMUP_MS;
+        while (System.currentTimeMillis() < deadline) {
+            blackhole += op.run();
+        }
+
+        double sum = 0;
+        for (int r = 0; r < rounds; r++) {
+            long ops = 0;
+            long t0 = System.nanoTime();
+            long end = t0 + ROUND_MS * 1_000_000L;
+            long now;
+            do {
+                for (int i = 0; i < 16; i++) {
+                    blackhole += op.run();
+                }
+                ops += 16;
+                now = System.nanoTime();
+            } while (now < end);
+            sum += (now - t0) / 1e3 / ops;
+        }
+        return sum / rounds;
+    }
+
+    private static String checkNew(Case c, AIConfigParser.ParseResult result) {
+        if (!result.success) {
+            return "failed";
+        }
+        if (!c.message.equals(result.message)) {
+            return "wrong message";
+        }
+        Map<String, Object> got = new LinkedHashMap<>();
+        for (AIConfigParser.ConfigChange change : result.changes) {
+            got.put(change.fieldName, change.value);
+        }
+        return compare(c.expected, got);
+    }
+
+    private static String checkLegacy(Case c) {
+        Map<String, Object> got = new LinkedHashMap<>();
+        for (String[] pair : legacyParse(c.response)) {
+            Object expected = c.expected.get(pair[0]);
+            try {
+                // 与 setFieldValue 相同的转换
+                if (expected instanceof Integer) {
+                    got.put(pair[0], Integer.parseInt(pair[1]));
+                } else if (expected instanceof Double) {
+                    got.put(pair[0], Double.parseDouble(pair[1]));
+                } else if (expected instanceof Boolean) {
+                    got.put(pair[0], Boolean.parseBoolean(pair[1]));
+                } else {
+                    got.put(pair[0], pair[1]);
+                }
+            } catch (NumberFormatException e) {
+                return "bad " + pair[0] + "=" + pair[1];
+            }
+        }
+        if (!c.message.equals(legacyMessage(c.response))) {
+            return "wrong message";
+        }
+        return compare(c.expected, got);
+    }
+
+    private static String compare(Map<String, Object> expected, Map<String, Object> got) {
+        for (Map.Entry<String, Object> e : expected.entrySet()) {
+            if (!e.getValue().equals(got.get(e.getKey()))) {
+                return got.containsKey(e.getKey()) ? "bad " + e.getKey() + "=" + got.get(e.getKey())
+                        : "missing " + e.getKey();
+            }
+        }
+        for (String field : got.keySet()) {
+            if (!expected.containsKey(field)) {
+                return "extra " + field;
+            }
+        }
+        return "ok";
+    }
+
+    // ============================================
+    // 旧实现（AIConfigParser 改用 JsonReader 之前的代码，仅作对比；
+    // 同样按字段表过滤未知字段并读取旧值，不做类型校验）
+    // ============================================
+
+    private static final SimulationConfig LEGACY_CONFIG = new SimulationConfig();
+
+    private static List<String[]> legacyParse(String aiResponse) {
+        List<String[]> changes = new ArrayList<>();
+        try {
+            String json = extractJson(aiResponse);
+            if (json == null) {
+                return changes;
+            }
+            extractStringField(json, "message");
+            String changesArray = extractArrayField(json, "changes");
+            if (changesArray != null && !changesArray.isEmpty()) {
+                parseChanges(changesArray, changes);
+            }
+        } catch (Exception e) {
+            /* 旧实现在此返回解析错误 */ }
+        return changes;
+    }
+
+    private static String legacyMessage(String aiResponse) {
+        try {
+            String json = extractJson(aiResponse);
+            return json != null ? extractStringField(json, "message") : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String extractJson(String response) {
+        int start = response.indexOf("```json");
+        if (start != -1) {
+            start = response.indexOf("\n", start) + 1;
+            int end = response.indexOf("```", start);
+            if (end != -1) {
+                return response.substring(start, end).trim();
+            }
+        }
+
+        start = response.indexOf("```");
+        if (start != -1) {
+            start = response.indexOf("\n", start) + 1;
+            int end = response.indexOf("```", start);
+            if (end != -1) {
+                String content = response.substring(start, end).trim();
+                if (content.startsWith("{")) {
+                    return content;
+                }
+            }
+        }
+
+        start = response.indexOf("{");
+        if (start != -1) {
+            int end = response.lastIndexOf("}");
+            if (end > start) {
+                return response.substring(start, end + 1);
+            }
+        }
+
+        return null;
+    }
+
+    private static String extractStringField(String json, String fieldName) {
+        String pattern = "\"" + fieldName + "\"";
+        int start = json.indexOf(pattern);
+        if (start == -1)
+            return null;
+
+        start = json.indexOf(":", start) + 1;
+        while (start < json.length() && Character.isWhitespace(json.charAt(start)))
+            start++;
+
+        if (json.charAt(start) != '"')
+            return null;
+        start++;
+
+        StringBuilder sb = new StringBuilder();
+        boolean escaped = false;
+        for (int i = start; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (escaped) {
+                switch (c) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    default:
+                        sb.append(c);
+                }
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                break;
+            } else {
+                sb.append(c);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String extractArrayField(String json, String fieldName) {
+        String pattern = "\"" + fieldName + "\"";
+        int start = json.indexOf(pattern);
+        if (start == -1)
+            return null;
+
+        start = json.indexOf("[", start);
+        if (start == -1)
+            return null;
+
+        int depth = 0;
+        int end = start;
+        for (int i = start; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '[')
+                depth++;
+            else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    end = i;
+                    break;
+                }
+            }
+        }
+
+        return json.substring(start, end + 1);
+    }
+
+    private static void parseChanges(String changesArray, List<String[]> changes) {
+        int pos = 1;
+
+        while (pos < changesArray.length()) {
+            int objStart = changesArray.indexOf("{", pos);
+            if (objStart == -1)
+                break;
+
+            int objEnd = changesArray.indexOf("}", objStart);
+            if (objEnd == -1)
+                break;
+
+            String obj = changesArray.substring(objStart, objEnd + 1);
+
+            String field = extractStringField(obj, "field");
+            String value = extractValue(obj, "value");
+
+            if (field != null && value != null && AIConfigParser.fieldInfo(field) != null) {
+                changes.add(new String[] { field, value, AIConfigParser.getFieldValue(LEGACY_CONFIG, field) });
+            }
+
+            pos = objEnd + 1;
+        }
+    }
+
+    private static String extractValue(String json, String fieldName) {
+        String pattern = "\"" + fieldName + "\"";
+        int start = json.indexOf(pattern);
+        if (start == -1)
+            return null;
+
+        start = json.indexOf(":", start) + 1;
+        while (start < json.length() && Character.isWhitespace(json.charAt(start)))
+            start++;
+
+        char firstChar = json.charAt(start);
+
+        if (firstChar == '"') {
+            return extractStringField(json, fieldName);
+        } else {
+            int end = start;
+            while (end < json.length()) {
+                char c = json.charAt(end);
+                if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c))
+                    break;
+                end++;
+            }
+            return json.substring(start, end).trim();
+        }
+    }
+}
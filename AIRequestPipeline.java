@@ -0,0 +1,255 @@
+/*
+ * AIRequestPipeline.java - GUI 的 AI 请求管线
+ * 同一时刻最多一个请求在途：
+ *   - 新消息到达时取消在途请求（中止 HTTP 请求、释放连接），未得到回复的消息与新消息合并；
+ *   - 消息先等待 coalesceMs，期间连续输入的多条消息合并为一次请求；
+ *   - stop() 取消在途请求并丢弃排队的消息。
+ * 请求的发起与状态回调都在构造时给定的 executor 上执行（GUI 传入 SwingUtilities::invokeLater）。
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public class AIRequestPipeline {
+
+    /**
+     * 发起一次请求；取消返回的 future 时应中止对应的 HTTP 请求
+     */
+    public interface Sender {
+        CompletableFuture<?> send(String message);
+    }
+
+    private final Sender sender;
+    private final Executor executor;
+    private final long coalesceMs;
+    private final Runnable onStateChanged;
+
+    private final List<String> pending = new ArrayList<>();
+    private List<String> inFlightMessages = new ArrayList<>();
+    private CompletableFuture<?> inFlight;
+    private long generation = 0;
+    private boolean scheduled = false;
+    private long sent = 0;
+    private long merged = 0;
+    private long cancelled = 0;
+
+    /**
+     * @param coalesceMs     发送前的合并等待时间
+     * @param onStateChanged 排队/在途状态变化时在 executor 上调用，可为 null
+     */
+    public AIRequestPipeline(Sender sender, Executor executor, long coalesceMs, Runnable onStateChanged) {
+        this.sender = sender;
+        this.executor = executor;
+        this.coalesceMs = coalesceMs;
+        this.onStateChanged = onStateChanged;
+    }
+
+    /**
+     * 提交一条消息：取消在途请求并把它的消息放回队首，coalesceMs 内没有新消息时合并发送
+     */
+    public void submit(String message) {
+        CompletableFuture<?> superseded;
+        long gen;
+        synchronized (this) {
+            superseded = inFlight;
+            if (superseded != null) {
+                pending.addAll(0, inFlightMessages);
+                inFlight = null;
+                inFlightMessages = new ArrayList<>();
+            }
+            pending.add(message);
+            gen = ++generation;
+            scheduled = true;
+        }
+        if (superseded != null && superseded.cancel(true)) {
+            countCancelled();
+        }
+        CompletableFuture.delayedExecutor(coalesceMs, TimeUnit.MILLISECONDS, executor).execute(() -> dispatch(gen));
+        notifyState();
+    }
+
+    /**
+     * 取消在途请求并丢弃排队的消息
+     */
+    public void stop() {
+        CompletableFuture<?> running;
+        synchronized (this) {
+            running = inFlight;
+            inFlight = null;
+            inFlightMessages = new ArrayList<>();
+            pending.clear();
+            generation++;
+            scheduled = false;
+        }
+        if (running != null && running.cancel(true)) {
+            countCancelled();
+        }
+        notifyState();
+    }
+
+    private void dispatch(long gen) {
+        String message;
+        synchronized (this) {
+            // 等待期间又有新消息：由最后一次提交安排的发送负责
+            if (gen != generation || inFlight != null || pending.isEmpty()) {
+                return;
+            }
+            scheduled = false;
+            inFlightMessages = new ArrayList<>(pending);
+            pending.clear();
+            merged += inFlightMessages.size() - 1;
+            sent++;
+            message = String.join("\n", inFlightMessages);
+        }
+        CompletableFuture<?> future;
+        try {
+            future = sender.send(message);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        boolean current;
+        synchronized (this) {
+            // 发送期间被 stop() 或新消息取代
+            current = gen == generation;
+            if (current) {
+                inFlight = future;
+            }
+        }
+        if (!current) {
+            if (future.cancel(true)) {
+                countCancelled();
+            }
+            return;
+        }
+        final CompletableFuture<?> f = future;
+        f.whenComplete((r, e) -> {
+            synchronized (this) {
+                if (inFlight == f) {
+                    inFlight = null;
+                    inFlightMessages = new ArrayList<>();
+                }
+            }
+            notifyState();
+        });
+        notifyState();
+    }
+
+    private synchronized void countCancelled() {
+        cancelled++;
+    }
+
+    private void notifyState() {
+        if (onStateChanged != null) {
+            executor.execute(onStateChanged);
+        }
+    }
+
+    public synchronized boolean isBusy() {
+        return inFlight != null || scheduled;
+    }
+
+    public synchronized int queued() {
+        return pending.size();
+    }
+
+    /**
+     * 状态描述：在途请求包含的消息数与排队的消息数
+     */
+    public synchronized String describe() {
+        if (inFlight != null) {
+            return "请求中" + (inFlightMessages.size() > 1 ? " (合并 " + inFlightMessages.size() + " 条消息)" : "")
+                    + (pending.isEmpty() ? "" : "，排队 " + pending.size() + " 条");
+        }
+        if (!pending.isEmpty()) {
+            return "排队 " + pending.size() + " 条，" + coalesceMs + " ms 内无新消息即发送";
+        }
+        return "空闲";
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("AIRequestPipeline[%d sent, %d messages merged, %d cancelled, %s]", sent, merged,
+                cancelled, inFlight != null ? "in flight" : pending.size() + " queued");
+    }
+
+    // 测试方法：本地模拟接口上验证合并、取消与取代
+    public static void main(String[] args) throws Exception {
+        // 每段间隔 50 ms，一次流式回复约 4 s
+        try (MockLlmServer mock = new MockLlmServer(20, 50)) {
+            QwenClient client = new QwenClient("mock", mock.url());
+            client.setCache(null);
+            List<CompletableFuture<?>> futures = new ArrayList<>();
+            AIRequestPipeline pipeline = new AIRequestPipeline(message -> {
+                CompletableFuture<String> f = client.chatStream(message, "system", delta -> {
+                });
+                synchronized (futures) {
+                    futures.add(f);
+                }
+                return f;
+            }, Runnable::run, 150, null);
+
+            // 1. 连续输入的三条消息合并为一次请求
+            pipeline.submit("入口速度改为 0.05");
+            Thread.sleep(50);
+            pipeline.submit("使用水");
+            Thread.sleep(50);
+            pipeline.submit("加密网格");
+            Thread.sleep(400);
+            // 首次请求要建立连接，机器繁忙时可能超过等待时间
+            long deadline = System.currentTimeMillis() + 2000;
+            while (mock.requests.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            String body = mock.lastRequest;
+            if (mock.requests.get() != 1) {
+                throw new IllegalStateException("three quick messages -> " + mock.requests.get() + " requests");
+            }
+            if (!body.contains("0.05") || !body.contains("使用水") || !body.contains("加密网格")) {
+                throw new IllegalStateException("merged request is missing a message: " + body);
+            }
+            System.out.println("coalesce: 3 messages -> " + mock.requests.get() + " request; " + pipeline.describe());
+
+            // 2. stop() 中止在途的流式请求，服务器端的连接随即断开
+            long t0 = System.nanoTime();
+            pipeline.stop();
+            CompletableFuture<?> first = futures.get(0);
+            if (!first.isCancelled()) {
+                throw new IllegalStateException("stop did not cancel the in-flight future");
+            }
+            deadline = System.currentTimeMillis() + 2000;
+            while (mock.aborted.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            if (mock.aborted.get() != 1) {
+                throw new IllegalStateException("server did not see the stream closed");
+            }
+            System.out.println(String.format("stop: server connection closed after %.0f ms (stream would run ~4 s)",
+                    (System.nanoTime() - t0) / 1e6));
+
+            // 3. 新消息取代在途请求：旧请求被取消，未回复的消息与新消息一起重发
+            mock.resetCounters();
+            pipeline.submit("仿真时间改为 300 秒");
+            Thread.sleep(400);
+            pipeline.submit("不对，改为 400 秒");
+            Thread.sleep(400);
+            body = mock.lastRequest;
+            if (mock.requests.get() != 2) {
+                throw new IllegalStateException("superseded request sent " + mock.requests.get() + " times");
+            }
+            if (!body.contains("300") || !body.contains("400")) {
+                throw new IllegalStateException("re-sent request lost the unanswered message: " + body);
+            }
+            if (!futures.get(1).isCancelled()) {
+                throw new IllegalStateException("superseded request was not cancelled");
+            }
+            System.out.println("supersede: " + pipeline.describe());
+            pipeline.stop();
+            System.out.println(pipeline);
+            System.out.println(client.getRouter());
+            System.out.println("AIRequestPipeline self-test passed");
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * AIResponseCache.java - AI 配置请求的响应缓存
+ * 键为规范化后的用户消息 + 系统提示词的 SHA-256（系统提示词内嵌当前 SimulationConfig，
+ * 配置或提示词模板变化后自然不再命中）；值为 AI 的原始回复。
+ * 按条目数做 LRU 淘汰，按 TTL 过期，可选保存到磁盘以便 GUI 重启后继续使用。
+ * 写盘在后台线程上合并进行（修改后延迟 SAVE_DELAY_MS 写一次），退出时再写一次，不阻塞请求线程。
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class AIResponseCache {
+
+    private static final String FILE_HEADER = "AICACHE1";
+    // 修改后多久写盘；期间的修改合并为一次写入
+    static final long SAVE_DELAY_MS = 2000;
+
+    private static class Entry {
+        final String response;
+        final long createdAt;
+
+        Entry(String response, long createdAt) {
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+    }
+
+    // 访问顺序的 LinkedHashMap：迭代顺序即最久未使用在前
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxEntries;
+    private final long ttlMs;
+    private final File file;
+    // 后台写盘线程，file 为 null 时不创建
+    private final ScheduledExecutorService writer;
+    private boolean dirty = false;
+    private boolean saveScheduled = false;
+    private final Object saveLock = new Object();
+    private long hits = 0;
+    private long misses = 0;
+    private long expired = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxEntries 最多保留的回复数
+     * @param ttlMs      回复的有效期，<= 0 表示不过期
+     * @param file       持久化文件，null 表示只在内存中缓存
+     */
+    public AIResponseCache(int maxEntries, long ttlMs, File file) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMs = ttlMs;
+        this.file = file;
+        if (file != null && file.isFile()) {
+            try {
+                load();
+            } catch (IOException e) {
+                System.out.println("Warning: Ignoring unreadable AI cache " + file + ": " + e.getMessage());
+                entries.clear();
+            }
+        }
+        if (file != null) {
+            writer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ai-cache-writer");
+                t.setDaemon(true);
+                return t;
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * 用户消息规范化：全角/半角统一 (NFKC)、合并空白、小写、去掉句末标点
+     */
+    static String normalize(String userMessage) {
+        String s = Normalizer.normalize(userMessage, Normalizer.Form.NFKC);
+        s = s.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        int end = s.length();
+        while (end > 0 && ".!?。！？~～".indexOf(s.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return s.substring(0, end).trim();
+    }
+
+    /**
+     * 缓存键：规范化消息 + 系统提示词（含配置状态）的哈希
+     */
+    public static String keyOf(String userMessage, String systemPrompt) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(normalize(userMessage).getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update((systemPrompt != null ? systemPrompt : "").getBytes(StandardCharsets.UTF_8));
+            byte[] digest = md.digest();
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b & 0xFF));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 查找回复；未命中或已过期返回 null
+     */
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (isExpired(entry, System.currentTimeMillis())) {
+            entries.remove(key);
+            expired++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.response;
+    }
+
+    public void put(String key, String response) {
+        synchronized (this) {
+            entries.put(key, new Entry(response, System.currentTimeMillis()));
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions++;
+            }
+        }
+        persist();
+    }
+
+    /**
+     * 删除一条回复（例如回复无法解析时，不应在下次原样返回）
+     */
+    public void remove(String key) {
+        boolean removed;
+        synchronized (this) {
+            removed = entries.remove(key) != null;
+        }
+        if (removed) {
+            persist();
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            entries.clear();
+        }
+        persist();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return ttlMs > 0 && now - entry.createdAt > ttlMs;
+    }
+
+    /**
+     * 标记为已修改，并在后台线程上安排一次延迟写盘
+     */
+    private void persist() {
+        if (file == null) {
+            return;
+        }
+        synchronized (this) {
+            dirty = true;
+            if (saveScheduled) {
+                return;
+            }
+            saveScheduled = true;
+        }
+        writer.schedule(this::flush, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 有未保存的修改时立即写盘（后台线程与退出时调用，也可由调用方主动调用）
+     */
+    public void flush() {
+        if (file == null) {
+            return;
+        }
+        // saveLock 保证快照按取得的顺序写盘；写盘期间不持有缓存本身的锁
+        synchronized (saveLock) {
+            List<Map.Entry<String, Entry>> snapshot;
+            synchronized (this) {
+                saveScheduled = false;
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                snapshot = new ArrayList<>(entries.entrySet());
+            }
+            try {
+                save(snapshot);
+            } catch (IOException e) {
+                System.out.println("Warning: Failed to save AI cache " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按最久未使用在前的顺序写出，读回时保持 LRU 顺序；先写临时文件再改名
+     */
+    private void save(List<Map.Entry<String, Entry>> snapshot) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.write(FILE_HEADER.getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> e : snapshot) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().createdAt);
+                byte[] bytes = e.getValue().response.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void load() throws IOException {
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] header = new byte[FILE_HEADER.length()];
+            in.readFully(header);
+            if (!FILE_HEADER.equals(new String(header, StandardCharsets.US_ASCII))) {
+                throw new IOException("not an AI cache file");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long createdAt = in.readLong();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                Entry entry = new Entry(new String(bytes, StandardCharsets.UTF_8), createdAt);
+                if (!isExpired(entry, now)) {
+                    entries.put(key, entry);
+                }
+            }
+        }
+        while (entries.size() > maxEntries) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("AIResponseCache[%d/%d entries, %d hits, %d misses (%.0f%% hit rate), %d expired, %d evicted]",
+                entries.size(), maxEntries, hits, misses, lookups > 0 ? 100.0 * hits / lookups : 0.0, expired,
+                evictions);
+    }
+
+    // 测试方法
+    public static void main(String[] args) throws Exception {
+        String prompt = AIConfigParser.generateSystemPrompt(new SimulationConfig());
+        SimulationConfig water = new SimulationConfig();
+        water.fluidName = "Water";
+        String waterPrompt = AIConfigParser.generateSystemPrompt(water);
+
+        if (!keyOf("使用水", prompt).equals(keyOf("  使用水。 ", prompt))
+                || !keyOf("速度改为0.05", prompt).equals(keyOf("速度改为０．０５", prompt))) {
+            throw new IllegalStateException("message normalization (punctuation, whitespace, full-width digits)");
+        }
+        if (keyOf("使用水", prompt).equals(keyOf("使用水", waterPrompt))) {
+            throw new IllegalStateException("config state does not change the key");
+        }
+
+        AIResponseCache cache = new AIResponseCache(2, 0, null);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");
+        cache.put("c", "C");
+        if (cache.get("b") != null || !"A".equals(cache.get("a")) || !"C".equals(cache.get("c"))) {
+            throw new IllegalStateException("LRU eviction");
+        }
+
+        AIResponseCache ttl = new AIResponseCache(10, 50, null);
+        ttl.put("k", "V");
+        if (!"V".equals(ttl.get("k"))) {
+            throw new IllegalStateException("fresh entry missing");
+        }
+        Thread.sleep(80);
+        if (ttl.get("k") != null) {
+            throw new IllegalStateException("TTL expiry");
+        }
+
+        File f = File.createTempFile("ai_cache", ".bin");
+        f.delete();
+        AIResponseCache disk = new AIResponseCache(10, 0, f);
+        String reply = "{\"message\": \"好的，使用水\", \"changes\": [{\"field\": \"fluidName\", \"value\": \"Water\"}]}";
+        disk.put(keyOf("使用水", prompt), reply);
+        disk.put(keyOf("速度改为0.05", prompt), "{}");
+        if (f.exists()) {
+            throw new IllegalStateException("put wrote the file synchronously");
+        }
+        disk.flush();
+        AIResponseCache reloaded = new AIResponseCache(10, 0, f);
+        if (!reply.equals(reloaded.get(keyOf("使用水。", prompt))) || reloaded.size() != 2) {
+            throw new IllegalStateException("persistence round trip: " + reloaded);
+        }
+        System.out.println(reloaded);
+        f.delete();
+        System.out.println("AIResponseCache self-test passed");
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * CaseFile.java - 多工况配置文件 (JSON Lines)
+ * 每行一个 JSON 对象，只需写出与基础配置不同的字段；
+ * 打开时只扫描换行建立行索引，具体工况在 get() 时才解码（每行复制出来再解码）。
+ * 超过 MAP_THRESHOLD 的文件通过 FileChannel 内存映射读取，不会把整个文件读入内存；
+ * 较小的文件直接读入内存：Windows 上映射区在 GC 前一直存在，期间无法重写同一文件
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CaseFile implements Closeable {
+
+    // 超过此大小才内存映射
+    static final long MAP_THRESHOLD = 16L << 20;
+
+    private final String path;
+    private ByteBuffer buffer;
+    private int[] lineStart = new int[64];
+    private int[] lineEnd = new int[64];
+    private int count = 0;
+
+    private CaseFile(String path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Case file too large (> 2 GB): " + path);
+            }
+            this.buffer = size > MAP_THRESHOLD ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                    : ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)));
+        }
+        buildIndex();
+    }
+
+    /**
+     * 打开工况文件并建立行索引
+     */
+    public static CaseFile open(String path) throws IOException {
+        return new CaseFile(path);
+    }
+
+    /**
+     * 扫描换行符记录每个非空行的字节范围（空行和 # 注释行跳过）
+     */
+    private void buildIndex() {
+        int limit = buffer.limit();
+        int start = 0;
+        // 跳过 UTF-8 BOM
+        if (limit >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB
+                && (buffer.get(2) & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        for (int i = start; i <= limit; i++) {
+            if (i == limit || buffer.get(i) == '\n') {
+                addLine(start, i);
+                start = i + 1;
+            }
+        }
+    }
+
+    private void addLine(int start, int end) {
+        while (start < end && isSpace(buffer.get(start))) {
+            start++;
+        }
+        while (end > start && isSpace(buffer.get(end - 1))) {
+            end--;
+        }
+        if (start == end || buffer.get(start) == '#') {
+            return;
+        }
+        if (count == lineStart.length) {
+            lineStart = Arrays.copyOf(lineStart, count * 2);
+            lineEnd = Arrays.copyOf(lineEnd, count * 2);
+        }
+        lineStart[count] = start;
+        lineEnd[count] = end;
+        count++;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * 工况数
+     */
+    public int size() {
+        return count;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * 解码第 i 个工况：复制 base 后覆盖该行中出现的字段
+     */
+    public SimulationConfig get(int i, SimulationConfig base) throws IOException {
+        SimulationConfig cfg = base == null ? new SimulationConfig() : base.copy();
+        try {
+            JsonReader reader = new JsonReader(decode(i));
+            ConfigCodec.read(reader, cfg);
+            reader.endDocument();
+        } catch (IOException e) {
+            throw new IOException(path + " line " + (i + 1) + ": " + e.getMessage(), e);
+        }
+        return cfg;
+    }
+
+    public SimulationConfig get(int i) throws IOException {
+        return get(i, null);
+    }
+
+    /**
+     * 第 i 个工况中显式给出的配置字段名（按出现顺序，未知字段忽略）
+     */
+    public List<String> fieldNames(int i) throws IOException {
+        List<String> names = new ArrayList<>();
+        JsonReader reader = new JsonReader(decode(i));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (ConfigCodec.indexOf(name) >= 0 && !names.contains(name)) {
+                names.add(name);
+            }
+            reader.skipValue();
+        }
+        reader.endObject();
+        reader.endDocument();
+        return names;
+    }
+
+    /**
+     * 第 i 个工况中显式给出的字段及其取值（用于汇总表）
+     */
+    public Map<String, String> params(int i, SimulationConfig cfg) throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (String name : fieldNames(i)) {
+            params.put(name, ConfigCodec.getAsString(cfg, ConfigCodec.indexOf(name)));
+        }
+        return params;
+    }
+
+    /**
+     * 只解码一行的字节；结果为 CharBuffer，JsonReader 直接在其上读取
+     */
+    private CharBuffer decode(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Case " + i + " of " + count);
+        }
+        if (buffer == null) {
+            throw new IllegalStateException("Case file closed: " + path);
+        }
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(lineEnd[i]).position(lineStart[i]);
+        return StandardCharsets.UTF_8.decode(slice);
+    }
+
+    /**
+     * 丢弃文件内容；映射区在 GC 回收 buffer 后才真正释放（通道在映射后即已关闭）
+     */
+    @Override
+    public void close() {
+        buffer = null;
+    }
+
+    // ============================================
+    // 写出
+    // ============================================
+
+    /**
+     * 写出工况文件，每行一个紧凑 JSON 对象
+     *
+     * @param base 非 null 时每行只写出与 base 不同的字段
+     */
+    public static void write(List<SimulationConfig> cases, SimulationConfig base, String path) throws IOException {
+        try (Writer w = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            StringBuilder sb = new StringBuilder(1024);
+            for (SimulationConfig cfg : cases) {
+                sb.setLength(0);
+                if (base == null) {
+                    ConfigCodec.write(sb, cfg, false);
+                } else {
+                    ConfigCodec.writeDiff(sb, cfg, base);
+                }
+                sb.append('\n');
+                w.append(sb);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * ColorMap.java - 进程内颜色映射
+ * 对应 COMSOL 的 RainbowLight / Cyclic / ThermalWave 颜色表（按控制点线性插值的近似），
+ * 预先生成 256 级查找表，把标量场直接映射为 RGB 字节
+ */
+
+public class ColorMap {
+
+    private static final int LEVELS = 256;
+
+    // 非流体区域（圆柱内部，插值结果为 NaN）的颜色
+    private static final int BACKGROUND = 0xFFFFFF;
+
+    private final String name;
+    private final byte[] lut = new byte[LEVELS * 3];
+
+    private ColorMap(String name, double[][] stops) {
+        this.name = name;
+        for (int i = 0; i < LEVELS; i++) {
+            double t = i / (double) (LEVELS - 1);
+            int k = 1;
+            while (k < stops.length - 1 && stops[k][0] < t) {
+                k++;
+            }
+            double[] a = stops[k - 1];
+            double[] b = stops[k];
+            double f = b[0] > a[0] ? (t - a[0]) / (b[0] - a[0]) : 0;
+            f = Math.max(0, Math.min(1, f));
+            for (int c = 0; c < 3; c++) {
+                lut[i * 3 + c] = (byte) Math.round(a[c + 1] + f * (b[c + 1] - a[c + 1]));
+            }
+        }
+    }
+
+    /**
+     * 按 COMSOL 颜色表名称获取，未知名称回退到 RainbowLight
+     */
+    public static ColorMap forName(String name) {
+        if ("Cyclic".equalsIgnoreCase(name)) {
+            return new ColorMap("Cyclic", new double[][] {
+                    { 0.0, 255, 0, 0 },
+                    { 1.0 / 6, 255, 255, 0 },
+                    { 2.0 / 6, 0, 255, 0 },
+                    { 3.0 / 6, 0, 255, 255 },
+                    { 4.0 / 6, 0, 0, 255 },
+                    { 5.0 / 6, 255, 0, 255 },
+                    { 1.0, 255, 0, 0 } });
+        }
+        if ("ThermalWave".equalsIgnoreCase(name)) {
+            return new ColorMap("ThermalWave", new double[][] {
+                    { 0.0, 16, 32, 96 },
+                    { 0.25, 40, 110, 200 },
+                    { 0.5, 240, 240, 240 },
+                    { 0.75, 230, 120, 50 },
+                    { 1.0, 110, 16, 16 } });
+        }
+        return new ColorMap("RainbowLight", new double[][] {
+                { 0.0, 40, 60, 200 },
+                { 0.25, 60, 180, 235 },
+                { 0.5, 120, 220, 120 },
+                { 0.75, 250, 220, 80 },
+                { 1.0, 230, 60, 50 } });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 把一行标量值映射为 RGB（每个值 3 字节），超出 [min, max] 的值截断到两端
+     *
+     * @param rgb 输出缓冲，从 offset 开始写入 count*3 字节
+     */
+    public void toRgb(float[] values, int from, int count, double min, double max, byte[] rgb, int offset) {
+        double scale = max > min ? (LEVELS - 1) / (max - min) : 0;
+        for (int i = 0; i < count; i++) {
+            float v = values[from + i];
+            int o = offset + i * 3;
+            if (Float.isNaN(v)) {
+                rgb[o] = (byte) (BACKGROUND >> 16);
+                rgb[o + 1] = (byte) (BACKGROUND >> 8);
+                rgb[o + 2] = (byte) BACKGROUND;
+                continue;
+            }
+            int level = (int) ((v - min) * scale + 0.5);
+            if (level < 0) {
+                level = 0;
+            } else if (level >= LEVELS) {
+                level = LEVELS - 1;
+            }
+            rgb[o] = lut[level * 3];
+            rgb[o + 1] = lut[level * 3 + 1];
+            rgb[o + 2] = lut[level * 3 + 2];
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * ComsolSessions.java - 到 comsolmphserver 的常驻会话
+ * GUI 和批处理通过 SessionPool 复用已连接、已签出许可证的 COMSOL 服务器，
+ * 不再为每次运行重新编译、启动 comsolbatch。
+ *
+ * 设置（环境变量或 .env）：
+ *   COMSOL_SERVER - 服务器地址 host:port，默认 localhost:2036
+ *   COMSOL_ROOT   - COMSOL 安装目录；设置后，服务器未运行时自动启动 comsolmphserver
+ *
+ * ModelUtil 的服务器连接是进程级的，一个 JVM 只能同时连接一个服务器，因此池中最多一个会话；
+ * 多个运行排队使用同一会话，每次运行后删除模板缓存以外的模型。
+ * 并行导出 (exportWorkers > 1) 因此在子 JVM 中执行：每个子进程在空闲端口上启动自己的服务器。
+ * 需要 COMSOL 库编译；GUI 通过反射调用，没有 COMSOL 库时退回 run_comsol.bat。
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.comsol.model.util.*;
+
+public class ComsolSessions {
+
+    public static final String DEFAULT_HOST = "localhost";
+    public static final int DEFAULT_PORT = 2036;
+
+    // 等待会话的时间上限（前一个仿真可能很长）
+    private static final long ACQUIRE_TIMEOUT_MS = 24L * 3600 * 1000;
+    // 自动启动的服务器等待端口打开的时间
+    private static final long SERVER_START_TIMEOUT_MS = 120_000;
+
+    private static SessionPool<Session> pool;
+
+    /**
+     * 一个服务器连接；server 为本进程启动的服务器（连接已有服务器时为 null）
+     */
+    public static class Session {
+        final String host;
+        final int port;
+        final Process server;
+
+        Session(String host, int port, Process server) {
+            this.host = host;
+            this.port = port;
+            this.server = server;
+        }
+    }
+
+    static class Factory implements SessionPool.SessionFactory<Session> {
+        private final String host;
+        private final int port;
+        private final String comsolRoot;
+
+        Factory(String host, int port, String comsolRoot) {
+            this.host = host;
+            this.port = port;
+            this.comsolRoot = comsolRoot;
+        }
+
+        @Override
+        public Session open() throws Exception {
+            Process server = null;
+            if (!isListening(host, port)) {
+                if (comsolRoot == null || comsolRoot.isEmpty()) {
+                    throw new IOException("No COMSOL server at " + host + ":" + port + " and COMSOL_ROOT not set");
+                }
+                server = startServer(comsolRoot, port);
+            }
+            long t0 = System.nanoTime();
+            try {
+                ModelUtil.connect(host, port);
+            } catch (RuntimeException e) {
+                if (server != null) {
+                    server.destroy();
+                }
+                throw e;
+            }
+            System.out.println(String.format("Connected to COMSOL server %s:%d (%.1f s)", host, port,
+                    (System.nanoTime() - t0) / 1e9));
+            return new Session(host, port, server);
+        }
+
+        /**
+         * 服务器进程仍在运行且能列出模型
+         */
+        @Override
+        public boolean validate(Session session) {
+            if (session.server != null && !session.server.isAlive()) {
+                return false;
+            }
+            try {
+                ModelUtil.tags();
+                return true;
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void reset(Session session) {
+            CylinderFlow.removeUntrackedModels();
+        }
+
+        @Override
+        public void close(Session session) {
+            try {
+                CylinderFlow.clearTemplates();
+                ModelUtil.disconnect();
+            } catch (RuntimeException e) {
+                System.out.println("Warning: Failed to disconnect from COMSOL server: " + e.getMessage());
+            } finally {
+                if (session.server != null) {
+                    session.server.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * 启动 comsolmphserver 并等待端口打开。
+     * -login auto 使用已保存的登录信息，首次使用前需手动运行一次 comsolmphserver 设置用户名和密码
+     */
+    static Process startServer(String comsolRoot, int port) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        if (System.getProperty("os.name", "").toLowerCase().contains("win")) {
+            cmd.add(new File(comsolRoot, "bin/win64/comsolmphserver.exe").getPath());
+        } else {
+            cmd.add(new File(comsolRoot, "bin/comsol").getPath());
+            cmd.add("mphserver");
+        }
+        cmd.add("-port");
+        cmd.add(String.valueOf(port));
+        cmd.add("-multi");
+        cmd.add("on");
+        cmd.add("-login");
+        cmd.add("auto");
+        System.out.println("Starting COMSOL server: " + String.join(" ", cmd));
+        Process process = new ProcessBuilder(cmd).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT).start();
+
+        long deadline = System.currentTimeMillis() + SERVER_START_TIMEOUT_MS;
+        while (!isListening(DEFAULT_HOST, port)) {
+            if (!process.isAlive()) {
+                throw new IOException("COMSOL server exited with code " + process.exitValue());
+            }
+            if (System.currentTimeMillis() > deadline) {
+                process.destroy();
+                throw new IOException("COMSOL server did not open port " + port + " within "
+                        + SERVER_START_TIMEOUT_MS / 1000 + " s");
+            }
+            Thread.sleep(500);
+        }
+        return process;
+    }
+
+    static boolean isListening(String host, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), 1000);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 设置了 COMSOL_SERVER / COMSOL_ROOT，或默认端口上已有服务器时返回 true
+     */
+    public static boolean isAvailable() {
+        return setting("COMSOL_SERVER") != null || setting("COMSOL_ROOT") != null
+                || isListening(DEFAULT_HOST, DEFAULT_PORT);
+    }
+
+    /**
+     * 进程共享的会话池，按 COMSOL_SERVER / COMSOL_ROOT 创建
+     */
+    public static synchronized SessionPool<Session> pool() {
+        if (pool == null) {
+            String server = setting("COMSOL_SERVER");
+            String host = DEFAULT_HOST;
+            int port = DEFAULT_PORT;
+            if (server != null && !server.isEmpty()) {
+                int colon = server.lastIndexOf(':');
+                host = colon >= 0 ? server.substring(0, colon) : server;
+                port = colon >= 0 ? Integer.parseInt(server.substring(colon + 1).trim()) : DEFAULT_PORT;
+            }
+            pool = new SessionPool<>(new Factory(host, port, setting("COMSOL_ROOT")), 1)
+                    .setHealthCheckInterval(60_000);
+            final SessionPool<Session> created = pool;
+            Runtime.getRuntime().addShutdownHook(new Thread(created::close));
+        }
+        return pool;
+    }
+
+    /**
+     * 预先连接服务器（阻塞，GUI 在后台线程调用），使第一次运行不必等待启动
+     */
+    public static void prewarm() {
+        pool().prewarm(1);
+    }
+
+    /**
+     * 在池中的会话上运行一个工况。运行失败（如网格划分失败）不关闭会话，
+     * 归还时的模型清理失败才说明连接已断开。租约只用于独占会话，ComsolBackend 使用当前连接
+     */
+    @SuppressWarnings("try")
+    public static SimulationResult run(SimulationConfig config) throws Exception {
+        try (SessionPool.Lease<Session> lease = pool().acquire(ACQUIRE_TIMEOUT_MS)) {
+            return new CylinderFlow.ComsolBackend().run(config);
+        }
+    }
+
+    /**
+     * 扫描执行器：每个工况借用会话运行。池中只有一个会话，工况依次执行
+     */
+    public static SweepRunner.CaseExecutor executor() {
+        return new SweepRunner.CaseExecutor() {
+            @Override
+            public Map<String, String> execute(SweepRunner.SweepCase sweepCase) throws Exception {
+                return run(sweepCase.config).toSummary();
+            }
+
+            @Override
+            public int maxWorkers() {
+                return 1;
+            }
+        };
+    }
+
+    /**
+     * 设置了 COMSOL_ROOT，可以为并行导出启动额外的服务器
+     */
+    public static boolean canStartServers() {
+        return setting("COMSOL_ROOT") != null;
+    }
+
+    /**
+     * 在子 JVM 中执行一项导出 (CylinderFlow --export-task)，等待其结束。
+     * 类路径为当前目录加 COMSOL_ROOT/plugins，与批处理的运行方式相同；退出码非 0 时抛出异常
+     */
+    static void exportInChild(String modelPath, File configFile, String validPath, String tag)
+            throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("user.dir") + File.pathSeparator
+                + new File(setting("COMSOL_ROOT"), "plugins").getPath() + File.separator + "*");
+        cmd.add("CylinderFlow");
+        cmd.add("--export-task");
+        cmd.add(modelPath);
+        cmd.add(configFile.getPath());
+        cmd.add(validPath);
+        cmd.add(tag);
+        Process process = new ProcessBuilder(cmd).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT).start();
+        try {
+            int code = process.waitFor();
+            if (code != 0) {
+                throw new IOException("Export process for " + tag + " exited with code " + code);
+            }
+        } finally {
+            process.destroy();
+        }
+    }
+
+    /**
+     * 子进程入口：在空闲端口上启动服务器，连接后只执行 tag 指定的导出，结束时关闭服务器
+     */
+    static boolean runExportTask(String modelPath, String configPath, String validPath, String tag) {
+        Process server = null;
+        try {
+            SimulationConfig config = ConfigCodec.parse(
+                    new String(Files.readAllBytes(new File(configPath).toPath()), StandardCharsets.UTF_8));
+            int port;
+            try (ServerSocket probe = new ServerSocket(0)) {
+                port = probe.getLocalPort();
+            }
+            server = startServer(setting("COMSOL_ROOT"), port);
+            ModelUtil.connect(DEFAULT_HOST, port);
+            try {
+                CylinderFlow.exportFromFile(modelPath, validPath, config, tag);
+            } finally {
+                ModelUtil.disconnect();
+            }
+            return true;
+        } catch (Exception e) {
+            System.out.println("ERROR: Export " + tag + " failed: " + e.getMessage());
+            e.printStackTrace(System.out);
+            return false;
+        } finally {
+            if (server != null) {
+                server.destroy();
+            }
+        }
+    }
+
+    public static String describe() {
+        return pool().toString();
+    }
+
+    private static String setting(String key) {
+        String value = System.getenv(key);
+        if (value == null || value.isEmpty()) {
+            value = QwenClient.loadFromEnvFile(key);
+        }
+        return value != null && !value.isEmpty() ? value : null;
+    }
+}
@@ -0,0 +1,784 @@
+/*
+ * ConfigCodec.java - SimulationConfig 的 JSON 编解码
+ * 单遍读取 (JsonReader) + 预计算的字段表，热路径不使用反射
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ConfigCodec {
+
+    public static final int DOUBLE = 0;
+    public static final int INT = 1;
+    public static final int STRING = 2;
+    public static final int BOOLEAN = 3;
+
+    // 字段下标
+    public static final int DOMAIN_WIDTH = 0;
+    public static final int DOMAIN_HEIGHT = 1;
+    public static final int CYLINDER_RADIUS = 2;
+    public static final int CYLINDER_X = 3;
+    public static final int CYLINDER_Y = 4;
+    public static final int INLET_TYPE = 5;
+    public static final int INLET_VELOCITY = 6;
+    public static final int INLET_PRESSURE = 7;
+    public static final int OUTLET_TYPE = 8;
+    public static final int OUTLET_PRESSURE = 9;
+    public static final int OUTLET_VELOCITY = 10;
+    public static final int TOP_BOUNDARY_TYPE = 11;
+    public static final int BOTTOM_BOUNDARY_TYPE = 12;
+    public static final int CYLINDER_WALL_TYPE = 13;
+    public static final int CYLINDER_WALL_CONDITION = 14;
+    public static final int FLOW_TYPE = 15;
+    public static final int EQUATION_FORM = 16;
+    public static final int FLUID_NAME = 17;
+    public static final int DENSITY = 18;
+    public static final int DYNAMIC_VISCOSITY = 19;
+    public static final int MESH_SIZE_LEVEL = 20;
+    public static final int MESH_MAX_SIZE = 21;
+    public static final int MESH_MIN_SIZE = 22;
+    public static final int CYLINDER_MESH_MAX_SIZE = 23;
+    public static final int START_TIME = 24;
+    public static final int END_TIME = 25;
+    public static final int TIME_STEP = 26;
+    public static final int TIME_STEPPING_MODE = 27;
+    public static final int PROBE_OUTPUT_INTERVAL = 28;
+    public static final int EARLY_STOP_ENABLED = 29;
+    public static final int EARLY_STOP_CYCLES = 30;
+    public static final int EARLY_STOP_TOLERANCE = 31;
+    public static final int EARLY_STOP_CHECK_INTERVAL = 32;
+    public static final int INITIAL_CONDITION = 33;
+    public static final int INITIAL_SOLUTION_FILE = 34;
+    public static final int OUTPUT_DIR = 35;
+    public static final int MODEL_FILE_NAME = 36;
+    public static final int EXPORT_VELOCITY = 37;
+    public static final int EXPORT_VORTICITY = 38;
+    public static final int EXPORT_PRESSURE = 39;
+    public static final int EXPORT_ANIMATION = 40;
+    public static final int ANIMATION_FPS = 41;
+    public static final int ANIMATION_MAX_FRAMES = 42;
+    public static final int ANIMATION_MODE = 43;
+    public static final int ANIMATION_GRID_NX = 44;
+    public static final int EXPORT_WORKERS = 45;
+    public static final int EXPORT_PROBES = 46;
+    public static final int PROBE_POINTS = 47;
+    public static final int PROBE_FORMAT = 48;
+    public static final int COMPUTE_METRICS = 49;
+    public static final int PRESSURE_RANGE_AUTO = 50;
+    public static final int PRESSURE_RANGE_FACTOR = 51;
+    public static final int PRESSURE_RANGE_MIN = 52;
+    public static final int PRESSURE_RANGE_MAX = 53;
+    public static final int RESULT_CACHE_ENABLED = 54;
+    public static final int RESULT_CACHE_MAX_MB = 55;
+    public static final int RESULT_CACHE_DIR = 56;
+    public static final int LBM_THREADS = 57;
+
+    // 字段表：顺序与 SimulationConfig 声明顺序一致，即 config.json 的输出顺序
+    private static final String[] NAMES = {
+            "domainWidth",
+            "domainHeight",
+            "cylinderRadius",
+            "cylinderX",
+            "cylinderY",
+            "inletType",
+            "inletVelocity",
+            "inletPressure",
+            "outletType",
+            "outletPressure",
+            "outletVelocity",
+            "topBoundaryType",
+            "bottomBoundaryType",
+            "cylinderWallType",
+            "cylinderWallCondition",
+            "flowType",
+            "equationForm",
+            "fluidName",
+            "density",
+            "dynamicViscosity",
+            "meshSizeLevel",
+            "meshMaxSize",
+            "meshMinSize",
+            "cylinderMeshMaxSize",
+            "startTime",
+            "endTime",
+            "timeStep",
+            "timeSteppingMode",
+            "probeOutputInterval",
+            "earlyStopEnabled",
+            "earlyStopCycles",
+            "earlyStopTolerance",
+            "earlyStopCheckInterval",
+            "initialCondition",
+            "initialSolutionFile",
+            "outputDir",
+            "modelFileName",
+            "exportVelocity",
+            "exportVorticity",
+            "exportPressure",
+            "exportAnimation",
+            "animationFps",
+            "animationMaxFrames",
+            "animationMode",
+            "animationGridNx",
+            "exportWorkers",
+            "exportProbes",
+            "probePoints",
+            "probeFormat",
+            "computeMetrics",
+            "pressureRangeAuto",
+            "pressureRangeFactor",
+            "pressureRangeMin",
+            "pressureRangeMax",
+            "resultCacheEnabled",
+            "resultCacheMaxMB",
+            "resultCacheDir",
+            "lbmThreads"
+    };
+
+    private static final int[] TYPES = {
+            DOUBLE,
+            DOUBLE,
+            DOUBLE,
+            DOUBLE,
+            DOUBLE,
+            STRING,
+            DOUBLE,
+            DOUBLE,
+            STRING,
+            DOUBLE,
+            DOUBLE,
+            STRING,
+            STRING,
+            STRING,
+            STRING,
+            STRING,
+            STRING,
+            STRING,
+            DOUBLE,
+            DOUBLE,
+            INT,
+            DOUBLE,
+            DOUBLE,
+            DOUBLE,
+            DOUBLE,
+            DOUBLE,
+            DOUBLE,
+            STRING,
+            DOUBLE,
+            BOOLEAN,
+            INT,
+            DOUBLE,
+            DOUBLE,
+            STRING,
+            STRING,
+            STRING,
+            STRING,
+            BOOLEAN,
+            BOOLEAN,
+            BOOLEAN,
+            BOOLEAN,
+            INT,
+            INT,
+            STRING,
+            INT,
+            INT,
+            BOOLEAN,
+            STRING,
+            STRING,
+            BOOLEAN,
+            BOOLEAN,
+            DOUBLE,
+            DOUBLE,
+            DOUBLE,
+            BOOLEAN,
+            INT,
+            STRING,
+            INT
+    };
+
+    private static final Map<String, Integer> INDEX = new HashMap<>();
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            INDEX.put(NAMES[i], i);
+        }
+    }
+
+    public static int fieldCount() {
+        return NAMES.length;
+    }
+
+    public static String fieldName(int index) {
+        return NAMES[index];
+    }
+
+    public static int fieldType(int index) {
+        return TYPES[index];
+    }
+
+    /**
+     * 字段名 -> 下标，不存在返回 -1
+     */
+    public static int indexOf(String name) {
+        Integer i = INDEX.get(name);
+        return i == null ? -1 : i;
+    }
+
+    // ============================================
+    // 解码
+    // ============================================
+
+    /**
+     * 解析一个 JSON 对象为新的配置（缺失字段保持默认值）
+     */
+    public static SimulationConfig parse(CharSequence json) throws IOException {
+        SimulationConfig cfg = new SimulationConfig();
+        JsonReader reader = new JsonReader(json);
+        read(reader, cfg);
+        reader.endDocument();
+        return cfg;
+    }
+
+    /**
+     * 从读取器读取一个 JSON 对象并写入 cfg；未知字段（含嵌套对象/数组）跳过，
+     * 重复字段以最后一次为准，类型不符的字段打印警告后跳过
+     */
+    public static void read(JsonReader reader, SimulationConfig cfg) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            int index = indexOf(name);
+            if (index < 0) {
+                reader.skipValue();
+                continue;
+            }
+            JsonReader.Token token = reader.peek();
+            if (token == JsonReader.Token.BEGIN_OBJECT || token == JsonReader.Token.BEGIN_ARRAY
+                    || token == JsonReader.Token.NULL) {
+                System.out.println("Warning: Failed to parse field " + name + ": unexpected " + token);
+                reader.skipValue();
+                continue;
+            }
+            int valueStart = reader.position();
+            try {
+                switch (TYPES[index]) {
+                    case DOUBLE:
+                        setDouble(cfg, index, reader.nextDouble());
+                        break;
+                    case INT:
+                        setInt(cfg, index, reader.nextInt());
+                        break;
+                    case STRING:
+                        setString(cfg, index, reader.nextString());
+                        break;
+                    default:
+                        setBoolean(cfg, index, reader.nextBoolean());
+                }
+            } catch (IOException e) {
+                if (reader.position() == valueStart) {
+                    throw e; // 字面量本身不合 JSON 语法（值未被消费）
+                }
+                // 类型不符时值已被消费，继续读取后续字段
+                System.out.println("Warning: Failed to parse field " + name + ": " + e.getMessage());
+            }
+        }
+        reader.endObject();
+    }
+
+    // ============================================
+    // 编码
+    // ============================================
+
+    /**
+     * 格式化输出（与 config.json 相同的缩进格式）
+     */
+    public static String toJson(SimulationConfig cfg) {
+        StringBuilder sb = new StringBuilder(1024);
+        write(sb, cfg, true);
+        return sb.toString();
+    }
+
+    public static void write(StringBuilder sb, SimulationConfig cfg, boolean pretty) {
+        sb.append(pretty ? "{\n" : "{");
+        for (int i = 0; i < NAMES.length; i++) {
+            if (pretty) {
+                sb.append("  ");
+            }
+            sb.append('"').append(NAMES[i]).append(pretty ? "\": " : "\":");
+            appendValue(sb, cfg, i);
+            if (i < NAMES.length - 1) {
+                sb.append(',');
+            }
+            if (pretty) {
+                sb.append('\n');
+            }
+        }
+        sb.append('}');
+    }
+
+    /**
+     * 紧凑输出 cfg 中与 base 取值不同的字段（多工况文件每行只记录差异）
+     */
+    public static void writeDiff(StringBuilder sb, SimulationConfig cfg, SimulationConfig base) {
+        sb.append('{');
+        boolean first = true;
+        for (int i = 0; i < NAMES.length; i++) {
+            if (getAsString(cfg, i).equals(getAsString(base, i))) {
+                continue;
+            }
+            if (!first) {
+                sb.append(',');
+            }
+            sb.append('"').append(NAMES[i]).append("\":");
+            appendValue(sb, cfg, i);
+            first = false;
+        }
+        sb.append('}');
+    }
+
+    private static void appendValue(StringBuilder sb, SimulationConfig cfg, int index) {
+        switch (TYPES[index]) {
+            case DOUBLE:
+                sb.append(getDouble(cfg, index));
+                break;
+            case INT:
+                sb.append(getInt(cfg, index));
+                break;
+            case STRING:
+                appendQuoted(sb, getString(cfg, index));
+                break;
+            default:
+                sb.append(getBoolean(cfg, index));
+        }
+    }
+
+    /**
+     * 追加带引号、已转义的 JSON 字符串
+     */
+    public static void appendQuoted(StringBuilder sb, String s) {
+        sb.append('"');
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"':
+                        sb.append("\\\"");
+                        break;
+                    case '\\':
+                        sb.append("\\\\");
+                        break;
+                    case '\n':
+                        sb.append("\\n");
+                        break;
+                    case '\r':
+                        sb.append("\\r");
+                        break;
+                    case '\t':
+                        sb.append("\\t");
+                        break;
+                    default:
+                        if (c < ' ') {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    // ============================================
+    // 按字段取值/赋值
+    // ============================================
+
+    /**
+     * 以字符串形式读取字段值
+     */
+    public static String getAsString(SimulationConfig cfg, int index) {
+        switch (TYPES[index]) {
+            case DOUBLE:
+                return String.valueOf(getDouble(cfg, index));
+            case INT:
+                return String.valueOf(getInt(cfg, index));
+            case STRING:
+                return getString(cfg, index);
+            default:
+                return String.valueOf(getBoolean(cfg, index));
+        }
+    }
+
+    /**
+     * 以字符串形式设置字段值（按字段类型转换）
+     *
+     * @throws NumberFormatException 数值字段无法转换，或布尔字段不是 true / false（不区分大小写）
+     */
+    public static void setFromString(SimulationConfig cfg, int index, String value) {
+        switch (TYPES[index]) {
+            case DOUBLE:
+                setDouble(cfg, index, Double.parseDouble(value.trim()));
+                break;
+            case INT:
+                setInt(cfg, index, Integer.parseInt(value.trim()));
+                break;
+            case STRING:
+                setString(cfg, index, value);
+                break;
+            default: {
+                // Boolean.parseBoolean 会把 "on"、"yes"、拼写错误都当成 false
+                String text = value.trim();
+                if (!"true".equalsIgnoreCase(text) && !"false".equalsIgnoreCase(text)) {
+                    throw new NumberFormatException("Not a boolean: " + value);
+                }
+                setBoolean(cfg, index, "true".equalsIgnoreCase(text));
+            }
+        }
+    }
+
+    public static double getDouble(SimulationConfig cfg, int index) {
+        switch (index) {
+            case DOMAIN_WIDTH:
+                return cfg.domainWidth;
+            case DOMAIN_HEIGHT:
+                return cfg.domainHeight;
+            case CYLINDER_RADIUS:
+                return cfg.cylinderRadius;
+            case CYLINDER_X:
+                return cfg.cylinderX;
+            case CYLINDER_Y:
+                return cfg.cylinderY;
+            case INLET_VELOCITY:
+                return cfg.inletVelocity;
+            case INLET_PRESSURE:
+                return cfg.inletPressure;
+            case OUTLET_PRESSURE:
+                return cfg.outletPressure;
+            case OUTLET_VELOCITY:
+                return cfg.outletVelocity;
+            case DENSITY:
+                return cfg.density;
+            case DYNAMIC_VISCOSITY:
+                return cfg.dynamicViscosity;
+            case MESH_MAX_SIZE:
+                return cfg.meshMaxSize;
+            case MESH_MIN_SIZE:
+                return cfg.meshMinSize;
+            case CYLINDER_MESH_MAX_SIZE:
+                return cfg.cylinderMeshMaxSize;
+            case START_TIME:
+                return cfg.startTime;
+            case END_TIME:
+                return cfg.endTime;
+            case TIME_STEP:
+                return cfg.timeStep;
+            case PROBE_OUTPUT_INTERVAL:
+                return cfg.probeOutputInterval;
+            case EARLY_STOP_TOLERANCE:
+                return cfg.earlyStopTolerance;
+            case EARLY_STOP_CHECK_INTERVAL:
+                return cfg.earlyStopCheckInterval;
+            case PRESSURE_RANGE_FACTOR:
+                return cfg.pressureRangeFactor;
+            case PRESSURE_RANGE_MIN:
+                return cfg.pressureRangeMin;
+            case PRESSURE_RANGE_MAX:
+                return cfg.pressureRangeMax;
+            default:
+                throw new IllegalArgumentException("Not a double field: " + NAMES[index]);
+        }
+    }
+
+    public static void setDouble(SimulationConfig cfg, int index, double value) {
+        switch (index) {
+            case DOMAIN_WIDTH:
+                cfg.domainWidth = value;
+                return;
+            case DOMAIN_HEIGHT:
+                cfg.domainHeight = value;
+                return;
+            case CYLINDER_RADIUS:
+                cfg.cylinderRadius = value;
+                return;
+            case CYLINDER_X:
+                cfg.cylinderX = value;
+                return;
+            case CYLINDER_Y:
+                cfg.cylinderY = value;
+                return;
+            case INLET_VELOCITY:
+                cfg.inletVelocity = value;
+                return;
+            case INLET_PRESSURE:
+                cfg.inletPressure = value;
+                return;
+            case OUTLET_PRESSURE:
+                cfg.outletPressure = value;
+                return;
+            case OUTLET_VELOCITY:
+                cfg.outletVelocity = value;
+                return;
+            case DENSITY:
+                cfg.density = value;
+                return;
+            case DYNAMIC_VISCOSITY:
+                cfg.dynamicViscosity = value;
+                return;
+            case MESH_MAX_SIZE:
+                cfg.meshMaxSize = value;
+                return;
+            case MESH_MIN_SIZE:
+                cfg.meshMinSize = value;
+                return;
+            case CYLINDER_MESH_MAX_SIZE:
+                cfg.cylinderMeshMaxSize = value;
+                return;
+            case START_TIME:
+                cfg.startTime = value;
+                return;
+            case END_TIME:
+                cfg.endTime = value;
+                return;
+            case TIME_STEP:
+                cfg.timeStep = value;
+                return;
+            case PROBE_OUTPUT_INTERVAL:
+                cfg.probeOutputInterval = value;
+                return;
+            case EARLY_STOP_TOLERANCE:
+                cfg.earlyStopTolerance = value;
+                return;
+            case EARLY_STOP_CHECK_INTERVAL:
+                cfg.earlyStopCheckInterval = value;
+                return;
+            case PRESSURE_RANGE_FACTOR:
+                cfg.pressureRangeFactor = value;
+                return;
+            case PRESSURE_RANGE_MIN:
+                cfg.pressureRangeMin = value;
+                return;
+            case PRESSURE_RANGE_MAX:
+                cfg.pressureRangeMax = value;
+                return;
+            default:
+                throw new IllegalArgumentException("Not a double field: " + NAMES[index]);
+        }
+    }
+
+    public static int getInt(SimulationConfig cfg, int index) {
+        switch (index) {
+            case MESH_SIZE_LEVEL:
+                return cfg.meshSizeLevel;
+            case EARLY_STOP_CYCLES:
+                return cfg.earlyStopCycles;
+            case ANIMATION_FPS:
+                return cfg.animationFps;
+            case ANIMATION_MAX_FRAMES:
+                return cfg.animationMaxFrames;
+            case ANIMATION_GRID_NX:
+                return cfg.animationGridNx;
+            case EXPORT_WORKERS:
+                return cfg.exportWorkers;
+            case RESULT_CACHE_MAX_MB:
+                return cfg.resultCacheMaxMB;
+            case LBM_THREADS:
+                return cfg.lbmThreads;
+            default:
+                throw new IllegalArgumentException("Not a int field: " + NAMES[index]);
+        }
+    }
+
+    public static void setInt(SimulationConfig cfg, int index, int value) {
+        switch (index) {
+            case MESH_SIZE_LEVEL:
+                cfg.meshSizeLevel = value;
+                return;
+            case EARLY_STOP_CYCLES:
+                cfg.earlyStopCycles = value;
+                return;
+            case ANIMATION_FPS:
+                cfg.animationFps = value;
+                return;
+            case ANIMATION_MAX_FRAMES:
+                cfg.animationMaxFrames = value;
+                return;
+            case ANIMATION_GRID_NX:
+                cfg.animationGridNx = value;
+                return;
+            case EXPORT_WORKERS:
+                cfg.exportWorkers = value;
+                return;
+            case RESULT_CACHE_MAX_MB:
+                cfg.resultCacheMaxMB = value;
+                return;
+            case LBM_THREADS:
+                cfg.lbmThreads = value;
+                return;
+            default:
+                throw new IllegalArgumentException("Not a int field: " + NAMES[index]);
+        }
+    }
+
+    public static String getString(SimulationConfig cfg, int index) {
+        switch (index) {
+            case INLET_TYPE:
+                return cfg.inletType;
+            case OUTLET_TYPE:
+                return cfg.outletType;
+            case TOP_BOUNDARY_TYPE:
+                return cfg.topBoundaryType;
+            case BOTTOM_BOUNDARY_TYPE:
+                return cfg.bottomBoundaryType;
+            case CYLINDER_WALL_TYPE:
+                return cfg.cylinderWallType;
+            case CYLINDER_WALL_CONDITION:
+                return cfg.cylinderWallCondition;
+            case FLOW_TYPE:
+                return cfg.flowType;
+            case EQUATION_FORM:
+                return cfg.equationForm;
+            case FLUID_NAME:
+                return cfg.fluidName;
+            case TIME_STEPPING_MODE:
+                return cfg.timeSteppingMode;
+            case INITIAL_CONDITION:
+                return cfg.initialCondition;
+            case INITIAL_SOLUTION_FILE:
+                return cfg.initialSolutionFile;
+            case OUTPUT_DIR:
+                return cfg.outputDir;
+            case MODEL_FILE_NAME:
+                return cfg.modelFileName;
+            case ANIMATION_MODE:
+                return cfg.animationMode;
+            case PROBE_POINTS:
+                return cfg.probePoints;
+            case PROBE_FORMAT:
+                return cfg.probeFormat;
+            case RESULT_CACHE_DIR:
+                return cfg.resultCacheDir;
+            default:
+                throw new IllegalArgumentException("Not a String field: " + NAMES[index]);
+        }
+    }
+
+    public static void setString(SimulationConfig cfg, int index, String value) {
+        switch (index) {
+            case INLET_TYPE:
+                cfg.inletType = value;
+                return;
+            case OUTLET_TYPE:
+                cfg.outletType = value;
+                return;
+            case TOP_BOUNDARY_TYPE:
+                cfg.topBoundaryType = value;
+                return;
+            case BOTTOM_BOUNDARY_TYPE:
+                cfg.bottomBoundaryType = value;
+                return;
+            case CYLINDER_WALL_TYPE:
+                cfg.cylinderWallType = value;
+                return;
+            case CYLINDER_WALL_CONDITION:
+                cfg.cylinderWallCondition = value;
+                return;
+            case FLOW_TYPE:
+                cfg.flowType = value;
+                return;
+            case EQUATION_FORM:
+                cfg.equationForm = value;
+                return;
+            case FLUID_NAME:
+                cfg.fluidName = value;
+                return;
+            case TIME_STEPPING_MODE:
+                cfg.timeSteppingMode = value;
+                return;
+            case INITIAL_CONDITION:
+                cfg.initialCondition = value;
+                return;
+            case INITIAL_SOLUTION_FILE:
+                cfg.initialSolutionFile = value;
+                return;
+            case OUTPUT_DIR:
+                cfg.outputDir = value;
+                return;
+            case MODEL_FILE_NAME:
+                cfg.modelFileName = value;
+                return;
+            case ANIMATION_MODE:
+                cfg.animationMode = value;
+                return;
+            case PROBE_POINTS:
+                cfg.probePoints = value;
+                return;
+            case PROBE_FORMAT:
+                cfg.probeFormat = value;
+                return;
+            case RESULT_CACHE_DIR:
+                cfg.resultCacheDir = value;
+                return;
+            default:
+                throw new IllegalArgumentException("Not a String field: " + NAMES[index]);
+        }
+    }
+
+    public static boolean getBoolean(SimulationConfig cfg, int index) {
+        switch (index) {
+            case EARLY_STOP_ENABLED:
+                return cfg.earlyStopEnabled;
+            case EXPORT_VELOCITY:
+                return cfg.exportVelocity;
+            case EXPORT_VORTICITY:
+                return cfg.exportVorticity;
+            case EXPORT_PRESSURE:
+                return cfg.exportPressure;
+            case EXPORT_ANIMATION:
+                return cfg.exportAnimation;
+            case EXPORT_PROBES:
+                return cfg.exportProbes;
+            case COMPUTE_METRICS:
+                return cfg.computeMetrics;
+            case PRESSURE_RANGE_AUTO:
+                return cfg.pressureRangeAuto;
+            case RESULT_CACHE_ENABLED:
+                return cfg.resultCacheEnabled;
+            default:
+                throw new IllegalArgumentException("Not a boolean field: " + NAMES[index]);
+        }
+    }
+
+    public static void setBoolean(SimulationConfig cfg, int index, boolean value) {
+        switch (index) {
+            case EARLY_STOP_ENABLED:
+                cfg.earlyStopEnabled = value;
+                return;
+            case EXPORT_VELOCITY:
+                cfg.exportVelocity = value;
+                return;
+            case EXPORT_VORTICITY:
+                cfg.exportVorticity = value;
+                return;
+            case EXPORT_PRESSURE:
+                cfg.exportPressure = value;
+                return;
+            case EXPORT_ANIMATION:
+                cfg.exportAnimation = value;
+                return;
+            case EXPORT_PROBES:
+                cfg.exportProbes = value;
+                return;
+            case COMPUTE_METRICS:
+                cfg.computeMetrics = value;
+                return;
+            case PRESSURE_RANGE_AUTO:
+                cfg.pressureRangeAuto = value;
+                return;
+            case RESULT_CACHE_ENABLED:
+                cfg.resultCacheEnabled = value;
+                return;
+            default:
+                throw new IllegalArgumentException("Not a boolean field: " + NAMES[index]);
+        }
+    }
+}
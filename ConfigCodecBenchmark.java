@@ -0,0 +1,175 @@
+/*
+ * ConfigCodecBenchmark.java - 配置解析性能对比
+ * 旧实现 (每字段 indexOf + 反射) vs ConfigCodec (单遍 + 字段表)
+ *
+ * 项目没有构建系统，无法引入 JMH；这里用固定时长的预热 + 多轮测量，
+ * 并把结果写入 blackhole 字段防止被 JIT 消除。
+ * 运行: java ConfigCodecBenchmark [测量轮数]
+ */
+
+import java.lang.reflect.Field;
+
+public class ConfigCodecBenchmark {
+
+    private static final long WARMUP_MS = 2000;
+    private static final long ROUND_MS = 1000;
+
+    private static volatile double blackhole;
+
+    private interface Op {
+        double run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        SimulationConfig sample = SimulationConfig.getDefault();
+        sample.fluidName = "Water \"custom\"";
+        sample.outputDir = "C:\\sim\\out";
+        final String json = ConfigCodec.toJson(sample);
+        // 含嵌套对象与未知字段的文档：旧实现无法正确处理，只测新实现
+        final String nested = "{\"meta\":{\"fluidName\":\"ignored\",\"tags\":[1,2,{\"a\":\"}\"}]},"
+                + json.substring(1);
+
+        System.out.println("Document size: " + json.length() + " chars, " + ConfigCodec.fieldCount() + " fields");
+        System.out.println();
+
+        report("legacy loadConfig (indexOf + reflection)", rounds, new Op() {
+            @Override
+            public double run() throws Exception {
+                return legacyParse(json).inletVelocity;
+            }
+        });
+        report("ConfigCodec.parse", rounds, new Op() {
+            @Override
+            public double run() throws Exception {
+                return ConfigCodec.parse(json).inletVelocity;
+            }
+        });
+        report("ConfigCodec.parse (nested/unknown keys)", rounds, new Op() {
+            @Override
+            public double run() throws Exception {
+                return ConfigCodec.parse(nested).inletVelocity;
+            }
+        });
+        report("legacy saveConfig (reflection)", rounds, new Op() {
+            @Override
+            public double run() throws Exception {
+                return legacySerialize(sample).length();
+            }
+        });
+        report("ConfigCodec.toJson", rounds, new Op() {
+            @Override
+            public double run() {
+                return ConfigCodec.toJson(sample).length();
+            }
+        });
+
+        // 正确性：往返一致
+        SimulationConfig back = ConfigCodec.parse(json);
+        System.out.println();
+        System.out.println("Round trip identical: " + ConfigCodec.toJson(back).equals(json));
+        System.out.println("Nested doc fluidName: " + ConfigCodec.parse(nested).fluidName);
+    }
+
+    private static void report(String name, int rounds, Op op) throws Exception {
+        long deadline = System.currentTimeMillis() + WARMUP_MS;
+        while (System.currentTimeMillis() < deadline) {
+            blackhole += op.run();
+        }
+
+        double sum = 0;
+        double best = 0;
+        for (int r = 0; r < rounds; r++) {
+            long ops = 0;
+            long t0 = System.nanoTime();
+            long end = t0 + ROUND_MS * 1_000_000L;
+            long now;
+            do {
+                for (int i = 0; i < 64; i++) {
+                    blackhole += op.run();
+                }
+                ops += 64;
+                now = System.nanoTime();
+            } while (now < end);
+            double opsPerSec = ops * 1e9 / (now - t0);
+            sum += opsPerSec;
+            best = Math.max(best, opsPerSec);
+        }
+        double mean = sum / rounds;
+        System.out.println(String.format("%-42s %12.0f ops/s (best %.0f, %.2f us/op)", name, mean, best,
+                1e6 / mean));
+    }
+
+    // ============================================
+    // 旧实现（ConfigManager 改用 ConfigCodec 之前的代码，仅作对比）
+    // ============================================
+
+    private static SimulationConfig legacyParse(String content) throws Exception {
+        SimulationConfig config = new SimulationConfig();
+        Field[] fields = SimulationConfig.class.getDeclaredFields();
+        for (Field field : fields) {
+            String name = field.getName();
+            String pattern = "\"" + name + "\":";
+            int idx = content.indexOf(pattern);
+            if (idx < 0)
+                continue;
+
+            int valueStart = idx + pattern.length();
+            while (valueStart < content.length() &&
+                    Character.isWhitespace(content.charAt(valueStart))) {
+                valueStart++;
+            }
+
+            Class<?> type = field.getType();
+            if (type == String.class) {
+                int start = content.indexOf('"', valueStart) + 1;
+                int end = content.indexOf('"', start);
+                field.set(config, content.substring(start, end));
+            } else if (type == double.class) {
+                int end = findValueEnd(content, valueStart);
+                field.setDouble(config, Double.parseDouble(content.substring(valueStart, end).trim()));
+            } else if (type == int.class) {
+                int end = findValueEnd(content, valueStart);
+                field.setInt(config, Integer.parseInt(content.substring(valueStart, end).trim()));
+            } else if (type == boolean.class) {
+                int end = findValueEnd(content, valueStart);
+                field.setBoolean(config, Boolean.parseBoolean(content.substring(valueStart, end).trim()));
+            }
+        }
+        return config;
+    }
+
+    private static String legacySerialize(SimulationConfig config) throws Exception {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        Field[] fields = SimulationConfig.class.getDeclaredFields();
+        for (int i = 0; i < fields.length; i++) {
+            Object value = fields[i].get(config);
+            json.append("  \"").append(fields[i].getName()).append("\": ");
+            if (value instanceof String) {
+                json.append("\"").append(value).append("\"");
+            } else {
+                json.append(value.toString());
+            }
+            if (i < fields.length - 1) {
+                json.append(",");
+            }
+            json.append("\n");
+        }
+        json.append("}");
+        return json.toString();
+    }
+
+    private static int findValueEnd(String content, int start) {
+        int i = start;
+        while (i < content.length()) {
+            char c = content.charAt(i);
+            if (c == ',' || c == '\n' || c == '}') {
+                return i;
+            }
+            i++;
+        }
+        return i;
+    }
+}
@@ -1,12 +1,15 @@
 /*
  * ConfigManager.java - JSON 配置文件读写工具
- * 简单的 JSON 序列化/反序列化 (无外部依赖)
+ * JSON 序列化/反序列化由 ConfigCodec 完成 (无外部依赖)
  */
 
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.List;
 
 public class ConfigManager {
 
@@ -16,38 +19,7 @@ public class ConfigManager {
      * 保存配置到 JSON 文件
      */
     public static void saveConfig(SimulationConfig config, String path) throws IOException {
-        StringBuilder json = new StringBuilder();
-        json.append("{\n");
-
-        Field[] fields = SimulationConfig.class.getDeclaredFields();
-        for (int i = 0; i < fields.length; i++) {
-            Field field = fields[i];
-            try {
-                Object value = field.get(config);
-                String name = field.getName();
-
-                json.append("  \"").append(name).append("\": ");
-
-                if (value instanceof String) {
-                    json.append("\"").append(escapeJson((String) value)).append("\"");
-                } else if (value instanceof Boolean) {
-                    json.append(value.toString());
-                } else {
-                    json.append(value.toString());
-                }
-
-                if (i < fields.length - 1) {
-                    json.append(",");
-                }
-                json.append("\n");
-            } catch (IllegalAccessException e) {
-                // Skip inaccessible fields
-            }
-        }
-
-        json.append("}");
-
-        Files.write(Paths.get(path), json.toString().getBytes("UTF-8"));
+        Files.write(Paths.get(path), ConfigCodec.toJson(config).getBytes("UTF-8"));
         System.out.println("Config saved to: " + path);
     }
 
@@ -62,49 +34,9 @@ public class ConfigManager {
             return config;
         }
 
-        String content = new String(Files.readAllBytes(Paths.get(path)), "UTF-8");
-
-        // Simple JSON parsing
-        Field[] fields = SimulationConfig.class.getDeclaredFields();
-        for (Field field : fields) {
-            String name = field.getName();
-            String pattern = "\"" + name + "\":";
-            int idx = content.indexOf(pattern);
-            if (idx < 0)
-                continue;
-
-            int valueStart = idx + pattern.length();
-            // Skip whitespace
-            while (valueStart < content.length() &&
-                    Character.isWhitespace(content.charAt(valueStart))) {
-                valueStart++;
-            }
-
-            try {
-                Class<?> type = field.getType();
-
-                if (type == String.class) {
-                    int start = content.indexOf('"', valueStart) + 1;
-                    int end = content.indexOf('"', start);
-                    String value = unescapeJson(content.substring(start, end));
-                    field.set(config, value);
-                } else if (type == double.class) {
-                    int end = findValueEnd(content, valueStart);
-                    double value = Double.parseDouble(content.substring(valueStart, end).trim());
-                    field.setDouble(config, value);
-                } else if (type == int.class) {
-                    int end = findValueEnd(content, valueStart);
-                    int value = Integer.parseInt(content.substring(valueStart, end).trim());
-                    field.setInt(config, value);
-                } else if (type == boolean.class) {
-                    int end = findValueEnd(content, valueStart);
-                    boolean value = Boolean.parseBoolean(content.substring(valueStart, end).trim());
-                    field.setBoolean(config, value);
-                }
-            } catch (Exception e) {
-                System.out.println("Warning: Failed to parse field " + name + ": " + e.getMessage());
-            }
-        }
+        JsonReader reader = new JsonReader(readText(path));
+        ConfigCodec.read(reader, config);
+        reader.endDocument();
 
         System.out.println("Config loaded from: " + path);
         return config;
@@ -124,36 +56,49 @@ public class ConfigManager {
         return loadConfig(DEFAULT_CONFIG_FILE);
     }
 
-    // ============================================
-    // 辅助方法
-    // ============================================
+    /**
+     * 打开多工况文件 (JSON Lines，每行一个工况)
+     */
+    public static CaseFile openCaseFile(String path) throws IOException {
+        return CaseFile.open(path);
+    }
 
-    private static int findValueEnd(String content, int start) {
-        int i = start;
-        while (i < content.length()) {
-            char c = content.charAt(i);
-            if (c == ',' || c == '\n' || c == '}') {
-                return i;
-            }
-            i++;
-        }
-        return i;
+    /**
+     * 保存多工况文件，每行只写出与 base 不同的字段
+     */
+    public static void saveCaseFile(List<SimulationConfig> cases, SimulationConfig base, String path)
+            throws IOException {
+        CaseFile.write(cases, base, path);
+        System.out.println("Case file saved to: " + path + " (" + cases.size() + " cases)");
     }
 
-    private static String escapeJson(String s) {
-        return s.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+    /**
+     * 按字段名设置配置值（字符串形式，按字段类型转换）
+     *
+     * @throws IllegalArgumentException 字段不存在或值无法转换
+     */
+    public static void setField(SimulationConfig config, String name, String value) {
+        int index = ConfigCodec.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown config field: " + name);
+        }
+        try {
+            ConfigCodec.setFromString(config, index, value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+        }
     }
 
-    private static String unescapeJson(String s) {
-        return s.replace("\\\"", "\"")
-                .replace("\\\\", "\\")
-                .replace("\\n", "\n")
-                .replace("\\r", "\r")
-                .replace("\\t", "\t");
+    /**
+     * 读入整个文件并按 UTF-8 解码。配置文件很小，不做内存映射：
+     * Windows 上映射区在 GC 前一直存在，期间 saveConfig 无法截断同一文件
+     */
+    private static CharBuffer readText(String path) throws IOException {
+        CharBuffer chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(Files.readAllBytes(Paths.get(path))));
+        if (chars.length() > 0 && chars.charAt(0) == '\uFEFF') {
+            chars.position(1); // 跳过 BOM（Windows 记事本保存的文件）
+        }
+        return chars;
     }
 
     /**
@@ -171,6 +116,14 @@ public class ConfigManager {
             System.out.println("Loaded config:");
             System.out.println(loaded);
 
+            // 布尔字段只接受 true / false
+            try {
+                setField(loaded, "exportAnimation", "on");
+                throw new IllegalStateException("setField accepted \"on\" for a boolean field");
+            } catch (IllegalArgumentException expected) {
+                System.out.println("Rejected: " + expected.getMessage());
+            }
+
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -7,9 +7,20 @@
  * 2. Supports GUI configuration via CylinderFlowGUI
  * 3. Configurable boundary conditions, mesh, solver settings
  * 4. Exports velocity/vorticity images and animation
+ * 5. Parameter sweeps: CylinderFlow --sweep [--threads N] [--out DIR] axis=v1,v2 ...
+ * 6. CylinderFlow --server [--sweep ...] runs on a pooled comsolmphserver session
+ * 7. With exportWorkers > 1 and COMSOL_ROOT set, exports run concurrently in
+ *    child processes (CylinderFlow --export-task), each on its own server
  */
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import com.comsol.model.*;
 import com.comsol.model.util.*;
@@ -19,7 +30,22 @@ public class CylinderFlow {
     // Configuration object - loaded from config.json
     private static SimulationConfig config;
 
+    // Built geometry + mesh keyed by the geometry/mesh fields; cases that only
+    // change material, physics or study settings reuse them
+    private static final ModelTemplateCache<Model> TEMPLATE_CACHE = new ModelTemplateCache<Model>(2,
+            new ModelTemplateCache.Disposer<Model>() {
+                @Override
+                public void dispose(Model model) {
+                    ModelUtil.remove(model.tag());
+                }
+            });
+
     public static void main(String[] args) {
+        // --export-task: child process of a concurrent COMSOL export (ComsolSessions.exportInChild)
+        if (args.length == 5 && "--export-task".equals(args[0])) {
+            System.exit(ComsolSessions.runExportTask(args[1], args[2], args[3], args[4]) ? 0 : 1);
+        }
+
         // Load configuration
         try {
             config = ConfigManager.loadConfig("config.json");
@@ -29,7 +55,59 @@ public class CylinderFlow {
             System.out.println("Warning: Could not load config.json, using defaults");
             config = SimulationConfig.getDefault();
         }
-        run();
+
+        // --server: run on a pooled comsolmphserver connection (ComsolSessions)
+        // instead of the in-process comsolbatch engine
+        boolean useServer = args.length > 0 && "--server".equals(args[0]);
+        if (useServer) {
+            String[] rest = new String[args.length - 1];
+            System.arraycopy(args, 1, rest, 0, rest.length);
+            args = rest;
+        }
+        // The in-process COMSOL API is single-threaded: one worker regardless of --threads
+        SweepRunner.CaseExecutor executor = useServer ? ComsolSessions.executor()
+                : new SweepRunner.BackendCaseExecutor(new ComsolBackend(), 1);
+
+        if (args.length > 0 && "--sweep".equals(args[0])) {
+            String[] sweepArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, sweepArgs, 0, sweepArgs.length);
+            try {
+                SweepRunner.runFromArgs(config, sweepArgs, executor);
+            } catch (Exception e) {
+                System.out.println("CRITICAL ERROR: Sweep failed!");
+                e.printStackTrace(System.out);
+            }
+            System.out.println("Template cache: " + TEMPLATE_CACHE);
+            TEMPLATE_CACHE.clear();
+            return;
+        }
+        if (args.length > 0 && "--convergence".equals(args[0])) {
+            String[] studyArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, studyArgs, 0, studyArgs.length);
+            try {
+                MeshConvergenceStudy.runFromArgs(config, studyArgs, executor);
+            } catch (Exception e) {
+                System.out.println("CRITICAL ERROR: Mesh convergence study failed!");
+                e.printStackTrace(System.out);
+            }
+            TEMPLATE_CACHE.clear();
+            return;
+        }
+        if (useServer) {
+            try {
+                System.out.println(ComsolSessions.run(config));
+            } catch (Exception e) {
+                System.out.println("CRITICAL ERROR: Simulation failed!");
+                e.printStackTrace(System.out);
+            }
+            return;
+        }
+        try {
+            run();
+        } catch (RuntimeException e) {
+            System.out.println("Simulation failed: " + e.getMessage());
+            System.exit(1);
+        }
     }
 
     public static Model run() {
@@ -37,13 +115,140 @@ public class CylinderFlow {
         if (config == null) {
             config = SimulationConfig.getDefault();
         }
+        return run(config);
+    }
+
+    /**
+     * Build, solve and export one case. The model gets a unique tag so that
+     * several cases can live in the same COMSOL session during a sweep.
+     * Geometry and mesh are taken from the template cache when a previous
+     * case with the same geometry/mesh fields has been released. If the
+     * result cache already holds a solved model for the same solve-relevant
+     * fields, that model is loaded and only the exports are redone. If any
+     * step fails the model is removed and the exception propagates.
+     */
+    public static Model run(SimulationConfig config) {
+        return run(config, null);
+    }
+
+    /**
+     * Same as run(config); shedding metrics of an early-stopped solve are
+     * recorded in result when it is not null.
+     */
+    public static Model run(SimulationConfig config, SimulationResult result) {
+        ResultCache resultCache = ResultCache.forConfig(config);
+        String resultKey = resultCache != null ? ResultCache.keyOf(config) : null;
+        File cached = resultCache != null ? resultCache.lookup(resultKey) : null;
+        if (cached != null) {
+            System.out.println("Result cache hit (" + resultKey.substring(0, 12) + "), loading " + cached);
+            Model model = ModelUtil.load(ModelUtil.uniquetag("Model"), cached.getAbsolutePath());
+            // The cached file still holds the export nodes of the case that produced it
+            for (String tag : model.result().export().tags()) {
+                model.result().export().remove(tag);
+            }
+            try {
+                applyPressureRange(model, config);
+                extractProbes(model, config, result);
+                solveAndExport(model, config, false, null, null, result);
+            } catch (RuntimeException e) {
+                ModelUtil.remove(model.tag());
+                throw e;
+            }
+            return model;
+        }
 
-        Model model = ModelUtil.create("Model");
-        model.label("Cylinder Flow - Karman Vortex Street");
+        Model model = TEMPLATE_CACHE.acquire(config);
+        if (model != null) {
+            System.out.println("Reusing cached geometry and mesh (" + TEMPLATE_CACHE + ")");
+            resetCaseNodes(model);
+        } else {
+            model = ModelUtil.create(ModelUtil.uniquetag("Model"));
+            model.label("Cylinder Flow - Karman Vortex Street");
+            buildGeometry(model, config);
+            buildMesh(model, config);
+        }
 
-        // ============================================
-        // 1. Geometry: Configurable domain with cylinder hole
-        // ============================================
+        try {
+            setupMaterial(model, config);
+            setupPhysics(model, config);
+            setupStudy(model, config);
+            setupResults(model, config);
+            solveAndExport(model, config, true, resultCache, resultKey, result);
+        } catch (RuntimeException e) {
+            // A half-built or failed model must not go back into the template cache
+            ModelUtil.remove(model.tag());
+            throw e;
+        }
+        return model;
+    }
+
+    /**
+     * Hand a model returned by run(config) back to the template cache. The
+     * caller must not touch the model afterwards.
+     */
+    public static void release(SimulationConfig config, Model model) {
+        TEMPLATE_CACHE.release(config, model);
+    }
+
+    /**
+     * Remove every model except the templates held by the template cache.
+     * Cleans a pooled server session between runs (see ComsolSessions).
+     */
+    static void removeUntrackedModels() {
+        Set<String> keep = new HashSet<>();
+        for (Model model : TEMPLATE_CACHE.idleModels()) {
+            keep.add(model.tag());
+        }
+        for (String tag : ModelUtil.tags()) {
+            if (!keep.contains(tag)) {
+                ModelUtil.remove(tag);
+            }
+        }
+    }
+
+    /**
+     * Drop all cached templates, e.g. before disconnecting from a server.
+     */
+    static void clearTemplates() {
+        TEMPLATE_CACHE.clear();
+    }
+
+    /**
+     * Remove everything that run(config) adds on top of geometry and mesh, so
+     * a cached template can be patched for the next case.
+     */
+    private static void resetCaseNodes(Model model) {
+        for (String tag : model.result().export().tags()) {
+            model.result().export().remove(tag);
+        }
+        for (String tag : model.result().tags()) {
+            model.result().remove(tag);
+        }
+        for (String tag : model.result().dataset().tags()) {
+            model.result().dataset().remove(tag);
+        }
+        // Solver sequences go first so the next solve gets sol1/dset1 again
+        for (String tag : model.sol().tags()) {
+            model.sol().remove(tag);
+        }
+        for (String tag : model.study().tags()) {
+            model.study().remove(tag);
+        }
+        for (String tag : model.component("comp1").physics().tags()) {
+            model.component("comp1").physics().remove(tag);
+        }
+        for (String tag : model.component("comp1").material().tags()) {
+            model.component("comp1").material().remove(tag);
+        }
+        for (String tag : model.func().tags()) {
+            model.func().remove(tag);
+        }
+    }
+
+    // ============================================
+    // 1. Geometry: Configurable domain with cylinder hole
+    // ============================================
+    private static void buildGeometry(Model model, SimulationConfig config) {
         model.component().create("comp1", true);
         model.component("comp1").geom().create("geom1", 2);
 
@@ -120,10 +325,12 @@ public class CylinderFlow {
 
         // Build geometry
         model.component("comp1").geom("geom1").run();
+    }
 
-        // ============================================
-        // 2. Material: Configurable fluid properties
-        // ============================================
+    // ============================================
+    // 2. Material: Configurable fluid properties
+    // ============================================
+    private static void setupMaterial(Model model, SimulationConfig config) {
         model.component("comp1").material().create("mat1", "Common");
         model.component("comp1").material("mat1").label(config.fluidName);
         model.component("comp1").material("mat1").selection().all();
@@ -131,10 +338,12 @@ public class CylinderFlow {
                 config.density + "[kg/m^3]");
         model.component("comp1").material("mat1").propertyGroup("def").set("dynamicviscosity",
                 config.dynamicViscosity + "[Pa*s]");
+    }
 
-        // ============================================
-        // 3. Physics: Configurable Flow Settings
-        // ============================================
+    // ============================================
+    // 3. Physics: Configurable Flow Settings
+    // ============================================
+    private static void setupPhysics(Model model, SimulationConfig config) {
         model.component("comp1").physics().create("spf", "LaminarFlow", "geom1");
         model.component("comp1").physics("spf").prop("EquationForm").set("form", config.equationForm);
 
@@ -166,9 +375,94 @@ public class CylinderFlow {
         model.component("comp1").physics("spf").feature("wall_cyl").selection().named("geom1_cyl_sel");
         model.component("comp1").physics("spf").feature("wall_cyl").label("Cylinder Wall");
 
-        // ============================================
-        // 4. Mesh - Configurable mesh settings
-        // ============================================
+        applyWarmStart(model, config);
+    }
+
+    /**
+     * Seed the initial values from a stored solution (see WarmStart). The
+     * source is sampled on a regular grid, written next to the outputs and
+     * read back through an interpolation function, so the source mesh does
+     * not have to match. Velocity and pressure are rescaled to the current
+     * inlet velocity and density.
+     */
+    private static void applyWarmStart(Model model, SimulationConfig config) {
+        WarmStart.Source source = WarmStart.resolve(config, null);
+        if (source == null) {
+            return;
+        }
+        File folder = new File(config.getEffectiveOutputDir(), config.fluidName.toLowerCase());
+        folder.mkdirs();
+        File table = new File(folder, "initial_solution.txt");
+        WarmStart.Field field;
+        try {
+            field = source.file.getName().toLowerCase().endsWith(".mph") ? sampleSolution(source.file, config)
+                    : WarmStart.Field.read(source.file);
+            field.fillSolid();
+            field.writeTable(table);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Warning: Failed to read initial solution, starting from rest: " + e.getMessage());
+            return;
+        }
+
+        double k = WarmStart.velocityRatio(source, config);
+        double kp = WarmStart.pressureRatio(source, config);
+        model.func().create("ws", "Interpolation");
+        model.func("ws").label("Initial Solution");
+        model.func("ws").set("source", "file");
+        model.func("ws").set("filename", table.getAbsolutePath());
+        model.func("ws").set("nargs", "2");
+        model.func("ws").set("funcs", new String[][] { { "ws_u", "1" }, { "ws_v", "2" }, { "ws_p", "3" } });
+        model.func("ws").set("interp", "linear");
+        model.func("ws").set("extrap", "const");
+        model.func("ws").importData();
+
+        model.component("comp1").physics("spf").feature("init1").set("u_init",
+                new String[] { k + "*ws_u(x[1/m],y[1/m])[m/s]", k + "*ws_v(x[1/m],y[1/m])[m/s]", "0" });
+        model.component("comp1").physics("spf").feature("init1").set("p_init",
+                kp + "*ws_p(x[1/m],y[1/m])[Pa]");
+        System.out.println("Initial values from " + source + " (" + field.nx + "x" + field.ny + " grid)");
+    }
+
+    /**
+     * u/v/p of the last stored solution of a saved model, on a grid at half
+     * the current maximum element size.
+     */
+    private static WarmStart.Field sampleSolution(File mph, SimulationConfig config) {
+        int nx = Math.max(2, (int) Math.ceil(config.domainWidth / (0.5 * config.meshMaxSize)) + 1);
+        double h = config.domainWidth / (nx - 1);
+        int ny = Math.max(2, (int) Math.floor(config.domainHeight / h + 1e-9) + 1);
+        WarmStart.Field field = new WarmStart.Field(nx, ny, 0, 0, h);
+        double[][] coords = new double[2][nx * ny];
+        for (int j = 0; j < ny; j++) {
+            for (int i = 0; i < nx; i++) {
+                coords[0][j * nx + i] = i * h;
+                coords[1][j * nx + i] = j * h;
+            }
+        }
+
+        Model src = ModelUtil.load(ModelUtil.uniquetag("Model"), mph.getAbsolutePath());
+        try {
+            int last = src.sol("sol1").getPVals().length;
+            src.result().numerical().create("ws_eval", "Interp");
+            src.result().numerical("ws_eval").set("data", "dset1");
+            src.result().numerical("ws_eval").set("expr", new String[] { "u", "v", "p" });
+            src.result().numerical("ws_eval").set("innerinput", "manual");
+            src.result().numerical("ws_eval").set("solnum", new int[] { last });
+            src.result().numerical("ws_eval").setInterpolationCoordinates(coords);
+            double[][][] data = src.result().numerical("ws_eval").getData();
+            System.arraycopy(data[0][0], 0, field.u, 0, nx * ny);
+            System.arraycopy(data[1][0], 0, field.v, 0, nx * ny);
+            System.arraycopy(data[2][0], 0, field.p, 0, nx * ny);
+        } finally {
+            ModelUtil.remove(src.tag());
+        }
+        return field;
+    }
+
+    // ============================================
+    // 4. Mesh - Configurable mesh settings
+    // ============================================
+    private static void buildMesh(Model model, SimulationConfig config) {
         model.component("comp1").mesh().create("mesh1");
 
         // Global size: configurable
@@ -186,17 +480,35 @@ public class CylinderFlow {
 
         model.component("comp1").mesh("mesh1").create("ftri1", "FreeTri");
         model.component("comp1").mesh("mesh1").run();
+    }
 
-        // ============================================
-        // 5. Study: Configurable time range
-        // ============================================
+    // ============================================
+    // 5. Study: Configurable time range
+    // ============================================
+    private static void setupStudy(Model model, SimulationConfig config) {
         model.study().create("std1");
         model.study("std1").create("time", "Transient");
         model.study("std1").feature("time").set("tlist", config.getTimeListString());
 
-        // ============================================
-        // 6. Results
-        // ============================================
+        if (config.isAdaptiveTimeStepping() || config.earlyStopEnabled) {
+            // The segmented early-stop solve sets the initial values on sol1/v1
+            model.study("std1").createAutoSequences("all");
+        }
+        if (config.isAdaptiveTimeStepping()) {
+            // Let BDF choose its own steps (capped at timeStep) and only store
+            // the solutions listed in tlist
+            model.sol("sol1").feature("t1").set("tstepsbdf", "free");
+            model.sol("sol1").feature("t1").set("maxstepconstraintbdf", "const");
+            model.sol("sol1").feature("t1").set("maxstepbdf", config.timeStep);
+            System.out.println("Adaptive time stepping: storing " + config.getOutputTimes().length
+                    + " solutions instead of " + config.getFixedOutputCount());
+        }
+    }
+
+    // ============================================
+    // 6. Results
+    // ============================================
+    private static void setupResults(Model model, SimulationConfig config) {
         model.result().create("pg1", "PlotGroup2D");
         model.result("pg1").label("Velocity Magnitude");
         model.result("pg1").set("titletype", "none"); // Hide title
@@ -224,8 +536,19 @@ public class CylinderFlow {
         model.result("pg3").feature("surf1").set("colortable", "ThermalWave");
         model.result("pg3").feature("surf1").set("colorlegend", "off"); // Ensure surface legend is off
 
-        // 锁定压力颜色范围，解决动画和PNG颜色不一致的问题
-        // 使用自动计算（基于动压）或手动指定的范围
+        applyPressureRange(model, config);
+
+        // Ensure plotting is on for image export
+        model.result("pg1").run();
+        model.result("pg2").run();
+        model.result("pg3").run();
+    }
+
+    /**
+     * 锁定压力颜色范围，解决动画和PNG颜色不一致的问题
+     * 使用自动计算（基于动压）或手动指定的范围
+     */
+    private static void applyPressureRange(Model model, SimulationConfig config) {
         double pMin = config.getEffectivePressureMin();
         double pMax = config.getEffectivePressureMax();
         model.result("pg3").feature("surf1").set("rangecoloractive", "on");
@@ -237,19 +560,155 @@ public class CylinderFlow {
         } else {
             System.out.println("Pressure color range (manual): [" + pMin + ", " + pMax + "] Pa");
         }
+    }
 
-        // Ensure plotting is on for image export
-        model.result("pg1").run();
-        model.result("pg2").run();
-        model.result("pg3").run();
+    // ============================================
+    // 7. Run and Save
+    // ============================================
 
-        // ============================================
-        // 7. Run and Save
-        // ============================================
-        System.out.println("Starting simulation (" + config.startTime + "s to " + config.endTime + "s)...");
-        try {
+    /**
+     * Run the study in one go, or - with earlyStopEnabled - in segments of
+     * earlyStopCheckInterval seconds. After each segment the force
+     * coefficients and point probes are evaluated at every stored time and
+     * appended to the probe file (exportProbes); for early stop the lift is
+     * fed to a SheddingDetector and once the shedding is periodic the
+     * remaining time is skipped. Each segment starts from the last solution
+     * of the previous one, so the saved model holds the final segment (the
+     * periodic state). cd_mean / cl_rms / strouhal end up in result.
+     * Without exportProbes, earlyStopEnabled or computeMetrics the study is
+     * just run and nothing is evaluated. Returns true when the study ran in
+     * more than one segment, i.e. the model does not hold the whole time
+     * history.
+     */
+    static boolean runStudy(Model model, SimulationConfig config, SimulationResult result) {
+        if (!config.needsProbeEvaluation()) {
+            // Nobody consumes the probes or metrics: skip the per-time evaluations
             model.study("std1").run();
-            System.out.println("Simulation completed!");
+            return false;
+        }
+        ComsolProbes probes = new ComsolProbes(model, config);
+        ProbeRecorder recorder = openProbeRecorder(config);
+        try {
+            if (!config.earlyStopEnabled) {
+                model.study("std1").run();
+                probes.evaluate(recorder);
+                probes.putMetrics(config, result, false);
+                return false;
+            }
+
+            double segment = config.earlyStopCheckInterval > 0 ? config.earlyStopCheckInterval
+                    : config.endTime - config.startTime;
+            double eps = 1e-9 * Math.max(1.0, Math.abs(config.endTime));
+            double from = config.startTime;
+            boolean periodic = false;
+            int segments = 0;
+            while (from < config.endTime - eps && !periodic) {
+                double to = Math.min(from + segment, config.endTime);
+                model.study("std1").feature("time").set("tlist", config.getTimeListString(from, to));
+                if (from > config.startTime) {
+                    // Start from the last solution of the previous segment
+                    if (java.util.Arrays.asList(model.sol().tags()).contains("sol_seg")) {
+                        model.sol().remove("sol_seg");
+                    }
+                    model.sol("sol1").copySolution("sol_seg");
+                    model.sol("sol1").feature("v1").set("initmethod", "sol");
+                    model.sol("sol1").feature("v1").set("initsol", "sol_seg");
+                    model.sol("sol1").feature("v1").set("solnum", "last");
+                }
+                System.out.println(String.format("Solving segment %.1fs to %.1fs...", from, to));
+                model.study("std1").run();
+                segments++;
+                // The first stored time repeats the previous segment's last one
+                // and is skipped
+                probes.evaluate(recorder);
+                periodic = probes.detector.isPeriodic();
+                from = to;
+            }
+
+            if (java.util.Arrays.asList(model.sol().tags()).contains("sol_seg")) {
+                model.sol("sol1").feature("v1").set("initmethod", "init");
+                model.sol().remove("sol_seg");
+            }
+
+            if (periodic) {
+                System.out.println(String.format(
+                        "Periodic shedding detected at t=%.1fs, skipping the remaining %.1fs", from,
+                        config.endTime - from));
+                if (result != null) {
+                    result.putMetric("stop_time", from);
+                }
+            } else {
+                System.out.println("No periodic shedding detected before endTime: " + probes.detector);
+            }
+            probes.putMetrics(config, result, periodic);
+            return segments > 1;
+        } finally {
+            probes.remove();
+            closeProbeRecorder(recorder, config, result);
+        }
+    }
+
+    /**
+     * Re-extract the probe time series and metrics from an already solved
+     * model (result cache hit).
+     */
+    private static void extractProbes(Model model, SimulationConfig config, SimulationResult result) {
+        if (!config.needsProbeEvaluation()) {
+            return;
+        }
+        ComsolProbes probes = new ComsolProbes(model, config);
+        ProbeRecorder recorder = openProbeRecorder(config);
+        try {
+            probes.evaluate(recorder);
+            probes.putMetrics(config, result, false);
+        } finally {
+            probes.remove();
+            closeProbeRecorder(recorder, config, result);
+        }
+    }
+
+    private static ProbeRecorder openProbeRecorder(SimulationConfig config) {
+        if (!config.exportProbes) {
+            return null;
+        }
+        File folder = new File(config.getEffectiveOutputDir(), config.fluidName.toLowerCase());
+        folder.mkdirs();
+        try {
+            return ProbeRecorder.create(config, folder.getPath());
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Warning: Probe time series disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void closeProbeRecorder(ProbeRecorder recorder, SimulationConfig config,
+            SimulationResult result) {
+        if (recorder == null) {
+            return;
+        }
+        String file = new File(new File(config.getEffectiveOutputDir(), config.fluidName.toLowerCase()),
+                ProbeRecorder.FORMAT_BINARY.equalsIgnoreCase(config.probeFormat) ? "probes.bin" : "probes.csv")
+                .getPath();
+        try {
+            recorder.close();
+            System.out.println("SUCCESS: Probe time series (" + recorder.getRows() + " rows) -> " + file);
+            if (result != null) {
+                result.putOutput("probes", file);
+            }
+        } catch (IOException e) {
+            System.out.println("Warning: Failed to write probe time series: " + e.getMessage());
+        }
+    }
+
+    private static void solveAndExport(Model model, SimulationConfig config, boolean solve,
+            ResultCache resultCache, String resultKey, SimulationResult result) {
+        try {
+            boolean segmented = false;
+            if (solve) {
+                System.out.println("Starting simulation (" + config.startTime + "s to " + config.endTime + "s)...");
+                segmented = runStudy(model, config, result);
+                System.out.println("Simulation completed!");
+            }
 
             // Save model with configurable filename in fluid-specific subfolder
             String baseDir = config.getEffectiveOutputDir();
@@ -261,21 +720,34 @@ public class CylinderFlow {
                 folder.mkdirs();
             }
 
-            String modelPath = baseDir + "/" + fluidFolder + "/" + config.modelFileName;
-            System.out.println("Saving model to " + modelPath + "...");
-            model.save(modelPath);
-            System.out.println("Model saved successfully!");
-
             // ============================================
             // 7.1. Post-processing Setup
             // ============================================
             // Explicitly link results to the generated solution dataset (dset1)
-            // This fixes the issue of blank images
+            // This fixes the issue of blank images.
             System.out.println("Linking plot groups to solution dataset...");
             model.result("pg1").set("data", "dset1");
             model.result("pg2").set("data", "dset1");
             model.result("pg3").set("data", "dset1");
 
+            String modelPath = baseDir + "/" + fluidFolder + "/" + config.modelFileName;
+            System.out.println("Saving model to " + modelPath + "...");
+            model.save(modelPath);
+            System.out.println("Model saved successfully!");
+
+            if (solve && resultCache != null && segmented) {
+                // The model only holds the last segment: a cache hit would re-derive the
+                // probes and metrics from it and lose the stop time
+                System.out.println("Not caching segmented (earlyStopEnabled) solution");
+            } else if (solve && resultCache != null) {
+                try {
+                    resultCache.store(resultKey, new File(modelPath), config);
+                    System.out.println("Stored solution in result cache (" + resultKey.substring(0, 12) + ")");
+                } catch (IOException e) {
+                    System.out.println("Warning: Failed to store result cache entry: " + e.getMessage());
+                }
+            }
+
             // ============================================
             // 8. Export Images and Animation
             // ============================================
@@ -285,149 +757,498 @@ public class CylinderFlow {
             System.out.println("Output directory: " + validPath);
             System.out.println("Fluid type: " + config.fluidName + " -> folder: " + fluidFolder);
 
-            // Export velocity image if enabled
-            if (config.exportVelocity) {
-                try {
-                    System.out.println("Updating plot group 1 (Velocity)...");
-                    model.result("pg1").run();
-
-                    System.out.println("Exporting velocity.png to " + validPath + "velocity.png");
-                    model.result().export().create("img1", "Image");
-                    model.result().export("img1").set("sourceobject", "pg1");
-                    model.result().export("img1").set("filename", validPath + "velocity.png");
-                    model.result().export("img1").set("zoomextents", "on");
-                    model.result().export("img1").run();
-                    System.out.println("SUCCESS: Exported velocity.png");
-                } catch (Throwable e) {
-                    System.out.println("ERROR: Failed to export velocity.png");
-                    System.out.println("Exception message: " + e.getMessage());
-                    e.printStackTrace(System.out);
+            // The COMSOL API of this process is single-threaded, like the sweep executor:
+            // concurrent exports each run in a child process on its own COMSOL server
+            boolean children = config.exportWorkers > 1 && ComsolSessions.canStartServers();
+            if (config.exportWorkers > 1 && !children) {
+                System.out.println("Warning: COMSOL_ROOT is not set, running COMSOL exports with 1 worker "
+                        + "instead of exportWorkers=" + config.exportWorkers);
+            }
+            File childConfig = null;
+            if (children) {
+                childConfig = File.createTempFile("export_config", ".json");
+                Files.write(childConfig.toPath(), ConfigCodec.toJson(config).getBytes(StandardCharsets.UTF_8));
+            }
+            try {
+                ExportPipeline pipeline = buildExportPipeline(model, validPath, config);
+                int workers = 1;
+                if (children) {
+                    pipeline = childExportPipeline(pipeline, modelPath, childConfig, validPath);
+                    workers = Math.min(config.exportWorkers, pipeline.size());
+                }
+                System.out.println("Running " + pipeline.size() + " exports with " + workers
+                        + (children ? " child process(es)..." : " worker..."));
+                pipeline.run(workers);
+                System.out.print(pipeline.report());
+            } finally {
+                if (childConfig != null) {
+                    childConfig.delete();
                 }
             }
+        } catch (Exception e) {
+            System.out.println("CRITICAL ERROR: Simulation failed!");
+            e.printStackTrace(System.out);
+            throw new IllegalStateException("Simulation failed: " + e.getMessage(), e);
+        }
+    }
 
-            // Export vorticity image if enabled
-            if (config.exportVorticity) {
-                try {
-                    System.out.println("Updating plot group 2 (Vorticity)...");
-                    model.result("pg2").run();
-
-                    System.out.println("Exporting vorticity.png to " + validPath + "vorticity.png");
-                    model.result().export().create("img2", "Image");
-                    model.result().export("img2").set("sourceobject", "pg2");
-                    model.result().export("img2").set("filename", validPath + "vorticity.png");
-                    model.result().export("img2").set("zoomextents", "on");
-                    model.result().export("img2").run();
-                    System.out.println("SUCCESS: Exported vorticity.png");
-                } catch (Throwable e) {
-                    System.out.println("ERROR: Failed to export vorticity.png");
-                    System.out.println("Exception message: " + e.getMessage());
-                    e.printStackTrace(System.out);
-                }
+    /**
+     * One task per enabled export, run one after another on the solved model.
+     * The exports do not depend on each other, so a failed export does not
+     * stop the rest; the pipeline reports the status and time of each.
+     */
+    private static ExportPipeline buildExportPipeline(Model model, String validPath, SimulationConfig config) {
+        ExportPipeline pipeline = new ExportPipeline();
+        if (config.exportVelocity) {
+            pipeline.add("img1", new ComsolExport(model, "img1", "pg1", "Velocity",
+                    validPath + "velocity.png", false, config));
+        }
+        if (config.exportVorticity) {
+            pipeline.add("img2", new ComsolExport(model, "img2", "pg2", "Vorticity",
+                    validPath + "vorticity.png", false, config));
+        }
+        if (config.exportPressure) {
+            pipeline.add("img3", new ComsolExport(model, "img3", "pg3", "Pressure",
+                    validPath + "pressure.png", false, config));
+        }
+        if (config.exportAnimation) {
+            pipeline.add("anim0", new ComsolExport(model, "anim0", "pg1", "velocity",
+                    validPath + "velocity_animation.gif", true, config));
+            pipeline.add("anim1", new ComsolExport(model, "anim1", "pg2", "vorticity",
+                    validPath + "vorticity_animation.gif", true, config));
+            pipeline.add("anim2", new ComsolExport(model, "anim2", "pg3", "pressure",
+                    validPath + "pressure_animation.gif", true, config));
+        }
+        return pipeline;
+    }
+
+    /**
+     * The same tasks, each run by ComsolSessions.exportInChild on the saved
+     * model in a separate process.
+     */
+    private static ExportPipeline childExportPipeline(ExportPipeline local, String modelPath, File configFile,
+            String validPath) {
+        ExportPipeline pipeline = new ExportPipeline();
+        for (String tag : local.names()) {
+            pipeline.add(tag, () -> ComsolSessions.exportInChild(modelPath, configFile, validPath, tag));
+        }
+        return pipeline;
+    }
+
+    /**
+     * Child side of a concurrent export: load the saved model on the
+     * connected server and run the one export named tag.
+     */
+    static void exportFromFile(String modelPath, String validPath, SimulationConfig config, String tag)
+            throws Exception {
+        Model model = ModelUtil.load(ModelUtil.uniquetag("Model"), modelPath);
+        try {
+            ExportPipeline.Task task = buildExportPipeline(model, validPath, config).get(tag);
+            if (task == null) {
+                throw new IllegalArgumentException("Export " + tag + " is not enabled in the configuration");
             }
+            task.action.run();
+        } finally {
+            ModelUtil.remove(model.tag());
+        }
+    }
 
-            // Export pressure image if enabled
-            if (config.exportPressure) {
-                try {
-                    System.out.println("Updating plot group 3 (Pressure)...");
-                    model.result("pg3").run();
-
-                    System.out.println("Exporting pressure.png to " + validPath + "pressure.png");
-                    model.result().export().create("img3", "Image");
-                    model.result().export("img3").set("sourceobject", "pg3");
-                    model.result().export("img3").set("filename", validPath + "pressure.png");
-                    model.result().export("img3").set("zoomextents", "on");
-                    model.result().export("img3").run();
-                    System.out.println("SUCCESS: Exported pressure.png");
-                } catch (Throwable e) {
-                    System.out.println("ERROR: Failed to export pressure.png");
-                    System.out.println("Exception message: " + e.getMessage());
-                    e.printStackTrace(System.out);
+    /**
+     * A single image or animation export on the solved model.
+     */
+    static class ComsolExport implements ExportPipeline.Action {
+        private final Model model;
+        private final String tag;
+        private final String plotGroup;
+        private final String label;
+        private final String fileName;
+        private final boolean animation;
+        private final SimulationConfig config;
+
+        ComsolExport(Model model, String tag, String plotGroup, String label, String fileName, boolean animation,
+                SimulationConfig config) {
+            this.model = model;
+            this.tag = tag;
+            this.plotGroup = plotGroup;
+            this.label = label;
+            this.fileName = fileName;
+            this.animation = animation;
+            this.config = config;
+        }
+
+        @Override
+        public void run() throws IOException {
+            if (animation && !FrameEncoder.MODE_GIF.equalsIgnoreCase(config.animationMode)) {
+                exportFrames(model);
+            } else if (animation) {
+                exportAnimation(model);
+            } else {
+                exportImage(model);
+            }
+        }
+
+        private void exportImage(Model model) {
+            System.out.println("Updating plot group " + plotGroup + " (" + label + ")...");
+            model.result(plotGroup).run();
+
+            System.out.println("Exporting " + fileName);
+            model.result().export().create(tag, "Image");
+            model.result().export(tag).set("sourceobject", plotGroup);
+            model.result().export(tag).set("filename", fileName);
+            model.result().export(tag).set("zoomextents", "on");
+            model.result().export(tag).run();
+            System.out.println("SUCCESS: Exported " + fileName);
+        }
+
+        private void exportAnimation(Model model) {
+            System.out.println("Exporting " + label + " animation to " + fileName);
+            model.result().export().create(tag, "Animation");
+
+            model.result().export(tag).set("plotgroup", plotGroup);
+            model.result().export(tag).set("target", "file");
+            model.result().export(tag).set("type", "movie");
+            model.result().export(tag).set("movietype", "gif");
+            model.result().export(tag).set("giffilename", fileName);
+            model.result().export(tag).set("framesel", "all"); // 使用所有帧
+
+            model.result().export(tag).set("fps", config.animationFps);
+            model.result().export(tag).set("maxframes", config.animationMaxFrames);
+
+            model.result().export(tag).run();
+            System.out.println("SUCCESS: Exported " + fileName);
+        }
+
+        /**
+         * Evaluate the plot group's expression on a regular grid one stored
+         * time step at a time and stream the frames to an APNG/raw encoder,
+         * so memory stays at a single frame however long the transient is.
+         */
+        private void exportFrames(Model model) throws IOException {
+            String expr = model.result(plotGroup).feature("surf1").getString("expr");
+            ColorMap colorMap = ColorMap.forName(model.result(plotGroup).feature("surf1").getString("colortable"));
+
+            double[] times = model.sol("sol1").getPVals();
+            if (times.length == 0) {
+                throw new IllegalStateException("No stored time steps in sol1");
+            }
+            int stride = Math.max(1, (times.length + config.animationMaxFrames - 1) / config.animationMaxFrames);
+
+            int nx = Math.max(2, config.animationGridNx);
+            int ny = Math.max(2, (int) Math.round(nx * config.domainHeight / config.domainWidth));
+            double[][] coords = new double[2][nx * ny];
+            for (int j = 0; j < ny; j++) {
+                for (int i = 0; i < nx; i++) {
+                    // Row 0 is the top of the domain, as in the exported image
+                    coords[0][j * nx + i] = config.domainWidth * (i + 0.5) / nx;
+                    coords[1][j * nx + i] = config.domainHeight * (1.0 - (j + 0.5) / ny);
                 }
             }
 
-            // Animation Export - velocity if enabled
-            if (config.exportAnimation) {
-                try {
-                    System.out.println("Exporting velocity_animation.gif...");
-                    model.result().export().create("anim0", "Animation");
-
-                    model.result().export("anim0").set("plotgroup", "pg1");
-                    model.result().export("anim0").set("target", "file");
-                    model.result().export("anim0").set("type", "movie");
-                    model.result().export("anim0").set("movietype", "gif");
-                    model.result().export("anim0").set("giffilename", validPath + "velocity_animation.gif");
-                    model.result().export("anim0").set("framesel", "all"); // 使用所有帧
-
-                    model.result().export("anim0").set("fps", config.animationFps);
-                    model.result().export("anim0").set("maxframes", config.animationMaxFrames);
-
-                    model.result().export("anim0").run();
-                    System.out.println("SUCCESS: Exported velocity_animation.gif");
-
-                } catch (Throwable e) {
-                    System.out.println("ERROR: Failed to export velocity animation");
-                    System.out.println("Exception message: " + e.getMessage());
-                    e.printStackTrace(System.out);
+            String evalTag = "frames_" + tag;
+            model.result().numerical().create(evalTag, "Interp");
+            try {
+                model.result().numerical(evalTag).set("data", "dset1");
+                model.result().numerical(evalTag).set("expr", expr);
+                model.result().numerical(evalTag).set("innerinput", "manual");
+                model.result().numerical(evalTag).setInterpolationCoordinates(coords);
+                float[] field = new float[nx * ny];
+
+                // Lock the colour range like the GIF export does: pressure uses
+                // the configured range, other fields the range of the last step
+                double min;
+                double max;
+                if ("pg3".equals(plotGroup)) {
+                    min = config.getEffectivePressureMin();
+                    max = config.getEffectivePressureMax();
+                } else {
+                    evaluateFrame(model, evalTag, times.length, field);
+                    min = Double.POSITIVE_INFINITY;
+                    max = Double.NEGATIVE_INFINITY;
+                    for (float v : field) {
+                        if (!Float.isNaN(v)) {
+                            min = Math.min(min, v);
+                            max = Math.max(max, v);
+                        }
+                    }
+                    if (min < 0 && max > 0) {
+                        max = Math.max(-min, max);
+                        min = -max;
+                    }
                 }
+
+                String basePath = fileName.endsWith(".gif") ? fileName.substring(0, fileName.length() - 4) : fileName;
+                System.out.println("Exporting " + label + " frames (" + config.animationMode + ", " + nx + "x" + ny
+                        + ", every " + stride + " of " + times.length + " steps) to " + basePath);
+                try (FrameEncoder encoder = FrameEncoder.create(config.animationMode, basePath, nx, ny,
+                        config.animationFps, colorMap, min, max)) {
+                    for (int k = 0; k < times.length; k += stride) {
+                        evaluateFrame(model, evalTag, k + 1, field);
+                        encoder.writeFrame(field, times[k]);
+                    }
+                    System.out.println("SUCCESS: Exported " + encoder.getFrameCount() + " frames to " + basePath);
+                }
+            } finally {
+                model.result().numerical().remove(evalTag);
             }
+        }
 
-            // Animation Export - vorticity if enabled
-            if (config.exportAnimation) {
-                try {
-                    System.out.println("Exporting vorticity_animation.gif...");
-                    model.result().export().create("anim1", "Animation");
-
-                    model.result().export("anim1").set("plotgroup", "pg2");
-                    model.result().export("anim1").set("target", "file");
-                    model.result().export("anim1").set("type", "movie");
-                    model.result().export("anim1").set("movietype", "gif");
-                    model.result().export("anim1").set("giffilename", validPath + "vorticity_animation.gif");
-                    model.result().export("anim1").set("framesel", "all"); // 使用所有帧
-
-                    model.result().export("anim1").set("fps", config.animationFps);
-                    model.result().export("anim1").set("maxframes", config.animationMaxFrames);
-
-                    model.result().export("anim1").run();
-                    System.out.println("SUCCESS: Exported vorticity_animation.gif");
-
-                } catch (Throwable e) {
-                    System.out.println("ERROR: Failed to export vorticity animation");
-                    System.out.println("Exception message: " + e.getMessage());
-                    e.printStackTrace(System.out);
+        private static void evaluateFrame(Model model, String evalTag, int solnum, float[] field) {
+            model.result().numerical(evalTag).set("solnum", new int[] { solnum });
+            double[] values = model.result().numerical(evalTag).getData()[0][0];
+            for (int i = 0; i < field.length; i++) {
+                field[i] = (float) values[i];
+            }
+        }
+    }
+
+    /**
+     * Force coefficients on the cylinder wall and u/v/p at the probe points,
+     * evaluated one stored solution at a time so only the current row is held
+     * in memory. The lift goes to a SheddingDetector and the coefficients
+     * over the second half of the time range are averaged, as in LbmBackend.
+     */
+    static class ComsolProbes {
+        private static final String FORCES = "probe_forces";
+        private static final String POINTS = "probe_points";
+
+        final SheddingDetector detector;
+        private final Model model;
+        private final double forceScale;
+        private final int pointCount;
+        private final double averageFrom;
+        private boolean recording = true;
+        private double lastTime = Double.NEGATIVE_INFINITY;
+        private double cdSum;
+        private double clSum;
+        private double cl2Sum;
+        private double clMax;
+        private long samples;
+        // First row and whether any later row differed from it: a series that
+        // never changes means the evaluations are not following the time steps
+        private double[] firstValues;
+        private int distinctTimes;
+        private boolean varying;
+        private boolean warnedStatic;
+
+        ComsolProbes(Model model, SimulationConfig config) {
+            this.model = model;
+            this.detector = SheddingDetector.forConfig(config);
+            this.averageFrom = 0.5 * (config.startTime + config.endTime);
+            this.forceScale = 1.0 / (config.getDynamicPressure() * 2 * config.cylinderRadius);
+            double[][] points = ProbeRecorder.parsePoints(config.probePoints);
+            this.pointCount = points.length;
+
+            // Force per unit depth; the boundary normal points out of the fluid,
+            // into the cylinder, hence the sign
+            model.result().numerical().create(FORCES, "IntLine");
+            model.result().numerical(FORCES).selection().named("geom1_cyl_sel");
+            model.result().numerical(FORCES).set("data", "dset1");
+            model.result().numerical(FORCES).set("expr", new String[] { "-spf.T_stressx", "-spf.T_stressy" });
+            // Without manual inner input COMSOL ignores solnum and evaluates the default selection
+            model.result().numerical(FORCES).set("innerinput", "manual");
+
+            if (pointCount > 0) {
+                double[][] coords = new double[2][pointCount];
+                for (int k = 0; k < pointCount; k++) {
+                    coords[0][k] = points[k][0];
+                    coords[1][k] = points[k][1];
                 }
+                model.result().numerical().create(POINTS, "Interp");
+                model.result().numerical(POINTS).set("data", "dset1");
+                model.result().numerical(POINTS).set("expr", new String[] { "u", "v", "p" });
+                model.result().numerical(POINTS).set("innerinput", "manual");
+                model.result().numerical(POINTS).setInterpolationCoordinates(coords);
             }
+        }
 
-            // Animation Export - pressure if enabled
-            if (config.exportAnimation) {
+        /**
+         * Evaluate every stored solution of sol1 and append the rows to
+         * recorder (may be null).
+         */
+        void evaluate(ProbeRecorder recorder) {
+            double[] times = model.sol("sol1").getPVals();
+            double[] values = new double[2 + 3 * pointCount];
+            for (int i = 0; i < times.length; i++) {
+                int solnum = i + 1;
+                model.result().numerical(FORCES).set("solnum", new int[] { solnum });
+                double[][] forces = model.result().numerical(FORCES).getReal();
+                values[0] = forces[0][0] * forceScale;
+                values[1] = forces[1][0] * forceScale;
+                if (pointCount > 0) {
+                    model.result().numerical(POINTS).set("solnum", new int[] { solnum });
+                    double[][][] data = model.result().numerical(POINTS).getData();
+                    for (int k = 0; k < pointCount; k++) {
+                        values[2 + 3 * k] = data[0][0][k];
+                        values[3 + 3 * k] = data[1][0][k];
+                        values[4 + 3 * k] = data[2][0][k];
+                    }
+                }
+                if (times[i] > lastTime) {
+                    lastTime = times[i];
+                    distinctTimes++;
+                    if (firstValues == null) {
+                        firstValues = values.clone();
+                    } else if (!varying && !java.util.Arrays.equals(firstValues, values)) {
+                        varying = true;
+                    }
+                    detector.add(times[i], values[1], values[0]);
+                    if (times[i] >= averageFrom) {
+                        cdSum += values[0];
+                        clSum += values[1];
+                        cl2Sum += values[1] * values[1];
+                        clMax = Math.max(clMax, Math.abs(values[1]));
+                        samples++;
+                    }
+                }
+                if (recorder != null && recording) {
+                    try {
+                        recorder.record(times[i], values);
+                    } catch (IOException e) {
+                        System.out.println("Warning: Failed to write probe time series: " + e.getMessage());
+                        recording = false;
+                    }
+                }
+            }
+            if (isStatic() && !warnedStatic) {
+                System.out.println("Warning: Probe values are identical at all " + distinctTimes
+                        + " stored times; the shedding detection cannot see the flow develop");
+                warnedStatic = true;
+            }
+            if (recorder != null && recording) {
                 try {
-                    System.out.println("Exporting pressure_animation.gif...");
-                    model.result().export().create("anim2", "Animation");
-
-                    model.result().export("anim2").set("plotgroup", "pg3");
-                    model.result().export("anim2").set("target", "file");
-                    model.result().export("anim2").set("type", "movie");
-                    model.result().export("anim2").set("movietype", "gif");
-                    model.result().export("anim2").set("giffilename", validPath + "pressure_animation.gif");
-                    model.result().export("anim2").set("framesel", "all"); // 使用所有帧
-
-                    model.result().export("anim2").set("fps", config.animationFps);
-                    model.result().export("anim2").set("maxframes", config.animationMaxFrames);
-
-                    model.result().export("anim2").run();
-                    System.out.println("SUCCESS: Exported pressure_animation.gif");
-
-                } catch (Throwable e) {
-                    System.out.println("ERROR: Failed to export pressure animation");
-                    System.out.println("Exception message: " + e.getMessage());
-                    e.printStackTrace(System.out);
+                    recorder.flush();
+                } catch (IOException e) {
+                    System.out.println("Warning: Failed to write probe time series: " + e.getMessage());
+                    recording = false;
                 }
             }
-        } catch (Exception e) {
-            System.out.println("CRITICAL ERROR: Simulation failed!");
-            e.printStackTrace(System.out);
         }
 
-        return model;
+        /**
+         * True when at least three distinct times were evaluated and every
+         * row equals the first one
+         */
+        boolean isStatic() {
+            return distinctTimes >= 3 && !varying;
+        }
+
+        /**
+         * cd_mean / cl_rms / cl_max (whole cycles of the detection window
+         * after an early stop, otherwise the second half), plus the Strouhal
+         * number when the shedding is periodic.
+         */
+        void putMetrics(SimulationConfig config, SimulationResult result, boolean stoppedEarly) {
+            if (result == null) {
+                return;
+            }
+            if (stoppedEarly) {
+                result.putMetric("cd_mean", detector.getAuxMean());
+                result.putMetric("cl_rms", detector.getRms());
+                result.putMetric("cl_max", Math.abs(detector.getMean()) + detector.getAmplitude());
+            } else if (samples > 0) {
+                double clMean = clSum / samples;
+                result.putMetric("cd_mean", cdSum / samples);
+                result.putMetric("cl_rms", Math.sqrt(Math.max(0, cl2Sum / samples - clMean * clMean)));
+                result.putMetric("cl_max", clMax);
+            }
+            if (detector.isPeriodic()) {
+                double strouhal = detector.strouhal(2 * config.cylinderRadius, config.inletVelocity);
+                System.out.println(String.format("Shedding period %.3f s, Strouhal number St = %.4f",
+                        detector.getPeriod(), strouhal));
+                result.putMetric("shedding_period", detector.getPeriod());
+                result.putMetric("strouhal", strouhal);
+            }
+        }
+
+        void remove() {
+            model.result().numerical().remove(FORCES);
+            if (pointCount > 0) {
+                model.result().numerical().remove(POINTS);
+            }
+        }
+    }
+
+    /**
+     * COMSOL implementation of SimulationBackend. run() goes through
+     * CylinderFlow.run(config) so the template and result caches apply, and
+     * hands the model back to the template cache for the next case.
+     */
+    static class ComsolBackend implements SimulationBackend<Model> {
+        @Override
+        public String getName() {
+            return "COMSOL";
+        }
+
+        @Override
+        public Model createModel(SimulationConfig config) {
+            Model model = ModelUtil.create(ModelUtil.uniquetag("Model"));
+            model.label("Cylinder Flow - Karman Vortex Street");
+            return model;
+        }
+
+        @Override
+        public void buildGeometry(Model model, SimulationConfig config) {
+            CylinderFlow.buildGeometry(model, config);
+        }
+
+        @Override
+        public void buildMesh(Model model, SimulationConfig config) {
+            CylinderFlow.buildMesh(model, config);
+        }
+
+        @Override
+        public void setupMaterial(Model model, SimulationConfig config) {
+            CylinderFlow.setupMaterial(model, config);
+        }
+
+        @Override
+        public void setupPhysics(Model model, SimulationConfig config) {
+            CylinderFlow.setupPhysics(model, config);
+        }
+
+        @Override
+        public void setupStudy(Model model, SimulationConfig config) {
+            CylinderFlow.setupStudy(model, config);
+        }
+
+        @Override
+        public void setupResults(Model model, SimulationConfig config) {
+            CylinderFlow.setupResults(model, config);
+        }
+
+        @Override
+        public void solve(Model model, SimulationConfig config, SimulationResult result) {
+            System.out.println("Starting simulation (" + config.startTime + "s to " + config.endTime + "s)...");
+            runStudy(model, config, result);
+            System.out.println("Simulation completed!");
+        }
+
+        @Override
+        public void export(Model model, SimulationConfig config, SimulationResult result) {
+            solveAndExport(model, config, false, null, null, result);
+            result.putOutput("model", modelPath(config));
+        }
+
+        @Override
+        public void dispose(Model model) {
+            ModelUtil.remove(model.tag());
+        }
+
+        @Override
+        public SimulationResult run(SimulationConfig config) {
+            SimulationResult result = new SimulationResult(getName());
+            long t0 = System.nanoTime();
+            Model model = CylinderFlow.run(config, result);
+            result.putOutput("model", modelPath(config));
+            release(config, model);
+            result.elapsedMs = (System.nanoTime() - t0) / 1_000_000L;
+            return result;
+        }
+
+        private static String modelPath(SimulationConfig config) {
+            return config.getEffectiveOutputDir() + "/" + config.fluidName.toLowerCase() + "/"
+                    + config.modelFileName;
+        }
     }
 
     /**
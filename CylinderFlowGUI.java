@@ -23,6 +23,9 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -38,6 +41,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import javax.swing.border.EmptyBorder;
@@ -55,11 +59,27 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
     // AI 助手相关字段
     private QwenClient QwenClient;
     private JTextArea aiChatHistory;
+    private int streamStart = -1, streamEnd = -1; // 正在流式显示的 AI 回复在聊天记录中的位置
     private JTextField aiInputField;
     private JButton aiSendBtn, aiApplyBtn, aiClearBtn;
     private JTextArea aiChangesPreview;
     private List<AIConfigParser.ConfigChange> pendingChanges;
-    private boolean aiProcessing = false;
+    private JButton aiStopBtn;
+    private JLabel aiQueueLabel;
+    // 同一时刻最多一个请求在途；连续输入的消息合并发送，新消息或 [停止] 取消在途请求
+    private static final long AI_COALESCE_MS = 400;
+    private final AIRequestPipeline aiPipeline = new AIRequestPipeline(this::startAIRequest,
+            SwingUtilities::invokeLater, AI_COALESCE_MS, this::updateAIQueueState);
+    private long aiRequestSeq = 0; // 当前显示中的请求；递增后旧请求的回调不再更新界面
+    // 简单指令在本地解析，不发送 AI 请求
+    private final LocalCommandParser localParser = new LocalCommandParser();
+    private JLabel aiStatsLabel;
+    private long aiRequests = 0;
+    private double aiTotalMs = 0;
+
+    // 常驻 COMSOL 服务器会话 (ComsolSessions，需要 COMSOL 库，通过反射调用)；
+    // 不可用时为 null，运行仿真退回 run_comsol.bat
+    private Class<?> comsolSessions;
 
     // Colors - Light Theme for Better Readability
     private static final Color BG_DARK = new Color(245, 245, 250);
@@ -77,6 +97,30 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         loadConfig();
         initQwenClient();
         initUI();
+        initComsolSessions();
+    }
+
+    private void initComsolSessions() {
+        try {
+            Class<?> cls = Class.forName("ComsolSessions");
+            if (!(Boolean) cls.getMethod("isAvailable").invoke(null)) {
+                System.out.println("提示: 设置 COMSOL_SERVER 或 COMSOL_ROOT 以复用常驻 COMSOL 服务器");
+                return;
+            }
+            comsolSessions = cls;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return; // 没有 COMSOL 库
+        }
+        // 启动时在后台连接服务器，第一次运行无需等待
+        Thread prewarm = new Thread(() -> {
+            try {
+                comsolSessions.getMethod("prewarm").invoke(null);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.out.println("Warning: Failed to connect to COMSOL server: " + e);
+            }
+        }, "comsol-prewarm");
+        prewarm.setDaemon(true);
+        prewarm.start();
     }
 
     private void initQwenClient() {
@@ -92,6 +136,9 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         } catch (IOException e) {
             config = SimulationConfig.getDefault();
             System.out.println("Using default config: " + e.getMessage());
+            // 界面显示后再提示：保存会用默认值覆盖原文件
+            SwingUtilities.invokeLater(() -> err("无法读取 " + CONFIG_FILE + "，已使用默认配置。\n" + e.getMessage()
+                    + "\n修正文件后重新启动；此时保存会覆盖原文件。"));
         }
     }
 
@@ -313,6 +360,25 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         addDoubleField(panel, gbc, row++, "时间步长 (s)", "timeStep", config.timeStep);
         addNote(panel, gbc, row++, "仿真时长 = 结束时间 - 开始时间");
 
+        addSectionTitle(panel, gbc, row++, "时间步进与输出");
+        addComboField(panel, gbc, row++, "步进模式", "timeSteppingMode",
+                new String[] { "Fixed", "Adaptive" }, config.timeSteppingMode);
+        addDoubleField(panel, gbc, row++, "探针输出间隔 (s)", "probeOutputInterval", config.probeOutputInterval);
+        addNote(panel, gbc, row++, "Adaptive: 求解器自适应步长 (不超过时间步长)，只存动画帧与探针时刻的解");
+
+        addSectionTitle(panel, gbc, row++, "涡脱落检测");
+        addCheckBox(panel, gbc, row++, "周期稳定后提前结束", "earlyStopEnabled", config.earlyStopEnabled);
+        addIntField(panel, gbc, row++, "判定周期数", "earlyStopCycles", config.earlyStopCycles);
+        addDoubleField(panel, gbc, row++, "相对容差", "earlyStopTolerance", config.earlyStopTolerance);
+        addDoubleField(panel, gbc, row++, "检测段长 (s)", "earlyStopCheckInterval", config.earlyStopCheckInterval);
+        addNote(panel, gbc, row++, "按段求解，每段后检测圆柱升力；保存的模型只含最后一段 (Adaptive 需设探针输出间隔)");
+
+        addSectionTitle(panel, gbc, row++, "初始条件");
+        addComboField(panel, gbc, row++, "初始场", "initialCondition",
+                new String[] { "Rest", "File", "Nearest" }, config.initialCondition);
+        addTextField(panel, gbc, row++, "初始解文件", "initialSolutionFile", config.initialSolutionFile);
+        addNote(panel, gbc, row++, "Nearest: 在同级工况目录与结果缓存中找几何相同、Re 最接近的解，网格不同时插值");
+
         addFiller(panel, gbc, row);
         return wrapInScrollPane(panel);
     }
@@ -334,6 +400,17 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         addCheckBox(panel, gbc, row++, "导出 GIF 动画", "exportAnimation", config.exportAnimation);
         addIntField(panel, gbc, row++, "动画帧率 (fps)", "animationFps", config.animationFps);
         addIntField(panel, gbc, row++, "最大帧数", "animationMaxFrames", config.animationMaxFrames);
+        addComboField(panel, gbc, row++, "动画格式", "animationMode",
+                new String[] { "Gif", "Apng", "Raw" }, config.animationMode);
+        addIntField(panel, gbc, row++, "动画网格 x 点数", "animationGridNx", config.animationGridNx);
+        addIntField(panel, gbc, row++, "并行导出数", "exportWorkers", config.exportWorkers);
+
+        addSectionTitle(panel, gbc, row++, "力系数与探针");
+        addCheckBox(panel, gbc, row++, "导出时间序列", "exportProbes", config.exportProbes);
+        addTextField(panel, gbc, row++, "探针坐标 (m)", "probePoints", config.probePoints);
+        addComboField(panel, gbc, row++, "文件格式", "probeFormat",
+                new String[] { "Csv", "Binary" }, config.probeFormat);
+        addNote(panel, gbc, row++, "格式 x1,y1;x2,y2 ；每个存储时刻写一行 Cd、Cl 与各点 u/v/p");
 
         addFiller(panel, gbc, row);
         return wrapInScrollPane(panel);
@@ -366,7 +443,12 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         }
         statusLabel.setFont(new Font("Microsoft YaHei UI", Font.PLAIN, 12));
 
+        aiQueueLabel = new JLabel("空闲", JLabel.CENTER);
+        aiQueueLabel.setFont(new Font("Microsoft YaHei UI", Font.PLAIN, 12));
+        aiQueueLabel.setForeground(TEXT_SECONDARY);
+
         statusPanel.add(aiTitle, BorderLayout.WEST);
+        statusPanel.add(aiQueueLabel, BorderLayout.CENTER);
         statusPanel.add(statusLabel, BorderLayout.EAST);
 
         // 聊天历史区域
@@ -462,7 +544,7 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
             }
 
             public void keyPressed(KeyEvent e) {
-                if (e.getKeyCode() == KeyEvent.VK_ENTER && !aiProcessing) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
                     doAISend();
                 }
             }
@@ -476,8 +558,29 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         aiSendBtn.setPreferredSize(new Dimension(80, 40));
         aiSendBtn.addActionListener(this);
 
+        aiStopBtn = new JButton("停止");
+        aiStopBtn.setBackground(ACCENT_ORANGE);
+        aiStopBtn.setForeground(Color.WHITE);
+        aiStopBtn.setFocusPainted(false);
+        aiStopBtn.setBorderPainted(false);
+        aiStopBtn.setPreferredSize(new Dimension(80, 40));
+        aiStopBtn.setEnabled(false);
+        aiStopBtn.addActionListener(this);
+
+        JPanel sendBtnPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        sendBtnPanel.setBackground(BG_PANEL);
+        sendBtnPanel.add(aiStopBtn);
+        sendBtnPanel.add(aiSendBtn);
+
+        aiStatsLabel = new JLabel();
+        aiStatsLabel.setFont(new Font("Microsoft YaHei UI", Font.PLAIN, 11));
+        aiStatsLabel.setForeground(TEXT_SECONDARY);
+        aiStatsLabel.setBorder(new EmptyBorder(4, 2, 0, 0));
+        updateAIStats();
+
         inputPanel.add(aiInputField, BorderLayout.CENTER);
-        inputPanel.add(aiSendBtn, BorderLayout.EAST);
+        inputPanel.add(sendBtnPanel, BorderLayout.EAST);
+        inputPanel.add(aiStatsLabel, BorderLayout.SOUTH);
 
         // 使用 JSplitPane 分割聊天区和预览区
         JPanel chatPanel = new JPanel(new BorderLayout());
@@ -502,57 +605,133 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         if (userInput.isEmpty())
             return;
 
+        // 同步当前 UI 到 config
+        syncUIToConfig();
+
+        // 快速路径：能在本地完整解析的指令不发送请求；有请求在途时交给管线与之合并
+        AIConfigParser.ParseResult local = aiPipeline.isBusy() ? null : localParser.parse(userInput, config);
+        if (local != null) {
+            appendToChatHistory("你", userInput);
+            aiInputField.setText("");
+            handleAIResponse(local);
+            updateAIStats();
+            return;
+        }
+
         if (!QwenClient.isConfigured()) {
             appendToChatHistory("系统", "请先设置环境变量 Qwen_API_KEY 以使用 AI 助手功能。");
+            updateAIStats();
             return;
         }
 
-        // 显示用户消息
+        // 在途的请求会被取消，它的消息与这条合并后重新发送
+        if (streamStart >= 0) {
+            cancelStreamingMessage("[已取消，与新消息合并后重新发送]");
+        }
         appendToChatHistory("你", userInput);
         aiInputField.setText("");
-        aiInputField.setEnabled(false);
-        aiSendBtn.setEnabled(false);
-        aiProcessing = true;
+        aiPipeline.submit(userInput);
+    }
 
-        // 同步当前 UI 到 config
-        syncUIToConfig();
+    // 停止：取消在途请求（中止 HTTP 请求、释放连接）并丢弃排队的消息
+    private void doAIStop() {
+        if (streamStart >= 0) {
+            cancelStreamingMessage("[已停止]");
+        }
+        aiPipeline.stop();
+        aiInputField.requestFocus();
+    }
 
-        // 在后台线程调用 AI API
-        SwingWorker<AIConfigParser.ParseResult, Void> worker = new SwingWorker<AIConfigParser.ParseResult, Void>() {
-            @Override
-            protected AIConfigParser.ParseResult doInBackground() throws Exception {
-                String systemPrompt = AIConfigParser.generateSystemPrompt(config);
-                String response = QwenClient.chat(userInput, systemPrompt);
-                return AIConfigParser.parseAIResponse(response, config);
+    // 由 aiPipeline 在 EDT 上调用：发出一次（可能合并了多条消息的）流式请求，回复逐段显示
+    private CompletableFuture<String> startAIRequest(String message) {
+        long seq = ++aiRequestSeq;
+        syncUIToConfig();
+        beginStreamingMessage();
+        AIConfigParser.StreamParser parser = new AIConfigParser.StreamParser(config);
+        AtomicReference<String> latestText = new AtomicReference<>();
+        String systemPrompt = AIConfigParser.generateSystemPrompt(config);
+        long sentAt = System.nanoTime();
+        CompletableFuture<String> request = QwenClient.chatStream(message, systemPrompt, delta -> {
+            boolean changesReady = parser.feed(delta);
+            String text = parser.getMessage();
+            // 合并刷新：上一次刷新还没执行时只更新内容
+            if (text != null && latestText.getAndSet(text) == null) {
+                SwingUtilities.invokeLater(() -> {
+                    String latest = latestText.getAndSet(null);
+                    if (seq == aiRequestSeq) {
+                        updateStreamingMessage(latest);
+                    }
+                });
             }
-
-            @Override
-            protected void done() {
-                try {
-                    AIConfigParser.ParseResult result = get();
-                    handleAIResponse(result);
-                } catch (Exception e) {
-                    appendToChatHistory("AI", "请求失败: " + e.getMessage());
-                }
-                aiInputField.setEnabled(true);
-                aiSendBtn.setEnabled(true);
-                aiProcessing = false;
-                aiInputField.requestFocus();
+            if (changesReady) {
+                List<AIConfigParser.ConfigChange> changes = parser.getChanges();
+                SwingUtilities.invokeLater(() -> {
+                    if (seq == aiRequestSeq) {
+                        showPendingChanges(changes);
+                    }
+                });
             }
-        };
-        worker.execute();
+        });
+        request.whenComplete((response, error) -> SwingUtilities.invokeLater(() -> {
+            // 已被新消息取代或已停止：聊天记录在取消时已处理
+            if (seq != aiRequestSeq) {
+                return;
+            }
+            aiRequests++;
+            aiTotalMs += (System.nanoTime() - sentAt) / 1e6;
+            updateAIStats();
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                endStreamingMessage("请求失败: " + cause.getMessage());
+                return;
+            }
+            AIConfigParser.ParseResult result = parser.finish();
+            if (!result.success) {
+                // 无法解析的回复不留在缓存里
+                QwenClient.invalidateCached(message, systemPrompt);
+            }
+            handleAIResponse(result);
+        }));
+        return request;
+    }
+
+    // 管线状态变化（EDT）：显示排队/在途状态，有请求时才能停止
+    private void updateAIQueueState() {
+        aiQueueLabel.setText(aiPipeline.describe());
+        aiStopBtn.setEnabled(aiPipeline.isBusy());
     }
 
     // 处理 AI 响应
     private void handleAIResponse(AIConfigParser.ParseResult result) {
         // 显示 AI 回复
-        appendToChatHistory("AI", result.message);
+        endStreamingMessage(result.message);
 
+        if (result.rejected != null && !result.rejected.isEmpty()) {
+            appendToChatHistory("系统", "已忽略无效的变更: " + String.join("; ", result.rejected));
+        }
         if (result.success && result.changes != null && !result.changes.isEmpty()) {
-            // 有配置变更，显示在预览区
-            pendingChanges = result.changes;
+            showPendingChanges(result.changes);
+        } else if (result.error != null) {
+            appendToChatHistory("系统", "解析错误: " + result.error);
+        }
+    }
+
+    // AI 面板底部的统计：本地解析命中率与耗时、AI 请求次数与平均耗时
+    private void updateAIStats() {
+        aiStatsLabel.setText(localParser.summary() + "  ·  AI 请求 " + aiRequests + " 次"
+                + (aiRequests > 0 ? String.format("，平均 %.1f s", aiTotalMs / aiRequests / 1000) : ""));
+    }
+
+    // 有配置变更，显示在预览区
+    private void showPendingChanges(List<AIConfigParser.ConfigChange> changes) {
+        if (changes == null || changes.isEmpty()) {
+            return;
+        }
+        if (changes != pendingChanges) {
+            pendingChanges = changes;
             StringBuilder sb = new StringBuilder();
-            for (AIConfigParser.ConfigChange change : result.changes) {
+            for (AIConfigParser.ConfigChange change : changes) {
                 // 显示中文名和英文字段名
                 sb.append(change.fieldLabel).append(" (").append(change.fieldName).append(")\n");
                 // 格式化数值，科学计数法用大写E
@@ -563,11 +742,45 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
             aiChangesPreview.setText(sb.toString());
             aiApplyBtn.setEnabled(true);
             aiClearBtn.setEnabled(true);
-        } else if (result.error != null) {
-            appendToChatHistory("系统", "解析错误: " + result.error);
         }
     }
 
+    // 流式回复：先写入 "AI: "，之后原地替换为已收到的内容
+    private void beginStreamingMessage() {
+        aiChatHistory.append("AI: ");
+        streamStart = aiChatHistory.getDocument().getLength();
+        streamEnd = streamStart;
+    }
+
+    private void updateStreamingMessage(String text) {
+        if (streamStart < 0 || text == null) {
+            return;
+        }
+        aiChatHistory.replaceRange(text, streamStart, streamEnd);
+        streamEnd = streamStart + text.length();
+    }
+
+    // 取消正在显示的回复：保留已收到的内容并注明，之后到达的内容不再显示
+    private void cancelStreamingMessage(String note) {
+        aiRequestSeq++;
+        String partial = "";
+        try {
+            partial = aiChatHistory.getText(streamStart, streamEnd - streamStart);
+        } catch (javax.swing.text.BadLocationException e) {
+            /* 按空内容处理 */ }
+        endStreamingMessage(partial.isEmpty() ? note : partial + " " + note);
+    }
+
+    private void endStreamingMessage(String text) {
+        if (streamStart < 0) {
+            appendToChatHistory("AI", text);
+            return;
+        }
+        aiChatHistory.replaceRange(text + "\n\n", streamStart, streamEnd);
+        streamStart = -1;
+        streamEnd = -1;
+    }
+
     // 追加聊天记录
     private void appendToChatHistory(String sender, String message) {
         String prefix = "";
@@ -650,6 +863,8 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
             doRunSimulation();
         else if (src == aiSendBtn)
             doAISend();
+        else if (src == aiStopBtn)
+            doAIStop();
         else if (src == aiApplyBtn)
             doAIApplyChanges();
         else if (src == aiClearBtn)
@@ -830,6 +1045,14 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         config.startTime = getDouble("startTime");
         config.endTime = getDouble("endTime");
         config.timeStep = getDouble("timeStep");
+        config.timeSteppingMode = getString("timeSteppingMode");
+        config.probeOutputInterval = getDouble("probeOutputInterval");
+        config.earlyStopEnabled = getBool("earlyStopEnabled");
+        config.earlyStopCycles = getInt("earlyStopCycles");
+        config.earlyStopTolerance = getDouble("earlyStopTolerance");
+        config.earlyStopCheckInterval = getDouble("earlyStopCheckInterval");
+        config.initialCondition = getString("initialCondition");
+        config.initialSolutionFile = getString("initialSolutionFile");
         config.outputDir = getString("outputDir");
         config.modelFileName = getString("modelFileName");
         config.exportVelocity = getBool("exportVelocity");
@@ -837,6 +1060,12 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         config.exportAnimation = getBool("exportAnimation");
         config.animationFps = getInt("animationFps");
         config.animationMaxFrames = getInt("animationMaxFrames");
+        config.animationMode = getString("animationMode");
+        config.animationGridNx = getInt("animationGridNx");
+        config.exportWorkers = getInt("exportWorkers");
+        config.exportProbes = getBool("exportProbes");
+        config.probePoints = getString("probePoints");
+        config.probeFormat = getString("probeFormat");
     }
 
     private void syncConfigToUI() {
@@ -867,6 +1096,14 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         setDouble("startTime", config.startTime);
         setDouble("endTime", config.endTime);
         setDouble("timeStep", config.timeStep);
+        setString("timeSteppingMode", config.timeSteppingMode);
+        setDouble("probeOutputInterval", config.probeOutputInterval);
+        setBool("earlyStopEnabled", config.earlyStopEnabled);
+        setInt("earlyStopCycles", config.earlyStopCycles);
+        setDouble("earlyStopTolerance", config.earlyStopTolerance);
+        setDouble("earlyStopCheckInterval", config.earlyStopCheckInterval);
+        setString("initialCondition", config.initialCondition);
+        setString("initialSolutionFile", config.initialSolutionFile);
         setString("outputDir", config.outputDir);
         setString("modelFileName", config.modelFileName);
         setBool("exportVelocity", config.exportVelocity);
@@ -874,6 +1111,12 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         setBool("exportAnimation", config.exportAnimation);
         setInt("animationFps", config.animationFps);
         setInt("animationMaxFrames", config.animationMaxFrames);
+        setString("animationMode", config.animationMode);
+        setInt("animationGridNx", config.animationGridNx);
+        setInt("exportWorkers", config.exportWorkers);
+        setBool("exportProbes", config.exportProbes);
+        setString("probePoints", config.probePoints);
+        setString("probeFormat", config.probeFormat);
     }
 
     private double getDouble(String key) {
@@ -986,7 +1229,9 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
                             + " m/s\n\n确定启动?",
                     "运行仿真", JOptionPane.YES_NO_OPTION);
 
-            if (r == JOptionPane.YES_OPTION) {
+            if (r == JOptionPane.YES_OPTION && comsolSessions != null) {
+                runOnServer(config.copy());
+            } else if (r == JOptionPane.YES_OPTION) {
                 File bat = new File("run_comsol.bat");
                 if (bat.exists()) {
                     Runtime.getRuntime().exec("cmd /c start \"COMSOL\" \"" + bat.getAbsolutePath() + "\"");
@@ -1000,6 +1245,36 @@ public class CylinderFlowGUI extends JFrame implements ActionListener {
         }
     }
 
+    /**
+     * 在常驻服务器会话上运行，不阻塞界面
+     */
+    private void runOnServer(SimulationConfig runConfig) {
+        runBtn.setEnabled(false);
+        runBtn.setText("运行中...");
+        SwingWorker<Object, Void> worker = new SwingWorker<Object, Void>() {
+            @Override
+            protected Object doInBackground() throws Exception {
+                return comsolSessions.getMethod("run", SimulationConfig.class).invoke(null, runConfig);
+            }
+
+            @Override
+            protected void done() {
+                runBtn.setEnabled(true);
+                runBtn.setText("运行仿真");
+                try {
+                    msg("仿真完成", String.valueOf(get()));
+                } catch (Exception e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof java.lang.reflect.InvocationTargetException) {
+                        cause = cause.getCause();
+                    }
+                    err("仿真失败: " + (cause != null ? cause.getMessage() : e.getMessage()));
+                }
+            }
+        };
+        worker.execute();
+    }
+
     private void msg(String t, String m) {
         JOptionPane.showMessageDialog(this, m, t, JOptionPane.INFORMATION_MESSAGE);
     }
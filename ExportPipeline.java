@@ -0,0 +1,273 @@
+/*
+ * ExportPipeline.java - 后处理导出任务图
+ * 每个导出（图片/动画）是一个带依赖的任务；依赖全部成功后才会调度，
+ * 互不依赖的任务在线程池中并行执行。单个任务失败只会跳过依赖它的任务，
+ * 不影响其他分支；结束后输出每个任务的耗时。
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ExportPipeline {
+
+    /**
+     * 任务动作
+     */
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    public enum Status {
+        PENDING, RUNNING, OK, FAILED, SKIPPED
+    }
+
+    /**
+     * 单个任务及其执行结果
+     */
+    public static class Task {
+        public final String name;
+        public final List<String> dependencies;
+        final Action action;
+
+        public volatile Status status = Status.PENDING;
+        public volatile long elapsedMs = 0;
+        public volatile Throwable error;
+
+        Task(String name, Action action, List<String> dependencies) {
+            this.name = name;
+            this.action = action;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private long wallMs = 0;
+
+    /**
+     * 添加任务；依赖必须是已添加的任务名
+     */
+    public ExportPipeline add(String name, Action action, String... dependsOn) {
+        if (tasks.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate export task: " + name);
+        }
+        for (String dep : dependsOn) {
+            if (!tasks.containsKey(dep)) {
+                throw new IllegalArgumentException("Export task " + name + " depends on unknown task " + dep);
+            }
+        }
+        tasks.put(name, new Task(name, action, Arrays.asList(dependsOn)));
+        return this;
+    }
+
+    public Task get(String name) {
+        return tasks.get(name);
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * 任务名（添加顺序）
+     */
+    public List<String> names() {
+        return new ArrayList<>(tasks.keySet());
+    }
+
+    /**
+     * 执行任务图
+     *
+     * @param workers 并行数；<= 1 时在调用线程上按添加顺序串行执行
+     *                (COMSOL 模型对象只能在单线程中使用时必须如此)
+     */
+    public List<Task> run(int workers) throws InterruptedException {
+        long t0 = System.nanoTime();
+        if (workers <= 1) {
+            for (Task task : tasks.values()) {
+                if (dependenciesFailed(task)) {
+                    skip(task);
+                } else {
+                    execute(task);
+                }
+            }
+        } else {
+            runParallel(workers);
+        }
+        wallMs = (System.nanoTime() - t0) / 1_000_000L;
+        return new ArrayList<>(tasks.values());
+    }
+
+    /**
+     * 每轮把依赖已完成的任务提交到线程池，再等待任意一个任务结束
+     */
+    private void runParallel(int workers) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, tasks.size())));
+        CompletionService<Task> done = new ExecutorCompletionService<>(pool);
+        int running = 0;
+        int remaining = tasks.size();
+        try {
+            while (remaining > 0) {
+                for (Task task : tasks.values()) {
+                    if (task.status != Status.PENDING) {
+                        continue;
+                    }
+                    if (dependenciesFailed(task)) {
+                        skip(task);
+                        remaining--;
+                    } else if (dependenciesDone(task)) {
+                        task.status = Status.RUNNING;
+                        done.submit(new TaskRunner(this, task));
+                        running++;
+                    }
+                }
+                if (remaining == 0) {
+                    break;
+                }
+                if (running == 0) {
+                    // add() 只接受已存在的依赖，正常情况下不会走到这里
+                    throw new IllegalStateException("Export pipeline stalled with " + remaining + " pending tasks");
+                }
+                try {
+                    done.take().get();
+                } catch (ExecutionException e) {
+                    // execute() 已捕获任务异常，这里只可能是框架错误
+                    throw new IllegalStateException(e.getCause());
+                }
+                running--;
+                remaining--;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static class TaskRunner implements java.util.concurrent.Callable<Task> {
+        private final ExportPipeline pipeline;
+        private final Task task;
+
+        TaskRunner(ExportPipeline pipeline, Task task) {
+            this.pipeline = pipeline;
+            this.task = task;
+        }
+
+        @Override
+        public Task call() {
+            pipeline.execute(task);
+            return task;
+        }
+    }
+
+    private void execute(Task task) {
+        task.status = Status.RUNNING;
+        long t0 = System.nanoTime();
+        try {
+            task.action.run();
+            task.status = Status.OK;
+        } catch (Throwable e) {
+            task.error = e;
+            task.status = Status.FAILED;
+            System.out.println("ERROR: Export task " + task.name + " failed");
+            System.out.println("Exception message: " + e.getMessage());
+            e.printStackTrace(System.out);
+        }
+        task.elapsedMs = (System.nanoTime() - t0) / 1_000_000L;
+    }
+
+    private void skip(Task task) {
+        task.status = Status.SKIPPED;
+        System.out.println("Skipping export task " + task.name + " (dependency failed)");
+    }
+
+    private boolean dependenciesDone(Task task) {
+        for (String dep : task.dependencies) {
+            if (tasks.get(dep).status != Status.OK) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean dependenciesFailed(Task task) {
+        for (String dep : task.dependencies) {
+            Status s = tasks.get(dep).status;
+            if (s == Status.FAILED || s == Status.SKIPPED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否全部成功
+     */
+    public boolean allSucceeded() {
+        for (Task task : tasks.values()) {
+            if (task.status != Status.OK) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 每个任务的状态与耗时，以及总墙钟时间 / 累计任务时间
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        long sum = 0;
+        int ok = 0;
+        for (Task task : tasks.values()) {
+            sum += task.elapsedMs;
+            if (task.status == Status.OK) {
+                ok++;
+            }
+            sb.append(String.format("  %-12s %-8s %8.2f s", task.name, task.status, task.elapsedMs / 1000.0));
+            if (task.error != null) {
+                sb.append("  ").append(task.error.getClass().getSimpleName()).append(": ")
+                        .append(task.error.getMessage());
+            }
+            sb.append('\n');
+        }
+        return String.format("Export pipeline: %d/%d OK, wall %.2f s, task total %.2f s%n", ok, tasks.size(),
+                wallMs / 1000.0, sum / 1000.0) + sb;
+    }
+
+    // ============================================
+    // 测试方法（不需要 COMSOL）
+    // ============================================
+    public static void main(String[] args) throws Exception {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+
+        ExportPipeline pipeline = new ExportPipeline();
+        pipeline.add("save", sleep(200, false));
+        pipeline.add("img1", sleep(300, false), "save");
+        pipeline.add("img2", sleep(300, true), "save");
+        pipeline.add("anim0", sleep(800, false), "save");
+        pipeline.add("anim1", sleep(800, false), "save");
+        pipeline.add("after_img2", sleep(100, false), "img2");
+
+        pipeline.run(workers);
+        System.out.print(pipeline.report());
+        System.out.println("after_img2 skipped: " + (pipeline.get("after_img2").status == Status.SKIPPED));
+    }
+
+    private static Action sleep(final long ms, final boolean fail) {
+        return new Action() {
+            @Override
+            public void run() throws Exception {
+                Thread.sleep(ms);
+                if (fail) {
+                    throw new IllegalStateException("simulated export failure");
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * FrameEncoder.java - 流式动画帧编码
+ * 每次只接收一帧标量场 (float[]，行主序，第 0 行为 y 最大处)，立即编码写盘，
+ * 内存占用与帧数无关：
+ *   Apng - 颜色映射后写入 APNG 动画 (逐帧 deflate)
+ *   Raw  - 原始 float32 帧 (.f32) + 索引表 (.idx.csv: 时间、偏移、最小/最大值)
+ */
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+public abstract class FrameEncoder implements Closeable {
+
+    public static final String MODE_GIF = "Gif";
+    public static final String MODE_APNG = "Apng";
+    public static final String MODE_RAW = "Raw";
+
+    protected final int width;
+    protected final int height;
+    protected int frameCount = 0;
+    private final List<File> files;
+
+    protected FrameEncoder(int width, int height, File... files) {
+        this.width = width;
+        this.height = height;
+        this.files = Collections.unmodifiableList(Arrays.asList(files));
+    }
+
+    /**
+     * 按模式创建编码器
+     *
+     * @param basePath 不含扩展名的输出路径，如 out/air/velocity_animation
+     */
+    public static FrameEncoder create(String mode, String basePath, int width, int height, int fps,
+            ColorMap colorMap, double min, double max) throws IOException {
+        if (MODE_APNG.equalsIgnoreCase(mode)) {
+            return new ApngEncoder(new File(basePath + ".png"), width, height, fps, colorMap, min, max);
+        }
+        if (MODE_RAW.equalsIgnoreCase(mode)) {
+            return new RawEncoder(new File(basePath + ".f32"), new File(basePath + ".idx.csv"), width, height);
+        }
+        throw new IllegalArgumentException("Unknown animation mode: " + mode);
+    }
+
+    /**
+     * 写入一帧
+     *
+     * @param field width*height 个值，NaN 表示非流体区域
+     */
+    public abstract void writeFrame(float[] field, double time) throws IOException;
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * 实际写出的文件（含扩展名）；第一个是动画数据，Raw 模式的第二个是索引表
+     */
+    public List<File> getFiles() {
+        return files;
+    }
+
+    /**
+     * 单帧静态 PNG（颜色映射后经 ImageIO 写出）
+     */
+    public static void writePng(File file, float[] field, int width, int height, ColorMap colorMap, double min,
+            double max) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        byte[] rgb = new byte[width * 3];
+        for (int y = 0; y < height; y++) {
+            colorMap.toRgb(field, y * width, width, min, max, rgb, 0);
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (rgb[x * 3] & 0xFF) << 16 | (rgb[x * 3 + 1] & 0xFF) << 8 | (rgb[x * 3 + 2] & 0xFF));
+            }
+        }
+        if (!ImageIO.write(image, "png", file)) {
+            throw new IOException("No PNG writer available");
+        }
+    }
+
+    // ============================================
+    // APNG
+    // ============================================
+
+    /**
+     * 动画 PNG：IHDR + acTL，之后每帧 fcTL + IDAT/fdAT，acTL 中的帧数在 close() 时回填。
+     * 不支持 APNG 的查看器会显示第一帧
+     */
+    public static class ApngEncoder extends FrameEncoder {
+        private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+        // 签名 (8) + IHDR 块 (4+4+13+4) 之后是 acTL 块，数据从长度与类型字段之后开始
+        private static final long ACTL_DATA_OFFSET = 8 + 25 + 8;
+
+        private final FileChannel channel;
+        private final int fps;
+        private final ColorMap colorMap;
+        private final double min;
+        private final double max;
+
+        private final byte[] raw; // 带过滤字节的扫描线
+        private final byte[] rgb; // 当前行 RGB
+        private final Deflater deflater = new Deflater(6);
+        private byte[] compressed = new byte[1 << 16];
+        private final CRC32 crc = new CRC32();
+        private int sequence = 0;
+
+        ApngEncoder(File file, int width, int height, int fps, ColorMap colorMap, double min, double max)
+                throws IOException {
+            super(width, height, file);
+            this.fps = Math.max(1, fps);
+            this.colorMap = colorMap;
+            this.min = min;
+            this.max = max;
+            this.raw = new byte[height * (1 + width * 3)];
+            this.rgb = new byte[width * 3];
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+
+            channel.write(ByteBuffer.wrap(SIGNATURE));
+            ByteBuffer ihdr = ByteBuffer.allocate(13);
+            ihdr.putInt(width).putInt(height);
+            ihdr.put((byte) 8); // bit depth
+            ihdr.put((byte) 2); // colour type: RGB
+            ihdr.put((byte) 0).put((byte) 0).put((byte) 0);
+            writeChunk("IHDR", ihdr.array(), 0, 13);
+            writeChunk("acTL", actl(0), 0, 8);
+        }
+
+        private static byte[] actl(int frames) {
+            return ByteBuffer.allocate(8).putInt(frames).putInt(0).array(); // num_plays 0 = 无限循环
+        }
+
+        @Override
+        public void writeFrame(float[] field, double time) throws IOException {
+            // 扫描线使用 Sub 过滤：同色区域变为 0，压缩率明显提高
+            int stride = 1 + width * 3;
+            for (int y = 0; y < height; y++) {
+                colorMap.toRgb(field, y * width, width, min, max, rgb, 0);
+                int row = y * stride;
+                raw[row] = 1;
+                for (int i = 0; i < width * 3; i++) {
+                    int left = i >= 3 ? rgb[i - 3] : 0;
+                    raw[row + 1 + i] = (byte) (rgb[i] - left);
+                }
+            }
+
+            ByteBuffer fctl = ByteBuffer.allocate(26);
+            fctl.putInt(sequence++);
+            fctl.putInt(width).putInt(height);
+            fctl.putInt(0).putInt(0); // x/y offset
+            fctl.putShort((short) 1).putShort((short) fps); // delay = 1/fps 秒
+            fctl.put((byte) 0).put((byte) 0); // dispose none, blend source
+            writeChunk("fcTL", fctl.array(), 0, 26);
+
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            // fdAT 数据前 4 字节为序号
+            int len = 4;
+            while (!deflater.finished()) {
+                if (len == compressed.length) {
+                    compressed = java.util.Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                len += deflater.deflate(compressed, len, compressed.length - len);
+            }
+            if (frameCount == 0) {
+                writeChunk("IDAT", compressed, 4, len - 4);
+            } else {
+                ByteBuffer.wrap(compressed, 0, 4).putInt(sequence++);
+                writeChunk("fdAT", compressed, 0, len);
+            }
+            frameCount++;
+        }
+
+        private void writeChunk(String type, byte[] data, int off, int len) throws IOException {
+            byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+            crc.reset();
+            crc.update(typeBytes);
+            crc.update(data, off, len);
+            ByteBuffer head = ByteBuffer.allocate(8);
+            head.putInt(len).put(typeBytes).flip();
+            channel.write(head);
+            channel.write(ByteBuffer.wrap(data, off, len));
+            ByteBuffer tail = ByteBuffer.allocate(4);
+            tail.putInt((int) crc.getValue()).flip();
+            channel.write(tail);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writeChunk("IEND", new byte[0], 0, 0);
+                // 回填 acTL 帧数及其 CRC
+                byte[] data = actl(frameCount);
+                crc.reset();
+                crc.update("acTL".getBytes(StandardCharsets.US_ASCII));
+                crc.update(data);
+                ByteBuffer patch = ByteBuffer.allocate(12);
+                patch.put(data).putInt((int) crc.getValue()).flip();
+                channel.write(patch, ACTL_DATA_OFFSET);
+            } finally {
+                deflater.end();
+                channel.close();
+            }
+        }
+    }
+
+    // ============================================
+    // Raw
+    // ============================================
+
+    /**
+     * 原始帧：.f32 为连续的 little-endian float32 帧，.idx.csv 每帧一行
+     */
+    public static class RawEncoder extends FrameEncoder {
+        private final FileChannel channel;
+        private final Writer index;
+        private final ByteBuffer buffer;
+        private long offset = 0;
+
+        RawEncoder(File dataFile, File indexFile, int width, int height) throws IOException {
+            super(width, height, dataFile, indexFile);
+            this.channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.index = Files.newBufferedWriter(indexFile.toPath(), StandardCharsets.UTF_8);
+            this.buffer = ByteBuffer.allocate(width * height * 4).order(ByteOrder.LITTLE_ENDIAN);
+            index.write("# data=" + dataFile.getName() + " width=" + width + " height=" + height
+                    + " dtype=float32le order=row-major,top-down nan=solid\n");
+            index.write("frame,time,offset,min,max\n");
+        }
+
+        @Override
+        public void writeFrame(float[] field, double time) throws IOException {
+            float lo = Float.POSITIVE_INFINITY;
+            float hi = Float.NEGATIVE_INFINITY;
+            buffer.clear();
+            for (int i = 0; i < width * height; i++) {
+                float v = field[i];
+                buffer.putFloat(v);
+                if (v < lo) {
+                    lo = v;
+                }
+                if (v > hi) {
+                    hi = v;
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            index.write(frameCount + "," + time + "," + offset + "," + lo + "," + hi + "\n");
+            offset += width * height * 4L;
+            frameCount++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                index.close();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // ============================================
+    // 测试方法（不需要 COMSOL）
+    // ============================================
+    public static void main(String[] args) throws Exception {
+        int w = 320;
+        int h = 80;
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        String base = args.length > 1 ? args[1] : "frame_encoder_test";
+
+        float[] field = new float[w * h];
+        try (FrameEncoder apng = create(MODE_APNG, base, w, h, 30, ColorMap.forName("Cyclic"), -1, 1);
+                FrameEncoder rawEnc = create(MODE_RAW, base, w, h, 30, null, 0, 0)) {
+            for (int f = 0; f < frames; f++) {
+                double t = f * 0.1;
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        double dx = x - w * 0.2;
+                        double dy = y - h * 0.5;
+                        field[y * w + x] = dx * dx + dy * dy < 100 ? Float.NaN
+                                : (float) Math.sin(x * 0.05 - t * 2) * (float) Math.cos(y * 0.08);
+                    }
+                }
+                apng.writeFrame(field, t);
+                rawEnc.writeFrame(field, t);
+            }
+            System.out.println("Frames written: " + apng.getFrameCount());
+        }
+        System.out.println(base + ".png: " + new File(base + ".png").length() + " bytes");
+        System.out.println(base + ".f32: " + new File(base + ".f32").length() + " bytes");
+    }
+}
@@ -0,0 +1,596 @@
+/*
+ * JsonReader.java - 单遍拉取式 JSON 读取器 (无外部依赖)
+ * 按需逐个读取 token，不构建中间树；支持嵌套对象/数组与完整转义。
+ * 对象/数组末尾多余的逗号被忽略；根值之后只允许空白；字面量按 JSON 语法校验；出错时报告行号与列号
+ */
+
+import java.io.IOException;
+
+public class JsonReader {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private final CharSequence in;
+    private final int end;
+    private int pos;
+
+    // 容器栈：每层一个 int，低位为容器类型，另两位记录是否已读过元素、是否正等待字段值
+    private static final int IN_OBJECT = 1;
+    private static final int IN_ARRAY = 2;
+    private static final int TYPE_MASK = 3;
+    private static final int HAS_ELEMENT = 4;
+    private static final int EXPECT_VALUE = 8;
+    private int[] stack = new int[8];
+    private int depth = 0;
+    // 根值已读完：之后只能是输入结尾
+    private boolean rootRead = false;
+    // skipValue 跳过嵌套对象/数组时的括号栈 (true = 对象)，第一次跳过容器时才分配
+    private boolean[] skipStack;
+
+    private Token peeked = null;
+    // 含转义的字符串的解码缓冲区，第一次遇到转义时才分配
+    private StringBuilder buf;
+
+    public JsonReader(CharSequence in) {
+        this(in, 0, in.length());
+    }
+
+    public JsonReader(CharSequence in, int start, int end) {
+        this.in = in;
+        this.pos = start;
+        this.end = end;
+    }
+
+    /**
+     * 当前读取位置（字符下标）
+     */
+    public int position() {
+        return pos;
+    }
+
+    /**
+     * 查看下一个 token 类型，不消费
+     */
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        skipWhitespace();
+
+        if (depth > 0) {
+            int state = stack[depth - 1];
+            int top = state & TYPE_MASK;
+            if ((state & EXPECT_VALUE) != 0) {
+                if (pos >= end || in.charAt(pos) != ':') {
+                    throw error("Expected ':'");
+                }
+                pos++;
+                skipWhitespace();
+                return peeked = valueToken();
+            }
+            if (pos >= end) {
+                throw error("Unterminated " + (top == IN_OBJECT ? "object" : "array"));
+            }
+            char c = in.charAt(pos);
+            if (c == (top == IN_OBJECT ? '}' : ']')) {
+                return peeked = top == IN_OBJECT ? Token.END_OBJECT : Token.END_ARRAY;
+            }
+            if ((state & HAS_ELEMENT) != 0) {
+                if (c != ',') {
+                    throw error("Expected ',' or closing bracket");
+                }
+                pos++;
+                skipWhitespace();
+                // 容忍末尾多余的逗号（手工编辑的 config.json 常见）
+                if (pos < end && in.charAt(pos) == (top == IN_OBJECT ? '}' : ']')) {
+                    return peeked = top == IN_OBJECT ? Token.END_OBJECT : Token.END_ARRAY;
+                }
+            }
+            if (top == IN_OBJECT) {
+                if (pos >= end || in.charAt(pos) != '"') {
+                    throw error("Expected field name");
+                }
+                return peeked = Token.NAME;
+            }
+            return peeked = valueToken();
+        }
+
+        if (pos >= end) {
+            return peeked = Token.END_DOCUMENT;
+        }
+        if (rootRead) {
+            throw error("Expected end of input");
+        }
+        return peeked = valueToken();
+    }
+
+    private Token valueToken() throws IOException {
+        if (pos >= end) {
+            throw error("Unexpected end of input");
+        }
+        char c = in.charAt(pos);
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return Token.NUMBER;
+                }
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        pos++;
+        push(IN_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        pos++;
+        pop();
+    }
+
+    /**
+     * 要求根值之后只剩空白：整个输入是一个 JSON 文档时，读完根值后调用
+     */
+    public void endDocument() throws IOException {
+        expect(Token.END_DOCUMENT);
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        pos++;
+        push(IN_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        pos++;
+        pop();
+    }
+
+    /**
+     * 当前容器中是否还有元素
+     */
+    public boolean hasNext() throws IOException {
+        Token t = peek();
+        return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        String name = readString();
+        stack[depth - 1] |= HAS_ELEMENT | EXPECT_VALUE;
+        peeked = null;
+        return name;
+    }
+
+    public String nextString() throws IOException {
+        Token t = peek();
+        String value;
+        if (t == Token.STRING) {
+            value = readString();
+        } else if (t == Token.NUMBER || t == Token.BOOLEAN) {
+            value = readLiteral();
+        } else {
+            throw error("Expected string but was " + t);
+        }
+        valueConsumed();
+        return value;
+    }
+
+    public double nextDouble() throws IOException {
+        Token t = peek();
+        String literal;
+        if (t == Token.NUMBER) {
+            literal = readLiteral();
+        } else if (t == Token.STRING) {
+            literal = readString().trim(); // 容忍 "0.05" 这类带引号的数字
+        } else {
+            throw error("Expected number but was " + t);
+        }
+        valueConsumed(); // 格式错误时也已消费，调用方可继续读取后续字段
+        try {
+            return Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number: " + literal);
+        }
+    }
+
+    public int nextInt() throws IOException {
+        double d = nextDouble();
+        int i = (int) d;
+        if (i != d) {
+            throw error("Expected integer but was " + d);
+        }
+        return i;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        Token t = peek();
+        String literal;
+        if (t == Token.BOOLEAN) {
+            literal = readLiteral();
+        } else if (t == Token.STRING) {
+            literal = readString().trim();
+        } else {
+            throw error("Expected boolean but was " + t);
+        }
+        valueConsumed();
+        if ("true".equals(literal)) {
+            return true;
+        }
+        if ("false".equals(literal)) {
+            return false;
+        }
+        throw error("Invalid boolean: " + literal);
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        String literal = readLiteral();
+        if (!"null".equals(literal)) {
+            throw error("Invalid literal: " + literal);
+        }
+        valueConsumed();
+    }
+
+    /**
+     * 跳过下一个值（含整个嵌套对象/数组）。对象/数组逐字符扫描，不经过逐 token 的状态机，
+     * 也不为字符串和字面量分配对象；括号配对用局部的栈核对，不递归：
+     * 深度嵌套的输入（如对抗性的 AI 回复）不会导致 StackOverflowError
+     */
+    public void skipValue() throws IOException {
+        Token t = peek();
+        if (t == Token.NAME) {
+            nextName();
+            t = peek();
+        }
+        switch (t) {
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                skipContainer();
+                break;
+            case STRING:
+                skipString();
+                break;
+            case NUMBER:
+            case BOOLEAN:
+            case NULL:
+                skipLiteral();
+                break;
+            default:
+                throw error("Cannot skip " + t);
+        }
+        valueConsumed();
+    }
+
+    // ============================================
+    // 辅助方法
+    // ============================================
+
+    private void expect(Token expected) throws IOException {
+        Token t = peek();
+        if (t != expected) {
+            throw error("Expected " + expected + " but was " + t);
+        }
+    }
+
+    private void push(int type) {
+        if (depth > 0) {
+            stack[depth - 1] = (stack[depth - 1] & TYPE_MASK) | HAS_ELEMENT;
+        }
+        if (depth == stack.length) {
+            stack = java.util.Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = type;
+        peeked = null;
+    }
+
+    private void pop() {
+        depth--;
+        rootRead = depth == 0;
+        peeked = null;
+    }
+
+    private void valueConsumed() {
+        if (depth > 0) {
+            stack[depth - 1] = (stack[depth - 1] & TYPE_MASK) | HAS_ELEMENT;
+        } else {
+            rootRead = true;
+        }
+        peeked = null;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * 跳过 pos 处开始的对象/数组（含嵌套），pos 停在对应的闭括号之后
+     */
+    private void skipContainer() throws IOException {
+        if (skipStack == null) {
+            skipStack = new boolean[16];
+        }
+        int open = 0;
+        while (pos < end) {
+            char c = in.charAt(pos);
+            switch (c) {
+                case '{':
+                case '[':
+                    if (open == skipStack.length) {
+                        skipStack = java.util.Arrays.copyOf(skipStack, open * 2);
+                    }
+                    skipStack[open++] = c == '{';
+                    pos++;
+                    break;
+                case '}':
+                case ']':
+                    if (skipStack[open - 1] != (c == '}')) {
+                        throw error("Mismatched '" + c + "'");
+                    }
+                    pos++;
+                    if (--open == 0) {
+                        return;
+                    }
+                    break;
+                case '"':
+                    skipString();
+                    break;
+                case ',':
+                case ':':
+                case ' ':
+                case '\n':
+                case '\r':
+                case '\t':
+                    pos++;
+                    break;
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9') || c == 't' || c == 'f' || c == 'n') {
+                        skipLiteral();
+                    } else {
+                        throw error("Unexpected character '" + c + "'");
+                    }
+            }
+        }
+        throw error("Unterminated " + (skipStack[open - 1] ? "object" : "array"));
+    }
+
+    private void skipLiteral() throws IOException {
+        pos = literalEnd();
+    }
+
+    private String readLiteral() throws IOException {
+        int start = pos;
+        pos = literalEnd();
+        return in.subSequence(start, pos).toString();
+    }
+
+    /**
+     * 校验 pos 处的字面量（true / false / null 或 JSON 数字）并返回其结束位置，pos 不变；
+     * 其后必须是分隔符或输入结尾：nonsense、truex、1.2.3、01、1e 都是语法错误
+     */
+    private int literalEnd() throws IOException {
+        int i = pos;
+        char c = in.charAt(i);
+        if (c == 't' || c == 'f' || c == 'n') {
+            String word = c == 't' ? "true" : c == 'f' ? "false" : "null";
+            for (int k = 0; k < word.length(); k++, i++) {
+                if (i >= end || in.charAt(i) != word.charAt(k)) {
+                    throw invalidLiteral();
+                }
+            }
+        } else {
+            if (c == '-') {
+                i++;
+            }
+            if (i < end && in.charAt(i) == '0') {
+                i++;
+            } else {
+                int digits = skipDigits(i);
+                if (digits == i) {
+                    throw invalidLiteral();
+                }
+                i = digits;
+            }
+            if (i < end && in.charAt(i) == '.') {
+                int digits = skipDigits(i + 1);
+                if (digits == i + 1) {
+                    throw invalidLiteral();
+                }
+                i = digits;
+            }
+            if (i < end && (in.charAt(i) == 'e' || in.charAt(i) == 'E')) {
+                i++;
+                if (i < end && (in.charAt(i) == '+' || in.charAt(i) == '-')) {
+                    i++;
+                }
+                int digits = skipDigits(i);
+                if (digits == i) {
+                    throw invalidLiteral();
+                }
+                i = digits;
+            }
+        }
+        if (i < end) {
+            c = in.charAt(i);
+            if (c != ',' && c != '}' && c != ']' && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                throw invalidLiteral();
+            }
+        }
+        return i;
+    }
+
+    private int skipDigits(int i) {
+        while (i < end && in.charAt(i) >= '0' && in.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 错误信息中带上到下一个分隔符为止的整段文字
+     */
+    private IOException invalidLiteral() {
+        int i = pos;
+        while (i < end && i - pos < 40) {
+            char c = in.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                break;
+            }
+            i++;
+        }
+        return error("Invalid literal: " + in.subSequence(pos, i));
+    }
+
+    private void skipString() throws IOException {
+        pos++; // 开头的引号
+        while (pos < end) {
+            char c = in.charAt(pos++);
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                pos++;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private String readString() throws IOException {
+        pos++; // 开头的引号
+        int start = pos;
+        // 快速路径：无转义时直接截取
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c == '"') {
+                String s = in.subSequence(start, pos).toString();
+                pos++;
+                return s;
+            }
+            if (c == '\\') {
+                break;
+            }
+            pos++;
+        }
+
+        if (buf == null) {
+            buf = new StringBuilder(64);
+        }
+        buf.setLength(0);
+        buf.append(in, start, pos);
+        while (pos < end) {
+            // 转义之间的普通字符整段追加
+            int run = pos;
+            while (pos < end && in.charAt(pos) != '"' && in.charAt(pos) != '\\') {
+                pos++;
+            }
+            buf.append(in, run, pos);
+            if (pos >= end) {
+                break;
+            }
+            char c = in.charAt(pos++);
+            if (c == '"') {
+                return buf.toString();
+            }
+            if (pos >= end) {
+                break;
+            }
+            char e = in.charAt(pos++);
+            switch (e) {
+                case 'n':
+                    buf.append('\n');
+                    break;
+                case 'r':
+                    buf.append('\r');
+                    break;
+                case 't':
+                    buf.append('\t');
+                    break;
+                case 'b':
+                    buf.append('\b');
+                    break;
+                case 'f':
+                    buf.append('\f');
+                    break;
+                case 'u':
+                    if (pos + 4 > end) {
+                        throw error("Invalid unicode escape");
+                    }
+                    try {
+                        buf.append((char) Integer.parseInt(in.subSequence(pos, pos + 4).toString(), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("Invalid unicode escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    buf.append(e); // \" \\ \/
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private IOException error(String message) {
+        return new SyntaxError(in, pos, message);
+    }
+
+    /**
+     * 语法错误。行号与列号在第一次取 getMessage() 时才从头数出：
+     * 调用方捕获后继续读取（容忍的错误）时不必为此扫描整个输入
+     */
+    private static class SyntaxError extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private transient CharSequence in;
+        private final int pos;
+        private String message;
+
+        SyntaxError(CharSequence in, int pos, String message) {
+            super(message);
+            this.in = in;
+            this.pos = pos;
+            this.message = message;
+        }
+
+        @Override
+        public synchronized String getMessage() {
+            if (in != null) {
+                int line = 1;
+                int column = 1;
+                for (int i = 0; i < pos && i < in.length(); i++) {
+                    if (in.charAt(i) == '\n') {
+                        line++;
+                        column = 1;
+                    } else {
+                        column++;
+                    }
+                }
+                message = "JSON error at line " + line + ", column " + column + " (position " + pos + "): "
+                        + message;
+                in = null;
+            }
+            return message;
+        }
+    }
+}
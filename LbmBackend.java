@@ -0,0 +1,704 @@
+/*
+ * LbmBackend.java - 纯 Java 参考求解器 (D2Q9 格子 Boltzmann, BGK 碰撞)
+ * 直接读取 SimulationConfig，不依赖 COMSOL，可在普通 Linux 机器 / CI 上运行，
+ * 用于测试扫描、导出和后处理流程，以及与 COMSOL 结果做粗略对比。
+ *
+ * 计算核心见 LbmKernel (结构数组、融合迁移-碰撞、ForkJoinPool 并行)。
+ * 单位换算：格子间距 dx = meshMaxSize，格子速度 u_lb = LATTICE_VELOCITY，
+ * dt = u_lb * dx / U，nu_lb = nu * dt / dx^2，tau = 3 * nu_lb + 0.5
+ * 边界：入口平衡态 (速度或压力)，出口平衡态压力或零梯度，上下边界 Wall = 反弹 / Symmetry、Slip = 镜面反射，
+ * 圆柱为半步反弹 (Slip 也按无滑移处理)，受力用动量交换法计算。
+ * 运行: java LbmBackend [config.json] [endTime]
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public class LbmBackend implements SimulationBackend<LbmBackend.Lattice> {
+
+    public static final String NAME = "LBM";
+
+    /**
+     * 入口速度对应的格子速度（Ma ≈ 0.17）
+     */
+    public static final double LATTICE_VELOCITY = 0.1;
+
+    /**
+     * tau 低于此值时 BGK 通常不稳定
+     */
+    private static final double MIN_STABLE_TAU = 0.51;
+
+    private static final int DIVERGENCE_CHECK_STEPS = 500;
+
+    /**
+     * 求解结束时的速度/压力场，供后续工况热启动 (WarmStart)
+     */
+    public static final String STATE_FILE = "lbm_state.bin";
+
+    /**
+     * 格子模型：网格、分布函数、单位换算与运行状态
+     */
+    public static class Lattice {
+        // 几何 (m)
+        double width;
+        double height;
+        double radius;
+        double cx;
+        double cy;
+
+        // 网格
+        int nx;
+        int ny;
+        double dx;
+        boolean[] solid;
+        int solidCells;
+
+        // 物性与边界
+        double rhoPhys;
+        double nuPhys;
+        double inletVelocity;
+        String inletType;
+        String outletType;
+        boolean topWall;
+        boolean bottomWall;
+        double inletRho = 1.0;
+        double outletRho = 1.0;
+        double outletVelocity;
+        double referencePressure;
+
+        // 单位换算
+        double dt;
+        double tau;
+        double omega;
+
+        // 研究
+        double startTime;
+        long steps;
+        double[] outputTimes;
+        int nextOutput;
+
+        // 状态
+        LbmKernel kernel;
+        long step;
+
+        // 导出
+        FrameEncoder[] animations;
+        String[] animationKinds;
+        int frameStride = 1;
+        long outputCount;
+        ProbeRecorder probes;
+        double[][] probePoints;
+        double[] probeValues;
+
+        int index(int i, int j) {
+            return j * nx + i;
+        }
+
+        /**
+         * 当前物理时间 (s)
+         */
+        public double time() {
+            return startTime + step * dt;
+        }
+
+        double velocityScale() {
+            return dx / dt;
+        }
+
+        double pressureScale() {
+            return rhoPhys * velocityScale() * velocityScale();
+        }
+
+        /**
+         * 格子力 -> 力系数 (以直径和入口速度为参考)
+         */
+        double forceScale() {
+            double diameterLb = 2 * radius / dx;
+            return 1.0 / (0.5 * LATTICE_VELOCITY * LATTICE_VELOCITY * diameterLb);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Lattice createModel(SimulationConfig config) {
+        return new Lattice();
+    }
+
+    @Override
+    public void buildGeometry(Lattice lat, SimulationConfig config) {
+        lat.width = config.domainWidth;
+        lat.height = config.domainHeight;
+        lat.radius = config.cylinderRadius;
+        lat.cx = config.cylinderX;
+        lat.cy = config.cylinderY;
+    }
+
+    /**
+     * 均匀网格：间距取 meshMaxSize，圆柱按单元中心是否在圆内离散
+     */
+    @Override
+    public void buildMesh(Lattice lat, SimulationConfig config) {
+        if (config.meshMaxSize <= 0) {
+            throw new IllegalArgumentException("meshMaxSize must be > 0 for the LBM backend");
+        }
+        lat.dx = config.meshMaxSize;
+        lat.nx = Math.max(8, (int) Math.round(lat.width / lat.dx));
+        lat.ny = Math.max(8, (int) Math.round(lat.height / lat.dx));
+        lat.solid = new boolean[lat.nx * lat.ny];
+        lat.solidCells = 0;
+        double r2 = lat.radius * lat.radius;
+        for (int j = 0; j < lat.ny; j++) {
+            for (int i = 0; i < lat.nx; i++) {
+                double x = (i + 0.5) * lat.dx - lat.cx;
+                double y = (j + 0.5) * lat.dx - lat.cy;
+                if (x * x + y * y <= r2) {
+                    lat.solid[lat.index(i, j)] = true;
+                    lat.solidCells++;
+                }
+            }
+        }
+        double diameterCells = 2 * lat.radius / lat.dx;
+        System.out.println("LBM grid: " + lat.nx + " x " + lat.ny + ", dx=" + lat.dx + " m, cylinder "
+                + String.format("%.1f", diameterCells) + " cells across");
+        if (diameterCells < 8) {
+            System.out.println("Warning: cylinder resolved by fewer than 8 cells, reduce meshMaxSize");
+        }
+    }
+
+    @Override
+    public void setupMaterial(Lattice lat, SimulationConfig config) {
+        lat.rhoPhys = config.density;
+        lat.nuPhys = config.dynamicViscosity / config.density;
+    }
+
+    @Override
+    public void setupPhysics(Lattice lat, SimulationConfig config) {
+        if (config.inletVelocity <= 0) {
+            throw new IllegalArgumentException("LBM backend needs inletVelocity > 0 as velocity scale");
+        }
+        lat.inletVelocity = config.inletVelocity;
+        lat.inletType = config.inletType;
+        lat.outletType = config.outletType;
+        lat.topWall = "Wall".equals(config.topBoundaryType);
+        lat.bottomWall = "Wall".equals(config.bottomBoundaryType);
+
+        lat.dt = LATTICE_VELOCITY * lat.dx / lat.inletVelocity;
+        double nuLb = lat.nuPhys * lat.dt / (lat.dx * lat.dx);
+        lat.tau = 3 * nuLb + 0.5;
+        lat.omega = 1.0 / lat.tau;
+
+        lat.referencePressure = config.outletPressure;
+        lat.outletVelocity = config.outletVelocity / lat.velocityScale();
+        if ("Pressure".equals(lat.inletType)) {
+            lat.inletRho = 1.0 + 3.0 * (config.inletPressure - config.outletPressure) / lat.pressureScale();
+        }
+
+        System.out.println("LBM units: dt=" + String.format("%.4g", lat.dt) + " s, tau="
+                + String.format("%.4f", lat.tau) + ", Re=" + String.format("%.1f", config.getReynoldsNumber()));
+        if (lat.tau < MIN_STABLE_TAU) {
+            System.out.println("Warning: tau=" + String.format("%.4f", lat.tau)
+                    + " is close to 0.5, BGK may become unstable; reduce meshMaxSize");
+        }
+    }
+
+    @Override
+    public void setupStudy(Lattice lat, SimulationConfig config) {
+        lat.startTime = config.startTime;
+        lat.steps = (long) Math.ceil((config.endTime - config.startTime) / lat.dt);
+        // 格子步长由稳定性决定，输出时刻与 COMSOL 相同 (Fixed / Adaptive 见 getOutputTimes)
+        lat.outputTimes = config.getOutputTimes();
+
+        LbmKernel kernel = new LbmKernel(lat.nx, lat.ny, lat.solid, lat.omega, config.lbmThreads);
+        kernel.topWall = lat.topWall;
+        kernel.bottomWall = lat.bottomWall;
+        kernel.pressureInlet = "Pressure".equals(lat.inletType);
+        kernel.inletRho = lat.inletRho;
+        kernel.inletVelocity = LATTICE_VELOCITY;
+        kernel.outletRho = lat.outletRho;
+        kernel.outletVelocity = lat.outletVelocity;
+        if ("Pressure".equals(lat.outletType)) {
+            kernel.outletMode = LbmKernel.OUTLET_PRESSURE;
+        } else if ("Velocity".equals(lat.outletType)) {
+            kernel.outletMode = LbmKernel.OUTLET_VELOCITY;
+        } else {
+            kernel.outletMode = LbmKernel.OUTLET_ZERO_GRADIENT;
+        }
+        lat.kernel = kernel;
+
+        int n = lat.nx * lat.ny;
+        double[] rho0 = new double[n];
+        double[] ux0 = new double[n];
+        double[] uy0 = new double[n];
+
+        WarmStart.Source source = WarmStart.resolve(config, STATE_FILE);
+        WarmStart.Field initial = null;
+        if (source != null) {
+            try {
+                initial = WarmStart.Field.read(source.file);
+            } catch (IOException e) {
+                System.out.println("Warning: Failed to read initial solution, starting from rest: " + e.getMessage());
+            }
+        }
+        if (initial != null) {
+            initializeFrom(lat, initial, WarmStart.velocityRatio(source, config),
+                    WarmStart.pressureRatio(source, config), rho0, ux0, uy0);
+            System.out.println("LBM initial condition: " + source + ", " + initial.nx + " x " + initial.ny
+                    + " grid interpolated to " + lat.nx + " x " + lat.ny);
+        } else {
+            initializeUniform(lat, rho0, ux0, uy0);
+        }
+        kernel.initialize(rho0, ux0, uy0);
+        System.out.println("LBM study: " + lat.steps + " steps, " + lat.outputTimes.length + " outputs, "
+                + kernel.getThreads() + " thread(s)");
+    }
+
+    /**
+     * 均匀来流，圆柱后方加一个小的横向扰动以尽快触发涡脱落
+     */
+    private static void initializeUniform(Lattice lat, double[] rho0, double[] ux0, double[] uy0) {
+        for (int j = 0; j < lat.ny; j++) {
+            for (int i = 0; i < lat.nx; i++) {
+                int c = lat.index(i, j);
+                if (lat.solid[c]) {
+                    continue;
+                }
+                double u = LATTICE_VELOCITY;
+                double v = 0;
+                double x = (i + 0.5) * lat.dx;
+                double y = (j + 0.5) * lat.dx;
+                if (x > lat.cx && x < lat.cx + 6 * lat.radius && Math.abs(y - lat.cy) < 2 * lat.radius) {
+                    v = 0.1 * LATTICE_VELOCITY;
+                }
+                rho0[c] = 1.0;
+                ux0[c] = u;
+                uy0[c] = v;
+            }
+        }
+    }
+
+    /**
+     * 把已有解插值到当前格子上（网格不同也可），速度与压力按 velocityRatio/pressureRatio 换算到当前来流；
+     * 源解中为固体的单元（圆柱离散不同）取静止
+     */
+    private static void initializeFrom(Lattice lat, WarmStart.Field field, double velocityRatio, double pressureRatio,
+            double[] rho0, double[] ux0, double[] uy0) {
+        double us = lat.velocityScale();
+        double ps = lat.pressureScale();
+        for (int j = 0; j < lat.ny; j++) {
+            for (int i = 0; i < lat.nx; i++) {
+                int c = lat.index(i, j);
+                if (lat.solid[c]) {
+                    continue;
+                }
+                double x = (i + 0.5) * lat.dx;
+                double y = (j + 0.5) * lat.dx;
+                double u = field.u(x, y);
+                double v = field.v(x, y);
+                double p = field.p(x, y);
+                if (Double.isNaN(u) || Double.isNaN(v) || Double.isNaN(p)) {
+                    rho0[c] = 1.0;
+                    continue;
+                }
+                ux0[c] = u * velocityRatio / us;
+                uy0[c] = v * velocityRatio / us;
+                rho0[c] = 1.0 + 3.0 * (p - lat.referencePressure) * pressureRatio / ps;
+            }
+        }
+    }
+
+    /**
+     * 保存当前速度/压力场 (物理单位)，网格原点为第一个单元中心
+     */
+    static void saveState(Lattice lat, File file) throws IOException {
+        WarmStart.Field field = new WarmStart.Field(lat.nx, lat.ny, 0.5 * lat.dx, 0.5 * lat.dx, lat.dx);
+        double us = lat.velocityScale();
+        double ps = lat.pressureScale();
+        for (int c = 0; c < lat.nx * lat.ny; c++) {
+            if (lat.solid[c]) {
+                field.u[c] = Double.NaN;
+                field.v[c] = Double.NaN;
+                field.p[c] = Double.NaN;
+                continue;
+            }
+            field.u[c] = lat.kernel.ux[c] * us;
+            field.v[c] = lat.kernel.uy[c] * us;
+            field.p[c] = lat.referencePressure + (lat.kernel.rho[c] - 1.0) / 3.0 * ps;
+        }
+        field.write(file);
+    }
+
+    /**
+     * 动画在求解过程中逐帧流式写出，这里打开编码器
+     */
+    @Override
+    public void setupResults(Lattice lat, SimulationConfig config) throws IOException {
+        if (config.exportProbes) {
+            lat.probePoints = ProbeRecorder.parsePoints(config.probePoints);
+            lat.probes = ProbeRecorder.create(config, outputFolder(config));
+            lat.probeValues = new double[lat.probes.getColumns().length - 1];
+        }
+        if (!config.exportAnimation) {
+            return;
+        }
+        String mode = config.animationMode;
+        if (FrameEncoder.MODE_GIF.equalsIgnoreCase(mode)) {
+            System.out.println("Note: LBM backend writes APNG instead of GIF animations");
+            mode = FrameEncoder.MODE_APNG;
+        }
+        long outputs = lat.outputTimes.length;
+        lat.frameStride = (int) Math.max(1, (outputs + config.animationMaxFrames - 1) / config.animationMaxFrames);
+
+        String dir = outputFolder(config);
+        lat.animationKinds = new String[] { "velocity", "vorticity", "pressure" };
+        lat.animations = new FrameEncoder[lat.animationKinds.length];
+        for (int k = 0; k < lat.animationKinds.length; k++) {
+            String kind = lat.animationKinds[k];
+            double[] range = colorRange(lat, config, kind);
+            lat.animations[k] = FrameEncoder.create(mode, dir + kind + "_animation", lat.nx, lat.ny,
+                    config.animationFps, colorMapFor(kind), range[0], range[1]);
+        }
+    }
+
+    @Override
+    public void solve(Lattice lat, SimulationConfig config, SimulationResult result) throws IOException {
+        System.out.println("Starting LBM simulation (" + config.startTime + "s to " + config.endTime + "s)...");
+        long t0 = System.nanoTime();
+        double forceScale = lat.forceScale();
+        long averageFrom = lat.steps / 2;
+        double cdSum = 0;
+        double clSum = 0;
+        double cl2Sum = 0;
+        double clMax = 0;
+        long samples = 0;
+        // 升力系数逐步送入检测器；stepsRun 为实际推进的步数
+        SheddingDetector shedding = SheddingDetector.forConfig(config);
+        boolean stoppedEarly = false;
+        long stepsRun = lat.steps;
+
+        float[] field = lat.animations != null ? new float[lat.nx * lat.ny] : null;
+        lat.nextOutput = 0;
+        writeOutputs(lat, field);
+        for (lat.step = 1; lat.step <= lat.steps; lat.step++) {
+            lat.kernel.step();
+
+            double cd = lat.kernel.fx * forceScale;
+            double cl = lat.kernel.fy * forceScale;
+            if (lat.step >= averageFrom) {
+                cdSum += cd;
+                clSum += cl;
+                cl2Sum += cl * cl;
+                clMax = Math.max(clMax, Math.abs(cl));
+                samples++;
+            }
+            if (lat.step % DIVERGENCE_CHECK_STEPS == 0) {
+                int probe = lat.index(lat.nx / 2, lat.ny / 2);
+                if (Double.isNaN(lat.kernel.get(0, probe))) {
+                    throw new IllegalStateException("LBM diverged at t=" + lat.time() + " s (tau=" + lat.tau
+                            + "); reduce meshMaxSize");
+                }
+            }
+            writeOutputs(lat, field);
+            if (shedding.add(lat.time(), cl, cd) && config.earlyStopEnabled && shedding.isPeriodic()) {
+                stoppedEarly = true;
+                stepsRun = lat.step;
+                break;
+            }
+        }
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        double mlups = (double) stepsRun * (lat.nx * lat.ny - lat.solidCells) / seconds / 1e6;
+        System.out.println(String.format("LBM simulation completed in %.1f s (%.1f MLUPS)", seconds, mlups));
+
+        String statePath = outputFolder(config) + STATE_FILE;
+        saveState(lat, new File(statePath));
+        result.putOutput("state", statePath);
+
+        result.putMetric("tau", lat.tau);
+        result.putMetric("nx", lat.nx);
+        result.putMetric("ny", lat.ny);
+        result.putMetric("steps", stepsRun);
+        result.putMetric("threads", lat.kernel.getThreads());
+        result.putMetric("mlups", mlups);
+        if (stoppedEarly) {
+            // 提前结束时后半程统计不完整，改用检测窗口内的整周期统计
+            System.out.println(String.format("Periodic shedding detected at t=%.2f s, stopped early (%.0f%% of %.1f s)",
+                    lat.time(), 100.0 * stepsRun / lat.steps, config.endTime));
+            result.putMetric("cd_mean", shedding.getAuxMean());
+            result.putMetric("cl_rms", shedding.getRms());
+            result.putMetric("cl_max", Math.abs(shedding.getMean()) + shedding.getAmplitude());
+            result.putMetric("stop_time", lat.time());
+        } else {
+            double clMean = samples > 0 ? clSum / samples : 0;
+            result.putMetric("cd_mean", samples > 0 ? cdSum / samples : Double.NaN);
+            result.putMetric("cl_rms", samples > 0 ? Math.sqrt(Math.max(0, cl2Sum / samples - clMean * clMean))
+                    : Double.NaN);
+            result.putMetric("cl_max", clMax);
+        }
+        if (shedding.isPeriodic()) {
+            double strouhal = shedding.strouhal(2 * config.cylinderRadius, config.inletVelocity);
+            System.out.println(String.format("Shedding period %.3f s, Strouhal number St = %.4f", shedding.getPeriod(),
+                    strouhal));
+            result.putMetric("shedding_period", shedding.getPeriod());
+            result.putMetric("strouhal", strouhal);
+        }
+    }
+
+    @Override
+    public void export(Lattice lat, SimulationConfig config, SimulationResult result) throws IOException {
+        closeOutputs(lat, result, config);
+
+        String dir = outputFolder(config);
+        System.out.println("Output directory: " + dir);
+        // 求解已结束，各导出只读取格点场，互不依赖，可按 exportWorkers 并行
+        String[] kinds = { "velocity", "vorticity", "pressure" };
+        boolean[] enabled = { config.exportVelocity, config.exportVorticity, config.exportPressure };
+        ExportPipeline pipeline = new ExportPipeline();
+        for (int k = 0; k < kinds.length; k++) {
+            if (enabled[k]) {
+                final String kind = kinds[k];
+                pipeline.add(kind, () -> exportImage(lat, config, kind, dir + kind + ".png"));
+            }
+        }
+        if (pipeline.size() == 0) {
+            return;
+        }
+        System.out.println("Running " + pipeline.size() + " exports with " + Math.max(1, config.exportWorkers)
+                + " worker(s)...");
+        try {
+            pipeline.run(config.exportWorkers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while exporting images", e);
+        }
+        System.out.print(pipeline.report());
+        for (String kind : kinds) {
+            ExportPipeline.Task task = pipeline.get(kind);
+            if (task != null && task.status == ExportPipeline.Status.OK) {
+                result.putOutput(kind, dir + kind + ".png");
+            }
+        }
+    }
+
+    /**
+     * 单张云图；每个任务使用自己的场缓冲区
+     */
+    private static void exportImage(Lattice lat, SimulationConfig config, String kind, String path)
+            throws IOException {
+        float[] field = new float[lat.nx * lat.ny];
+        fillField(lat, kind, field);
+        double[] range = colorRange(lat, config, kind);
+        FrameEncoder.writePng(new File(path), field, lat.nx, lat.ny, colorMapFor(kind), range[0], range[1]);
+        System.out.println("SUCCESS: Exported " + path);
+    }
+
+    /**
+     * 关闭探针记录与动画编码器；result 为 null 时（dispose）只关闭，不计算输出路径，config 可为 null
+     */
+    private void closeOutputs(Lattice lat, SimulationResult result, SimulationConfig config) throws IOException {
+        String dir = result != null ? outputFolder(config) : null;
+        if (lat.probes != null) {
+            lat.probes.close();
+            if (result != null) {
+                result.putOutput("probes", dir + (ProbeRecorder.FORMAT_BINARY.equalsIgnoreCase(config.probeFormat)
+                        ? "probes.bin" : "probes.csv"));
+            }
+            lat.probes = null;
+        }
+        if (lat.animations == null) {
+            return;
+        }
+        for (int k = 0; k < lat.animations.length; k++) {
+            lat.animations[k].close();
+            if (result != null) {
+                List<File> files = lat.animations[k].getFiles();
+                for (int i = 0; i < files.size(); i++) {
+                    result.putOutput(lat.animationKinds[k] + (i == 0 ? "_animation" : "_animation_index"),
+                            files.get(i).getPath().replace("\\", "/"));
+                }
+            }
+        }
+        lat.animations = null;
+    }
+
+    @Override
+    public void dispose(Lattice lat) {
+        try {
+            closeOutputs(lat, null, null);
+        } catch (IOException e) {
+            System.out.println("Warning: Failed to close outputs: " + e.getMessage());
+        }
+        if (lat.kernel != null) {
+            lat.kernel.close();
+            lat.kernel = null;
+        }
+    }
+
+    // ============================================
+    // 场量与导出
+    // ============================================
+
+    /**
+     * 物理量场：velocity (m/s) / vorticity (1/s) / pressure (Pa)，
+     * 行主序，第 0 行为域顶部，圆柱内部为 NaN
+     */
+    static void fillField(Lattice lat, String kind, float[] out) {
+        int nx = lat.nx;
+        int ny = lat.ny;
+        double us = lat.velocityScale();
+        double[] rho = lat.kernel.rho;
+        double[] ux = lat.kernel.ux;
+        double[] uy = lat.kernel.uy;
+        for (int j = 0; j < ny; j++) {
+            int row = (ny - 1 - j) * nx;
+            for (int i = 0; i < nx; i++) {
+                int c = j * nx + i;
+                if (lat.solid[c]) {
+                    out[row + i] = Float.NaN;
+                    continue;
+                }
+                double v;
+                if ("velocity".equals(kind)) {
+                    v = Math.sqrt(ux[c] * ux[c] + uy[c] * uy[c]) * us;
+                } else if ("pressure".equals(kind)) {
+                    v = lat.referencePressure + (rho[c] - 1.0) / 3.0 * lat.pressureScale();
+                } else {
+                    int ie = Math.min(i + 1, nx - 1);
+                    int iw = Math.max(i - 1, 0);
+                    int jn = Math.min(j + 1, ny - 1);
+                    int js = Math.max(j - 1, 0);
+                    double dvdx = (uy[j * nx + ie] - uy[j * nx + iw]) / (ie - iw);
+                    double dudy = (ux[jn * nx + i] - ux[js * nx + i]) / (jn - js);
+                    v = (dvdx - dudy) / lat.dt;
+                }
+                out[row + i] = (float) v;
+            }
+        }
+    }
+
+    /**
+     * 写出时间已到达（在半个格子步长以内）的所有输出时刻
+     */
+    private static void writeOutputs(Lattice lat, float[] field) throws IOException {
+        double t = lat.time();
+        while (lat.nextOutput < lat.outputTimes.length && t >= lat.outputTimes[lat.nextOutput] - 0.5 * lat.dt) {
+            lat.nextOutput++;
+            writeFrames(lat, field);
+            if (lat.probes != null) {
+                recordProbes(lat);
+            }
+        }
+    }
+
+    /**
+     * 当前时刻的力系数和各探针点的 u/v/p (探针点按周围流体单元双线性插值)
+     */
+    private static void recordProbes(Lattice lat) throws IOException {
+        double[] values = lat.probeValues;
+        values[0] = lat.kernel.fx * lat.forceScale();
+        values[1] = lat.kernel.fy * lat.forceScale();
+        double us = lat.velocityScale();
+        for (int k = 0; k < lat.probePoints.length; k++) {
+            double gx = lat.probePoints[k][0] / lat.dx - 0.5;
+            double gy = lat.probePoints[k][1] / lat.dx - 0.5;
+            int i0 = Math.max(0, Math.min(lat.nx - 2, (int) Math.floor(gx)));
+            int j0 = Math.max(0, Math.min(lat.ny - 2, (int) Math.floor(gy)));
+            double fx = Math.max(0, Math.min(1, gx - i0));
+            double fy = Math.max(0, Math.min(1, gy - j0));
+            double wSum = 0;
+            double u = 0;
+            double v = 0;
+            double rho = 0;
+            for (int dj = 0; dj <= 1; dj++) {
+                for (int di = 0; di <= 1; di++) {
+                    int c = lat.index(i0 + di, j0 + dj);
+                    if (lat.solid[c]) {
+                        continue;
+                    }
+                    double w = (di == 0 ? 1 - fx : fx) * (dj == 0 ? 1 - fy : fy);
+                    wSum += w;
+                    u += w * lat.kernel.ux[c];
+                    v += w * lat.kernel.uy[c];
+                    rho += w * lat.kernel.rho[c];
+                }
+            }
+            boolean inside = wSum > 0;
+            values[2 + 3 * k] = inside ? u / wSum * us : Double.NaN;
+            values[3 + 3 * k] = inside ? v / wSum * us : Double.NaN;
+            values[4 + 3 * k] = inside ? lat.referencePressure + (rho / wSum - 1.0) / 3.0 * lat.pressureScale()
+                    : Double.NaN;
+        }
+        lat.probes.record(lat.time(), values);
+    }
+
+    private static void writeFrames(Lattice lat, float[] field) throws IOException {
+        if (lat.animations == null) {
+            return;
+        }
+        long output = lat.outputCount++;
+        if (output % lat.frameStride != 0) {
+            return;
+        }
+        for (int k = 0; k < lat.animations.length; k++) {
+            fillField(lat, lat.animationKinds[k], field);
+            lat.animations[k].writeFrame(field, lat.time());
+        }
+    }
+
+    /**
+     * 固定颜色范围（流式写帧时无法预先知道全局范围）：
+     * 速度 [0, 2U]，涡量 ±4U/D，压力与 COMSOL 导出一致
+     */
+    private static double[] colorRange(Lattice lat, SimulationConfig config, String kind) {
+        if ("velocity".equals(kind)) {
+            return new double[] { 0, 2 * lat.inletVelocity };
+        }
+        if ("pressure".equals(kind)) {
+            return new double[] { config.getEffectivePressureMin(), config.getEffectivePressureMax() };
+        }
+        double w = 2 * lat.inletVelocity / lat.radius;
+        return new double[] { -w, w };
+    }
+
+    private static ColorMap colorMapFor(String kind) {
+        if ("vorticity".equals(kind)) {
+            return ColorMap.forName("Cyclic");
+        }
+        if ("pressure".equals(kind)) {
+            return ColorMap.forName("ThermalWave");
+        }
+        return ColorMap.forName("RainbowLight");
+    }
+
+    /**
+     * 与 COMSOL 导出相同的目录：outputDir/流体名/
+     */
+    private static String outputFolder(SimulationConfig config) {
+        File folder = new File(config.getEffectiveOutputDir(), config.fluidName.toLowerCase());
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+        return folder.getPath().replace("\\", "/") + "/";
+    }
+
+    // ============================================
+    // 测试方法（不需要 COMSOL）
+    // ============================================
+    public static void main(String[] args) throws Exception {
+        SimulationConfig config;
+        try {
+            config = ConfigManager.loadConfig(args.length > 0 ? args[0] : "config.json");
+        } catch (IOException e) {
+            System.out.println("Warning: Could not load config.json, using defaults");
+            config = SimulationConfig.getDefault();
+        }
+        if (args.length > 1) {
+            config.endTime = Double.parseDouble(args[1]);
+        }
+        SimulationResult result = new LbmBackend().run(config);
+        System.out.println(result);
+    }
+}
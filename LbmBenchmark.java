@@ -0,0 +1,107 @@
+/*
+ * LbmBenchmark.java - LBM 计算核心性能测试
+ * 按 config.json 的几何建立格子，测量 1..N 线程下的 MLUPS (每秒百万格点更新) 与并行效率。
+ * 没有构建系统无法使用 JMH，这里用预热 + 多轮固定步数测量。
+ * 运行: java LbmBenchmark [最大线程数] [网格细化倍数...]
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LbmBenchmark {
+
+    private static final int WARMUP_STEPS = 300;
+    private static final int ROUNDS = 3;
+    private static final long ROUND_CELL_UPDATES = 200_000_000L;
+
+    public static void main(String[] args) {
+        SimulationConfig config;
+        try {
+            config = ConfigManager.loadConfig("config.json");
+        } catch (IOException e) {
+            config = SimulationConfig.getDefault();
+        }
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        List<Integer> refinements = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            refinements.add(Integer.parseInt(args[i]));
+        }
+        if (refinements.isEmpty()) {
+            refinements.add(1);
+            refinements.add(2);
+        }
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int t = 1; t < maxThreads; t *= 2) {
+            threadCounts.add(t);
+        }
+        threadCounts.add(maxThreads);
+
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+        for (int refine : refinements) {
+            double dx = config.meshMaxSize / refine;
+            int nx = (int) Math.round(config.domainWidth / dx);
+            int ny = (int) Math.round(config.domainHeight / dx);
+            boolean[] solid = cylinderMask(config, nx, ny, dx);
+            System.out.println();
+            System.out.println("Grid " + nx + " x " + ny + " (dx=" + dx + " m)");
+            System.out.println(String.format("%8s %12s %10s %11s", "threads", "MLUPS", "speedup", "efficiency"));
+
+            double base = 0;
+            for (int threads : threadCounts) {
+                double mlups = measure(nx, ny, solid, threads);
+                if (threads == 1) {
+                    base = mlups;
+                }
+                double speedup = base > 0 ? mlups / base : 0;
+                System.out.println(String.format("%8d %12.1f %10.2f %10.0f%%", threads, mlups, speedup,
+                        100 * speedup / threads));
+            }
+        }
+    }
+
+    private static boolean[] cylinderMask(SimulationConfig config, int nx, int ny, double dx) {
+        boolean[] solid = new boolean[nx * ny];
+        double r2 = config.cylinderRadius * config.cylinderRadius;
+        for (int j = 0; j < ny; j++) {
+            for (int i = 0; i < nx; i++) {
+                double x = (i + 0.5) * dx - config.cylinderX;
+                double y = (j + 0.5) * dx - config.cylinderY;
+                solid[j * nx + i] = x * x + y * y <= r2;
+            }
+        }
+        return solid;
+    }
+
+    /**
+     * 最好一轮的 MLUPS
+     */
+    private static double measure(int nx, int ny, boolean[] solid, int threads) {
+        int n = nx * ny;
+        double[] rho = new double[n];
+        double[] ux = new double[n];
+        double[] uy = new double[n];
+        java.util.Arrays.fill(rho, 1.0);
+        java.util.Arrays.fill(ux, LbmBackend.LATTICE_VELOCITY);
+
+        try (LbmKernel kernel = new LbmKernel(nx, ny, solid, 1.0 / 0.52, threads)) {
+            kernel.inletVelocity = LbmBackend.LATTICE_VELOCITY;
+            kernel.initialize(rho, ux, uy);
+            for (int s = 0; s < WARMUP_STEPS; s++) {
+                kernel.step();
+            }
+            int steps = (int) Math.max(50, ROUND_CELL_UPDATES / n);
+            double best = 0;
+            for (int r = 0; r < ROUNDS; r++) {
+                long t0 = System.nanoTime();
+                for (int s = 0; s < steps; s++) {
+                    kernel.step();
+                }
+                double seconds = (System.nanoTime() - t0) / 1e9;
+                best = Math.max(best, (double) steps * n / seconds / 1e6);
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * LbmKernel.java - D2Q9 格子 Boltzmann 计算核心
+ * 分布函数按方向分块存放在一个 double[] 中 (f[q * n + cell]，结构数组)，
+ * 每步一次融合的 "拉取迁移 + BGK 碰撞"，按行带划分子区域在 ForkJoinPool 中并行。
+ * 单元预先分类：内部流体走无分支的展开路径，靠近边界/圆柱的单元走通用路径，
+ * 入口/出口列在各行带末尾设为平衡态。
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+public class LbmKernel implements AutoCloseable {
+
+    static final int Q = 9;
+    static final int[] CX = { 0, 1, 0, -1, 0, 1, -1, -1, 1 };
+    static final int[] CY = { 0, 0, 1, 0, -1, 1, 1, -1, -1 };
+    static final double[] W = { 4.0 / 9, 1.0 / 9, 1.0 / 9, 1.0 / 9, 1.0 / 9, 1.0 / 36, 1.0 / 36, 1.0 / 36,
+            1.0 / 36 };
+    static final int[] OPP = { 0, 3, 4, 1, 2, 7, 8, 5, 6 };
+    // y 方向镜像（镜面反射边界）
+    static final int[] MIRROR_Y = { 0, 1, 4, 3, 2, 8, 7, 6, 5 };
+
+    // 单元类型
+    static final byte FLUID = 0;
+    static final byte BOUNDARY = 1;
+    static final byte SOLID = 2;
+    static final byte INLET = 3;
+    static final byte OUTLET = 4;
+
+    // 出口边界
+    public static final int OUTLET_PRESSURE = 0;
+    public static final int OUTLET_VELOCITY = 1;
+    public static final int OUTLET_ZERO_GRADIENT = 2;
+
+    final int nx;
+    final int ny;
+    final int n;
+    final byte[] type;
+    final double omega;
+
+    double[] f;
+    double[] fNew;
+    final double[] rho;
+    final double[] ux;
+    final double[] uy;
+
+    // 边界参数（格子单位）
+    boolean topWall;
+    boolean bottomWall;
+    boolean pressureInlet;
+    double inletRho = 1.0;
+    double inletVelocity;
+    int outletMode = OUTLET_PRESSURE;
+    double outletRho = 1.0;
+    double outletVelocity;
+
+    // 上一步作用在圆柱上的力（格子单位，动量交换法）
+    double fx;
+    double fy;
+
+    // 每个行带的行数
+    static final int ROWS_PER_BAND = 8;
+
+    private final int threads;
+    private final ForkJoinPool pool;
+    private final Band[] bands;
+
+    /**
+     * @param solid   nx*ny 的固体标记（行主序，第 0 行为 y=0）
+     * @param threads 并行线程数，<= 0 时使用全部处理器
+     */
+    public LbmKernel(int nx, int ny, boolean[] solid, double omega, int threads) {
+        this.nx = nx;
+        this.ny = ny;
+        this.n = nx * ny;
+        this.omega = omega;
+        this.type = classify(nx, ny, solid);
+        this.f = new double[Q * n];
+        this.fNew = new double[Q * n];
+        this.rho = new double[n];
+        this.ux = new double[n];
+        this.uy = new double[n];
+
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        // 行带划分只取决于网格、与线程数无关：力按行带求部分和，划分不同会改变舍入
+        // 行带较多也便于负载均衡（圆柱所在行带较慢）
+        int bandCount = Math.max(1, (ny + ROWS_PER_BAND - 1) / ROWS_PER_BAND);
+        this.bands = new Band[bandCount];
+        for (int b = 0; b < bandCount; b++) {
+            bands[b] = new Band(this, ny * b / bandCount, ny * (b + 1) / bandCount);
+        }
+        this.pool = this.threads > 1 ? new ForkJoinPool(this.threads) : null;
+    }
+
+    private static byte[] classify(int nx, int ny, boolean[] solid) {
+        byte[] type = new byte[nx * ny];
+        for (int j = 0; j < ny; j++) {
+            for (int i = 0; i < nx; i++) {
+                int c = j * nx + i;
+                if (solid[c]) {
+                    type[c] = SOLID;
+                } else if (i == 0) {
+                    type[c] = INLET;
+                } else if (i == nx - 1) {
+                    type[c] = OUTLET;
+                } else if (j == 0 || j == ny - 1) {
+                    type[c] = BOUNDARY;
+                } else {
+                    type[c] = FLUID;
+                    for (int q = 1; q < Q; q++) {
+                        if (solid[(j - CY[q]) * nx + i - CX[q]]) {
+                            type[c] = BOUNDARY;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return type;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public boolean isSolid(int c) {
+        return type[c] == SOLID;
+    }
+
+    /**
+     * 用给定的宏观量初始化为平衡态（作为碰撞后的分布）
+     */
+    public void initialize(double[] rho0, double[] ux0, double[] uy0) {
+        for (int c = 0; c < n; c++) {
+            if (type[c] == SOLID) {
+                continue;
+            }
+            rho[c] = rho0[c];
+            ux[c] = ux0[c];
+            uy[c] = uy0[c];
+            for (int q = 0; q < Q; q++) {
+                f[q * n + c] = equilibrium(q, rho0[c], ux0[c], uy0[c]);
+            }
+        }
+    }
+
+    static double equilibrium(int q, double rho, double ux, double uy) {
+        double cu = 3.0 * (CX[q] * ux + CY[q] * uy);
+        double uu = 1.5 * (ux * ux + uy * uy);
+        return W[q] * rho * (1.0 + cu + 0.5 * cu * cu - uu);
+    }
+
+    /**
+     * 推进一个时间步
+     */
+    public void step() {
+        if (pool == null) {
+            for (Band band : bands) {
+                band.reinitialize();
+                band.compute();
+            }
+        } else {
+            for (Band band : bands) {
+                band.reinitialize();
+            }
+            pool.invoke(new StepAction(bands));
+        }
+        // 行带划分固定、按行带顺序求和，结果与线程数无关
+        double sx = 0;
+        double sy = 0;
+        for (Band band : bands) {
+            sx += band.fx;
+            sy += band.fy;
+        }
+        fx = sx;
+        fy = sy;
+        double[] t = f;
+        f = fNew;
+        fNew = t;
+    }
+
+    /**
+     * 某个单元当前的分布函数（碰撞后）
+     */
+    public double get(int q, int c) {
+        return f[q * n + c];
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static class StepAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Band[] bands;
+
+        StepAction(Band[] bands) {
+            this.bands = bands;
+        }
+
+        @Override
+        protected void compute() {
+            ForkJoinTask.invokeAll(bands);
+        }
+    }
+
+    /**
+     * 行带 [j0, j1)：融合迁移-碰撞，随后处理本行带内的入口/出口单元
+     */
+    private static class Band extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final LbmKernel k;
+        private final int j0;
+        private final int j1;
+        private final double[] fin = new double[Q];
+        double fx;
+        double fy;
+
+        Band(LbmKernel kernel, int j0, int j1) {
+            this.k = kernel;
+            this.j0 = j0;
+            this.j1 = j1;
+        }
+
+        @Override
+        protected void compute() {
+            fx = 0;
+            fy = 0;
+            int nx = k.nx;
+            for (int j = j0; j < j1; j++) {
+                int row = j * nx;
+                for (int i = 1; i < nx - 1; i++) {
+                    int c = row + i;
+                    byte t = k.type[c];
+                    if (t == FLUID) {
+                        interior(c);
+                    } else if (t == BOUNDARY) {
+                        boundary(i, j, c);
+                    }
+                }
+                inletOutlet(row);
+            }
+        }
+
+        /**
+         * 内部单元：9 个方向展开，无边界判断
+         */
+        private void interior(int c) {
+            final double[] f = k.f;
+            final double[] out = k.fNew;
+            final int n = k.n;
+            final int nx = k.nx;
+
+            double f0 = f[c];
+            double f1 = f[n + c - 1];
+            double f2 = f[2 * n + c - nx];
+            double f3 = f[3 * n + c + 1];
+            double f4 = f[4 * n + c + nx];
+            double f5 = f[5 * n + c - nx - 1];
+            double f6 = f[6 * n + c - nx + 1];
+            double f7 = f[7 * n + c + nx + 1];
+            double f8 = f[8 * n + c + nx - 1];
+
+            double rho = f0 + f1 + f2 + f3 + f4 + f5 + f6 + f7 + f8;
+            double inv = 1.0 / rho;
+            double ux = (f1 - f3 + f5 - f6 - f7 + f8) * inv;
+            double uy = (f2 - f4 + f5 + f6 - f7 - f8) * inv;
+            k.rho[c] = rho;
+            k.ux[c] = ux;
+            k.uy[c] = uy;
+
+            double om = k.omega;
+            double uu = 1.5 * (ux * ux + uy * uy);
+            double r9 = rho * (1.0 / 9);
+            double r36 = rho * (1.0 / 36);
+            double a = 3.0 * ux;
+            double b = 3.0 * uy;
+            double ab = a + b;
+            double amb = a - b;
+
+            out[c] = f0 + om * (rho * (4.0 / 9) * (1.0 - uu) - f0);
+            out[n + c] = f1 + om * (r9 * (1.0 + a + 0.5 * a * a - uu) - f1);
+            out[2 * n + c] = f2 + om * (r9 * (1.0 + b + 0.5 * b * b - uu) - f2);
+            out[3 * n + c] = f3 + om * (r9 * (1.0 - a + 0.5 * a * a - uu) - f3);
+            out[4 * n + c] = f4 + om * (r9 * (1.0 - b + 0.5 * b * b - uu) - f4);
+            out[5 * n + c] = f5 + om * (r36 * (1.0 + ab + 0.5 * ab * ab - uu) - f5);
+            out[6 * n + c] = f6 + om * (r36 * (1.0 - amb + 0.5 * amb * amb - uu) - f6);
+            out[7 * n + c] = f7 + om * (r36 * (1.0 - ab + 0.5 * ab * ab - uu) - f7);
+            out[8 * n + c] = f8 + om * (r36 * (1.0 + amb + 0.5 * amb * amb - uu) - f8);
+        }
+
+        /**
+         * 通用路径：上游为圆柱时半步反弹并累加动量交换力，
+         * 上游越过上下边界时按 Wall (反弹) 或 Symmetry/Slip (镜面反射) 处理
+         */
+        private void boundary(int i, int j, int c) {
+            final double[] f = k.f;
+            final int n = k.n;
+            final int nx = k.nx;
+            final int ny = k.ny;
+
+            fin[0] = f[c];
+            for (int q = 1; q < Q; q++) {
+                int si = i - CX[q];
+                int sj = j - CY[q];
+                if (sj < 0 || sj >= ny) {
+                    boolean wall = sj < 0 ? k.bottomWall : k.topWall;
+                    if (wall) {
+                        fin[q] = f[OPP[q] * n + c];
+                    } else {
+                        fin[q] = f[MIRROR_Y[q] * n + j * nx + si];
+                    }
+                } else {
+                    int s = sj * nx + si;
+                    if (k.type[s] == SOLID) {
+                        double fo = f[OPP[q] * n + c];
+                        fin[q] = fo;
+                        fx += 2 * fo * CX[OPP[q]];
+                        fy += 2 * fo * CY[OPP[q]];
+                    } else {
+                        fin[q] = f[q * n + s];
+                    }
+                }
+            }
+            collide(c, fin);
+        }
+
+        private void collide(int c, double[] g) {
+            double rho = 0;
+            double mx = 0;
+            double my = 0;
+            for (int q = 0; q < Q; q++) {
+                rho += g[q];
+                mx += CX[q] * g[q];
+                my += CY[q] * g[q];
+            }
+            double ux = mx / rho;
+            double uy = my / rho;
+            k.rho[c] = rho;
+            k.ux[c] = ux;
+            k.uy[c] = uy;
+            for (int q = 0; q < Q; q++) {
+                k.fNew[q * k.n + c] = g[q] + k.omega * (equilibrium(q, rho, ux, uy) - g[q]);
+            }
+        }
+
+        /**
+         * 入口列与出口列设为平衡态；所用的相邻单元在同一行，已在本行带中更新
+         */
+        private void inletOutlet(int row) {
+            int n = k.n;
+            int in = row;
+            int next = row + 1;
+            double rhoIn;
+            double uIn;
+            double vIn;
+            if (k.pressureInlet) {
+                rhoIn = k.inletRho;
+                uIn = k.ux[next];
+                vIn = k.uy[next];
+            } else {
+                rhoIn = k.rho[next];
+                uIn = k.inletVelocity;
+                vIn = 0;
+            }
+            if (k.type[in] != SOLID) {
+                setEquilibrium(in, rhoIn, uIn, vIn);
+            }
+
+            int out = row + k.nx - 1;
+            int prev = out - 1;
+            if (k.type[out] == SOLID) {
+                return;
+            }
+            if (k.outletMode == OUTLET_PRESSURE) {
+                setEquilibrium(out, k.outletRho, k.ux[prev], k.uy[prev]);
+            } else if (k.outletMode == OUTLET_VELOCITY) {
+                setEquilibrium(out, k.rho[prev], k.outletVelocity, 0);
+            } else {
+                for (int q = 0; q < Q; q++) {
+                    k.fNew[q * n + out] = k.fNew[q * n + prev];
+                }
+                k.rho[out] = k.rho[prev];
+                k.ux[out] = k.ux[prev];
+                k.uy[out] = k.uy[prev];
+            }
+        }
+
+        private void setEquilibrium(int c, double rho, double ux, double uy) {
+            k.rho[c] = rho;
+            k.ux[c] = ux;
+            k.uy[c] = uy;
+            for (int q = 0; q < Q; q++) {
+                k.fNew[q * k.n + c] = equilibrium(q, rho, ux, uy);
+            }
+        }
+    }
+}
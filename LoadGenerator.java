@@ -0,0 +1,202 @@
+/*
+ * LoadGenerator.java - AI 路径负载测试
+ * 以固定并发数（同时在途的请求数）通过 QwenClient 发出请求，每个回复交给 AIConfigParser 解析，
+ * 统计成功请求的 p50/p95/p99 延迟、吞吐量、按类型分列的错误（HTTP 状态码、超时、解析失败），
+ * 流式模式另外统计首段内容的到达时间。客户端不使用回复缓存。
+ * 未给出 url 时在进程内启动 MockLlmServer，依次运行几组场景：基线（带长尾）、随机 503（重试/不重试）、服务端配额 429。
+ * 运行: java LoadGenerator [并发数] [请求数] [plain|stream] [url]
+ *   给出 url 时只对该接口运行一次（API Key 取 QWEN_API_KEY，未设置时为 mock）
+ */
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoadGenerator {
+
+    private static final String[] PROMPTS = { "把入口速度改成 0.05 m/s", "换成水，网格加密一些", "雷诺数 200 左右的工况怎么设置",
+            "仿真时间延长到 300 秒，步长 0.1", "出口压力设为 10 Pa" };
+
+    private final QwenClient client;
+    private final int concurrency;
+    private final int total;
+    private final boolean stream;
+    private final String systemPrompt = AIConfigParser.generateSystemPrompt(new SimulationConfig());
+
+    // 单次运行的统计，在 HTTP 线程上更新
+    private final AtomicInteger issued = new AtomicInteger();
+    private CountDownLatch done;
+    private double[] latencyMs;
+    private double[] firstTokenMs;
+    private int ok = 0;
+    private int withChanges = 0;
+    private final Map<String, Integer> errors = new TreeMap<>();
+
+    public LoadGenerator(QwenClient client, int concurrency, int total, boolean stream) {
+        this.client = client;
+        this.concurrency = Math.max(1, concurrency);
+        this.total = total;
+        this.stream = stream;
+    }
+
+    /**
+     * 运行一次：先发出 concurrency 个请求，此后每完成一个再发下一个，直到发满 total 个
+     */
+    public String run() throws InterruptedException {
+        issued.set(0);
+        done = new CountDownLatch(total);
+        latencyMs = new double[total];
+        firstTokenMs = new double[total];
+        ok = 0;
+        withChanges = 0;
+        errors.clear();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < Math.min(concurrency, total); i++) {
+            next();
+        }
+        done.await();
+        return report((System.nanoTime() - t0) / 1e6);
+    }
+
+    private void next() {
+        int n = issued.getAndIncrement();
+        if (n >= total) {
+            return;
+        }
+        String message = PROMPTS[n % PROMPTS.length] + " #" + n;
+        long sentAt = System.nanoTime();
+        long[] firstAt = { 0 };
+        CompletableFuture<String> future;
+        if (stream) {
+            future = client.chatStream(message, systemPrompt, delta -> {
+                if (firstAt[0] == 0) {
+                    firstAt[0] = System.nanoTime();
+                }
+            }, RateLimiter.Priority.BULK);
+        } else {
+            future = client.chatAsync(message, systemPrompt, RateLimiter.Priority.BULK);
+        }
+        future.whenComplete((reply, error) -> {
+            double ms = (System.nanoTime() - sentAt) / 1e6;
+            String failure = error != null ? classify(error) : null;
+            AIConfigParser.ParseResult parsed = null;
+            if (failure == null) {
+                parsed = AIConfigParser.parseAIResponse(reply, new SimulationConfig());
+                if (!parsed.success) {
+                    failure = "解析失败";
+                }
+            }
+            synchronized (this) {
+                if (failure != null) {
+                    errors.merge(failure, 1, Integer::sum);
+                } else {
+                    latencyMs[ok] = ms;
+                    firstTokenMs[ok] = firstAt[0] != 0 ? (firstAt[0] - sentAt) / 1e6 : ms;
+                    ok++;
+                    if (!parsed.changes.isEmpty()) {
+                        withChanges++;
+                    }
+                }
+            }
+            done.countDown();
+            next();
+        });
+    }
+
+    private static String classify(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof QwenClient.HttpStatusException) {
+            return "HTTP " + ((QwenClient.HttpStatusException) cause).status;
+        }
+        if (cause instanceof java.net.http.HttpTimeoutException) {
+            return "超时";
+        }
+        return cause.getClass().getSimpleName();
+    }
+
+    private synchronized String report(double elapsedMs) {
+        StringBuilder sb = new StringBuilder(String.format("%d/%d ok (%.1f%% errors), %.1f req/s, %d with changes",
+                ok, total, 100.0 * (total - ok) / Math.max(1, total), ok / (elapsedMs / 1000), withChanges));
+        if (ok > 0) {
+            double[] ms = Arrays.copyOf(latencyMs, ok);
+            Arrays.sort(ms);
+            sb.append(String.format("\n  latency     p50 %7.1f  p95 %7.1f  p99 %7.1f  max %7.1f ms", percentile(ms, 0.5),
+                    percentile(ms, 0.95), percentile(ms, 0.99), ms[ok - 1]));
+            if (stream) {
+                double[] first = Arrays.copyOf(firstTokenMs, ok);
+                Arrays.sort(first);
+                sb.append(String.format("\n  first token p50 %7.1f  p95 %7.1f  p99 %7.1f  max %7.1f ms",
+                        percentile(first, 0.5), percentile(first, 0.95), percentile(first, 0.99), first[ok - 1]));
+            }
+        }
+        if (!errors.isEmpty()) {
+            sb.append("\n  errors      ").append(errors);
+        }
+        return sb.toString();
+    }
+
+    private static double percentile(double[] sorted, double q) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(sorted.length * q))];
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        boolean stream = args.length > 2 && "stream".equals(args[2]);
+        if (args.length > 3) {
+            String key = System.getenv("QWEN_API_KEY");
+            QwenClient client = new QwenClient(key != null ? key : "mock", args[3]);
+            client.setCache(null);
+            System.out.println(args[3] + ", concurrency " + concurrency + ", " + requests + " requests"
+                    + (stream ? ", streaming" : ""));
+            System.out.println(new LoadGenerator(client, concurrency, requests, stream).run());
+            System.out.println("  " + client.getRouter());
+            return;
+        }
+
+        try (MockLlmServer mock = new MockLlmServer(50, 5)) {
+            System.out.println("MockLlmServer latency 50 ms, concurrency " + concurrency + ", " + requests
+                    + " requests per scenario" + (stream ? ", streaming" : ""));
+
+            // 1. 基线：2% 的请求需要 800 ms（长尾）
+            mock.slowFraction = 0.02;
+            mock.slowMs = 800;
+            scenario("baseline (2% at 800 ms)", mock, newClient(mock, 3), concurrency, requests, stream);
+
+            // 2. 5% 的请求返回 503：默认重试策略 vs 不重试
+            mock.slowFraction = 0;
+            mock.faultFraction = 0.05;
+            scenario("5% 503, 3 retries", mock, newClient(mock, 3), concurrency, requests, stream);
+            scenario("5% 503, no retries", mock, newClient(mock, 0), concurrency, requests, stream);
+
+            // 3. 服务端配额 100 次/秒：超出返回 429 + Retry-After，客户端暂停令牌桶后重试
+            mock.faultFraction = 0;
+            mock.quotaPerSecond = 100;
+            Thread.sleep(1000);
+            scenario("quota 100/s (429)", mock, newClient(mock, 3), concurrency, requests, stream);
+        }
+    }
+
+    private static QwenClient newClient(MockLlmServer mock, int retries) {
+        QwenClient client = new QwenClient("mock", mock.url()).setRetryPolicy(new RateLimiter.RetryPolicy(retries,
+                100, 2000));
+        client.setCache(null);
+        return client;
+    }
+
+    private static void scenario(String name, MockLlmServer mock, QwenClient client, int concurrency, int requests,
+            boolean stream) throws InterruptedException {
+        mock.resetCounters();
+        String result = new LoadGenerator(client, concurrency, requests, stream).run();
+        System.out.println(String.format("%-24s %s", name, result));
+        System.out.println(String.format("  server      %d requests, %d faults, %d rejected (429), %d connections",
+                mock.requests.get(), mock.faults.get(), mock.rejected.get(), mock.clientPorts.size()));
+    }
+}
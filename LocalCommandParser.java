@@ -0,0 +1,532 @@
+/*
+ * LocalCommandParser.java - AI 助手的本地快速路径
+ * 常见的简单指令（"入口速度改为0.05"、"使用水"、"网格等级 5"、"关闭动画"）在本地按字段表直接解析，
+ * 微秒级得到 ConfigChange，不发送 AI 请求。
+ * 语法：按 ，；、/并/和 等拆成子句，每个子句必须完整匹配以下形式之一，否则整条消息交给 AI：
+ *   [把/将] 字段名或别名 [改为/设为/调到/=...] 数值 [单位]   单位按字段单位换算 (mm -> m, 分钟 -> s, kPa -> Pa ...)
+ *   [把/将] 字段名或别名 [改为...] 选项                      入口/出口/边界类型、流动类型、方程形式、流体预设
+ *   [使用/改用/换成] 水/空气/层流/湍流/瞬态/稳态
+ *   打开/关闭 速度云图/涡量云图/压力云图/动画
+ * 解析出的值与 AI 回复走同一套字段表校验（类型与取值范围），有任何一项不合格也交给 AI。
+ */
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class LocalCommandParser {
+
+    // 子句分隔：标点与连接词
+    private static final String SEPARATORS = "，,；;、";
+    private static final String[] CONJUNCTIONS = { "并且", "然后", "同时", "并", "和" };
+
+    private static final String[] PREFIXES = { "请帮我", "帮我", "请", "麻烦", "把", "将" };
+    private static final String[] SUFFIXES = { "一下", "吧", "即可", "就行", "就好" };
+
+    // 赋值动词，按长度降序匹配
+    private static final String[] VERBS = { "修改为", "设置为", "调整为", "调整到", "提高到", "降低到", "增加到", "减少到",
+            "延长到", "缩短到", "增大到", "减小到", "改为", "改成", "设为", "设成", "调为", "调到", "变为", "变成", "换成",
+            "换为", "用", "为", "是", "到", "=", ":" };
+
+    private static final String[] USE_VERBS = { "切换为", "切换到", "使用", "改用", "换成", "换为", "采用", "改为", "用" };
+    private static final String[] FLUID_SUFFIXES = { "作为流体", "做流体", "当流体", "作流体" };
+
+    private static final String[] ON_VERBS = { "打开", "开启", "启用", "导出", "需要", "要" };
+    private static final String[] OFF_VERBS = { "不导出", "不需要", "不要", "关闭", "禁用", "取消", "关掉" };
+
+    // 别名 -> 字段名（字段表的中文名和字段名本身自动加入）；按长度降序匹配
+    private static final List<String[]> ALIASES = new ArrayList<>();
+    // 字段单位 -> (输入单位 -> 换算系数)
+    private static final Map<String, Map<String, String>> UNITS = new HashMap<>();
+    // 字段 -> (选项写法 -> 取值)
+    private static final Map<String, Map<String, String>> OPTIONS = new HashMap<>();
+    // 单独出现的选项词，如 "湍流" -> flowType=Turbulent
+    private static final Map<String, String[]> BARE_OPTIONS = new HashMap<>();
+    // 开关名词 -> 布尔字段
+    private static final Map<String, String> SWITCHES = new LinkedHashMap<>();
+    private static final Map<String, String> FLUIDS = new HashMap<>();
+
+    static {
+        Map<String, String> aliases = new HashMap<>();
+        for (String field : AIConfigParser.fieldNames()) {
+            aliases.put(normalize(field), field);
+            aliases.put(normalize(AIConfigParser.fieldInfo(field)[0]), field);
+        }
+        String[][] extra = {
+                { "速度", "inletVelocity" }, { "流速", "inletVelocity" }, { "入口流速", "inletVelocity" },
+                { "来流速度", "inletVelocity" }, { "半径", "cylinderRadius" },
+                { "粘度", "dynamicViscosity" }, { "黏度", "dynamicViscosity" }, { "动力黏度", "dynamicViscosity" },
+                { "网格等级", "meshSizeLevel" }, { "网格精度", "meshSizeLevel" }, { "网格级别", "meshSizeLevel" },
+                { "最大单元", "meshMaxSize" }, { "最小单元", "meshMinSize" }, { "仿真时间", "endTime" },
+                { "仿真时长", "endTime" }, { "计算时间", "endTime" }, { "步长", "timeStep" }, { "时间步", "timeStep" },
+                { "帧率", "animationFps" }, { "流体", "fluidName" }, { "流态", "flowType" }, { "求解类型", "equationForm" },
+                { "上边界", "topBoundaryType" }, { "下边界", "bottomBoundaryType" }, { "圆柱壁面", "cylinderWallType" },
+        };
+        for (String[] e : extra) {
+            aliases.put(e[0], e[1]);
+        }
+        for (Map.Entry<String, String> e : aliases.entrySet()) {
+            ALIASES.add(new String[] { e.getKey(), e.getValue() });
+        }
+        ALIASES.sort((a, b) -> b[0].length() - a[0].length());
+
+        units("m", "", "1", "m", "1", "米", "1", "cm", "0.01", "厘米", "0.01", "mm", "0.001", "毫米", "0.001");
+        units("m/s", "", "1", "m/s", "1", "米/秒", "1", "米每秒", "1", "cm/s", "0.01", "厘米/秒", "0.01", "厘米每秒", "0.01",
+                "mm/s", "0.001", "毫米/秒", "0.001", "毫米每秒", "0.001");
+        units("pa", "", "1", "pa", "1", "帕", "1", "kpa", "1000", "千帕", "1000");
+        units("s", "", "1", "s", "1", "秒", "1", "ms", "0.001", "毫秒", "0.001", "min", "60", "分钟", "60", "分", "60");
+        units("kg/m3", "", "1", "kg/m3", "1", "千克/立方米", "1", "千克每立方米", "1");
+        units("pa·s", "", "1", "pa·s", "1", "pa.s", "1", "pa*s", "1", "帕秒", "1", "帕·秒", "1");
+        units("fps", "", "1", "fps", "1", "帧/秒", "1", "帧每秒", "1");
+        units("", "", "1", "级", "1", "帧", "1", "个", "1");
+
+        options("inletType", "velocity", "Velocity", "速度", "Velocity", "速度入口", "Velocity", "pressure", "Pressure",
+                "压力", "Pressure", "压力入口", "Pressure");
+        options("outletType", "pressure", "Pressure", "压力", "Pressure", "压力出口", "Pressure", "velocity", "Velocity",
+                "速度", "Velocity", "速度出口", "Velocity", "outflow", "Outflow", "自由出流", "Outflow", "出流", "Outflow");
+        String[] boundary = { "symmetry", "Symmetry", "对称", "Symmetry", "wall", "Wall", "壁面", "Wall", "slip", "Slip",
+                "滑移", "Slip" };
+        options("topBoundaryType", boundary);
+        options("bottomBoundaryType", boundary);
+        options("cylinderWallType", "wall", "Wall", "壁面", "Wall", "slip", "Slip", "滑移", "Slip");
+        options("cylinderWallCondition", "noslip", "NoSlip", "无滑移", "NoSlip", "slip", "Slip", "滑移", "Slip");
+        options("flowType", "laminar", "Laminar", "层流", "Laminar", "turbulent", "Turbulent", "湍流", "Turbulent");
+        options("equationForm", "transient", "Transient", "瞬态", "Transient", "stationary", "Stationary", "稳态",
+                "Stationary");
+
+        BARE_OPTIONS.put("层流", new String[] { "flowType", "Laminar" });
+        BARE_OPTIONS.put("湍流", new String[] { "flowType", "Turbulent" });
+        BARE_OPTIONS.put("瞬态", new String[] { "equationForm", "Transient" });
+        BARE_OPTIONS.put("稳态", new String[] { "equationForm", "Stationary" });
+
+        SWITCHES.put("速度云图", "exportVelocity");
+        SWITCHES.put("涡量云图", "exportVorticity");
+        SWITCHES.put("压力云图", "exportPressure");
+        SWITCHES.put("动画", "exportAnimation");
+
+        FLUIDS.put("水", "Water");
+        FLUIDS.put("water", "Water");
+        FLUIDS.put("空气", "Air");
+        FLUIDS.put("air", "Air");
+    }
+
+    private static void units(String fieldUnit, String... pairs) {
+        Map<String, String> m = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            m.put(pairs[i], pairs[i + 1]);
+        }
+        UNITS.put(fieldUnit, m);
+    }
+
+    private static void options(String field, String... pairs) {
+        Map<String, String> m = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            m.put(pairs[i], pairs[i + 1]);
+        }
+        OPTIONS.put(field, m);
+    }
+
+    private long hits = 0;
+    private long misses = 0;
+    private long hitNanos = 0;
+    private long missNanos = 0;
+
+    /**
+     * 解析一条用户消息；能完整、确定地解析时返回变更，否则返回 null（交给 AI）
+     */
+    public AIConfigParser.ParseResult parse(String input, SimulationConfig cfg) {
+        long t0 = System.nanoTime();
+        AIConfigParser.ParseResult result = tryParse(input, cfg);
+        long elapsed = System.nanoTime() - t0;
+        synchronized (this) {
+            if (result != null) {
+                hits++;
+                hitNanos += elapsed;
+            } else {
+                misses++;
+                missNanos += elapsed;
+            }
+        }
+        return result;
+    }
+
+    static AIConfigParser.ParseResult tryParse(String input, SimulationConfig cfg) {
+        String text = normalize(input);
+        if (text.isEmpty()) {
+            return null;
+        }
+        AIConfigParser.ParseResult result = new AIConfigParser.ParseResult();
+        for (String clause : split(text)) {
+            AIConfigParser.ParseResult part = new AIConfigParser.ParseResult();
+            if (!parseClause(clause, cfg, part)) {
+                return null;
+            }
+            // 不同子句给同一字段赋不同的值（"用水和空气"）：意图不明，交给 AI
+            for (AIConfigParser.ConfigChange change : part.changes) {
+                for (AIConfigParser.ConfigChange earlier : result.changes) {
+                    if (earlier.fieldName.equals(change.fieldName) && !earlier.newValue.equals(change.newValue)) {
+                        return null;
+                    }
+                }
+            }
+            for (AIConfigParser.ConfigChange change : part.changes) {
+                result.changes.removeIf(c -> c.fieldName.equals(change.fieldName));
+                result.changes.add(change);
+            }
+            result.rejected.addAll(part.rejected);
+        }
+        if (result.changes.isEmpty() || !result.rejected.isEmpty()) {
+            return null;
+        }
+        StringBuilder message = new StringBuilder("（本地解析）已识别 ").append(result.changes.size()).append(" 项修改：");
+        for (int i = 0; i < result.changes.size(); i++) {
+            AIConfigParser.ConfigChange c = result.changes.get(i);
+            String unit = AIConfigParser.fieldInfo(c.fieldName)[2];
+            message.append(i > 0 ? "，" : "").append(c.fieldLabel).append(" = ").append(c.newValue)
+                    .append(unit.isEmpty() ? "" : " " + unit);
+        }
+        result.message = message.toString();
+        result.success = true;
+        return result;
+    }
+
+    /**
+     * 全半角统一 (NFKC)、小写、去掉空白
+     */
+    static String normalize(String s) {
+        String n = Normalizer.normalize(s, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(n.length());
+        for (int i = 0; i < n.length(); i++) {
+            char c = n.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<String> split(String text) {
+        List<String> clauses = new ArrayList<>();
+        int start = 0;
+        int i = 0;
+        while (i < text.length()) {
+            int sep = SEPARATORS.indexOf(text.charAt(i)) >= 0 ? 1 : 0;
+            if (sep == 0) {
+                for (String conj : CONJUNCTIONS) {
+                    if (text.startsWith(conj, i)) {
+                        sep = conj.length();
+                        break;
+                    }
+                }
+            }
+            if (sep > 0) {
+                clauses.add(text.substring(start, i));
+                start = i + sep;
+                i = start;
+            } else {
+                i++;
+            }
+        }
+        clauses.add(text.substring(start));
+        return clauses;
+    }
+
+    private static boolean parseClause(String clause, SimulationConfig cfg, AIConfigParser.ParseResult result) {
+        String s = trimEnd(clause);
+        s = stripPrefix(s, PREFIXES);
+        s = stripSuffix(s, SUFFIXES);
+        if (s.isEmpty()) {
+            return true; // 多余的标点
+        }
+
+        // 使用水 / 改用空气作为流体 / 湍流
+        String used = stripSuffix(stripPrefix(s, USE_VERBS), FLUID_SUFFIXES);
+        if (FLUIDS.containsKey(used)) {
+            addFluid(FLUIDS.get(used), cfg, result);
+            return true;
+        }
+        String[] bare = BARE_OPTIONS.get(used);
+        if (bare != null) {
+            AIConfigParser.addChange(bare[0], bare[1], cfg, result);
+            return true;
+        }
+
+        // 打开动画 / 关闭压力云图 / 动画关闭
+        for (Map.Entry<String, String> sw : SWITCHES.entrySet()) {
+            String noun = sw.getKey();
+            Boolean on = null;
+            if (s.endsWith(noun)) {
+                on = switchVerb(s.substring(0, s.length() - noun.length()));
+            } else if (s.startsWith(noun)) {
+                on = switchVerb(s.substring(noun.length()));
+            }
+            if (on != null) {
+                AIConfigParser.addChange(sw.getValue(), String.valueOf(on), cfg, result);
+                return true;
+            }
+        }
+
+        // 字段 [动词] 值 [单位]
+        for (String[] alias : ALIASES) {
+            if (!s.startsWith(alias[0])) {
+                continue;
+            }
+            String rest = s.substring(alias[0].length());
+            for (String verb : VERBS) {
+                if (rest.startsWith(verb) && rest.length() > verb.length()) {
+                    rest = rest.substring(verb.length());
+                    break;
+                }
+            }
+            if (assign(alias[1], rest, cfg, result)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean assign(String field, String value, SimulationConfig cfg, AIConfigParser.ParseResult result) {
+        String[] info = AIConfigParser.fieldInfo(field);
+        switch (info[1]) {
+            case "double":
+            case "int": {
+                int end = numberEnd(value);
+                if (end == 0) {
+                    return false;
+                }
+                Map<String, String> units = UNITS.get(normalize(info[2]));
+                String factor = units != null ? units.get(value.substring(end)) : null;
+                if (factor == null) {
+                    return false;
+                }
+                String number = value.substring(0, end);
+                if (!"1".equals(factor)) {
+                    number = new BigDecimal(number).multiply(new BigDecimal(factor)).toString();
+                }
+                AIConfigParser.addChange(field, number, cfg, result);
+                return true;
+            }
+            case "boolean": {
+                Boolean on = switchVerb(value);
+                if (on == null) {
+                    if ("true".equals(value) || "是".equals(value)) {
+                        on = true;
+                    } else if ("false".equals(value) || "否".equals(value)) {
+                        on = false;
+                    } else {
+                        return false;
+                    }
+                }
+                AIConfigParser.addChange(field, String.valueOf(on), cfg, result);
+                return true;
+            }
+            default:
+                if ("fluidName".equals(field)) {
+                    String fluid = FLUIDS.get(value);
+                    if (fluid == null) {
+                        return false;
+                    }
+                    addFluid(fluid, cfg, result);
+                    return true;
+                }
+                Map<String, String> options = OPTIONS.get(field);
+                String option = options != null ? options.get(value) : null;
+                if (option == null) {
+                    return false; // 自由文本（目录、文件名）不在本地猜测
+                }
+                AIConfigParser.addChange(field, option, cfg, result);
+                return true;
+        }
+    }
+
+    /**
+     * 流体预设同时更新名称、密度、粘度（与提示词中的规则 6 一致）
+     */
+    private static void addFluid(String name, SimulationConfig cfg, AIConfigParser.ParseResult result) {
+        SimulationConfig preset = new SimulationConfig();
+        preset.applyFluidPreset(name);
+        AIConfigParser.addChange("fluidName", preset.fluidName, cfg, result);
+        AIConfigParser.addChange("density", String.valueOf(preset.density), cfg, result);
+        AIConfigParser.addChange("dynamicViscosity", String.valueOf(preset.dynamicViscosity), cfg, result);
+    }
+
+    private static Boolean switchVerb(String verb) {
+        for (String off : OFF_VERBS) {
+            if (off.equals(verb)) {
+                return false;
+            }
+        }
+        for (String on : ON_VERBS) {
+            if (on.equals(verb)) {
+                return true;
+            }
+        }
+        if ("开".equals(verb)) {
+            return true;
+        }
+        if ("关".equals(verb)) {
+            return false;
+        }
+        return null;
+    }
+
+    /**
+     * 开头数字的长度：[-+]digits[.digits][e[-+]digits]，没有数字时返回 0
+     */
+    private static int numberEnd(String s) {
+        int i = 0;
+        if (i < s.length() && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = i;
+        while (i < s.length() && Character.isDigit(s.charAt(i))) {
+            i++;
+        }
+        if (i < s.length() && s.charAt(i) == '.') {
+            i++;
+            while (i < s.length() && Character.isDigit(s.charAt(i))) {
+                i++;
+            }
+        }
+        if (i == digits || (i == digits + 1 && s.charAt(digits) == '.')) {
+            return 0;
+        }
+        if (i < s.length() && s.charAt(i) == 'e') {
+            int j = i + 1;
+            if (j < s.length() && (s.charAt(j) == '-' || s.charAt(j) == '+')) {
+                j++;
+            }
+            int expDigits = j;
+            while (j < s.length() && Character.isDigit(s.charAt(j))) {
+                j++;
+            }
+            if (j > expDigits) {
+                i = j;
+            }
+        }
+        return i;
+    }
+
+    private static String trimEnd(String s) {
+        int end = s.length();
+        while (end > 0 && ".!?。！？~～".indexOf(s.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return s.substring(0, end);
+    }
+
+    private static String stripPrefix(String s, String[] prefixes) {
+        for (String p : prefixes) {
+            if (s.startsWith(p) && s.length() > p.length()) {
+                return s.substring(p.length());
+            }
+        }
+        return s;
+    }
+
+    private static String stripSuffix(String s, String[] suffixes) {
+        for (String p : suffixes) {
+            if (s.endsWith(p) && s.length() > p.length()) {
+                return s.substring(0, s.length() - p.length());
+            }
+        }
+        return s;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * AI 面板显示的统计：命中率与本地解析耗时
+     */
+    public synchronized String summary() {
+        long total = hits + misses;
+        return String.format("本地解析 %d/%d (%.0f%%)，平均 %.0f µs", hits, total, total > 0 ? 100.0 * hits / total : 0.0,
+                hits > 0 ? hitNanos / 1e3 / hits : 0.0);
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses;
+        return String.format("LocalCommandParser[%d hits, %d misses (%.0f%% hit rate), hit avg %.1f us, miss avg %.1f us]",
+                hits, misses, total > 0 ? 100.0 * hits / total : 0.0, hits > 0 ? hitNanos / 1e3 / hits : 0.0,
+                misses > 0 ? missNanos / 1e3 / misses : 0.0);
+    }
+
+    // 测试方法：常见指令应在本地解析，含糊或相对的指令交给 AI
+    public static void main(String[] args) {
+        SimulationConfig cfg = new SimulationConfig();
+        Object[][] local = {
+                { "入口速度改为0.05", "inletVelocity=0.05" },
+                { "把入口速度改成 0.05 m/s", "inletVelocity=0.05" },
+                { "速度 5 cm/s。", "inletVelocity=0.05" },
+                { "使用水", "fluidName=Water", "density=998.0", "dynamicViscosity=0.001002" },
+                { "改用空气作为流体", "fluidName=Air", "density=1.225", "dynamicViscosity=1.7894E-5" },
+                { "网格等级 5", "meshSizeLevel=5" },
+                { "关闭动画", "exportAnimation=false" },
+                { "打开压力云图", "exportPressure=true" },
+                { "仿真时间延长到 300 秒", "endTime=300.0" },
+                { "仿真时间 5 分钟", "endTime=300.0" },
+                { "最大单元改为 5mm", "meshMaxSize=0.005" },
+                { "使用湍流，时间步长设为0.1", "flowType=Turbulent", "timeStep=0.1" },
+                { "ＩｎｌｅｔＶｅｌｏｃｉｔｙ＝０．０２", "inletVelocity=0.02" },
+                { "出口类型改为自由出流并且帧率 30", "outletType=Outflow", "animationFps=30" },
+                { "上边界设为滑移", "topBoundaryType=Slip" },
+                { "使用水，使用水", "fluidName=Water", "density=998.0", "dynamicViscosity=0.001002" },
+        };
+        String[] remote = { "你好", "加密网格", "速度加倍", "入口速度提高 20%", "网格等级 2.5", "把输出目录改为 D:\\Sim",
+                "速度改为 0.05 米，然后分析一下结果", "密度 5 m/s", "为什么会出现涡街？", "入口速度改为",
+                // 超出字段表的取值范围
+                "网格等级 100", "网格等级 0", "时间步长 0", "半径 -1 mm", "速度为-0.05",
+                // 同一字段的取值互相矛盾
+                "用水和空气", "入口速度 0.05，入口速度 0.1", "打开动画然后关闭动画", };
+
+        LocalCommandParser parser = new LocalCommandParser();
+        int failures = 0;
+        for (Object[] c : local) {
+            AIConfigParser.ParseResult r = parser.parse((String) c[0], cfg);
+            List<String> got = new ArrayList<>();
+            if (r != null) {
+                for (AIConfigParser.ConfigChange change : r.changes) {
+                    got.add(change.fieldName + "=" + change.newValue);
+                }
+            }
+            List<String> expected = new ArrayList<>();
+            for (int i = 1; i < c.length; i++) {
+                expected.add((String) c[i]);
+            }
+            boolean ok = got.equals(expected);
+            failures += ok ? 0 : 1;
+            System.out.println(String.format("%-5s %-36s %s", ok ? "ok" : "FAIL", c[0], r != null ? r.message : "-> AI"));
+        }
+        for (String input : remote) {
+            AIConfigParser.ParseResult r = parser.parse(input, cfg);
+            failures += r == null ? 0 : 1;
+            System.out.println(String.format("%-5s %-36s %s", r == null ? "ok" : "FAIL", input,
+                    r != null ? r.message : "-> AI"));
+        }
+
+        // 本地解析耗时
+        long t0 = System.nanoTime();
+        int n = 200_000;
+        for (int i = 0; i < n; i++) {
+            tryParse((String) local[i % local.length][0], cfg);
+        }
+        System.out.println(String.format("%.2f us per command (%d commands)", (System.nanoTime() - t0) / 1e3 / n, n));
+        System.out.println(parser);
+        if (failures > 0) {
+            throw new IllegalStateException("LocalCommandParser self-test failed: " + failures + " case(s)");
+        }
+        System.out.println("LocalCommandParser self-test passed");
+    }
+}
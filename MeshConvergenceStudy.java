@@ -0,0 +1,415 @@
+/*
+ * MeshConvergenceStudy.java - 网格收敛性研究
+ * 由基础配置生成逐级加密的网格族：meshMaxSize / meshMinSize / cylinderMeshMaxSize 每级除以加密比 r，
+ * meshSizeLevel 各级相同；通过 SweepRunner 求解（各级都计算指标；COMSOL 执行器一次一级）后，
+ * 对 Strouhal 数、阻力、升力等指标用最细的三套网格做 Richardson 外推并计算网格收敛指数 (GCI)，
+ * 推荐所有指标与外推值的相对误差都在容差内的最粗 (最便宜) 网格；外推值接近 0 的指标改用绝对误差。
+ * 结果写入 <out>/convergence_report.csv。
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MeshConvergenceStudy {
+
+    public static final String REPORT_FILE = "convergence_report.csv";
+    public static final String CASES_FILE = "mesh_cases.jsonl";
+
+    // GCI 安全系数（三套网格，Roache）
+    static final double SAFETY_FACTOR = 1.25;
+    // 观测阶无法确定时使用的格式精度阶
+    static final double FORMAL_ORDER = 2.0;
+
+    private final SimulationConfig baseConfig;
+    private File outputRoot;
+    private int levels = 3;
+    private double ratio = 1.5;
+    private double tolerance = 0.01;
+    private int maxWorkers = 1;
+    private List<String> metrics = Arrays.asList("strouhal", "cd_mean", "cl_rms");
+
+    public MeshConvergenceStudy(SimulationConfig baseConfig, String outputRoot) {
+        this.baseConfig = baseConfig;
+        this.outputRoot = new File(outputRoot);
+    }
+
+    public MeshConvergenceStudy setOutputRoot(String outputRoot) {
+        this.outputRoot = new File(outputRoot);
+        return this;
+    }
+
+    public MeshConvergenceStudy setLevels(int levels) {
+        if (levels < 3) {
+            throw new IllegalArgumentException("Richardson extrapolation needs at least 3 mesh levels");
+        }
+        this.levels = levels;
+        return this;
+    }
+
+    public MeshConvergenceStudy setRatio(double ratio) {
+        if (ratio <= 1) {
+            throw new IllegalArgumentException("Refinement ratio must be > 1: " + ratio);
+        }
+        this.ratio = ratio;
+        return this;
+    }
+
+    public MeshConvergenceStudy setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    public MeshConvergenceStudy setMaxWorkers(int maxWorkers) {
+        this.maxWorkers = Math.max(1, maxWorkers);
+        return this;
+    }
+
+    public MeshConvergenceStudy setMetrics(List<String> metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * 网格族，第 0 级为基础配置（最粗）
+     */
+    public List<SimulationConfig> family() {
+        List<SimulationConfig> list = new ArrayList<>();
+        for (int k = 0; k < levels; k++) {
+            SimulationConfig cfg = baseConfig.copy();
+            double scale = Math.pow(ratio, -k);
+            cfg.meshMaxSize = baseConfig.meshMaxSize * scale;
+            cfg.meshMinSize = baseConfig.meshMinSize * scale;
+            cfg.cylinderMeshMaxSize = baseConfig.cylinderMeshMaxSize * scale;
+            // meshSizeLevel 保持不变：它还决定 hgrad / hcurve / hnarrow，改变它会使加密比不再恒为 r
+            cfg.computeMetrics = true;
+            list.add(cfg);
+        }
+        return list;
+    }
+
+    /**
+     * 写出网格族工况文件，经 SweepRunner 求解，然后分析
+     */
+    public Report run(SweepRunner.CaseExecutor executor) throws IOException, InterruptedException {
+        outputRoot.mkdirs();
+        File casesFile = new File(outputRoot, CASES_FILE);
+        CaseFile.write(family(), baseConfig, casesFile.getPath());
+        System.out.println("Mesh convergence: " + levels + " levels, ratio " + ratio + ", tolerance "
+                + tolerance * 100 + "%");
+
+        List<SweepRunner.CaseResult> results;
+        try (CaseFile cases = CaseFile.open(casesFile.getPath())) {
+            results = new SweepRunner(baseConfig, outputRoot.getPath()).setMaxWorkers(maxWorkers).setCaseFile(cases)
+                    .run(executor);
+        }
+        Report report = analyze(results);
+        report.write(new File(outputRoot, REPORT_FILE));
+        System.out.print(report);
+        return report;
+    }
+
+    /**
+     * 对每个指标用最细的三级做 Richardson 外推，再按各级相对误差给出推荐网格
+     */
+    Report analyze(List<SweepRunner.CaseResult> results) {
+        Report report = new Report(results, tolerance);
+        for (String metric : metrics) {
+            double[] values = new double[results.size()];
+            boolean complete = true;
+            for (int k = 0; k < values.length; k++) {
+                SweepRunner.CaseResult r = results.get(k);
+                String v = r.success ? r.metrics.get(metric) : null;
+                values[k] = v != null ? Double.parseDouble(v) : Double.NaN;
+                complete &= !Double.isNaN(values[k]);
+            }
+            if (!complete) {
+                System.out.println("Warning: metric '" + metric + "' missing on some mesh levels, skipped");
+                continue;
+            }
+            int n = values.length;
+            Richardson estimate = Richardson.estimate(values[n - 1], values[n - 2], values[n - 3], ratio);
+            report.add(metric, values, estimate);
+            if (report.usesAbsoluteError(metric)) {
+                System.out.println("Warning: metric '" + metric + "' extrapolates to ~0 (" + estimate.extrapolated
+                        + "), using absolute instead of relative error");
+            }
+        }
+        report.recommend();
+        return report;
+    }
+
+    // ============================================
+    // Richardson 外推与 GCI
+    // ============================================
+
+    /**
+     * 三套网格 (f1 最细, f3 最粗, 加密比 r) 的外推结果
+     */
+    public static class Richardson {
+        public double order; // 观测精度阶 p
+        public double extrapolated; // 网格无关解估计
+        public double gciFine; // 最细网格的 GCI（相对值）
+        public boolean oscillatory; // 三级结果振荡（非单调收敛）
+        public boolean assumedOrder; // 观测阶无效，使用了 FORMAL_ORDER
+
+        /**
+         * p = ln|(f3-f2)/(f2-f1)| / ln r，f_ext = f1 + (f1-f2)/(r^p-1)，
+         * GCI = Fs |(f1-f2)/f1| / (r^p-1)
+         */
+        public static Richardson estimate(double f1, double f2, double f3, double r) {
+            Richardson e = new Richardson();
+            double e21 = f1 - f2;
+            double e32 = f2 - f3;
+            e.oscillatory = e21 * e32 < 0;
+            if (e21 == 0) {
+                // 两套最细网格结果相同，视为已收敛
+                e.order = FORMAL_ORDER;
+                e.assumedOrder = true;
+                e.extrapolated = f1;
+                e.gciFine = 0;
+                return e;
+            }
+            e.order = Math.log(Math.abs(e32 / e21)) / Math.log(r);
+            if (Double.isNaN(e.order) || Double.isInfinite(e.order) || e.order <= 0) {
+                e.order = FORMAL_ORDER;
+                e.assumedOrder = true;
+            }
+            double rp = Math.pow(r, e.order);
+            e.extrapolated = f1 + e21 / (rp - 1);
+            e.gciFine = SAFETY_FACTOR * Math.abs(e21 / f1) / (rp - 1);
+            return e;
+        }
+    }
+
+    /**
+     * 各指标在各级网格上的值、外推结果与推荐网格
+     */
+    public static class Report {
+        public final List<SweepRunner.CaseResult> results;
+        public final double tolerance;
+        public final Map<String, double[]> values = new LinkedHashMap<>();
+        public final Map<String, Richardson> estimates = new LinkedHashMap<>();
+        public int recommendedLevel = -1; // -1 = 没有满足容差的网格
+
+        Report(List<SweepRunner.CaseResult> results, double tolerance) {
+            this.results = results;
+            this.tolerance = tolerance;
+        }
+
+        void add(String metric, double[] v, Richardson estimate) {
+            values.put(metric, v);
+            estimates.put(metric, estimate);
+        }
+
+        /**
+         * 与外推值的相对误差；外推值接近 0 时（见 usesAbsoluteError）返回绝对误差
+         */
+        public double relativeError(String metric, int level) {
+            double ext = estimates.get(metric).extrapolated;
+            double error = Math.abs(values.get(metric)[level] - ext);
+            return usesAbsoluteError(metric) ? error : error / Math.abs(ext);
+        }
+
+        /**
+         * 外推值小于各级最大值的 tolerance 倍（如对称流动的平均升力）时，除以它得到的相对误差没有意义
+         */
+        public boolean usesAbsoluteError(String metric) {
+            double scale = 0;
+            for (double v : values.get(metric)) {
+                scale = Math.max(scale, Math.abs(v));
+            }
+            return Math.abs(estimates.get(metric).extrapolated) <= tolerance * scale;
+        }
+
+        void recommend() {
+            if (values.isEmpty()) {
+                return;
+            }
+            for (int k = 0; k < results.size(); k++) {
+                boolean ok = true;
+                for (String metric : values.keySet()) {
+                    ok &= relativeError(metric, k) <= tolerance;
+                }
+                if (ok) {
+                    recommendedLevel = k;
+                    return;
+                }
+            }
+        }
+
+        public SimulationConfig getRecommendedConfig() {
+            return recommendedLevel >= 0 ? results.get(recommendedLevel).sweepCase.config : null;
+        }
+
+        void write(File file) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            sb.append("metric,level,meshMaxSize,meshMinSize,cylinderMeshMaxSize,elapsed_s,value,rel_error,");
+            sb.append("extrapolated,order,gci_fine,oscillatory\n");
+            for (String metric : values.keySet()) {
+                Richardson e = estimates.get(metric);
+                for (int k = 0; k < results.size(); k++) {
+                    SimulationConfig cfg = results.get(k).sweepCase.config;
+                    sb.append(metric).append(',').append(k).append(',');
+                    sb.append(cfg.meshMaxSize).append(',').append(cfg.meshMinSize).append(',');
+                    sb.append(cfg.cylinderMeshMaxSize).append(',');
+                    sb.append(String.format("%.3f", results.get(k).elapsedMs / 1000.0)).append(',');
+                    sb.append(values.get(metric)[k]).append(',').append(relativeError(metric, k)).append(',');
+                    sb.append(e.extrapolated).append(',').append(e.order).append(',').append(e.gciFine).append(',');
+                    sb.append(e.oscillatory).append('\n');
+                }
+            }
+            Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%-10s", "level"));
+            for (int k = 0; k < results.size(); k++) {
+                sb.append(String.format("%14s", "h=" + String.format("%.4g", results.get(k).sweepCase.config.meshMaxSize)));
+            }
+            sb.append(String.format("%14s%8s%9s%n", "extrap.", "p", "GCI"));
+            sb.append(String.format("%-10s", "time (s)"));
+            for (SweepRunner.CaseResult r : results) {
+                sb.append(String.format("%14.1f", r.elapsedMs / 1000.0));
+            }
+            sb.append(System.lineSeparator());
+            for (String metric : values.keySet()) {
+                Richardson e = estimates.get(metric);
+                sb.append(String.format("%-10s", metric));
+                for (double v : values.get(metric)) {
+                    sb.append(String.format("%14.6g", v));
+                }
+                sb.append(String.format("%14.6g%8.2f%8.2f%%", e.extrapolated, e.order, e.gciFine * 100));
+                if (e.oscillatory) {
+                    sb.append("  (oscillatory)");
+                } else if (e.assumedOrder) {
+                    sb.append("  (p assumed)");
+                }
+                if (usesAbsoluteError(metric)) {
+                    sb.append("  (abs. error)");
+                }
+                sb.append(System.lineSeparator());
+            }
+            if (recommendedLevel >= 0) {
+                SimulationConfig cfg = getRecommendedConfig();
+                sb.append(String.format("Recommended mesh: level %d (meshMaxSize=%.4g, meshMinSize=%.4g, "
+                        + "cylinderMeshMaxSize=%.4g, meshSizeLevel=%d), all metrics within %.2f%% of the "
+                        + "extrapolated values%n", recommendedLevel, cfg.meshMaxSize, cfg.meshMinSize,
+                        cfg.cylinderMeshMaxSize, cfg.meshSizeLevel, tolerance * 100));
+            } else {
+                sb.append(String.format("No mesh level is within %.2f%% of the extrapolated values; "
+                        + "add a finer level%n", tolerance * 100));
+            }
+            return sb.toString();
+        }
+    }
+
+    // ============================================
+    // 命令行
+    // ============================================
+
+    /**
+     * 用法: [--levels N] [--ratio R] [--tolerance T] [--threads N] [--metrics a,b,c] [--out DIR]
+     */
+    public static Report runFromArgs(SimulationConfig base, String[] args, SweepRunner.CaseExecutor executor)
+            throws IOException, InterruptedException {
+        String out = new File(base.getEffectiveOutputDir(), "mesh_convergence").getPath();
+        MeshConvergenceStudy study = new MeshConvergenceStudy(base, out);
+        for (int i = 0; i + 1 < args.length; i++) {
+            String value = args[i + 1];
+            if ("--levels".equals(args[i])) {
+                study.setLevels(Integer.parseInt(value));
+            } else if ("--ratio".equals(args[i])) {
+                study.setRatio(Double.parseDouble(value));
+            } else if ("--tolerance".equals(args[i])) {
+                study.setTolerance(Double.parseDouble(value));
+            } else if ("--threads".equals(args[i])) {
+                study.setMaxWorkers(Integer.parseInt(value));
+            } else if ("--metrics".equals(args[i])) {
+                study.setMetrics(Arrays.asList(value.split(",")));
+            } else if ("--out".equals(args[i])) {
+                study.setOutputRoot(value);
+            } else {
+                continue;
+            }
+            i++;
+        }
+        return study.run(executor);
+    }
+
+    /**
+     * 测试方法：桩执行器按 f(h) = f0 + C h^p 生成指标，检查外推能否还原 f0 和 p；
+     * 参数中带 --backend lbm 时改用 LbmBackend 实际求解（不检查数值）
+     */
+    public static void main(String[] args) throws Exception {
+        SweepRunner.CaseExecutor executor = new SweepRunner.CaseExecutor() {
+            @Override
+            public Map<String, String> execute(SweepRunner.SweepCase c) {
+                double h = c.config.meshMaxSize / 0.01;
+                Map<String, String> m = new LinkedHashMap<>();
+                m.put("strouhal", String.valueOf(0.2 + 0.01 * h * h)); // p = 2
+                m.put("cd_mean", String.valueOf(1.4 + 0.05 * Math.pow(h, 1.5))); // p = 1.5
+                m.put("cl_rms", String.valueOf(0.5 - 0.002 * h)); // p = 1
+                m.put("cl_mean", String.valueOf(0.001 * h * h)); // f0 = 0
+                return m;
+            }
+        };
+        boolean stub = true;
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--backend".equals(args[i]) && i + 1 < args.length) {
+                if ("lbm".equalsIgnoreCase(args[++i])) {
+                    executor = new SweepRunner.BackendCaseExecutor(new LbmBackend());
+                    stub = false;
+                }
+            } else {
+                rest.add(args[i]);
+            }
+        }
+        SimulationConfig base;
+        try {
+            base = ConfigManager.loadConfig("config.json");
+        } catch (IOException e) {
+            base = SimulationConfig.getDefault();
+        }
+        if (rest.isEmpty()) {
+            rest.addAll(Arrays.asList("--out", "mesh_convergence_dryrun", "--threads", "3"));
+        }
+        if (stub && !rest.contains("--metrics")) {
+            rest.addAll(Arrays.asList("--metrics", "strouhal,cd_mean,cl_rms,cl_mean"));
+        }
+        Report report = runFromArgs(base, rest.toArray(new String[0]), executor);
+        if (!stub) {
+            return;
+        }
+
+        // 桩指标是精确的幂律，三级外推应还原 f0 和 p
+        String[] metrics = { "strouhal", "cd_mean", "cl_rms" };
+        double[] expectedValue = { 0.2, 1.4, 0.5 };
+        double[] expectedOrder = { 2.0, 1.5, 1.0 };
+        for (int i = 0; i < metrics.length; i++) {
+            Richardson e = report.estimates.get(metrics[i]);
+            if (e == null) {
+                throw new IllegalStateException("No estimate for " + metrics[i]);
+            }
+            if (Math.abs(e.extrapolated - expectedValue[i]) > 1e-6 || Math.abs(e.order - expectedOrder[i]) > 1e-6) {
+                throw new IllegalStateException(String.format("%s: extrapolated %.9g (expected %s), order %.9g "
+                        + "(expected %s)", metrics[i], e.extrapolated, expectedValue[i], e.order, expectedOrder[i]));
+            }
+        }
+        // cl_mean 外推到 0：用绝对误差，不能因除以 ~0 而永远没有推荐网格
+        double clMean = report.relativeError("cl_mean", 0);
+        if (!report.usesAbsoluteError("cl_mean") || Double.isNaN(clMean) || Double.isInfinite(clMean)) {
+            throw new IllegalStateException("cl_mean error against a zero extrapolation: " + clMean);
+        }
+        System.out.println("Richardson extrapolation recovered f0 and p for all stub metrics");
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * MockLlmServer.java - 本地模拟的 OpenAI 兼容 /v1/chat/completions 接口 (com.sun.net.httpserver)
+ * 不需要 API Key 和网络即可运行 QwenClient、AIConfigParser 和 GUI 的 AI 助手：
+ *   - 脚本化回复：最后一条用户消息包含某个关键词时返回对应内容，否则返回默认回复（AI 助手格式的 JSON）；
+ *   - 注入延迟：固定延迟 latencyMs，slowFraction 的请求延迟 slowMs（长尾）；
+ *   - 注入故障：failStatus 让所有请求失败，faultFraction 的请求随机返回 faultStatus，
+ *     quotaPerSecond 限制每秒请求数，429 带 Retry-After；
+ *   - 请求带 "stream":true 时以 SSE 逐段返回，每段间隔 chunkDelayMs，客户端中途断开计入 aborted；
+ *   - 请求带 Accept-Encoding: gzip 时压缩非流式回复。
+ * 所有参数可在运行中修改。单独运行时 GUI 可以指向它：
+ *   java MockLlmServer [端口] [latencyMs]
+ *   然后设置 QWEN_API_KEY=mock、QWEN_API_URL=http://127.0.0.1:端口/v1/chat/completions
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class MockLlmServer implements AutoCloseable {
+
+    final HttpServer server;
+    final ExecutorService executor = Executors.newCachedThreadPool();
+    // 服务端看到的客户端端口（TCP 连接）与发出的字节数
+    final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    final AtomicLong bytesSent = new AtomicLong();
+    // 默认回复的非流式响应体（预先生成）与流式分段
+    final byte[] plain;
+    final byte[] gzipped;
+    final List<String> chunks;
+    final int chunkDelayMs;
+
+    // 可在运行中调整：基础延迟、慢请求比例与延迟（长尾）
+    volatile int latencyMs;
+    volatile double slowFraction = 0;
+    volatile int slowMs = 0;
+    // 故障：failStatus 非 0 时所有请求失败；faultFraction 的请求随机返回 faultStatus
+    volatile int failStatus = 0;
+    volatile double faultFraction = 0;
+    volatile int faultStatus = 503;
+    // 服务端配额：每秒最多 quotaPerSecond 个请求 (0 为不限)，超出时返回 429 + Retry-After
+    volatile int quotaPerSecond = 0;
+    volatile int retryAfterSeconds = 1;
+    private long quotaWindow = 0;
+    private int quotaUsed = 0;
+
+    final AtomicLong requests = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+    final AtomicLong faults = new AtomicLong();
+    // 客户端中途断开的流式回复数；最近一次请求体
+    final AtomicLong aborted = new AtomicLong();
+    volatile String lastRequest;
+
+    private static class Script {
+        final String keyword;
+        final String content;
+
+        Script(String keyword, String content) {
+            this.keyword = keyword;
+            this.content = content;
+        }
+    }
+
+    private final List<Script> scripts = new CopyOnWriteArrayList<>();
+
+    public MockLlmServer(int latencyMs) throws IOException {
+        this(latencyMs, 2);
+    }
+
+    public MockLlmServer(int latencyMs, int chunkDelayMs) throws IOException {
+        this(0, latencyMs, chunkDelayMs);
+    }
+
+    /**
+     * @param port 0 表示任选空闲端口
+     */
+    public MockLlmServer(int port, int latencyMs, int chunkDelayMs) throws IOException {
+        this.chunkDelayMs = chunkDelayMs;
+        this.latencyMs = latencyMs;
+        StringBuilder message = new StringBuilder();
+        while (message.length() < 600) {
+            message.append("好的，我将入口速度修改为 0.05 m/s，雷诺数随之变为 100。");
+        }
+        String content = reply(message.toString(), "inletVelocity", "0.05");
+        chunks = split(content);
+        plain = completion(content);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(buf)) {
+            gz.write(plain);
+        }
+        gzipped = buf.toByteArray();
+
+        // 否则响应头与响应体分两次写出时会碰上 Nagle + 延迟确认，每个请求多等约 40 ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 200);
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+    }
+
+    /**
+     * 脚本化回复：最后一条用户消息包含 keyword 时返回 content（助手回复原文）；先登记的优先
+     */
+    public MockLlmServer script(String keyword, String content) {
+        scripts.add(new Script(keyword, content));
+        return this;
+    }
+
+    /**
+     * AI 助手格式的回复：{"message": ..., "changes": [{"field": ..., "value": ...}]}，
+     * fieldValues 为 字段名, 值 交替；值按 JSON 字面写入（字符串需自带引号）
+     */
+    public static String reply(String message, String... fieldValues) {
+        StringBuilder sb = new StringBuilder("{\"message\": \"").append(escape(message))
+                .append("\", \"changes\": [");
+        for (int i = 0; i + 1 < fieldValues.length; i += 2) {
+            sb.append(i > 0 ? ", " : "").append("{\"field\": \"").append(fieldValues[i]).append("\", \"value\": ")
+                    .append(fieldValues[i + 1]).append("}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    public void resetCounters() {
+        clientPorts.clear();
+        bytesSent.set(0);
+        requests.set(0);
+        rejected.set(0);
+        faults.set(0);
+        aborted.set(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        requests.incrementAndGet();
+        String request;
+        try (InputStream in = exchange.getRequestBody()) {
+            request = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        lastRequest = request;
+        if (overQuota()) {
+            rejected.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+            error(exchange, 429, "rate limit exceeded");
+            return;
+        }
+        boolean slow = slowFraction > 0 && ThreadLocalRandom.current().nextDouble() < slowFraction;
+        sleep(slow ? slowMs : latencyMs);
+        int status = failStatus;
+        if (status == 0 && faultFraction > 0 && ThreadLocalRandom.current().nextDouble() < faultFraction) {
+            status = faultStatus;
+        }
+        if (status != 0) {
+            faults.incrementAndGet();
+            if (status == 429) {
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+            }
+            error(exchange, status, "mock failure");
+            return;
+        }
+
+        String content = scripted(request);
+        if (request.contains("\"stream\":true")) {
+            stream(exchange, content != null ? split(content) : chunks);
+            return;
+        }
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = accept != null && accept.contains("gzip");
+        byte[] body;
+        if (content != null) {
+            body = completion(content);
+            gzip = false;
+        } else {
+            body = gzip ? gzipped : plain;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        bytesSent.addAndGet(body.length);
+    }
+
+    private void error(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] error = ("{\"error\":{\"message\":\"" + message + "\"}}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, error.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(error);
+        }
+    }
+
+    private synchronized boolean overQuota() {
+        int quota = quotaPerSecond;
+        if (quota <= 0) {
+            return false;
+        }
+        long window = System.currentTimeMillis() / 1000;
+        if (window != quotaWindow) {
+            quotaWindow = window;
+            quotaUsed = 0;
+        }
+        return ++quotaUsed > quota;
+    }
+
+    /**
+     * 按最后一条用户消息匹配脚本；没有匹配时返回 null（使用默认回复）
+     */
+    private String scripted(String request) {
+        if (scripts.isEmpty()) {
+            return null;
+        }
+        String user = lastUserMessage(request);
+        if (user == null) {
+            return null;
+        }
+        for (Script s : scripts) {
+            if (user.contains(s.keyword)) {
+                return s.content;
+            }
+        }
+        return null;
+    }
+
+    static String lastUserMessage(String request) {
+        String user = null;
+        try {
+            JsonReader reader = new JsonReader(request);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"messages".equals(reader.nextName())) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String role = null;
+                    String content = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        if ("role".equals(name)) {
+                            role = reader.nextString();
+                        } else if ("content".equals(name) && reader.peek() == JsonReader.Token.STRING) {
+                            content = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    if ("user".equals(role)) {
+                        user = content;
+                    }
+                }
+                reader.endArray();
+            }
+        } catch (IOException e) {
+            return user;
+        }
+        return user;
+    }
+
+    private void stream(HttpExchange exchange, List<String> parts) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < parts.size(); i++) {
+                if (i > 0) {
+                    sleep(chunkDelayMs);
+                }
+                String event = "data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + parts.get(i)
+                        + "\"}}]}\n\n";
+                byte[] bytes = event.getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                out.flush();
+                bytesSent.addAndGet(bytes.length);
+            }
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            aborted.incrementAndGet(); // 客户端取消请求、关闭了连接
+        }
+    }
+
+    private static byte[] completion(String content) {
+        String json = "{\"id\":\"mock\",\"object\":\"chat.completion\",\"choices\":[{\"index\":0,"
+                + "\"message\":{\"role\":\"assistant\",\"content\":\"" + escape(content) + "\"},"
+                + "\"finish_reason\":\"stop\"}]}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String content) {
+        StringBuilder sb = new StringBuilder(content.length() + 16);
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    sb.append(c < ' ' ? String.format("\\u%04x", (int) c) : c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 回复原文按 8 个字符分段（不拆开代理对），每段分别转义
+     */
+    private static List<String> split(String content) {
+        List<String> parts = new ArrayList<>();
+        int i = 0;
+        while (i < content.length()) {
+            int end = Math.min(content.length(), i + 8);
+            if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+                end++;
+            }
+            parts.add(escape(content.substring(i, end)));
+            i = end;
+        }
+        return parts;
+    }
+
+    private static void sleep(int ms) {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // 单独运行：带几条常用指令脚本的模拟服务，供 GUI 和 LoadGenerator 使用
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8399;
+        int latencyMs = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        MockLlmServer server = new MockLlmServer(port, latencyMs, 20);
+        server.script("水", reply("好的，已切换为水。", "fluidName", "\"Water\"", "density", "998.0",
+                "dynamicViscosity", "0.001002"));
+        server.script("加密", reply("好的，网格精度等级调为 2（更细）。", "meshSizeLevel", "2"));
+        server.script("你好", reply("你好！请告诉我想修改的仿真参数。"));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Mock LLM server on " + server.url() + " (latency " + latencyMs + " ms)");
+        System.out.println("GUI: set QWEN_API_KEY=mock and QWEN_API_URL=" + server.url());
+    }
+}
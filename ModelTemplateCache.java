@@ -0,0 +1,163 @@
+/*
+ * ModelTemplateCache.java - 几何/网格模板缓存
+ * 以 SimulationConfig 的几何与网格字段为键，缓存已构建几何和网格的模型；
+ * 只改变材料/物理/求解参数的工况可直接复用，跳过几何构建与网格划分
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ModelTemplateCache<M> {
+
+    /**
+     * 模板被逐出缓存时的释放回调（COMSOL 中为 ModelUtil.remove）
+     */
+    public interface Disposer<M> {
+        void dispose(M model);
+    }
+
+    // 键 -> 空闲模板队列；同一几何可同时有多个模型（并行工况各自借出一个）
+    private final Map<String, Deque<M>> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxIdle;
+    private final Disposer<M> disposer;
+    private int idleCount = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxIdle 最多保留的空闲模板数，超出时逐出最久未使用的几何
+     */
+    public ModelTemplateCache(int maxIdle, Disposer<M> disposer) {
+        this.maxIdle = Math.max(0, maxIdle);
+        this.disposer = disposer;
+    }
+
+    /**
+     * 几何与网格相关字段组成的缓存键（材料、物理、求解、输出字段不参与）
+     */
+    public static String keyOf(SimulationConfig cfg) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(cfg.domainWidth).append('|').append(cfg.domainHeight).append('|');
+        sb.append(cfg.cylinderRadius).append('|').append(cfg.cylinderX).append('|').append(cfg.cylinderY).append('|');
+        sb.append(cfg.meshSizeLevel).append('|').append(cfg.meshMaxSize).append('|');
+        sb.append(cfg.meshMinSize).append('|').append(cfg.cylinderMeshMaxSize);
+        return sb.toString();
+    }
+
+    /**
+     * 借出一个匹配的空闲模板；未命中返回 null，由调用方新建
+     */
+    public synchronized M acquire(SimulationConfig cfg) {
+        String key = keyOf(cfg);
+        Deque<M> queue = idle.get(key);
+        if (queue != null && !queue.isEmpty()) {
+            M model = queue.pollFirst();
+            if (queue.isEmpty()) {
+                idle.remove(key);
+            }
+            idleCount--;
+            hits++;
+            return model;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * 归还模板（其几何与网格必须仍对应 cfg），超出容量时逐出最久未使用的条目
+     */
+    public void release(SimulationConfig cfg, M model) {
+        List<M> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (maxIdle == 0) {
+                evicted.add(model);
+            } else {
+                String key = keyOf(cfg);
+                Deque<M> queue = idle.get(key);
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    idle.put(key, queue);
+                }
+                queue.addLast(model);
+                idleCount++;
+
+                Iterator<Map.Entry<String, Deque<M>>> it = idle.entrySet().iterator();
+                while (idleCount > maxIdle && it.hasNext()) {
+                    Deque<M> oldest = it.next().getValue();
+                    while (idleCount > maxIdle && !oldest.isEmpty()) {
+                        evicted.add(oldest.pollFirst());
+                        idleCount--;
+                    }
+                    if (oldest.isEmpty()) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+        // 释放放在锁外，避免 COMSOL 调用阻塞其他工况
+        for (M m : evicted) {
+            disposeQuietly(m);
+        }
+    }
+
+    /**
+     * 释放全部空闲模板
+     */
+    public void clear() {
+        List<M> all = new ArrayList<>();
+        synchronized (this) {
+            for (Deque<M> queue : idle.values()) {
+                all.addAll(queue);
+            }
+            idle.clear();
+            idleCount = 0;
+        }
+        for (M m : all) {
+            disposeQuietly(m);
+        }
+    }
+
+    private void disposeQuietly(M model) {
+        if (disposer == null) {
+            return;
+        }
+        try {
+            disposer.dispose(model);
+        } catch (Exception e) {
+            System.out.println("Warning: Failed to dispose cached model: " + e.getMessage());
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int getIdleCount() {
+        return idleCount;
+    }
+
+    /**
+     * 当前空闲模板的快照（清理会话时保留这些模型）
+     */
+    public synchronized List<M> idleModels() {
+        List<M> all = new ArrayList<>();
+        for (Deque<M> queue : idle.values()) {
+            all.addAll(queue);
+        }
+        return all;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ModelTemplateCache {hits=" + hits + ", misses=" + misses + ", idle=" + idleCount + "}";
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * ProbeRecorder.java - 力系数与探针时间序列
+ * 每个输出时刻追加一行 (time, Cd, Cl, 各探针点 u/v/p)，边求解边写盘，不在内存中保留历史：
+ *   Csv    - probes.csv，首行为列名
+ *   Binary - probes.bin，文本头 "PROBES1\n<列名,逗号分隔>\n" 之后为 little-endian float64 行
+ * 探针点由 probePoints 指定，格式 "x1,y1;x2,y2" (m)。
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public abstract class ProbeRecorder implements Closeable {
+
+    public static final String FORMAT_CSV = "Csv";
+    public static final String FORMAT_BINARY = "Binary";
+    static final String BINARY_MAGIC = "PROBES1";
+
+    // 每隔多少行刷新一次，便于求解过程中查看
+    private static final int FLUSH_ROWS = 64;
+
+    protected final String[] columns;
+    protected long rows = 0;
+    private double lastTime = Double.NEGATIVE_INFINITY;
+
+    protected ProbeRecorder(String[] columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * 按配置创建，文件为 <dir>/probes.csv 或 <dir>/probes.bin
+     */
+    public static ProbeRecorder create(SimulationConfig config, String dir) throws IOException {
+        String[] columns = columns(parsePoints(config.probePoints));
+        if (FORMAT_BINARY.equalsIgnoreCase(config.probeFormat)) {
+            return new BinaryRecorder(new File(dir, "probes.bin"), columns);
+        }
+        if (FORMAT_CSV.equalsIgnoreCase(config.probeFormat)) {
+            return new CsvRecorder(new File(dir, "probes.csv"), columns);
+        }
+        throw new IllegalArgumentException("Unknown probe format: " + config.probeFormat);
+    }
+
+    /**
+     * 解析 "x1,y1;x2,y2"，空字符串表示没有探针点
+     */
+    public static double[][] parsePoints(String spec) {
+        List<double[]> points = new ArrayList<>();
+        if (spec != null) {
+            for (String part : spec.split(";")) {
+                if (part.trim().isEmpty()) {
+                    continue;
+                }
+                String[] xy = part.split(",");
+                if (xy.length != 2) {
+                    throw new IllegalArgumentException("Invalid probe point '" + part.trim() + "', expected x,y");
+                }
+                points.add(new double[] { Double.parseDouble(xy[0].trim()), Double.parseDouble(xy[1].trim()) });
+            }
+        }
+        return points.toArray(new double[0][]);
+    }
+
+    /**
+     * 列名：time, Cd, Cl, u_P1, v_P1, p_P1, u_P2, ...
+     */
+    public static String[] columns(double[][] points) {
+        String[] names = new String[3 + 3 * points.length];
+        names[0] = "time";
+        names[1] = "Cd";
+        names[2] = "Cl";
+        for (int k = 0; k < points.length; k++) {
+            names[3 + 3 * k] = "u_P" + (k + 1);
+            names[4 + 3 * k] = "v_P" + (k + 1);
+            names[5 + 3 * k] = "p_P" + (k + 1);
+        }
+        return names;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * 追加一行；时间不大于上一行时忽略（分段求解时每段的首个解与上一段末尾重复）
+     *
+     * @param values 除 time 外的各列，长度为 columns.length - 1
+     */
+    public void record(double time, double[] values) throws IOException {
+        if (time <= lastTime) {
+            return;
+        }
+        if (values.length != columns.length - 1) {
+            throw new IllegalArgumentException("Expected " + (columns.length - 1) + " values, got " + values.length);
+        }
+        lastTime = time;
+        write(time, values);
+        rows++;
+        if (rows % FLUSH_ROWS == 0) {
+            flush();
+        }
+    }
+
+    protected abstract void write(double time, double[] values) throws IOException;
+
+    public abstract void flush() throws IOException;
+
+    // ============================================
+    // CSV
+    // ============================================
+    static class CsvRecorder extends ProbeRecorder {
+        private final Writer out;
+
+        CsvRecorder(File file, String[] columns) throws IOException {
+            super(columns);
+            this.out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+            out.write(String.join(",", columns));
+            out.write('\n');
+        }
+
+        @Override
+        protected void write(double time, double[] values) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            sb.append(time);
+            for (double v : values) {
+                sb.append(',').append(v);
+            }
+            sb.append('\n');
+            out.write(sb.toString());
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // ============================================
+    // Binary
+    // ============================================
+    static class BinaryRecorder extends ProbeRecorder {
+        private final OutputStream out;
+        private final ByteBuffer row;
+
+        BinaryRecorder(File file, String[] columns) throws IOException {
+            super(columns);
+            this.out = new BufferedOutputStream(Files.newOutputStream(file.toPath()));
+            this.row = ByteBuffer.allocate(8 * columns.length).order(ByteOrder.LITTLE_ENDIAN);
+            out.write((BINARY_MAGIC + "\n" + String.join(",", columns) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        protected void write(double time, double[] values) throws IOException {
+            row.clear();
+            row.putDouble(time);
+            for (double v : values) {
+                row.putDouble(v);
+            }
+            out.write(row.array(), 0, row.position());
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * 读取 Binary 格式文件，返回 [行][列]，列名写入 columnsOut（可为 null）
+     */
+    public static double[][] readBinary(File file, List<String> columnsOut) throws IOException {
+        try (DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(new FileInputStream(file)))) {
+            String magic = readLine(in);
+            if (!BINARY_MAGIC.equals(magic)) {
+                throw new IOException("Not a probe file: " + file);
+            }
+            String[] names = readLine(in).split(",");
+            if (columnsOut != null) {
+                java.util.Collections.addAll(columnsOut, names);
+            }
+            List<double[]> rows = new ArrayList<>();
+            byte[] bytes = new byte[8 * names.length];
+            while (true) {
+                try {
+                    in.readFully(bytes);
+                } catch (java.io.EOFException e) {
+                    break;
+                }
+                ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+                double[] r = new double[names.length];
+                for (int c = 0; c < r.length; c++) {
+                    r[c] = buf.getDouble();
+                }
+                rows.add(r);
+            }
+            return rows.toArray(new double[0][]);
+        }
+    }
+
+    private static String readLine(DataInputStream in) throws IOException {
+        java.io.ByteArrayOutputStream line = new java.io.ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // ============================================
+    // 测试方法（不需要 COMSOL）
+    // ============================================
+    public static void main(String[] args) throws Exception {
+        SimulationConfig config = SimulationConfig.getDefault();
+        config.probePoints = "1.0,0.5; 1.5,0.6";
+        String dir = args.length > 0 ? args[0] : ".";
+        int n = 1000;
+        for (String format : new String[] { FORMAT_CSV, FORMAT_BINARY }) {
+            config.probeFormat = format;
+            try (ProbeRecorder recorder = create(config, dir)) {
+                double[] values = new double[recorder.getColumns().length - 1];
+                for (int i = 0; i < n; i++) {
+                    double t = i * 0.5;
+                    values[0] = 1.4;
+                    values[1] = 0.6 * Math.sin(t);
+                    recorder.record(t, values);
+                    recorder.record(t, values); // 重复时刻被忽略
+                }
+                System.out.println(format + ": " + recorder.getRows() + " rows, columns "
+                        + String.join(",", recorder.getColumns()));
+            }
+        }
+        List<String> names = new ArrayList<>();
+        double[][] data = readBinary(new File(dir, "probes.bin"), names);
+        System.out.println("Read back " + data.length + " rows, " + names.size() + " columns, Cl(t=" + data[3][0]
+                + ")=" + data[3][2]);
+    }
+}
@@ -0,0 +1,546 @@
+/*
+ * ProviderRouter.java - AI 服务提供方的延迟感知路由
+ * 在多个兼容 chat/completions 的服务（Qwen、DeepSeek）之间选择和对冲：
+ *   - 每个服务一个对数分桶的延迟直方图，首选近期中位延迟最低的服务（样本不足的服务优先试用）
+ *   - 首选服务超过其 p95 仍未返回时，向备用服务发出对冲请求，先得到结果的一方胜出，另一方被取消
+ *   - 首选服务失败时立即改用备用服务，不再等到读超时
+ *   - 熔断器：连续失败 breakerFailures 次后跳过该服务 breakerCooldownMs，之后放行一次试探请求
+ * 流式请求以"首段内容"为胜出点：一旦某个请求开始输出，其他请求立即取消，之后不再切换服务。
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ProviderRouter {
+
+    // 样本少于此数时不用直方图排序，也不用 p95 作为对冲延迟
+    private static final int MIN_SAMPLES = 5;
+
+    /**
+     * 对数分桶延迟直方图：第 i 桶为 [1.1^i, 1.1^(i+1)) ms，相对误差约 10%；
+     * 每 DECAY_INTERVAL 个样本所有计数减半，使分位数跟随近期延迟
+     */
+    public static class LatencyHistogram {
+        private static final double BASE = 1.1;
+        private static final int BUCKETS = 170; // 1.1^170 ms ≈ 3.4 小时
+        private static final int DECAY_INTERVAL = 256;
+
+        private final long[] counts = new long[BUCKETS];
+        private long total = 0;
+        private long sinceDecay = 0;
+
+        public synchronized void record(double ms) {
+            int bucket = ms <= 1 ? 0 : (int) Math.min(BUCKETS - 1, Math.log(ms) / Math.log(BASE));
+            counts[bucket]++;
+            total++;
+            if (++sinceDecay >= DECAY_INTERVAL) {
+                sinceDecay = 0;
+                total = 0;
+                for (int i = 0; i < BUCKETS; i++) {
+                    counts[i] /= 2;
+                    total += counts[i];
+                }
+            }
+        }
+
+        public synchronized long count() {
+            return total;
+        }
+
+        /**
+         * 分位数 (0..1) 所在桶的上界 (ms)；没有样本时返回 NaN
+         */
+        public synchronized double percentile(double q) {
+            if (total == 0) {
+                return Double.NaN;
+            }
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return Math.pow(BASE, i + 1);
+                }
+            }
+            return Math.pow(BASE, BUCKETS);
+        }
+    }
+
+    /**
+     * 一个服务提供方及其延迟统计与熔断状态
+     */
+    public static class Provider {
+        public final String name;
+        public final String url;
+        public final String model;
+        public final String apiKey;
+        final LatencyHistogram latency = new LatencyHistogram();
+        private int consecutiveFailures = 0;
+        private long openUntil = 0;
+        private boolean trialInFlight = false;
+        private long successes = 0;
+        private long failures = 0;
+
+        public Provider(String name, String url, String model, String apiKey) {
+            this.name = name;
+            this.url = url;
+            this.model = model;
+            this.apiKey = apiKey;
+        }
+
+        /**
+         * 熔断器是否放行：关闭状态放行；打开状态冷却结束后只放行一个试探请求（半开）
+         */
+        synchronized boolean allow(long now) {
+            if (openUntil == 0) {
+                return true;
+            }
+            if (now < openUntil || trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+            return true;
+        }
+
+        synchronized boolean isOpen(long now) {
+            return openUntil != 0 && (now < openUntil || trialInFlight);
+        }
+
+        synchronized void onSuccess(double ms) {
+            latency.record(ms);
+            successes++;
+            consecutiveFailures = 0;
+            openUntil = 0;
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure(long now, int threshold, long cooldownMs) {
+            failures++;
+            consecutiveFailures++;
+            boolean wasTrial = trialInFlight;
+            trialInFlight = false;
+            if (wasTrial || consecutiveFailures >= threshold) {
+                if (openUntil == 0 || wasTrial) {
+                    System.out.println("Warning: " + name + " circuit open for " + cooldownMs / 1000.0 + " s after "
+                            + consecutiveFailures + " consecutive failures");
+                }
+                openUntil = now + cooldownMs;
+            }
+        }
+
+        /**
+         * 被取消的请求不计入统计；若它是半开试探，则允许下一次试探
+         */
+        synchronized void onCancelled() {
+            trialInFlight = false;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%s[p50 %.0f ms, p95 %.0f ms, %d ok, %d failed%s]", name,
+                    latency.percentile(0.5), latency.percentile(0.95), successes, failures,
+                    openUntil != 0 ? ", circuit open" : "");
+        }
+    }
+
+    /**
+     * 一次发往某个服务的请求。胜出的请求 claim() 返回 true；落败的请求被 cancel()，
+     * 已登记的资源（如响应流）随之关闭，使阻塞的读取立即结束
+     */
+    public static class Attempt {
+        final Provider provider;
+        private final AtomicReference<Attempt> winner;
+        private final Runnable onWin;
+        private volatile boolean cancelled = false;
+        private final List<Closeable> resources = new CopyOnWriteArrayList<>();
+        volatile CompletableFuture<String> future;
+
+        Attempt(Provider provider, AtomicReference<Attempt> winner, Runnable onWin) {
+            this.provider = provider;
+            this.winner = winner;
+            this.onWin = onWin;
+        }
+
+        public Provider provider() {
+            return provider;
+        }
+
+        /**
+         * 认领结果：第一个调用的请求胜出并取消其他请求，其他请求返回 false
+         */
+        public boolean claim() {
+            if (winner.compareAndSet(null, this)) {
+                onWin.run();
+                return true;
+            }
+            return winner.get() == this;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 登记取消时要关闭的资源；已取消时立即关闭
+         */
+        public void onCancel(Closeable closeable) {
+            resources.add(closeable);
+            if (cancelled) {
+                closeQuietly();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            CompletableFuture<String> f = future;
+            if (f != null) {
+                f.cancel(true);
+            }
+            closeQuietly();
+        }
+
+        private void closeQuietly() {
+            for (Closeable r : resources) {
+                if (resources.remove(r)) {
+                    try {
+                        r.close();
+                    } catch (IOException e) {
+                        /* ignore */ }
+                }
+            }
+        }
+    }
+
+    /**
+     * 向某个服务发出请求；实现应在得到结果（流式时为首段内容）时调用 attempt.claim()，
+     * 返回 false 时放弃该请求
+     */
+    public interface Call {
+        CompletableFuture<String> call(Attempt attempt);
+    }
+
+    private final List<Provider> providers;
+    private volatile boolean hedging = true;
+    private volatile long defaultHedgeDelayMs = 2000;
+    private volatile long minHedgeDelayMs = 20;
+    private volatile int breakerFailures = 3;
+    private volatile long breakerCooldownMs = 30_000;
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong cancelledAttempts = new AtomicLong();
+
+    /**
+     * @param providers 按偏好顺序排列（样本不足时按此顺序选择）
+     */
+    public ProviderRouter(List<Provider> providers) {
+        this.providers = new ArrayList<>(providers);
+    }
+
+    public ProviderRouter setHedging(boolean hedging) {
+        this.hedging = hedging;
+        return this;
+    }
+
+    /**
+     * 首选服务样本不足时的对冲延迟，以及对冲延迟的下限
+     */
+    public ProviderRouter setHedgeDelay(long defaultMs, long minMs) {
+        this.defaultHedgeDelayMs = defaultMs;
+        this.minHedgeDelayMs = minMs;
+        return this;
+    }
+
+    public ProviderRouter setCircuitBreaker(int failures, long cooldownMs) {
+        this.breakerFailures = Math.max(1, failures);
+        this.breakerCooldownMs = cooldownMs;
+        return this;
+    }
+
+    public List<Provider> providers() {
+        return providers;
+    }
+
+    /**
+     * 本次请求的候选顺序：熔断打开的服务排除；样本不足的服务按偏好顺序排在前面，其余按中位延迟排序。
+     * 全部熔断时仍按偏好顺序尝试，不让请求直接失败
+     */
+    List<Provider> candidates(long now) {
+        List<Provider> open = new ArrayList<>();
+        for (Provider p : providers) {
+            if (!p.isOpen(now)) {
+                open.add(p);
+            }
+        }
+        if (open.isEmpty()) {
+            return new ArrayList<>(providers);
+        }
+        open.sort(Comparator.comparingDouble(p -> p.latency.count() < MIN_SAMPLES ? 0 : p.latency.percentile(0.5)));
+        return open;
+    }
+
+    private long hedgeDelay(Provider primary) {
+        if (primary.latency.count() < MIN_SAMPLES) {
+            return defaultHedgeDelayMs;
+        }
+        return Math.max(minHedgeDelayMs, (long) Math.ceil(primary.latency.percentile(0.95)));
+    }
+
+    /**
+     * 路由一次请求，返回胜出请求的结果与服务名
+     */
+    public CompletableFuture<Result> route(Call call) {
+        return new Routing(call, candidates(System.currentTimeMillis())).start();
+    }
+
+    public static class Result {
+        public final String response;
+        public final String provider;
+        public final boolean hedged;
+
+        Result(String response, String provider, boolean hedged) {
+            this.response = response;
+            this.provider = provider;
+            this.hedged = hedged;
+        }
+    }
+
+    /**
+     * 一次路由的状态：按候选顺序发出请求，对冲计时器或失败触发下一个
+     */
+    private class Routing {
+        final Call call;
+        final List<Provider> queue;
+        final AtomicReference<Attempt> winner = new AtomicReference<>();
+        final List<Attempt> attempts = new ArrayList<>();
+        final CompletableFuture<Result> result = new CompletableFuture<>();
+        final AtomicInteger running = new AtomicInteger();
+        int next = 0;
+        Throwable lastError;
+
+        Routing(Call call, List<Provider> queue) {
+            this.call = call;
+            this.queue = queue;
+        }
+
+        CompletableFuture<Result> start() {
+            if (!launchNext(false)) {
+                // 全部熔断：仍向首选服务发出请求，不让请求直接失败
+                launch(queue.get(0), false);
+            }
+            // 调用方取消时取消所有请求
+            result.whenComplete((r, e) -> {
+                if (result.isCancelled()) {
+                    cancelAll(null);
+                }
+            });
+            return result;
+        }
+
+        /**
+         * 发出下一个放行的候选请求；没有可发的候选时返回 false
+         */
+        synchronized boolean launchNext(boolean hedge) {
+            if (result.isDone() || winner.get() != null) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            while (next < queue.size()) {
+                Provider p = queue.get(next++);
+                if (p.allow(now)) {
+                    launch(p, hedge);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private synchronized void launch(Provider p, boolean hedge) {
+            Attempt attempt = new Attempt(p, winner, () -> cancelAll(winner.get()));
+            attempts.add(attempt);
+            running.incrementAndGet();
+            if (hedge) {
+                hedges.incrementAndGet();
+            }
+            long t0 = System.nanoTime();
+            CompletableFuture<String> f;
+            try {
+                f = call.call(attempt);
+            } catch (RuntimeException e) {
+                f = CompletableFuture.failedFuture(e);
+            }
+            attempt.future = f;
+            f.whenComplete((response, error) -> finished(attempt, response, error, t0, hedge));
+            if (hedging && next < queue.size()) {
+                CompletableFuture.delayedExecutor(hedgeDelay(p), TimeUnit.MILLISECONDS)
+                        .execute(() -> hedgeIfStillRunning(attempt));
+            }
+        }
+
+        private void hedgeIfStillRunning(Attempt attempt) {
+            // 只有最后发出的请求仍在运行、且尚未产生输出时才对冲
+            synchronized (this) {
+                if (attempts.get(attempts.size() - 1) != attempt || attempt.future.isDone()) {
+                    return;
+                }
+            }
+            launchNext(true);
+        }
+
+        private void finished(Attempt attempt, String response, Throwable error, long t0, boolean hedge) {
+            double ms = (System.nanoTime() - t0) / 1e6;
+            running.decrementAndGet();
+            if (attempt.isCancelled()) {
+                attempt.provider.onCancelled();
+                cancelledAttempts.incrementAndGet();
+                return;
+            }
+            if (error == null) {
+                // 落败但正常完成的请求也是有效的延迟样本
+                attempt.provider.onSuccess(ms);
+                if (attempt.claim()) {
+                    if (hedge) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    result.complete(new Result(response, attempt.provider.name, hedge));
+                }
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                attempt.provider.onCancelled();
+                return;
+            }
+            attempt.provider.onFailure(System.currentTimeMillis(), breakerFailures, breakerCooldownMs);
+            System.out.println(attempt.provider.name + " 失败: " + cause.getMessage());
+            synchronized (this) {
+                lastError = cause;
+            }
+            // 已开始输出的请求失败：不能换服务重来
+            if (winner.get() == attempt) {
+                cancelAll(null);
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (!launchNext(false) && running.get() == 0 && winner.get() == null) {
+                result.completeExceptionally(lastError != null ? lastError : new IOException("所有 AI 服务均不可用"));
+            }
+        }
+
+        void cancelAll(Attempt keep) {
+            List<Attempt> copy;
+            synchronized (this) {
+                copy = new ArrayList<>(attempts);
+            }
+            for (Attempt a : copy) {
+                if (a != keep && !a.future.isDone()) {
+                    a.cancel();
+                }
+            }
+        }
+    }
+
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    public long getCancelledAttempts() {
+        return cancelledAttempts.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ProviderRouter[");
+        for (Provider p : providers) {
+            sb.append(p).append(", ");
+        }
+        sb.append(hedges.get()).append(" hedges (").append(hedgeWins.get()).append(" won), ")
+                .append(cancelledAttempts.get()).append(" cancelled]");
+        return sb.toString();
+    }
+
+    // 测试方法：两个本地模拟接口 (MockLlmServer) 分别充当 Qwen 与 DeepSeek
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 150;
+        try (MockLlmServer qwen = new MockLlmServer(20);
+                MockLlmServer deepseek = new MockLlmServer(40)) {
+            // 1. 长尾：Qwen 3% 的请求需要 1500 ms
+            qwen.slowFraction = 0.03;
+            qwen.slowMs = 1500;
+            System.out.println("Qwen mock 20 ms (3% at 1500 ms), DeepSeek mock 40 ms, " + requests + " requests");
+            for (boolean hedge : new boolean[] { false, true }) {
+                QwenClient client = new QwenClient("mock", qwen.url(), "mock", deepseek.url());
+                client.getRouter().setHedging(hedge).setHedgeDelay(200, 20);
+                double[] ms = new double[requests];
+                for (int i = 0; i < requests; i++) {
+                    long t0 = System.nanoTime();
+                    client.chat("把入口速度改成 0.05 m/s", "system");
+                    ms[i] = (System.nanoTime() - t0) / 1e6;
+                }
+                java.util.Arrays.sort(ms);
+                System.out.println(String.format("%-12s p50 %6.1f  p95 %6.1f  p99 %7.1f  max %7.1f ms",
+                        hedge ? "hedged" : "no hedging", ms[requests / 2], ms[(int) (requests * 0.95)],
+                        ms[(int) (requests * 0.99)], ms[requests - 1]));
+                System.out.println("  " + client.getRouter());
+            }
+
+            // 2. 熔断：Qwen 持续返回 500，3 次后不再请求它；冷却后试探一次，恢复后重新使用
+            qwen.slowFraction = 0;
+            qwen.failStatus = 500;
+            qwen.resetCounters();
+            QwenClient client = new QwenClient("mock", qwen.url(), "mock", deepseek.url());
+            client.getRouter().setHedging(false).setCircuitBreaker(3, 2000);
+            for (int i = 0; i < 20; i++) {
+                client.chat("使用水", "system");
+            }
+            long failedHits = qwen.requests.get();
+            Thread.sleep(2100);
+            client.chat("使用水", "system"); // 半开试探，仍失败
+            long afterTrial = qwen.requests.get();
+            qwen.failStatus = 0;
+            Thread.sleep(2100);
+            for (int i = 0; i < 10; i++) {
+                client.chat("使用水", "system");
+            }
+            System.out.println(String.format("Circuit breaker: Qwen saw %d of 20 failing requests, %d after the "
+                    + "half-open trial, %d after recovery", failedHits, afterTrial, qwen.requests.get()));
+            if (failedHits != 3 || afterTrial != 4) {
+                throw new IllegalStateException("circuit breaker did not skip the failing provider");
+            }
+            System.out.println("  " + client.getRouter());
+
+            // 3. 流式对冲：Qwen 迟迟不返回，DeepSeek 先输出，Qwen 的请求被取消，内容只来自一方
+            qwen.latencyMs = 1000;
+            client = new QwenClient("mock", qwen.url(), "mock", deepseek.url());
+            client.getRouter().setHedgeDelay(100, 20);
+            StringBuilder streamed = new StringBuilder();
+            long t0 = System.nanoTime();
+            String full = client.chatStream("使用水", "system", streamed::append).join();
+            System.out.println(String.format("Streaming hedge: %.0f ms, %d chars, %s", (System.nanoTime() - t0) / 1e6,
+                    full.length(), client.getRouter()));
+            if (!full.equals(streamed.toString())) {
+                throw new IllegalStateException("streamed tokens from more than one provider");
+            }
+            Thread.sleep(1200);
+            if (client.getRouter().getCancelledAttempts() != 1) {
+                throw new IllegalStateException("losing attempt was not cancelled");
+            }
+            System.out.println("ProviderRouter self-test passed");
+        }
+    }
+}
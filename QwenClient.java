@@ -1,16 +1,45 @@
 /*
  * QwenClient.java - AI API 调用封装
- * 支持 Qwen (通义千问) 优先，DeepSeek 备用
+ * 支持 Qwen (通义千问) 与 DeepSeek，由 ProviderRouter 按延迟选择、对冲与熔断
+ * 传输层为 java.net.http.HttpClient：HTTP/2 (服务器不支持时为 HTTP/1.1 keep-alive)，连接复用，gzip 响应，
+ * chatAsync 返回 CompletableFuture 不阻塞调用线程；chatStream 以 SSE (stream: true) 接收，逐段回调。
+ * 取消返回的 future 即中止 HTTP 请求并释放连接。
+ * 默认构造的客户端带 AIResponseCache，相同消息 + 相同配置直接返回上次的回复。
+ * 可选设置（环境变量或 .env）：
+ *   QWEN_API_URL / DEEPSEEK_API_URL        - 覆盖接口地址（代理、本地模拟服务器）
+ *   AI_CONNECT_TIMEOUT_MS / AI_REQUEST_TIMEOUT_MS - 连接超时与整个请求的超时
+ *   AI_HEDGE                                - 首选服务超过其 p95 时向备用服务发出对冲请求 (默认 true)
+ *   AI_BREAKER_FAILURES / AI_BREAKER_COOLDOWN_MS - 连续失败几次后熔断、熔断时长
+ *   AI_RATE_LIMIT_RPM / AI_RATE_BURST / AI_MAX_RETRIES - 每个服务的令牌桶速率与突发量、429/5xx 的重试次数
+ *   AI_CACHE_SIZE / AI_CACHE_TTL_HOURS / AI_CACHE_FILE - 回复缓存条目数 (0 关闭)、有效期、持久化文件 (默认不保存)
  */
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 public class QwenClient {
 
@@ -24,9 +53,37 @@ public class QwenClient {
     private static final String DEEPSEEK_API_URL = "https://api.deepseek.com/v1/chat/completions";
     private static final String DEEPSEEK_MODEL = "deepseek-chat";
 
+    private static final long DEFAULT_CONNECT_TIMEOUT_MS = 10_000;
+    private static final long DEFAULT_REQUEST_TIMEOUT_MS = 120_000;
+    private static final int DEFAULT_CACHE_SIZE = 256;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    private static final long DEFAULT_CACHE_TTL_HOURS = 24;
+
     private String qwenApiKey;
     private String deepseekApiKey;
-    private String activeProvider = null;
+    private String qwenApiUrl = QWEN_API_URL;
+    private String deepseekApiUrl = DEEPSEEK_API_URL;
+    private volatile String activeProvider = null;
+
+    private Duration connectTimeout = Duration.ofMillis(DEFAULT_CONNECT_TIMEOUT_MS);
+    private Duration requestTimeout = Duration.ofMillis(DEFAULT_REQUEST_TIMEOUT_MS);
+    // 同一客户端的所有请求共享连接池
+    private HttpClient http;
+    // 相同消息 + 相同配置的回复缓存，null 表示不缓存
+    private AIResponseCache cache;
+    private ProviderRouter router;
+    // 每个服务一个令牌桶，按服务名查找
+    private final Map<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+    private final AtomicLong usageRequests = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong cachedPromptTokens = new AtomicLong();
+    // 每个服务同时在途的请求上限；HTTP/1.1 下每个在途请求各占一条连接
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private double rateLimitRpm = 0;
+    // http:// 地址是否尝试 h2c 升级；服务端不支持时每个请求都白带一次升级头，仍走 HTTP/1.1
+    private boolean h2c = false;
+    private int rateBurst = 1;
+    private RateLimiter.RetryPolicy retryPolicy = new RateLimiter.RetryPolicy(3, 500, 30_000);
 
     public QwenClient() {
         // 加载 Qwen API Key
@@ -47,6 +104,32 @@ public class QwenClient {
             deepseekApiKey = loadFromEnvFile("DEEPSEEK_API_KEY");
         }
 
+        qwenApiUrl = setting("QWEN_API_URL", QWEN_API_URL);
+        deepseekApiUrl = setting("DEEPSEEK_API_URL", DEEPSEEK_API_URL);
+        connectTimeout = Duration.ofMillis(Long.parseLong(
+                setting("AI_CONNECT_TIMEOUT_MS", String.valueOf(DEFAULT_CONNECT_TIMEOUT_MS))));
+        requestTimeout = Duration.ofMillis(Long.parseLong(
+                setting("AI_REQUEST_TIMEOUT_MS", String.valueOf(DEFAULT_REQUEST_TIMEOUT_MS))));
+        http = buildHttpClient();
+        router = buildRouter();
+        h2c = "true".equalsIgnoreCase(setting("AI_H2C", "false"));
+        maxInFlight = Integer.parseInt(setting("AI_MAX_IN_FLIGHT", String.valueOf(DEFAULT_MAX_IN_FLIGHT)));
+        setRateLimit(Double.parseDouble(setting("AI_RATE_LIMIT_RPM", "60")),
+                Integer.parseInt(setting("AI_RATE_BURST", "10")));
+        retryPolicy = new RateLimiter.RetryPolicy(Integer.parseInt(setting("AI_MAX_RETRIES", "3")), 500, 30_000);
+        router.setHedging(!"false".equalsIgnoreCase(setting("AI_HEDGE", "true")))
+                .setCircuitBreaker(Integer.parseInt(setting("AI_BREAKER_FAILURES", "3")),
+                        Long.parseLong(setting("AI_BREAKER_COOLDOWN_MS", "30000")));
+
+        int cacheSize = Integer.parseInt(setting("AI_CACHE_SIZE", String.valueOf(DEFAULT_CACHE_SIZE)));
+        if (cacheSize > 0) {
+            long ttlHours = Long.parseLong(setting("AI_CACHE_TTL_HOURS", String.valueOf(DEFAULT_CACHE_TTL_HOURS)));
+            // 回复中含用户消息与配置，只有显式设置了 AI_CACHE_FILE 才写盘
+            String cacheFile = setting("AI_CACHE_FILE", "");
+            cache = new AIResponseCache(cacheSize, ttlHours * 3600_000L,
+                    cacheFile.isEmpty() || "none".equalsIgnoreCase(cacheFile) ? null : new File(cacheFile));
+        }
+
         if (qwenApiKey != null && !qwenApiKey.isEmpty()) {
             System.out.println("[OK] Qwen API Key 已加载");
         }
@@ -58,7 +141,10 @@ public class QwenClient {
         }
     }
 
-    private String loadFromEnvFile(String keyName) {
+    /**
+     * 从当前目录或用户目录的 .env 读取一项，未找到返回 null
+     */
+    static String loadFromEnvFile(String keyName) {
         String[] possiblePaths = {
                 ENV_FILE,
                 System.getProperty("user.dir") + "/" + ENV_FILE,
@@ -91,8 +177,144 @@ public class QwenClient {
         return null;
     }
 
+    private static String setting(String key, String defaultValue) {
+        String value = System.getenv(key);
+        if (value == null || value.isEmpty()) {
+            value = loadFromEnvFile(key);
+        }
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+
     public QwenClient(String apiKey) {
-        this.qwenApiKey = apiKey;
+        this(apiKey, QWEN_API_URL);
+    }
+
+    /**
+     * 指定 Qwen 兼容接口地址（本地模拟服务器、代理），不使用备用服务
+     */
+    public QwenClient(String apiKey, String apiUrl) {
+        this(apiKey, apiUrl, null, null);
+    }
+
+    /**
+     * 指定两个服务的地址（本地模拟服务器），deepseekApiKey 为 null 时不使用备用服务
+     */
+    public QwenClient(String qwenApiKey, String qwenApiUrl, String deepseekApiKey, String deepseekApiUrl) {
+        this.qwenApiKey = qwenApiKey;
+        this.qwenApiUrl = qwenApiUrl;
+        this.deepseekApiKey = deepseekApiKey;
+        this.deepseekApiUrl = deepseekApiUrl;
+        this.http = buildHttpClient();
+        this.router = buildRouter();
+        setRateLimit(0, 1);
+    }
+
+    /**
+     * 按偏好顺序登记已配置 Key 的服务：Qwen 在前，DeepSeek 备用
+     */
+    private ProviderRouter buildRouter() {
+        List<ProviderRouter.Provider> providers = new ArrayList<>();
+        if (qwenApiKey != null && !qwenApiKey.isEmpty()) {
+            providers.add(new ProviderRouter.Provider("Qwen", qwenApiUrl, QWEN_MODEL, qwenApiKey));
+        }
+        if (deepseekApiKey != null && !deepseekApiKey.isEmpty()) {
+            providers.add(new ProviderRouter.Provider("DeepSeek", deepseekApiUrl, DEEPSEEK_MODEL, deepseekApiKey));
+        }
+        return new ProviderRouter(providers);
+    }
+
+    public ProviderRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * 为每个服务设置令牌桶；requestsPerMinute <= 0 不限速（仍按 429 的 Retry-After 暂停）
+     */
+    public QwenClient setRateLimit(double requestsPerMinute, int burst) {
+        this.rateLimitRpm = requestsPerMinute;
+        this.rateBurst = burst;
+        for (ProviderRouter.Provider p : router.providers()) {
+            limiters.put(p.name, new RateLimiter(p.name, requestsPerMinute, burst, maxInFlight));
+        }
+        return this;
+    }
+
+    /**
+     * http:// 地址尝试 h2c 升级（服务端支持时多个请求复用一条连接）
+     */
+    public QwenClient setH2c(boolean h2c) {
+        this.h2c = h2c;
+        return this;
+    }
+
+    /**
+     * 每个服务同时在途的请求上限，<= 0 不限；超出的请求在该服务的队列中等待。会重建令牌桶
+     */
+    public QwenClient setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return setRateLimit(rateLimitRpm, rateBurst);
+    }
+
+    public QwenClient setRetryPolicy(RateLimiter.RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public RateLimiter getRateLimiter(String provider) {
+        return limiters.get(provider);
+    }
+
+    private HttpClient buildHttpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * 修改超时；连接超时属于 HttpClient，修改后重建客户端（旧连接池随之释放）
+     */
+    public QwenClient setTimeouts(Duration connect, Duration request) {
+        this.requestTimeout = request;
+        if (!connect.equals(connectTimeout)) {
+            this.connectTimeout = connect;
+            this.http = buildHttpClient();
+        }
+        return this;
+    }
+
+    public QwenClient setCache(AIResponseCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public AIResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * 从缓存中删除一条回复（回复无法解析时由调用方删除）
+     */
+    public void invalidateCached(String userMessage, String systemPrompt) {
+        if (cache != null) {
+            cache.remove(AIResponseCache.keyOf(userMessage, systemPrompt));
+        }
+    }
+
+    private String cached(String key) {
+        String response = cache.get(key);
+        if (response != null) {
+            System.out.println("AI 响应缓存命中: " + cache);
+        }
+        return response;
+    }
+
+    private String remember(String key, String response) {
+        if (response != null && !response.isEmpty()) {
+            cache.put(key, response);
+        }
+        return response;
     }
 
     public boolean isConfigured() {
@@ -100,126 +322,537 @@ public class QwenClient {
                 (deepseekApiKey != null && !deepseekApiKey.isEmpty());
     }
 
+    /**
+     * 同步调用，等待 chatAsync 完成
+     */
     public String chat(String userMessage, String systemPrompt) throws Exception {
+        try {
+            return chatAsync(userMessage, systemPrompt).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * 异步调用：由 ProviderRouter 在 Qwen 与 DeepSeek 之间选择；不占用调用线程
+     */
+    public CompletableFuture<String> chatAsync(String userMessage, String systemPrompt) {
+        return chatAsync(userMessage, systemPrompt, RateLimiter.Priority.INTERACTIVE);
+    }
+
+    /**
+     * 指定优先级：批量任务用 BULK，排在 GUI 的交互请求之后获得令牌
+     */
+    public CompletableFuture<String> chatAsync(String userMessage, String systemPrompt,
+            RateLimiter.Priority priority) {
+        String cacheKey = cache != null ? AIResponseCache.keyOf(userMessage, systemPrompt) : null;
+        if (cacheKey != null) {
+            String hit = cached(cacheKey);
+            if (hit != null) {
+                return CompletableFuture.completedFuture(hit);
+            }
+        }
+        CompletableFuture<String> response = route(attempt -> limited(attempt, priority,
+                () -> callApiAsync(attempt, userMessage, systemPrompt), 0));
+        return cacheKey != null ? cancelUpstream(response, response.thenApply(r -> remember(cacheKey, r)))
+                : response;
+    }
+
+    /**
+     * 流式回复的增量回调，在 HTTP 线程上按到达顺序调用
+     */
+    public interface TokenListener {
+        void onToken(String delta);
+    }
+
+    /**
+     * 流式调用：服务器以 SSE 逐段返回，每段内容立即交给 listener，完成时返回完整回复。
+     * 第一个输出内容的服务胜出；之后失败则直接报错（无法撤回已显示的内容）
+     */
+    public CompletableFuture<String> chatStream(String userMessage, String systemPrompt, TokenListener listener) {
+        return chatStream(userMessage, systemPrompt, listener, RateLimiter.Priority.INTERACTIVE);
+    }
+
+    public CompletableFuture<String> chatStream(String userMessage, String systemPrompt, TokenListener listener,
+            RateLimiter.Priority priority) {
+        String cacheKey = cache != null ? AIResponseCache.keyOf(userMessage, systemPrompt) : null;
+        if (cacheKey != null) {
+            String hit = cached(cacheKey);
+            if (hit != null) {
+                listener.onToken(hit);
+                return CompletableFuture.completedFuture(hit);
+            }
+        }
+        CompletableFuture<String> response = route(attempt -> limited(attempt, priority,
+                () -> streamApiAsync(attempt, userMessage, systemPrompt, listener), 0));
+        return cacheKey != null ? cancelUpstream(response, response.thenApply(r -> remember(cacheKey, r)))
+                : response;
+    }
+
+    /**
+     * 经 ProviderRouter 路由：按延迟选择服务、超过 p95 时对冲、失败时立即改用备用服务
+     */
+    private CompletableFuture<String> route(ProviderRouter.Call call) {
         if (!isConfigured()) {
-            throw new Exception("API Key 未配置。请在 .env 文件中设置 QWEN_API_KEY 或 DEEPSEEK_API_KEY");
+            return CompletableFuture.failedFuture(
+                    new Exception("API Key 未配置。请在 .env 文件中设置 QWEN_API_KEY 或 DEEPSEEK_API_KEY"));
         }
+        CompletableFuture<ProviderRouter.Result> routed = router.route(call);
+        return cancelUpstream(routed, routed.thenApply(result -> {
+            if (!result.provider.equals(activeProvider)) {
+                activeProvider = result.provider;
+                System.out.println("使用 AI: " + result.provider + (result.hedged ? " (对冲请求)" : ""));
+            }
+            return result.response;
+        }));
+    }
 
-        Exception lastError = null;
+    /**
+     * CompletableFuture 的取消不会传给上游：调用方取消 downstream 时一并取消 upstream，
+     * 使路由器取消全部请求、关闭响应流并释放连接，而不是等到读超时
+     */
+    private static <T> CompletableFuture<T> cancelUpstream(CompletableFuture<?> upstream,
+            CompletableFuture<T> downstream) {
+        downstream.whenComplete((r, e) -> {
+            if (downstream.isCancelled()) {
+                upstream.cancel(true);
+            }
+        });
+        return downstream;
+    }
 
-        // 优先 Qwen
-        if (qwenApiKey != null && !qwenApiKey.isEmpty()) {
+    /**
+     * 先从该服务的令牌桶取得许可再发出请求。429 时按 Retry-After（或退避时间）暂停令牌桶后重新排队；
+     * 502/503/504 等待带抖动的退避时间后重试。重试用尽才算该服务失败（交给路由器改用备用服务）
+     */
+    private CompletableFuture<String> limited(ProviderRouter.Attempt attempt, RateLimiter.Priority priority,
+            Supplier<CompletableFuture<String>> send, int retry) {
+        RateLimiter limiter = limiters.get(attempt.provider().name);
+        CompletableFuture<Void> permit = limiter.acquire(priority);
+        attempt.onCancel(() -> permit.cancel(true));
+        return permit.thenCompose(v -> {
+            // 在途名额一直占用到响应读完（流式请求读到最后一段），失败或取消时同样归还
+            CompletableFuture<String> sent;
             try {
-                String result = callApi(QWEN_API_URL, QWEN_MODEL, qwenApiKey, userMessage, systemPrompt);
-                if (activeProvider == null) {
-                    activeProvider = "Qwen";
-                    System.out.println("使用 AI: Qwen (通义千问)");
-                }
-                return result;
-            } catch (Exception e) {
-                lastError = e;
-                System.out.println("Qwen 失败: " + e.getMessage());
+                sent = send.get();
+            } catch (RuntimeException e) {
+                limiter.release();
+                throw e;
+            }
+            return sent.whenComplete((r, e) -> limiter.release());
+        }).handle((result, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            Throwable cause = unwrap(error);
+            if (!(cause instanceof HttpStatusException) || retry >= retryPolicy.maxRetries || attempt.isCancelled()) {
+                return CompletableFuture.<String>failedFuture(cause);
+            }
+            HttpStatusException http = (HttpStatusException) cause;
+            int code = http.status;
+            if (code != 429 && code != 502 && code != 503 && code != 504) {
+                return CompletableFuture.<String>failedFuture(cause);
+            }
+            long delay = retryPolicy.delayMs(retry, http.retryAfterMs);
+            System.out.println(String.format("%s HTTP %d，%d ms 后重试 (%d/%d)", attempt.provider().name, code,
+                    delay, retry + 1, retryPolicy.maxRetries));
+            if (code == 429) {
+                // 暂停整个令牌桶：同一服务的其他请求也一起等待，不再继续触发 429
+                limiter.pause(delay);
+                return limited(attempt, priority, send, retry + 1);
             }
+            CompletableFuture<Void> wait = new CompletableFuture<>();
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> wait.complete(null));
+            attempt.onCancel(() -> wait.cancel(true));
+            return wait.thenCompose(v -> limited(attempt, priority, send, retry + 1));
+        }).thenCompose(f -> f);
+    }
+
+    /**
+     * 非 2xx 响应；保留状态码与 Retry-After 供重试调度使用
+     */
+    static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+        final long retryAfterMs;
+
+        HttpStatusException(HttpResponse<?> response, String body) {
+            super("HTTP " + response.statusCode() + ": " + body);
+            this.status = response.statusCode();
+            this.retryAfterMs = RateLimiter.parseRetryAfter(
+                    response.headers().firstValue("Retry-After").orElse(null),
+                    response.headers().firstValue("retry-after-ms").orElse(null));
         }
+    }
 
-        // 备用 DeepSeek
-        if (deepseekApiKey != null && !deepseekApiKey.isEmpty()) {
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private CompletableFuture<String> callApiAsync(ProviderRouter.Attempt attempt, String userMessage,
+            String systemPrompt) {
+        ProviderRouter.Provider provider = attempt.provider();
+        HttpRequest request;
+        try {
+            request = buildRequest(provider.url, provider.apiKey,
+                    buildRequestBody(provider.model, userMessage, systemPrompt, false)).build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<byte[]>> sent = http.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        // 落败时放弃请求（JDK 16 起取消会中止连接上的交换；更早的版本只丢弃结果）
+        attempt.onCancel(() -> sent.cancel(true));
+        return sent.thenApply(response -> {
             try {
-                String result = callApi(DEEPSEEK_API_URL, DEEPSEEK_MODEL, deepseekApiKey, userMessage, systemPrompt);
-                if (activeProvider == null || !activeProvider.equals("DeepSeek")) {
-                    activeProvider = "DeepSeek";
-                    System.out.println("使用 AI: DeepSeek (备用)");
+                String body = decodeBody(response);
+                int code = response.statusCode();
+                if (code < 200 || code >= 300) {
+                    throw new HttpStatusException(response, body);
                 }
-                return result;
-            } catch (Exception e) {
-                lastError = e;
+                recordUsage(provider.name, body);
+                return extractContent(body);
+            } catch (IOException e) {
+                throw new CompletionException(e);
             }
+        });
+    }
+
+    private HttpRequest.Builder buildRequest(String apiUrl, String apiKey, String body) {
+        URI uri = URI.create(apiUrl);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+        if (!h2c && "http".equalsIgnoreCase(uri.getScheme())) {
+            // https 通过 ALPN 协商 HTTP/2；明文地址（本地模拟服务、代理）默认不发 h2c 升级头
+            builder.version(HttpClient.Version.HTTP_1_1);
         }
+        return builder
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json; charset=UTF-8")
+                .header("Authorization", "Bearer " + apiKey)
+                .header("Accept-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+    }
 
-        throw lastError != null ? lastError : new Exception("所有 AI 服务均不可用");
+    /**
+     * SSE 流式请求。请求超时只限制到收到响应头为止，之后按服务器输出的节奏逐行读取
+     */
+    private CompletableFuture<String> streamApiAsync(ProviderRouter.Attempt attempt, String userMessage,
+            String systemPrompt, TokenListener listener) {
+        ProviderRouter.Provider provider = attempt.provider();
+        HttpRequest request;
+        try {
+            request = buildRequest(provider.url, provider.apiKey,
+                    buildRequestBody(provider.model, userMessage, systemPrompt, true))
+                    .header("Accept", "text/event-stream")
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<InputStream>> sent = http.sendAsync(request,
+                HttpResponse.BodyHandlers.ofInputStream());
+        attempt.onCancel(() -> sent.cancel(true));
+        // 落败时关闭响应流，阻塞中的 readLine 立即结束；收到响应头前已落败的也要关闭，释放连接
+        sent.thenAccept(response -> attempt.onCancel(response.body()));
+        return sent.thenApply(response -> {
+            String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim();
+            String type = response.headers().firstValue("Content-Type").orElse("");
+            try (InputStream raw = response.body();
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(
+                            "gzip".equalsIgnoreCase(encoding) ? new GZIPInputStream(raw) : raw,
+                            StandardCharsets.UTF_8))) {
+                int code = response.statusCode();
+                if (code < 200 || code >= 300 || !type.startsWith("text/event-stream")) {
+                    StringBuilder body = new StringBuilder();
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        body.append(line).append('\n');
+                    }
+                    if (code < 200 || code >= 300) {
+                        throw new HttpStatusException(response, body.toString());
+                    }
+                    // 服务器忽略了 stream，按普通回复一次交付
+                    String content = extractContent(body.toString());
+                    if (!attempt.claim()) {
+                        throw new CancellationException();
+                    }
+                    listener.onToken(content);
+                    return content;
+                }
+
+                SseDecoder sse = new SseDecoder();
+                StringBuilder full = new StringBuilder();
+                String line;
+                while (true) {
+                    line = reader.readLine();
+                    if (attempt.isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    String data = line != null ? sse.line(line) : sse.finish();
+                    if (data != null) {
+                        if ("[DONE]".equals(data.trim())) {
+                            break;
+                        }
+                        if (data.contains("\"usage\"")) {
+                            recordUsage(provider.name, data);
+                        }
+                        String delta = deltaContent(data);
+                        if (delta != null && !delta.isEmpty()) {
+                            if (!attempt.claim()) {
+                                throw new CancellationException();
+                            }
+                            full.append(delta);
+                            listener.onToken(delta);
+                        }
+                    }
+                    if (line == null) {
+                        break;
+                    }
+                }
+                return full.toString();
+            } catch (IOException e) {
+                if (attempt.isCancelled()) {
+                    throw new CancellationException();
+                }
+                throw new CompletionException(e);
+            }
+        });
     }
 
-    private String callApi(String apiUrl, String model, String apiKey,
-            String userMessage, String systemPrompt) throws Exception {
-        String requestBody = buildRequestBody(model, userMessage, systemPrompt);
+    /**
+     * Server-sent events 解码：逐行输入，遇到空行（事件结束）时返回该事件的 data（多行 data 以换行连接）
+     */
+    static class SseDecoder {
+        private final StringBuilder data = new StringBuilder();
+        private boolean hasData = false;
+
+        String line(String line) {
+            if (line.isEmpty()) {
+                return finish();
+            }
+            if (line.startsWith(":")) {
+                return null; // 注释 / 心跳
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            if ("data".equals(field)) {
+                if (hasData) {
+                    data.append('\n');
+                }
+                data.append(value);
+                hasData = true;
+            }
+            return null;
+        }
 
-        URL url = new URL(apiUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        /**
+         * 结束当前事件（空行或流结束），没有 data 时返回 null
+         */
+        String finish() {
+            if (!hasData) {
+                return null;
+            }
+            String d = data.toString();
+            data.setLength(0);
+            hasData = false;
+            return d;
+        }
+    }
 
+    /**
+     * 记录服务端报告的提示词 token 数及其中命中前缀缓存的部分
+     * (DeepSeek: prompt_cache_hit_tokens；Qwen/OpenAI 兼容: prompt_tokens_details.cached_tokens)
+     */
+    private void recordUsage(String provider, String json) {
+        long prompt = -1;
+        long cached = 0;
         try {
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-            conn.setRequestProperty("Authorization", "Bearer " + apiKey);
-            conn.setDoOutput(true);
-            conn.setConnectTimeout(30000);
-            conn.setReadTimeout(120000);
-
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(requestBody.getBytes(StandardCharsets.UTF_8));
+            JsonReader reader = new JsonReader(json);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"usage".equals(reader.nextName()) || reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if ("prompt_tokens".equals(name) && reader.peek() == JsonReader.Token.NUMBER) {
+                        prompt = (long) reader.nextDouble();
+                    } else if ("prompt_cache_hit_tokens".equals(name) && reader.peek() == JsonReader.Token.NUMBER) {
+                        cached = (long) reader.nextDouble();
+                    } else if ("prompt_tokens_details".equals(name)
+                            && reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if ("cached_tokens".equals(reader.nextName())
+                                    && reader.peek() == JsonReader.Token.NUMBER) {
+                                cached = (long) reader.nextDouble();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
             }
+        } catch (IOException e) {
+            return;
+        }
+        if (prompt < 0) {
+            return;
+        }
+        usageRequests.incrementAndGet();
+        promptTokens.addAndGet(prompt);
+        cachedPromptTokens.addAndGet(cached);
+        System.out.println(String.format("%s 提示词 %d tokens，缓存命中 %d (%.0f%%)", provider, prompt, cached,
+                prompt > 0 ? 100.0 * cached / prompt : 0.0));
+    }
 
-            int code = conn.getResponseCode();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    code >= 200 && code < 300 ? conn.getInputStream() : conn.getErrorStream(),
-                    StandardCharsets.UTF_8));
+    /**
+     * 累计的提示词用量：请求数、提示词 token、命中缓存的 token
+     */
+    public String usageSummary() {
+        long prompt = promptTokens.get();
+        long cached = cachedPromptTokens.get();
+        long n = usageRequests.get();
+        return String.format("%d requests, %.0f prompt tokens/request, %.0f%% cached", n,
+                n > 0 ? (double) prompt / n : 0.0, prompt > 0 ? 100.0 * cached / prompt : 0.0);
+    }
 
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line).append("\n");
+    /**
+     * 流式分片中的 choices[0].delta.content（兼容完整的 message.content），没有内容时返回 null
+     */
+    static String deltaContent(String json) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        String content = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("choices".equals(reader.nextName()) && reader.peek() == JsonReader.Token.BEGIN_ARRAY) {
+                reader.beginArray();
+                if (reader.hasNext()) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        if (("delta".equals(name) || "message".equals(name))
+                                && reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                            reader.beginObject();
+                            while (reader.hasNext()) {
+                                if ("content".equals(reader.nextName())
+                                        && reader.peek() == JsonReader.Token.STRING) {
+                                    content = reader.nextString();
+                                } else {
+                                    reader.skipValue();
+                                }
+                            }
+                            reader.endObject();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
             }
-            reader.close();
+        }
+        reader.endObject();
+        return content;
+    }
 
-            if (code >= 200 && code < 300) {
-                return extractContent(response.toString());
-            } else {
-                throw new Exception("HTTP " + code + ": " + response.toString());
+    /**
+     * 响应体按 Content-Encoding 解压 (gzip) 后按 UTF-8 解码
+     */
+    static String decodeBody(HttpResponse<byte[]> response) throws IOException {
+        byte[] bytes = response.body();
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        if ("gzip".equalsIgnoreCase(encoding.trim())) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+                byte[] buf = new byte[8192];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    out.write(buf, 0, n);
+                }
+                bytes = out.toByteArray();
             }
-        } finally {
-            conn.disconnect();
         }
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
-    private String buildRequestBody(String model, String userMessage, String systemPrompt) {
+    private String buildRequestBody(String model, String userMessage, String systemPrompt, boolean stream) {
         StringBuilder sb = new StringBuilder();
         sb.append("{\"model\":\"").append(model).append("\",\"messages\":[");
         if (systemPrompt != null && !systemPrompt.isEmpty()) {
             sb.append("{\"role\":\"system\",\"content\":").append(escapeJson(systemPrompt)).append("},");
         }
         sb.append("{\"role\":\"user\",\"content\":").append(escapeJson(userMessage)).append("}");
-        sb.append("],\"temperature\":0.3,\"max_tokens\":2048}");
+        sb.append("],\"temperature\":0.3,\"max_tokens\":2048");
+        if (stream) {
+            // 最后一个分片附带 usage，用于统计提示词缓存命中
+            sb.append(",\"stream\":true,\"stream_options\":{\"include_usage\":true}");
+        }
+        sb.append('}');
         return sb.toString();
     }
 
-    private String extractContent(String json) {
-        int i = json.indexOf("\"content\":");
-        if (i == -1)
-            return "无法解析响应";
-        i = json.indexOf("\"", i + 10);
-        if (i == -1)
-            return "无法解析响应";
-        int j = findEndQuote(json, i + 1);
-        if (j == -1)
-            return "无法解析响应";
-        return unescapeJson(json.substring(i + 1, j));
-    }
-
-    private int findEndQuote(String s, int start) {
-        boolean esc = false;
-        for (int i = start; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if (esc) {
-                esc = false;
-                continue;
-            }
-            if (c == '\\') {
-                esc = true;
-                continue;
+    /**
+     * 取出 choices[0].message.content；响应体无法解析或内容不是字符串（如 "content": null）时抛出异常，
+     * 使请求失败（不会被当作回复缓存）
+     */
+    static String extractContent(String json) throws IOException {
+        String content = null;
+        try {
+            JsonReader reader = new JsonReader(json);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"choices".equals(reader.nextName()) || reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                if (reader.hasNext() && reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (!"message".equals(reader.nextName()) || reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                            reader.skipValue();
+                            continue;
+                        }
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if ("content".equals(reader.nextName()) && reader.peek() == JsonReader.Token.STRING) {
+                                content = reader.nextString();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    reader.endObject();
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
             }
-            if (c == '"')
-                return i;
+            reader.endObject();
+        } catch (IOException e) {
+            content = null;
+        }
+        if (content == null) {
+            throw new IOException("无法解析响应: " + (json.length() > 200 ? json.substring(0, 200) + "..." : json));
         }
-        return -1;
+        return content;
     }
 
     private String escapeJson(String s) {
@@ -249,44 +882,4 @@ public class QwenClient {
         }
         return sb.append("\"").toString();
     }
-
-    private String unescapeJson(String s) {
-        if (s == null)
-            return "";
-        StringBuilder sb = new StringBuilder();
-        boolean esc = false;
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if (esc) {
-                switch (c) {
-                    case 'n':
-                        sb.append('\n');
-                        break;
-                    case 'r':
-                        sb.append('\r');
-                        break;
-                    case 't':
-                        sb.append('\t');
-                        break;
-                    case 'u':
-                        if (i + 4 < s.length()) {
-                            try {
-                                sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
-                                i += 4;
-                            } catch (Exception e) {
-                                sb.append("\\u");
-                            }
-                        }
-                        break;
-                    default:
-                        sb.append(c);
-                }
-                esc = false;
-            } else if (c == '\\')
-                esc = true;
-            else
-                sb.append(c);
-        }
-        return sb.toString();
-    }
 }
@@ -0,0 +1,162 @@
+/*
+ * QwenClientBenchmark.java - AI 客户端传输层性能对比
+ * 旧实现 (每次请求新建 HttpURLConnection 并断开) vs QwenClient (HttpClient 连接复用、gzip、异步并发)
+ * 对本地模拟接口 (MockLlmServer) 测量，不需要 API Key 和网络；
+ * 模拟接口对每个请求固定延迟 latencyMs，统计服务端看到的 TCP 连接数。
+ * 并发组分别在默认的每服务在途上限与不设上限时测量（HTTP/1.1 下每个在途请求各占一条连接）。
+ * 最后一组对比流式 (SSE) 回复：首段内容、changes 可用、完整回复各自的到达时间。
+ * 运行: java QwenClientBenchmark [请求数] [latencyMs]
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class QwenClientBenchmark {
+
+    private static volatile int blackhole;
+
+    /**
+     * 旧实现：每次请求新建连接，逐行读入，最后 disconnect
+     */
+    static String legacyPost(String apiUrl, String body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(apiUrl).openConnection();
+        try {
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+            conn.setRequestProperty("Authorization", "Bearer mock");
+            conn.setDoOutput(true);
+            conn.setConnectTimeout(30000);
+            conn.setReadTimeout(120000);
+            try (OutputStream os = conn.getOutputStream()) {
+                os.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+            conn.getResponseCode();
+            StringBuilder response = new StringBuilder();
+            try (java.io.BufferedReader reader = new java.io.BufferedReader(
+                    new java.io.InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    response.append(line).append("\n");
+                }
+            }
+            return response.toString();
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int latencyMs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String prompt = "把入口速度改成 0.05 m/s";
+        String body = "{\"model\":\"qwen-turbo\",\"messages\":[{\"role\":\"user\",\"content\":\"" + prompt + "\"}]}";
+
+        try (MockLlmServer mock = new MockLlmServer(latencyMs)) {
+            QwenClient client = new QwenClient("mock", mock.url());
+            // 预热 JIT 与连接
+            for (int i = 0; i < 50; i++) {
+                blackhole += legacyPost(mock.url(), body).length();
+                blackhole += client.chat(prompt, "system").length();
+            }
+            System.out.println("Mock endpoint latency " + latencyMs + " ms, response " + mock.plain.length
+                    + " bytes (" + mock.gzipped.length + " gzipped), " + requests + " requests");
+            System.out.println();
+
+            mock.resetCounters();
+            long t0 = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                blackhole += legacyPost(mock.url(), body).length();
+            }
+            report("legacy HttpURLConnection, sequential", t0, requests, mock);
+
+            mock.resetCounters();
+            t0 = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                blackhole += client.chat(prompt, "system").length();
+            }
+            report("HttpClient chat(), sequential", t0, requests, mock);
+
+            allInFlight("HttpClient chatAsync(), in-flight cap " + client.getRateLimiter("Qwen").maxInFlight(),
+                    client, prompt, requests, mock);
+            allInFlight("HttpClient chatAsync(), no cap", client.setMaxInFlight(0), prompt, requests, mock);
+        }
+
+        streaming(Math.max(1, requests / 10), latencyMs);
+    }
+
+    /**
+     * 一次提交全部请求，等待全部完成
+     */
+    private static void allInFlight(String name, QwenClient client, String prompt, int requests,
+            MockLlmServer mock) {
+        mock.resetCounters();
+        long t0 = System.nanoTime();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            futures.add(client.chatAsync(prompt, "system"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        for (CompletableFuture<String> f : futures) {
+            blackhole += f.join().length();
+        }
+        report(name, t0, requests, mock);
+    }
+
+    /**
+     * 流式回复：逐段到达时 GUI 已能显示内容；StreamParser 在 changes 数组闭合时立即给出变更
+     */
+    private static void streaming(int requests, int latencyMs) throws Exception {
+        String prompt = "把入口速度改成 0.05 m/s";
+        SimulationConfig cfg = new SimulationConfig();
+        try (MockLlmServer mock = new MockLlmServer(latencyMs)) {
+            QwenClient client = new QwenClient("mock", mock.url());
+            System.out.println();
+            System.out.println("Streaming: " + mock.chunks.size() + " chunks, " + mock.chunkDelayMs
+                    + " ms apart, " + requests + " requests");
+            for (int i = 0; i < 5; i++) {
+                blackhole += client.chatStream(prompt, "system", delta -> { }).join().length();
+            }
+            double first = 0, changes = 0, total = 0;
+            int changeCount = 0;
+            for (int i = 0; i < requests; i++) {
+                AIConfigParser.StreamParser parser = new AIConfigParser.StreamParser(cfg);
+                long t0 = System.nanoTime();
+                long[] marks = new long[2];
+                String full = client.chatStream(prompt, "system", delta -> {
+                    if (marks[0] == 0) {
+                        marks[0] = System.nanoTime();
+                    }
+                    if (parser.feed(delta)) {
+                        marks[1] = System.nanoTime();
+                    }
+                }).join();
+                long t1 = System.nanoTime();
+                AIConfigParser.ParseResult result = parser.finish();
+                AIConfigParser.ParseResult reference = AIConfigParser.parseAIResponse(full, cfg);
+                if (!result.message.equals(reference.message) || result.changes.size() != reference.changes.size()) {
+                    throw new IllegalStateException("StreamParser disagrees with parseAIResponse");
+                }
+                changeCount = result.changes.size();
+                first += (marks[0] - t0) / 1e6;
+                changes += (marks[1] - t0) / 1e6;
+                total += (t1 - t0) / 1e6;
+            }
+            System.out.println(String.format("%-40s %7.2f ms", "first token", first / requests));
+            System.out.println(String.format("%-40s %7.2f ms (%d change)", "changes parsed", changes / requests,
+                    changeCount));
+            System.out.println(String.format("%-40s %7.2f ms", "complete response", total / requests));
+        }
+    }
+
+    private static void report(String name, long t0, int requests, MockLlmServer mock) {
+        double ms = (System.nanoTime() - t0) / 1e6;
+        System.out.println(String.format("%-40s %8.1f ms total %7.2f ms/request  %4d connections  %7.1f KB received",
+                name, ms, ms / requests, mock.clientPorts.size(), mock.bytesSent.get() / 1024.0));
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * RateLimiter.java - AI 服务的客户端限流与重试调度
+ * 每个服务一个令牌桶（每分钟请求数 + 突发量），请求按优先级排队等待令牌：
+ * 交互请求 (GUI) 总是排在批量请求之前，批量任务不会让 GUI 等待。
+ * 收到 429 时暂停该服务的发放直到 Retry-After 到期，重试延迟为带抖动的指数退避；
+ * 可限制同时在途的请求数：许可在请求完成后 release() 归还，超出上限的请求排队等待。
+ * 等待全部异步完成，不占用线程。
+ */
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiter {
+
+    /**
+     * 请求优先级：INTERACTIVE 先于 BULK 获得令牌
+     */
+    public enum Priority {
+        INTERACTIVE, BULK
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+        final Priority priority;
+        final long seq;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(Priority priority, long seq) {
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(Waiter o) {
+            int c = priority.compareTo(o.priority);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    private final String name;
+    // 每纳秒补充的令牌数，<= 0 表示不限速（仍遵守 429 暂停）
+    private final double tokensPerNano;
+    private final double burst;
+    // 同时在途的请求上限，<= 0 表示不限
+    private final int maxInFlight;
+    private int inFlight = 0;
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil = 0; // System.nanoTime() 时刻，0 表示未暂停
+    private boolean dispatchScheduled = false;
+    private long seq = 0;
+    private long granted = 0;
+    private long throttled = 0;
+    private double waitedMs = 0;
+
+    /**
+     * @param requestsPerMinute 平均速率，<= 0 表示不限速
+     * @param burst             空闲后可连续发出的请求数
+     */
+    public RateLimiter(String name, double requestsPerMinute, int burst) {
+        this(name, requestsPerMinute, burst, 0);
+    }
+
+    /**
+     * @param maxInFlight 同时在途的请求上限，<= 0 表示不限；取得许可的请求完成后必须调用 release()
+     */
+    public RateLimiter(String name, double requestsPerMinute, int burst, int maxInFlight) {
+        this.name = name;
+        this.maxInFlight = maxInFlight;
+        this.tokensPerNano = requestsPerMinute > 0 ? requestsPerMinute / 60e9 : 0;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+    }
+
+    /**
+     * 按优先级排队等待一个令牌；返回的 future 完成时即可发出请求。取消 future 会退出队列
+     */
+    public CompletableFuture<Void> acquire(Priority priority) {
+        Waiter waiter;
+        synchronized (this) {
+            waiter = new Waiter(priority, seq++);
+            queue.add(waiter);
+        }
+        waiter.future.whenComplete((v, e) -> {
+            if (waiter.future.isCancelled()) {
+                synchronized (this) {
+                    queue.remove(waiter);
+                }
+            }
+        });
+        dispatch();
+        return waiter.future;
+    }
+
+    /**
+     * 归还一个在途名额（请求已完成、失败或被取消）
+     */
+    public void release() {
+        synchronized (this) {
+            if (inFlight > 0) {
+                inFlight--;
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * 服务返回 429：在 delayMs 内不再发放令牌，并清空桶，恢复后按速率重新积累
+     */
+    public void pause(long delayMs) {
+        synchronized (this) {
+            throttled++;
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+            if (until - pausedUntil > 0 || pausedUntil == 0) {
+                pausedUntil = until;
+            }
+            tokens = 0;
+        }
+        dispatch();
+    }
+
+    /**
+     * 按优先级发放可用令牌；还有等待者时安排在下一个令牌（或暂停结束）时再次发放
+     */
+    private void dispatch() {
+        List<Waiter> ready = new ArrayList<>();
+        long delayNanos = -1;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (pausedUntil != 0 && now - pausedUntil >= 0) {
+                pausedUntil = 0;
+                lastRefill = now;
+            }
+            if (pausedUntil == 0) {
+                if (tokensPerNano > 0) {
+                    tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+                    lastRefill = now;
+                }
+                while (!queue.isEmpty() && (tokensPerNano <= 0 || tokens >= 1)
+                        && (maxInFlight <= 0 || inFlight < maxInFlight)) {
+                    Waiter w = queue.poll();
+                    if (w.future.isDone()) {
+                        continue;
+                    }
+                    if (tokensPerNano > 0) {
+                        tokens -= 1;
+                    }
+                    granted++;
+                    inFlight++;
+                    waitedMs += (now - w.enqueuedAt) / 1e6;
+                    ready.add(w);
+                }
+            }
+            // 只因在途名额已满而等待时不需要定时器，release() 会再次发放
+            boolean blockedByRate = pausedUntil != 0 || (tokensPerNano > 0 && tokens < 1);
+            if (!queue.isEmpty() && blockedByRate && !dispatchScheduled) {
+                dispatchScheduled = true;
+                delayNanos = pausedUntil != 0 ? pausedUntil - now
+                        : (long) Math.ceil((1 - tokens) / tokensPerNano);
+            }
+        }
+        // 在锁外完成：等待者的后续动作（发出请求）不应持有限流器的锁
+        for (Waiter w : ready) {
+            if (!w.future.complete(null)) {
+                // 发放的同时被取消：名额没有被使用，归还
+                release();
+            }
+        }
+        if (delayNanos >= 0) {
+            CompletableFuture.delayedExecutor(Math.max(1, delayNanos), TimeUnit.NANOSECONDS).execute(() -> {
+                synchronized (this) {
+                    dispatchScheduled = false;
+                }
+                dispatch();
+            });
+        }
+    }
+
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s[%s, %s in flight, %d granted, avg wait %.0f ms, %d queued, %d throttled (429)]",
+                name, tokensPerNano > 0 ? String.format("%.0f/min burst %.0f", tokensPerNano * 60e9, burst) : "unlimited",
+                maxInFlight > 0 ? inFlight + "/" + maxInFlight : String.valueOf(inFlight), granted,
+                granted > 0 ? waitedMs / granted : 0.0, queue.size(), throttled);
+    }
+
+    /**
+     * 重试策略：带完全抖动的指数退避 (delay = random(0, min(cap, base * 2^n)))；
+     * 服务给出 Retry-After 时至少等待该时长
+     */
+    public static class RetryPolicy {
+        public final int maxRetries;
+        public final long baseDelayMs;
+        public final long maxDelayMs;
+
+        public RetryPolicy(int maxRetries, long baseDelayMs, long maxDelayMs) {
+            this.maxRetries = maxRetries;
+            this.baseDelayMs = baseDelayMs;
+            this.maxDelayMs = maxDelayMs;
+        }
+
+        /**
+         * 第 retry 次重试（从 0 开始）前的等待时间；retryAfterMs < 0 表示服务未给出
+         */
+        public long delayMs(int retry, long retryAfterMs) {
+            long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(retry, 20));
+            long jitter = ThreadLocalRandom.current().nextLong(ceiling + 1);
+            if (retryAfterMs >= 0) {
+                // 到期后稍作错开，避免所有客户端在同一时刻重试
+                return retryAfterMs + jitter / 4;
+            }
+            return jitter;
+        }
+    }
+
+    /**
+     * 解析 Retry-After（秒数或 HTTP 日期）与 retry-after-ms；都没有时返回 -1
+     */
+    public static long parseRetryAfter(String retryAfter, String retryAfterMs) {
+        if (retryAfterMs != null) {
+            try {
+                return Math.max(0, (long) Double.parseDouble(retryAfterMs.trim()));
+            } catch (NumberFormatException e) {
+                /* 退回 Retry-After */ }
+        }
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return -1;
+        }
+        String value = retryAfter.trim();
+        try {
+            return Math.max(0, (long) (Double.parseDouble(value) * 1000));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+            } catch (DateTimeParseException e2) {
+                return -1;
+            }
+        }
+    }
+
+    // 测试方法：本地模拟接口配额 10 次/秒，同时提交 60 个批量请求
+    public static void main(String[] args) throws Exception {
+        int bulk = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int quota = 10;
+        try (MockLlmServer mock = new MockLlmServer(20)) {
+            mock.quotaPerSecond = quota;
+            System.out.println("Mock quota " + quota + " requests/s, " + bulk + " bulk requests submitted at once");
+
+            // 1. 不限速、不重试：超出配额的请求全部失败
+            QwenClient client = new QwenClient("mock", mock.url()).setRetryPolicy(new RetryPolicy(0, 500, 30_000));
+            run(client, mock, bulk, false);
+            Thread.sleep(1100);
+
+            // 2. 令牌桶按配额发放，429 按 Retry-After 暂停；中途插入一个交互请求
+            mock.resetCounters();
+            client = new QwenClient("mock", mock.url()).setRateLimit(quota * 60, 5);
+            run(client, mock, bulk, true);
+            System.out.println("  " + client.getRateLimiter("Qwen"));
+
+            // 3. 在途上限：一次提交的请求最多占用 4 条连接
+            mock.quotaPerSecond = 0;
+            mock.resetCounters();
+            client = new QwenClient("mock", mock.url()).setMaxInFlight(4);
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                futures.add(client.chatAsync("批量工况 " + i, "system", Priority.BULK));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            RateLimiter capped = client.getRateLimiter("Qwen");
+            System.out.println("in-flight cap 4: 40 requests over " + mock.clientPorts.size() + " connections, "
+                    + capped);
+            if (mock.clientPorts.size() > 4 || capped.inFlight() != 0) {
+                throw new IllegalStateException("in-flight cap not respected");
+            }
+
+            // Retry-After 解析
+            if (parseRetryAfter("2", null) != 2000 || parseRetryAfter(null, "150") != 150
+                    || parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT", null) != 0 || parseRetryAfter("x", null) != -1) {
+                throw new IllegalStateException("Retry-After parsing");
+            }
+            System.out.println("RateLimiter self-test passed");
+        }
+    }
+
+    private static void run(QwenClient client, MockLlmServer mock, int bulk, boolean interactive)
+            throws Exception {
+        long t0 = System.nanoTime();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        List<Double> doneAt = java.util.Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < bulk; i++) {
+            CompletableFuture<String> f = client.chatAsync("批量工况 " + i, "system", Priority.BULK);
+            f.whenComplete((r, e) -> doneAt.add((System.nanoTime() - t0) / 1e6));
+            futures.add(f);
+        }
+        double interactiveMs = Double.NaN;
+        if (interactive) {
+            Thread.sleep(500);
+            long t1 = System.nanoTime();
+            client.chat("把入口速度改成 0.05 m/s", "system");
+            interactiveMs = (System.nanoTime() - t1) / 1e6;
+        }
+        int ok = 0;
+        for (CompletableFuture<String> f : futures) {
+            try {
+                f.join();
+                ok++;
+            } catch (RuntimeException e) {
+                /* 计入失败 */ }
+        }
+        double total = (System.nanoTime() - t0) / 1e6;
+        double mean = 0;
+        synchronized (doneAt) {
+            for (double d : doneAt) {
+                mean += d;
+            }
+            mean /= Math.max(1, doneAt.size());
+        }
+        System.out.println(String.format("%-28s %3d/%d ok, %3d rejected (429) by server, %6.0f ms total, "
+                + "%5.1f req/s, bulk mean %5.0f ms%s", interactive ? "token bucket + retries" : "no limiter, no retries",
+                ok, bulk, mock.rejected.get(), total, ok / (total / 1000), mean,
+                interactive ? String.format(", interactive %.0f ms", interactiveMs) : ""));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * ResultCache.java - 按内容寻址的求解结果缓存
+ * 键为所有求解相关字段的规范化 SHA-256 (导出/动画/输出路径等只影响后处理的字段不参与，
+ * 但 Adaptive 模式下 exportAnimation / animationMaxFrames 决定存储的时刻，参与)，
+ * 值为求解完成后保存的 .mph；按磁盘预算做 LRU 淘汰
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ResultCache {
+
+    public static final String CACHE_DIR = ".result_cache";
+    static final String MODEL_FILE = "model.mph";
+    // 条目对应的配置，供 WarmStart 按几何与雷诺数查找最接近的解
+    static final String CONFIG_FILE = "config.json";
+
+    // 修改求解流程（几何/物理设置方式）时递增，使旧缓存全部失效
+    private static final String KEY_VERSION = "v1";
+
+    // 只影响输出与后处理的字段，不参与缓存键
+    private static final Set<String> OUTPUT_ONLY_FIELDS = new HashSet<>(Arrays.asList(
+            "outputDir", "modelFileName",
+            "exportVelocity", "exportVorticity", "exportPressure", "exportAnimation",
+            "animationFps", "animationMaxFrames", "animationMode", "animationGridNx", "exportWorkers",
+            "exportProbes", "probePoints", "probeFormat", "computeMetrics",
+            "pressureRangeAuto", "pressureRangeFactor", "pressureRangeMin", "pressureRangeMax",
+            "resultCacheEnabled", "resultCacheMaxMB", "resultCacheDir", "lbmThreads"));
+
+    // Adaptive 模式下决定存储哪些时刻的解 (getOutputTimes)，此时参与缓存键
+    private static final Set<String> ADAPTIVE_OUTPUT_FIELDS = new HashSet<>(Arrays.asList(
+            "exportAnimation", "animationMaxFrames"));
+
+    // 每个缓存目录一把锁：各工况各自创建 ResultCache 实例，并行扫描时共用同一目录
+    private static final ConcurrentHashMap<File, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private final File root;
+    private final long budgetBytes;
+    private final Object lock;
+
+    public ResultCache(File root, long budgetBytes) {
+        this.root = root;
+        this.budgetBytes = budgetBytes;
+        this.lock = LOCKS.computeIfAbsent(root.getAbsoluteFile().toPath().normalize().toFile(), k -> new Object());
+    }
+
+    /**
+     * 按配置创建缓存（位于 getEffectiveResultCacheDir()），未启用或热启动时返回 null
+     */
+    public static ResultCache forConfig(SimulationConfig cfg) {
+        // 热启动的结果取决于磁盘上已有的解，不能只按配置命中
+        if (!cfg.resultCacheEnabled || WarmStart.isEnabled(cfg)) {
+            return null;
+        }
+        return new ResultCache(new File(cfg.getEffectiveResultCacheDir()),
+                cfg.resultCacheMaxMB * 1024L * 1024L);
+    }
+
+    /**
+     * 求解相关字段的规范化哈希（字段按 ConfigCodec 顺序，数值统一用 Double.toString）；
+     * Adaptive 模式下存储的时刻取决于动画设置，这两个字段也参与
+     */
+    public static String keyOf(SimulationConfig cfg) {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append(KEY_VERSION).append('\n');
+        boolean adaptive = cfg.isAdaptiveTimeStepping();
+        for (int i = 0; i < ConfigCodec.fieldCount(); i++) {
+            String name = ConfigCodec.fieldName(i);
+            if (OUTPUT_ONLY_FIELDS.contains(name) && !(adaptive && ADAPTIVE_OUTPUT_FIELDS.contains(name))) {
+                continue;
+            }
+            sb.append(name).append('=').append(ConfigCodec.getAsString(cfg, i)).append('\n');
+        }
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b & 0xFF));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 查找缓存的 .mph，命中时刷新访问时间；未命中返回 null
+     */
+    public File lookup(String key) {
+        synchronized (lock) {
+            File entry = new File(root, key);
+            File model = new File(entry, MODEL_FILE);
+            if (!model.isFile()) {
+                return null;
+            }
+            entry.setLastModified(System.currentTimeMillis());
+            return model;
+        }
+    }
+
+    /**
+     * 把求解后保存的 .mph 及其配置复制进缓存，然后按预算淘汰最久未使用的条目
+     */
+    public void store(String key, File modelFile, SimulationConfig cfg) throws IOException {
+        synchronized (lock) {
+            File entry = new File(root, key);
+            File target = new File(entry, MODEL_FILE);
+            if (target.isFile()) {
+                entry.setLastModified(System.currentTimeMillis());
+                return;
+            }
+            entry.mkdirs();
+            // 先写临时文件再改名，避免中断后留下半个 .mph 被当成命中
+            File tmp = new File(entry, MODEL_FILE + ".tmp");
+            Files.copy(modelFile.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.write(new File(entry, CONFIG_FILE).toPath(),
+                    ConfigCodec.toJson(cfg).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            entry.setLastModified(System.currentTimeMillis());
+            evict(key);
+        }
+    }
+
+    /**
+     * LRU 淘汰：总大小超过预算时删除最久未访问的条目（刚写入的条目除外）；调用方持有 lock
+     */
+    private void evict(String keep) {
+        File[] entries = root.listFiles();
+        if (entries == null) {
+            return;
+        }
+        List<File> dirs = new ArrayList<>();
+        long total = 0;
+        for (File e : entries) {
+            if (e.isDirectory()) {
+                dirs.add(e);
+                total += sizeOf(e);
+            }
+        }
+        if (total <= budgetBytes) {
+            return;
+        }
+
+        dirs.sort(Comparator.comparingLong(File::lastModified));
+        for (File e : dirs) {
+            if (total <= budgetBytes) {
+                break;
+            }
+            if (e.getName().equals(keep)) {
+                continue;
+            }
+            long size = sizeOf(e);
+            if (deleteRecursively(e)) {
+                total -= size;
+                System.out.println("Result cache: evicted " + e.getName() + " (" + (size / 1024) + " KB)");
+            }
+        }
+    }
+
+    private static long sizeOf(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                size += f.isDirectory() ? sizeOf(f) : f.length();
+            }
+        }
+        return size;
+    }
+
+    private static boolean deleteRecursively(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                deleteRecursively(c);
+            }
+        }
+        return f.delete();
+    }
+}
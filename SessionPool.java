@@ -0,0 +1,554 @@
+/*
+ * SessionPool.java - 长连接会话池
+ * 保持若干已初始化的会话（如连接到 comsolmphserver 的客户端），运行时直接借用，
+ * 省去每次启动 JVM、连接服务器、签出许可证的时间。
+ *   - 最大会话数限制，超出时等待归还
+ *   - 空闲超过 healthCheckIntervalMs 的会话在借出前做健康检查，失效的丢弃并重建
+ *   - 归还时由工厂清理会话状态（如删除本次创建的模型），清理失败或使用次数达到 maxUses 时关闭
+ * 不依赖 COMSOL，测试方法用本地假服务器验证。
+ */
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SessionPool<S> implements Closeable {
+
+    /**
+     * 会话的创建、检查、清理与关闭
+     */
+    public interface SessionFactory<S> {
+        /**
+         * 建立一个可用的会话（连接服务器、完成初始化）
+         */
+        S open() throws Exception;
+
+        /**
+         * 健康检查，会话仍可用时返回 true
+         */
+        boolean validate(S session);
+
+        /**
+         * 归还前清理本次使用留下的状态；抛出异常时会话被关闭
+         */
+        void reset(S session) throws Exception;
+
+        void close(S session);
+    }
+
+    /**
+     * 借出的会话；close() 归还，运行出错后可先 invalidate() 使其被关闭而不是放回池中
+     */
+    public static class Lease<S> implements AutoCloseable {
+        private final SessionPool<S> pool;
+        private final Entry<S> entry;
+        private boolean broken = false;
+        private boolean returned = false;
+
+        Lease(SessionPool<S> pool, Entry<S> entry) {
+            this.pool = pool;
+            this.entry = entry;
+        }
+
+        public S get() {
+            return entry.session;
+        }
+
+        public void invalidate() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (!returned) {
+                returned = true;
+                pool.release(entry, broken);
+            }
+        }
+    }
+
+    private static class Entry<S> {
+        final S session;
+        long lastUsed;
+        int uses;
+
+        Entry(S session) {
+            this.session = session;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private final SessionFactory<S> factory;
+    private final int maxSessions;
+    private long healthCheckIntervalMs = 30_000;
+    private long maxIdleMs = 30 * 60_000;
+    private int maxUses = 0; // 0 = 不限
+
+    // 最近归还的在队首，优先借出最“热”的会话
+    private final Deque<Entry<S>> idle = new ArrayDeque<>();
+    private int total = 0; // 已打开或正在打开的会话数
+    private boolean closed = false;
+
+    private long opened = 0;
+    private long reused = 0;
+    private long discarded = 0;
+    private long waits = 0;
+
+    public SessionPool(SessionFactory<S> factory, int maxSessions) {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("maxSessions must be >= 1");
+        }
+        this.factory = factory;
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * 空闲超过此时间的会话借出前先做健康检查（0 = 每次都检查）
+     */
+    public SessionPool<S> setHealthCheckInterval(long ms) {
+        this.healthCheckIntervalMs = ms;
+        return this;
+    }
+
+    /**
+     * 空闲超过此时间的会话被关闭，释放服务器资源与许可证
+     */
+    public SessionPool<S> setMaxIdle(long ms) {
+        this.maxIdleMs = ms;
+        return this;
+    }
+
+    /**
+     * 会话使用次数达到此值后关闭重建（限制长时间运行的服务器内存增长），0 = 不限
+     */
+    public SessionPool<S> setMaxUses(int maxUses) {
+        this.maxUses = maxUses;
+        return this;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * 借用一个会话，池满时最多等待 timeoutMs
+     *
+     * @throws TimeoutException 等待超时
+     * @throws Exception        创建会话失败
+     */
+    public Lease<S> acquire(long timeoutMs) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            Entry<S> entry = null;
+            boolean mustOpen = false;
+            List<Entry<S>> expired = evictExpired();
+            synchronized (this) {
+                if (closed) {
+                    throw new IllegalStateException("Session pool is closed");
+                }
+                if (!idle.isEmpty()) {
+                    entry = idle.pollFirst();
+                } else if (total < maxSessions) {
+                    total++;
+                    mustOpen = true;
+                } else {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new TimeoutException("No session available within " + timeoutMs + " ms (" + this + ")");
+                    }
+                    waits++;
+                    wait(remaining);
+                }
+            }
+            closeAll(expired);
+
+            // 连接与健康检查在锁外进行，可能很慢
+            if (mustOpen) {
+                S session;
+                try {
+                    session = factory.open();
+                } catch (Exception | Error e) {
+                    synchronized (this) {
+                        total--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+                synchronized (this) {
+                    opened++;
+                }
+                return new Lease<>(this, new Entry<>(session));
+            }
+            if (entry != null) {
+                boolean stale = System.currentTimeMillis() - entry.lastUsed >= healthCheckIntervalMs;
+                if (stale && !validateQuietly(entry.session)) {
+                    System.out.println("Warning: Discarding unhealthy session");
+                    discard(entry);
+                    continue;
+                }
+                synchronized (this) {
+                    reused++;
+                }
+                return new Lease<>(this, entry);
+            }
+        }
+    }
+
+    /**
+     * 预先打开会话直到空闲数达到 count（不超过最大会话数），失败只打印警告
+     */
+    public void prewarm(int count) {
+        List<Entry<S>> created = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                if (closed || idle.size() + created.size() >= count || total >= maxSessions) {
+                    break;
+                }
+                total++;
+            }
+            try {
+                created.add(new Entry<>(factory.open()));
+                synchronized (this) {
+                    opened++;
+                }
+            } catch (Exception e) {
+                synchronized (this) {
+                    total--;
+                }
+                System.out.println("Warning: Failed to open session: " + e.getMessage());
+                break;
+            }
+        }
+        synchronized (this) {
+            idle.addAll(created);
+            notifyAll();
+        }
+    }
+
+    private void release(Entry<S> entry, boolean broken) {
+        entry.uses++;
+        if (!broken) {
+            try {
+                factory.reset(entry.session);
+            } catch (Exception e) {
+                System.out.println("Warning: Session cleanup failed, closing session: " + e.getMessage());
+                broken = true;
+            }
+        }
+        boolean keep;
+        synchronized (this) {
+            keep = !broken && !closed && (maxUses <= 0 || entry.uses < maxUses);
+            if (keep) {
+                entry.lastUsed = System.currentTimeMillis();
+                idle.addFirst(entry);
+                notifyAll();
+            }
+        }
+        if (!keep) {
+            discard(entry);
+        }
+    }
+
+    private void discard(Entry<S> entry) {
+        try {
+            factory.close(entry.session);
+        } catch (RuntimeException e) {
+            System.out.println("Warning: Failed to close session: " + e.getMessage());
+        }
+        synchronized (this) {
+            total--;
+            discarded++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * 取出空闲过久的会话（队尾最久未用），由调用方在锁外关闭
+     */
+    private synchronized List<Entry<S>> evictExpired() {
+        if (maxIdleMs <= 0 || idle.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Entry<S>> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        while (!idle.isEmpty() && now - idle.peekLast().lastUsed > maxIdleMs) {
+            expired.add(idle.pollLast());
+        }
+        return expired;
+    }
+
+    private void closeAll(List<Entry<S>> entries) {
+        for (Entry<S> e : entries) {
+            discard(e);
+        }
+    }
+
+    private boolean validateQuietly(S session) {
+        try {
+            return factory.validate(session);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 关闭全部空闲会话；借出中的会话在归还时关闭
+     */
+    @Override
+    public void close() {
+        List<Entry<S>> all;
+        synchronized (this) {
+            closed = true;
+            all = new ArrayList<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        closeAll(all);
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public synchronized int getOpenCount() {
+        return total;
+    }
+
+    public synchronized long getOpened() {
+        return opened;
+    }
+
+    public synchronized long getReused() {
+        return reused;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SessionPool[open=" + total + "/" + maxSessions + ", idle=" + idle.size() + ", opened=" + opened
+                + ", reused=" + reused + ", discarded=" + discarded + ", waits=" + waits + "]";
+    }
+
+    // ============================================
+    // 测试方法：本地假服务器（每个连接启动耗时 bootMs，支持 PING / RUN / CLEAR）
+    // ============================================
+    static class FakeServer implements Closeable {
+        final ServerSocket socket;
+        final int bootMs;
+        final AtomicInteger connections = new AtomicInteger();
+        private final List<Socket> clients = Collections.synchronizedList(new ArrayList<>());
+
+        FakeServer(int bootMs) throws IOException {
+            this.socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.bootMs = bootMs;
+            Thread acceptor = new Thread(this::acceptLoop, "fake-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return socket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!socket.isClosed()) {
+                try {
+                    Socket client = socket.accept();
+                    clients.add(client);
+                    connections.incrementAndGet();
+                    Thread t = new Thread(() -> serve(client), "fake-session");
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                    PrintWriter out = new PrintWriter(client.getOutputStream(), true)) {
+                Thread.sleep(bootMs); // 模拟服务器启动和许可证签出
+                out.println("READY");
+                int models = 0;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if ("PING".equals(line)) {
+                        out.println("PONG");
+                    } else if (line.startsWith("RUN ")) {
+                        Thread.sleep(Long.parseLong(line.substring(4)));
+                        models++;
+                        out.println("DONE models=" + models);
+                    } else if ("CLEAR".equals(line)) {
+                        models = 0;
+                        out.println("OK");
+                    } else {
+                        out.println("ERR " + line);
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // 连接被断开
+            }
+        }
+
+        /**
+         * 断开所有已有连接（模拟服务器重启）
+         */
+        void dropAll() throws IOException {
+            synchronized (clients) {
+                for (Socket s : clients) {
+                    s.close();
+                }
+                clients.clear();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+            dropAll();
+        }
+    }
+
+    static class FakeSession {
+        final Socket socket;
+        final BufferedReader in;
+        final PrintWriter out;
+
+        FakeSession(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setSoTimeout(10_000);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(socket.getOutputStream(), true);
+            if (!"READY".equals(in.readLine())) {
+                throw new IOException("Server not ready");
+            }
+        }
+
+        String call(String command) throws IOException {
+            out.println(command);
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new IOException("Connection closed");
+            }
+            return reply;
+        }
+    }
+
+    static SessionFactory<FakeSession> fakeFactory(int port) {
+        return new SessionFactory<FakeSession>() {
+            @Override
+            public FakeSession open() throws IOException {
+                return new FakeSession(port);
+            }
+
+            @Override
+            public boolean validate(FakeSession s) {
+                try {
+                    return "PONG".equals(s.call("PING"));
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public void reset(FakeSession s) throws IOException {
+                if (!"OK".equals(s.call("CLEAR"))) {
+                    throw new IOException("CLEAR failed");
+                }
+            }
+
+            @Override
+            public void close(FakeSession s) {
+                try {
+                    s.socket.close();
+                } catch (IOException e) {
+                    // 已断开
+                }
+            }
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        int jobs = 12;
+        int bootMs = 300;
+        int runMs = 50;
+        try (FakeServer server = new FakeServer(bootMs)) {
+            // 对照：每个任务新建一个会话（相当于每次启动 run_comsol.bat）
+            long t0 = System.nanoTime();
+            for (int i = 0; i < jobs; i++) {
+                FakeSession s = new FakeSession(server.port());
+                s.call("RUN " + runMs);
+                s.socket.close();
+            }
+            double coldMs = (System.nanoTime() - t0) / 1e6;
+
+            SessionPool<FakeSession> pool = new SessionPool<>(fakeFactory(server.port()), 2)
+                    .setHealthCheckInterval(0);
+            ExecutorService workers = Executors.newFixedThreadPool(4);
+            try {
+                t0 = System.nanoTime();
+                List<Future<String>> results = new ArrayList<>();
+                for (int i = 0; i < jobs; i++) {
+                    results.add(workers.submit(() -> {
+                        try (Lease<FakeSession> lease = pool.acquire(30_000)) {
+                            try {
+                                return lease.get().call("RUN " + runMs);
+                            } catch (IOException e) {
+                                lease.invalidate();
+                                throw e;
+                            }
+                        }
+                    }));
+                }
+                for (Future<String> f : results) {
+                    if (!"DONE models=1".equals(f.get())) {
+                        throw new IllegalStateException("Session was not cleaned up: " + f.get());
+                    }
+                }
+                double pooledMs = (System.nanoTime() - t0) / 1e6;
+                System.out.println(String.format("%d jobs: new session per job %.0f ms, pooled (max 2) %.0f ms",
+                        jobs, coldMs, pooledMs));
+                System.out.println("After jobs: " + pool);
+
+                // 服务器断开后，健康检查丢弃失效会话并重建
+                server.dropAll();
+                Thread.sleep(50);
+                try (Lease<FakeSession> lease = pool.acquire(30_000)) {
+                    System.out.println("After server restart: " + lease.get().call("RUN 1") + ", " + pool);
+                }
+
+                // 池满时等待超时
+                try (Lease<FakeSession> a = pool.acquire(30_000); Lease<FakeSession> b = pool.acquire(30_000)) {
+                    if (a.get() == b.get()) {
+                        System.out.println("ERROR: two leases share one session");
+                    }
+                    pool.acquire(100);
+                    System.out.println("ERROR: acquire on a full pool did not time out");
+                } catch (TimeoutException e) {
+                    System.out.println("Full pool: " + e.getMessage());
+                }
+            } finally {
+                workers.shutdown();
+                pool.close();
+            }
+            System.out.println("Closed: " + pool + ", server saw " + server.connections.get() + " connections");
+        }
+    }
+}
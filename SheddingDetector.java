@@ -0,0 +1,327 @@
+/*
+ * SheddingDetector.java - 周期性涡脱落检测
+ * 逐点输入升力系数（或尾流探针）时间序列，按上穿零点（相对上一周期均值）切分周期，
+ * 最近 N 个周期的周期长度、振幅无趋势且均值的标准误差足够小、上穿相位没有累积漂移时，
+ * 判定为统计定常的周期振荡（单个周期允许有抖动，如 LBM 中的声波噪声），
+ * 用于提前结束瞬态计算并给出 Strouhal 数。只保留每个周期的统计量，内存与序列长度无关。
+ */
+
+public class SheddingDetector {
+
+    // 一个周期至少包含的采样数，少于此数的振荡（如启动时的数值振荡）无法分辨，视为噪声
+    static final int MIN_SAMPLES_PER_CYCLE = 8;
+
+    private final int cycles;
+    private final double tolerance;
+    private final double minAmplitude;
+
+    // 最近 cycles 个完整周期（环形缓冲）
+    private final double[] periods;
+    private final double[] amplitudes;
+    private final double[] crossings;
+    private final double[] means;
+    private final double[] meanSquares;
+    private final double[] auxMeans;
+    private int count = 0; // 缓冲中的有效周期数
+    private int head = 0; // 下一个写入位置
+    private long totalCycles = 0;
+
+    // 当前周期的累加量（按时间加权的梯形积分）
+    private double cycleMax = Double.NEGATIVE_INFINITY;
+    private double cycleMin = Double.POSITIVE_INFINITY;
+    private double sumV = 0;
+    private double sumV2 = 0;
+    private double sumAux = 0;
+    private double duration = 0;
+    private int samples = 0;
+
+    // 开始以来的累加量（第一个周期之前用作参考电平）
+    private double totalV = 0;
+    private double totalDuration = 0;
+
+    private boolean hasPrev = false;
+    private double prevT;
+    private double prevV;
+    private double prevAux;
+    private double level = 0;
+    private boolean levelKnown = false;
+    private boolean armed = false;
+    private double lastCrossing = Double.NaN;
+    private double lastAmplitude = 0;
+
+    /**
+     * @param cycles       判定所需的连续周期数
+     * @param tolerance    周期、振幅均值的相对标准误差及前后半窗口相对变化的上限
+     * @param minAmplitude 小于此振幅的振荡视为噪声
+     */
+    public SheddingDetector(int cycles, double tolerance, double minAmplitude) {
+        this.cycles = Math.max(3, cycles);
+        this.tolerance = tolerance;
+        this.minAmplitude = minAmplitude;
+        this.periods = new double[this.cycles];
+        this.amplitudes = new double[this.cycles];
+        this.crossings = new double[this.cycles];
+        this.means = new double[this.cycles];
+        this.meanSquares = new double[this.cycles];
+        this.auxMeans = new double[this.cycles];
+    }
+
+    /**
+     * 按配置创建（输入为升力系数时使用）
+     */
+    public static SheddingDetector forConfig(SimulationConfig config) {
+        return new SheddingDetector(config.earlyStopCycles, config.earlyStopTolerance, 1e-3);
+    }
+
+    public boolean add(double t, double value) {
+        return add(t, value, 0);
+    }
+
+    /**
+     * 输入一个采样点
+     *
+     * @param aux 附带统计的辅助信号（如阻力系数），按周期求平均
+     * @return 本次采样完成了一个周期时返回 true
+     */
+    public boolean add(double t, double value, double aux) {
+        if (!hasPrev) {
+            hasPrev = true;
+            prevT = t;
+            prevV = value;
+            prevAux = aux;
+            cycleMax = value;
+            cycleMin = value;
+            return false;
+        }
+        double dt = t - prevT;
+        if (dt <= 0) {
+            return false;
+        }
+        sumV += 0.5 * (value + prevV) * dt;
+        sumV2 += 0.5 * (value * value + prevV * prevV) * dt;
+        sumAux += 0.5 * (aux + prevAux) * dt;
+        duration += dt;
+        samples++;
+        totalV += 0.5 * (value + prevV) * dt;
+        totalDuration += dt;
+        cycleMax = Math.max(cycleMax, value);
+        cycleMin = Math.min(cycleMin, value);
+
+        double ref = levelKnown ? level : totalV / totalDuration;
+        double hysteresis = 0.25 * Math.max(minAmplitude, lastAmplitude);
+        if (value < ref - hysteresis) {
+            armed = true;
+        }
+
+        boolean completed = false;
+        if (armed && prevV < ref && value >= ref) {
+            double tc = prevT + (ref - prevV) / (value - prevV) * dt;
+            if (!Double.isNaN(lastCrossing)) {
+                completeCycle(tc);
+                completed = true;
+            }
+            lastCrossing = tc;
+            armed = false;
+            cycleMax = value;
+            cycleMin = value;
+            sumV = 0;
+            sumV2 = 0;
+            sumAux = 0;
+            duration = 0;
+            samples = 0;
+        }
+
+        prevT = t;
+        prevV = value;
+        prevAux = aux;
+        return completed;
+    }
+
+    private void completeCycle(double tc) {
+        double amplitude = 0.5 * (cycleMax - cycleMin);
+        double mean = duration > 0 ? sumV / duration : 0;
+        lastAmplitude = amplitude;
+        level = mean;
+        levelKnown = true;
+        if (amplitude < minAmplitude || samples < MIN_SAMPLES_PER_CYCLE) {
+            // 噪声级别或采样不足的振荡不计入，已有周期作废
+            count = 0;
+            head = 0;
+            return;
+        }
+        periods[head] = tc - lastCrossing;
+        amplitudes[head] = amplitude;
+        crossings[head] = tc;
+        means[head] = mean;
+        meanSquares[head] = duration > 0 ? sumV2 / duration : 0;
+        auxMeans[head] = duration > 0 ? sumAux / duration : 0;
+        head = (head + 1) % cycles;
+        count = Math.min(count + 1, cycles);
+        totalCycles++;
+    }
+
+    /**
+     * 第 k 个周期（0 = 窗口中最早的）
+     */
+    private int slot(int k) {
+        return (head - count + k + cycles) % cycles;
+    }
+
+    /**
+     * 最近 cycles 个周期是否满足周期、振幅、相位三项稳定判据。
+     * 相位允许的漂移为周期偏差 tolerance 在半个窗口内累积的相位差
+     */
+    public boolean isPeriodic() {
+        return count == cycles && getPeriodSpread() < tolerance && getAmplitudeSpread() < tolerance
+                && getPhaseDrift() < tolerance * cycles / 2;
+    }
+
+    public double getPeriod() {
+        return average(periods);
+    }
+
+    public double getAmplitude() {
+        return average(amplitudes);
+    }
+
+    /**
+     * 窗口内信号均值
+     */
+    public double getMean() {
+        return average(means);
+    }
+
+    /**
+     * 窗口内信号相对均值的均方根
+     */
+    public double getRms() {
+        double mean = getMean();
+        return Math.sqrt(Math.max(0, average(meanSquares) - mean * mean));
+    }
+
+    public double getAuxMean() {
+        return average(auxMeans);
+    }
+
+    /**
+     * 窗口起点（最早周期开始的时刻）
+     */
+    public double getWindowStart() {
+        return count == 0 ? Double.NaN : crossings[slot(0)] - periods[slot(0)];
+    }
+
+    public long getCycleCount() {
+        return totalCycles;
+    }
+
+    /**
+     * 周期均值的相对标准误差与前后半窗口的相对变化中较大者
+     */
+    public double getPeriodSpread() {
+        return spread(periods);
+    }
+
+    /**
+     * 振幅均值的相对标准误差与前后半窗口的相对变化（增长/衰减）中较大者
+     */
+    public double getAmplitudeSpread() {
+        return spread(amplitudes);
+    }
+
+    /**
+     * 上穿时刻相对等间隔线性拟合的最大偏差，以周期为单位
+     */
+    public double getPhaseDrift() {
+        if (count < 3) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double sk = 0;
+        double st = 0;
+        double skk = 0;
+        double skt = 0;
+        for (int k = 0; k < count; k++) {
+            double t = crossings[slot(k)];
+            sk += k;
+            st += t;
+            skk += k * k;
+            skt += k * t;
+        }
+        double slope = (count * skt - sk * st) / (count * skk - sk * sk);
+        double intercept = (st - slope * sk) / count;
+        double worst = 0;
+        for (int k = 0; k < count; k++) {
+            worst = Math.max(worst, Math.abs(crossings[slot(k)] - (intercept + slope * k)));
+        }
+        return worst / slope;
+    }
+
+    /**
+     * Strouhal 数 St = f D / U
+     */
+    public double strouhal(double diameter, double velocity) {
+        return diameter / (getPeriod() * velocity);
+    }
+
+    private double average(double[] values) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int k = 0; k < count; k++) {
+            sum += values[slot(k)];
+        }
+        return sum / count;
+    }
+
+    private double spread(double[] values) {
+        if (count < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double mean = average(values);
+        double var = 0;
+        for (int k = 0; k < count; k++) {
+            double d = values[slot(k)] - mean;
+            var += d * d;
+        }
+        double error = Math.sqrt(var / (count - 1) / count) / Math.abs(mean);
+
+        int half = count / 2;
+        double first = 0;
+        double second = 0;
+        for (int k = 0; k < half; k++) {
+            first += values[slot(k)];
+            second += values[slot(count - half + k)];
+        }
+        double trend = Math.abs(second - first) / half / Math.abs(mean);
+        return Math.max(error, trend);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SheddingDetector[cycles=%d, T=%.4g, amp=%.4g, spread T=%.2e amp=%.2e phase=%.2e]",
+                totalCycles, getPeriod(), getAmplitude(), getPeriodSpread(), getAmplitudeSpread(),
+                getPhaseDrift());
+    }
+
+    // ============================================
+    // 测试方法：指数饱和的正弦 + 噪声
+    // ============================================
+    public static void main(String[] args) {
+        double period = 6.25;
+        double dt = 0.05;
+        java.util.Random random = new java.util.Random(1);
+        SheddingDetector detector = new SheddingDetector(8, 0.01, 1e-3);
+        for (double t = 0; t < 400; t += dt) {
+            double amp = 0.5 * (1 - Math.exp(-t / 30.0));
+            double v = amp * Math.sin(2 * Math.PI * t / period) + 1e-4 * random.nextGaussian();
+            if (detector.add(t, v, 1.3) && detector.isPeriodic()) {
+                System.out.println("Periodic at t=" + String.format("%.2f", t) + " s: " + detector);
+                System.out.println("Detected period " + detector.getPeriod() + " (true " + period + "), St(D=0.1,U=0.031)="
+                        + detector.strouhal(0.1, 0.031) + ", rms=" + detector.getRms() + ", aux mean="
+                        + detector.getAuxMean());
+                return;
+            }
+        }
+        System.out.println("Not periodic: " + detector);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * SimulationBackend.java - 求解后端接口
+ * 对应 CylinderFlow.run() 中的各个步骤：几何、网格、材料、物理、研究、结果、求解、导出。
+ * M 为后端自己的模型对象（COMSOL 为 Model，LBM 为格子数据）。
+ * 实现：CylinderFlow.ComsolBackend (需要 COMSOL)、LbmBackend (纯 Java，可在无 COMSOL 的机器上运行)
+ */
+
+public interface SimulationBackend<M> {
+
+    /**
+     * 后端名称（写入汇总表）
+     */
+    String getName();
+
+    /**
+     * 创建空模型
+     */
+    M createModel(SimulationConfig config) throws Exception;
+
+    void buildGeometry(M model, SimulationConfig config) throws Exception;
+
+    void buildMesh(M model, SimulationConfig config) throws Exception;
+
+    void setupMaterial(M model, SimulationConfig config) throws Exception;
+
+    void setupPhysics(M model, SimulationConfig config) throws Exception;
+
+    void setupStudy(M model, SimulationConfig config) throws Exception;
+
+    void setupResults(M model, SimulationConfig config) throws Exception;
+
+    /**
+     * 求解，指标写入 result
+     */
+    void solve(M model, SimulationConfig config, SimulationResult result) throws Exception;
+
+    /**
+     * 保存模型并导出图片/动画，输出文件写入 result
+     */
+    void export(M model, SimulationConfig config, SimulationResult result) throws Exception;
+
+    /**
+     * 释放模型
+     */
+    void dispose(M model);
+
+    /**
+     * 按顺序执行全部步骤
+     */
+    default SimulationResult run(SimulationConfig config) throws Exception {
+        SimulationResult result = new SimulationResult(getName());
+        long t0 = System.nanoTime();
+        M model = createModel(config);
+        try {
+            buildGeometry(model, config);
+            buildMesh(model, config);
+            setupMaterial(model, config);
+            setupPhysics(model, config);
+            setupStudy(model, config);
+            setupResults(model, config);
+            solve(model, config, result);
+            export(model, config, result);
+        } finally {
+            dispose(model);
+        }
+        result.elapsedMs = (System.nanoTime() - t0) / 1_000_000L;
+        return result;
+    }
+}
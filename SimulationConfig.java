@@ -64,6 +64,18 @@ public class SimulationConfig {
     public double startTime = 0.0; // 开始时间 (s)
     public double endTime = 200.0; // 结束时间 (s)
     public double timeStep = 0.5; // 时间步长 (s)
+    // Fixed: 每个 timeStep 存一次解; Adaptive: 求解器自适应步长 (最大 timeStep)，
+    // 只在动画帧和探针需要的时刻存解
+    public String timeSteppingMode = "Fixed";
+    public double probeOutputInterval = 0.0; // 探针输出间隔 (s)，0 = 不需要额外输出
+    // 涡脱落检测：升力连续 earlyStopCycles 个周期的周期、振幅、相位都稳定时提前结束
+    public boolean earlyStopEnabled = false;
+    public int earlyStopCycles = 8; // 判定所需的连续周期数
+    public double earlyStopTolerance = 0.02; // 相对容差
+    public double earlyStopCheckInterval = 20.0; // COMSOL 分段求解的段长 (s)，每段结束后检测一次
+    // 初始条件：Rest = 静止; File = initialSolutionFile 中的解; Nearest = 同一扫描/缓存中几何相同、Re 最接近的解
+    public String initialCondition = "Rest";
+    public String initialSolutionFile = ""; // COMSOL 为 .mph，LBM 为 lbm_state.bin
 
     // ============================================
     // 7. 输出参数 (Output)
@@ -76,6 +88,16 @@ public class SimulationConfig {
     public boolean exportAnimation = true;
     public int animationFps = 60;
     public int animationMaxFrames = 200;
+    // 动画导出方式: Gif = COMSOL 内置 GIF; Apng / Raw = 逐帧插值到规则网格后流式编码
+    public String animationMode = "Gif";
+    public int animationGridNx = 600; // Apng/Raw 网格 x 方向点数 (y 方向按域宽高比)
+    public int exportWorkers = 1; // 并行导出数 (COMSOL: 每个导出一个子进程和服务器，需要 COMSOL_ROOT；LBM: 线程)
+    // 力系数与探针时间序列：每个存储时刻一行 (time, Cd, Cl, 各探针点 u/v/p)
+    public boolean exportProbes = false;
+    public String probePoints = "1.0,0.5;1.5,0.5"; // 探针坐标 "x1,y1;x2,y2" (m)
+    public String probeFormat = "Csv"; // Csv / Binary
+    // 求解后计算 cd_mean / cl_rms / strouhal (写入汇总表)；exportProbes 或 earlyStopEnabled 时总会计算
+    public boolean computeMetrics = false;
 
     // ============================================
     // 8. 压力云图颜色范围 (Pressure Color Range)
@@ -88,6 +110,19 @@ public class SimulationConfig {
     public double pressureRangeMin = -50.0; // 手动模式：压力最小值 (Pa)
     public double pressureRangeMax = 50.0; // 手动模式：压力最大值 (Pa)
 
+    // ============================================
+    // 9. 结果缓存 (Result Cache)
+    // ============================================
+    // 求解相关参数完全相同时直接复用已保存的 .mph，跳过求解
+    public boolean resultCacheEnabled = true; // 启用结果缓存
+    public int resultCacheMaxMB = 4096; // 缓存磁盘预算 (MB)，超出时按最久未使用淘汰
+    public String resultCacheDir = ""; // 缓存目录 (空 = outputDir/.result_cache；参数扫描中为扫描根目录下的共享目录)
+
+    // ============================================
+    // 10. LBM 参考求解器 (LbmBackend)
+    // ============================================
+    public int lbmThreads = 0; // 并行线程数 (0 = 全部处理器)
+
     /**
      * 计算动压 q = 0.5 * rho * U^2
      */
@@ -126,11 +161,205 @@ public class SimulationConfig {
         return new SimulationConfig();
     }
 
+    /**
+     * 复制配置（参数扫描时每个工况独立修改）
+     */
+    public SimulationConfig copy() {
+        SimulationConfig c = new SimulationConfig();
+        c.domainWidth = domainWidth;
+        c.domainHeight = domainHeight;
+        c.cylinderRadius = cylinderRadius;
+        c.cylinderX = cylinderX;
+        c.cylinderY = cylinderY;
+        c.inletType = inletType;
+        c.inletVelocity = inletVelocity;
+        c.inletPressure = inletPressure;
+        c.outletType = outletType;
+        c.outletPressure = outletPressure;
+        c.outletVelocity = outletVelocity;
+        c.topBoundaryType = topBoundaryType;
+        c.bottomBoundaryType = bottomBoundaryType;
+        c.cylinderWallType = cylinderWallType;
+        c.cylinderWallCondition = cylinderWallCondition;
+        c.flowType = flowType;
+        c.equationForm = equationForm;
+        c.fluidName = fluidName;
+        c.density = density;
+        c.dynamicViscosity = dynamicViscosity;
+        c.meshSizeLevel = meshSizeLevel;
+        c.meshMaxSize = meshMaxSize;
+        c.meshMinSize = meshMinSize;
+        c.cylinderMeshMaxSize = cylinderMeshMaxSize;
+        c.startTime = startTime;
+        c.endTime = endTime;
+        c.timeStep = timeStep;
+        c.timeSteppingMode = timeSteppingMode;
+        c.probeOutputInterval = probeOutputInterval;
+        c.earlyStopEnabled = earlyStopEnabled;
+        c.earlyStopCycles = earlyStopCycles;
+        c.earlyStopTolerance = earlyStopTolerance;
+        c.earlyStopCheckInterval = earlyStopCheckInterval;
+        c.initialCondition = initialCondition;
+        c.initialSolutionFile = initialSolutionFile;
+        c.outputDir = outputDir;
+        c.modelFileName = modelFileName;
+        c.exportVelocity = exportVelocity;
+        c.exportVorticity = exportVorticity;
+        c.exportPressure = exportPressure;
+        c.exportAnimation = exportAnimation;
+        c.animationFps = animationFps;
+        c.animationMaxFrames = animationMaxFrames;
+        c.animationMode = animationMode;
+        c.animationGridNx = animationGridNx;
+        c.exportWorkers = exportWorkers;
+        c.exportProbes = exportProbes;
+        c.probePoints = probePoints;
+        c.probeFormat = probeFormat;
+        c.computeMetrics = computeMetrics;
+        c.pressureRangeAuto = pressureRangeAuto;
+        c.pressureRangeFactor = pressureRangeFactor;
+        c.pressureRangeMin = pressureRangeMin;
+        c.pressureRangeMax = pressureRangeMax;
+        c.resultCacheEnabled = resultCacheEnabled;
+        c.resultCacheMaxMB = resultCacheMaxMB;
+        c.resultCacheDir = resultCacheDir;
+        c.lbmThreads = lbmThreads;
+        return c;
+    }
+
+    /**
+     * 应用流体预设 (Air / Water)，同时更新 fluidName、density、dynamicViscosity
+     *
+     * @return 预设名无法识别时返回 false，配置保持不变
+     */
+    public boolean applyFluidPreset(String name) {
+        if ("Air".equalsIgnoreCase(name)) {
+            fluidName = "Air";
+            density = 1.225;
+            dynamicViscosity = 1.7894e-5;
+            return true;
+        }
+        if ("Water".equalsIgnoreCase(name)) {
+            fluidName = "Water";
+            density = 998.0;
+            dynamicViscosity = 1.002e-3;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 雷诺数 Re = rho * U * D / mu (D 为圆柱直径)
+     */
+    public double getReynoldsNumber() {
+        return density * inletVelocity * 2 * cylinderRadius / dynamicViscosity;
+    }
+
+    public boolean isAdaptiveTimeStepping() {
+        return "Adaptive".equalsIgnoreCase(timeSteppingMode);
+    }
+
     /**
      * 生成时间列表字符串 (用于 COMSOL)
+     * Fixed 模式为 range(start, timeStep, end)，Adaptive 模式为 getOutputTimes() 的显式列表
      */
     public String getTimeListString() {
-        return String.format("range(%s,%s,%s)", startTime, timeStep, endTime);
+        if (!isAdaptiveTimeStepping()) {
+            return String.format("range(%s,%s,%s)", startTime, timeStep, endTime);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (double t : getOutputTimes()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(Math.round(t * 1e9) / 1e9);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 分段求解时 [from, to] 一段的 tlist：首尾为 from 和 to，中间为落在区间内的存储时刻
+     */
+    public String getTimeListString(double from, double to) {
+        double eps = 1e-9 * Math.max(1.0, Math.abs(to));
+        StringBuilder sb = new StringBuilder();
+        sb.append(Math.round(from * 1e9) / 1e9);
+        for (double t : getOutputTimes()) {
+            if (t > from + eps && t < to - eps) {
+                sb.append(' ').append(Math.round(t * 1e9) / 1e9);
+            }
+        }
+        sb.append(' ').append(Math.round(to * 1e9) / 1e9);
+        return sb.toString();
+    }
+
+    /**
+     * Fixed 模式下存储的解的个数 (range(start, timeStep, end) 的长度)
+     */
+    public int getFixedOutputCount() {
+        return timeStep > 0 ? (int) Math.floor((endTime - startTime) / timeStep + 1e-9) + 1 : 1;
+    }
+
+    /**
+     * 需要存储解的时刻（升序）
+     * Fixed: start, start+timeStep, ..., end
+     * Adaptive: start、end，加上均匀分布的 animationMaxFrames 个动画帧时刻（导出动画时）
+     * 和每隔 probeOutputInterval 的探针时刻（大于 0 时）
+     */
+    public double[] getOutputTimes() {
+        double span = endTime - startTime;
+        int full = getFixedOutputCount();
+        if (!isAdaptiveTimeStepping()) {
+            double[] times = new double[full];
+            for (int i = 0; i < full; i++) {
+                times[i] = startTime + i * timeStep;
+            }
+            return times;
+        }
+
+        java.util.TreeSet<Double> set = new java.util.TreeSet<>();
+        set.add(startTime);
+        set.add(endTime);
+        if (exportAnimation && animationMaxFrames > 1) {
+            int frames = Math.min(animationMaxFrames, full);
+            for (int i = 0; i < frames; i++) {
+                set.add(startTime + span * i / (frames - 1));
+            }
+        }
+        if (probeOutputInterval > 0) {
+            int count = (int) Math.floor(span / probeOutputInterval + 1e-9);
+            for (int i = 0; i <= count; i++) {
+                set.add(startTime + i * probeOutputInterval);
+            }
+        }
+
+        // 合并数值上重合的时刻
+        double eps = Math.max(1e-12, span * 1e-9);
+        double[] times = new double[set.size()];
+        int n = 0;
+        for (double t : set) {
+            if (n == 0 || t - times[n - 1] > eps) {
+                times[n++] = t;
+            }
+        }
+        return java.util.Arrays.copyOf(times, n);
+    }
+
+    /**
+     * 是否需要逐时刻评估力系数与探针（COMSOL 中代价较高，没有使用方时跳过）
+     */
+    public boolean needsProbeEvaluation() {
+        return exportProbes || earlyStopEnabled || computeMetrics;
+    }
+
+    /**
+     * 结果缓存目录：resultCacheDir，未设置时为 outputDir/.result_cache
+     */
+    public String getEffectiveResultCacheDir() {
+        if (resultCacheDir == null || resultCacheDir.isEmpty()) {
+            return new java.io.File(getEffectiveOutputDir(), ResultCache.CACHE_DIR).getPath();
+        }
+        return resultCacheDir;
     }
 
     /**
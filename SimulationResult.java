@@ -0,0 +1,63 @@
+/*
+ * SimulationResult.java - 单次仿真的结果摘要
+ * 标量指标 (阻力系数、Strouhal 数等) 与输出文件路径，供扫描汇总和比较使用
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class SimulationResult {
+
+    public final String backend;
+    public final Map<String, Double> metrics = new LinkedHashMap<>();
+    public final Map<String, String> outputs = new LinkedHashMap<>();
+    public long elapsedMs = 0;
+
+    public SimulationResult(String backend) {
+        this.backend = backend;
+    }
+
+    public SimulationResult putMetric(String name, double value) {
+        metrics.put(name, value);
+        return this;
+    }
+
+    public SimulationResult putOutput(String name, String path) {
+        outputs.put(name, path);
+        return this;
+    }
+
+    /**
+     * 指标，不存在时返回 NaN
+     */
+    public double getMetric(String name) {
+        Double v = metrics.get(name);
+        return v == null ? Double.NaN : v;
+    }
+
+    /**
+     * 扁平化为字符串表（扫描汇总用）
+     */
+    public Map<String, String> toSummary() {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("backend", backend);
+        for (Map.Entry<String, Double> e : metrics.entrySet()) {
+            map.put(e.getKey(), String.valueOf(e.getValue()));
+        }
+        map.putAll(outputs);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SimulationResult [").append(backend).append(", ").append(elapsedMs).append(" ms]\n");
+        for (Map.Entry<String, Double> e : metrics.entrySet()) {
+            sb.append("  ").append(e.getKey()).append(" = ").append(e.getValue()).append("\n");
+        }
+        for (Map.Entry<String, String> e : outputs.entrySet()) {
+            sb.append("  ").append(e.getKey()).append(": ").append(e.getValue()).append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,527 @@
+/*
+ * SweepRunner.java - 参数扫描批处理引擎
+ * 基础配置 + 扫描轴 (或 JSON Lines 工况文件) -> 工况矩阵，有界线程池并行执行，
+ * 工作线程按序号领取工况并在执行前才生成其配置（工况文件的行在此时才解码），
+ * 每个工况独立输出目录，最后汇总为 sweep_summary.csv
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SweepRunner {
+
+    public static final String SUMMARY_FILE = "sweep_summary.csv";
+
+    /**
+     * 特殊扫描轴：流体预设，同时修改 fluidName / density / dynamicViscosity
+     */
+    public static final String FLUID_AXIS = "fluid";
+
+    /**
+     * 工况执行器（COMSOL 后端或测试用桩）
+     */
+    public interface CaseExecutor {
+        /**
+         * 执行单个工况，返回需要写入汇总表的指标（可为 null）
+         */
+        Map<String, String> execute(SweepCase sweepCase) throws Exception;
+
+        /**
+         * 可同时执行的工况数上限（单线程的后端返回 1），--threads 超出时按此上限
+         */
+        default int maxWorkers() {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 通过 SimulationBackend 执行工况，汇总表中写入后端名、指标和输出文件
+     */
+    public static class BackendCaseExecutor implements CaseExecutor {
+        private final SimulationBackend<?> backend;
+        private final int maxWorkers;
+
+        public BackendCaseExecutor(SimulationBackend<?> backend) {
+            this(backend, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param maxWorkers 后端可同时执行的工况数（进程内的 COMSOL API 为 1）
+         */
+        public BackendCaseExecutor(SimulationBackend<?> backend, int maxWorkers) {
+            this.backend = backend;
+            this.maxWorkers = Math.max(1, maxWorkers);
+        }
+
+        @Override
+        public Map<String, String> execute(SweepCase sweepCase) throws Exception {
+            return backend.run(sweepCase.config).toSummary();
+        }
+
+        @Override
+        public int maxWorkers() {
+            return maxWorkers;
+        }
+    }
+
+    /**
+     * 扫描轴：字段名 + 取值列表
+     */
+    public static class SweepAxis {
+        public final String name;
+        public final List<String> values;
+
+        public SweepAxis(String name, List<String> values) {
+            this.name = name;
+            this.values = values;
+        }
+
+        /**
+         * 解析 "inletVelocity=0.01,0.02,0.03" 或 "fluid=Air,Water"
+         */
+        public static SweepAxis parse(String spec) {
+            int eq = spec.indexOf('=');
+            if (eq <= 0 || eq == spec.length() - 1) {
+                throw new IllegalArgumentException("Invalid sweep axis: " + spec);
+            }
+            List<String> values = new ArrayList<>();
+            for (String v : spec.substring(eq + 1).split(",")) {
+                if (!v.trim().isEmpty()) {
+                    values.add(v.trim());
+                }
+            }
+            return new SweepAxis(spec.substring(0, eq).trim(), values);
+        }
+    }
+
+    /**
+     * 单个工况
+     */
+    public static class SweepCase {
+        public final int index;
+        public final String id;
+        public final SimulationConfig config;
+        public final Map<String, String> params; // 轴名 -> 取值
+        public final File outputDir;
+
+        SweepCase(int index, SimulationConfig config, Map<String, String> params, File outputDir) {
+            this.index = index;
+            this.id = String.format("case_%03d", index + 1);
+            this.config = config;
+            this.params = params;
+            this.outputDir = outputDir;
+        }
+    }
+
+    /**
+     * 工况执行结果
+     */
+    public static class CaseResult {
+        public final SweepCase sweepCase;
+        public boolean success;
+        public long elapsedMs;
+        public String error;
+        public Map<String, String> metrics = new LinkedHashMap<>();
+
+        CaseResult(SweepCase sweepCase) {
+            this.sweepCase = sweepCase;
+        }
+    }
+
+    private final SimulationConfig baseConfig;
+    private final List<SweepAxis> axes = new ArrayList<>();
+    private final File outputRoot;
+    private CaseFile caseFile;
+    private int maxWorkers = 1;
+
+    public SweepRunner(SimulationConfig baseConfig, String outputRoot) {
+        this.baseConfig = baseConfig;
+        this.outputRoot = new File(outputRoot);
+    }
+
+    /**
+     * 添加扫描轴；同名轴或 fluid 与它覆盖的字段同时出现时后者会静默覆盖前者，直接拒绝
+     *
+     * @throws IllegalArgumentException 轴名重复，或 fluid 与 fluidName / density / dynamicViscosity 同时扫描
+     */
+    public SweepRunner addAxis(SweepAxis axis) {
+        for (SweepAxis existing : axes) {
+            if (existing.name.equals(axis.name)) {
+                throw new IllegalArgumentException("Duplicate sweep axis: " + axis.name);
+            }
+            if (overlapsFluidPreset(existing.name, axis.name) || overlapsFluidPreset(axis.name, existing.name)) {
+                throw new IllegalArgumentException("Sweep axis " + FLUID_AXIS
+                        + " already sets fluidName/density/dynamicViscosity, cannot also sweep "
+                        + (FLUID_AXIS.equals(axis.name) ? existing.name : axis.name));
+            }
+        }
+        axes.add(axis);
+        return this;
+    }
+
+    private static boolean overlapsFluidPreset(String a, String b) {
+        return FLUID_AXIS.equals(a)
+                && ("fluidName".equals(b) || "density".equals(b) || "dynamicViscosity".equals(b));
+    }
+
+    public SweepRunner addAxis(String name, String... values) {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, values);
+        return addAxis(new SweepAxis(name, list));
+    }
+
+    /**
+     * 使用工况文件中的各行作为工况（覆盖在基础配置上），与扫描轴互斥
+     */
+    public SweepRunner setCaseFile(CaseFile caseFile) {
+        this.caseFile = caseFile;
+        return this;
+    }
+
+    public SweepRunner setMaxWorkers(int maxWorkers) {
+        this.maxWorkers = Math.max(1, maxWorkers);
+        return this;
+    }
+
+    /**
+     * 工况数：工况文件的行数，或各轴取值数之积
+     */
+    public int size() {
+        if (caseFile != null) {
+            if (!axes.isEmpty()) {
+                throw new IllegalArgumentException("Sweep axes cannot be combined with a case file");
+            }
+            return caseFile.size();
+        }
+        int total = 1;
+        for (SweepAxis axis : axes) {
+            if (axis.values.isEmpty()) {
+                throw new IllegalArgumentException("Sweep axis has no values: " + axis.name);
+            }
+            total *= axis.values.size();
+        }
+        return total;
+    }
+
+    /**
+     * 生成第 i 个工况（各轴笛卡尔积，第一根轴变化最慢；或工况文件的第 i 行）
+     */
+    public SweepCase caseAt(int i) throws IOException {
+        if (caseFile != null) {
+            return caseFileCase(i);
+        }
+
+        SimulationConfig cfg = baseConfig.copy();
+        Map<String, String> params = new LinkedHashMap<>();
+        int rem = i;
+        for (int a = axes.size() - 1; a >= 0; a--) {
+            SweepAxis axis = axes.get(a);
+            String value = axis.values.get(rem % axis.values.size());
+            rem /= axis.values.size();
+            params.put(axis.name, value);
+        }
+        // 按轴声明顺序应用，保证 fluid 预设可被后续显式 density 轴覆盖
+        Map<String, String> ordered = new LinkedHashMap<>();
+        for (SweepAxis axis : axes) {
+            String value = params.get(axis.name);
+            ordered.put(axis.name, value);
+            applyAxisValue(cfg, axis.name, value);
+        }
+
+        File dir = caseDir(i);
+        cfg.outputDir = dir.getAbsolutePath();
+        shareResultCache(cfg);
+        return new SweepCase(i, cfg, ordered, dir);
+    }
+
+    /**
+     * 展开全部工况（一次生成所有配置；run() 不使用，按需逐个生成）
+     */
+    public List<SweepCase> expand() throws IOException {
+        int total = size();
+        List<SweepCase> cases = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            cases.add(caseAt(i));
+        }
+        return cases;
+    }
+
+    /**
+     * 工况文件的一行解码为一个工况，汇总表参数列为该行显式给出的字段
+     */
+    private SweepCase caseFileCase(int i) throws IOException {
+        SimulationConfig cfg = caseFile.get(i, baseConfig);
+        Map<String, String> params = caseFile.params(i, cfg);
+        params.remove("outputDir");
+        params.remove("resultCacheDir");
+
+        File dir = caseDir(i);
+        cfg.outputDir = dir.getAbsolutePath();
+        shareResultCache(cfg);
+        return new SweepCase(i, cfg, params, dir);
+    }
+
+    private File caseDir(int i) {
+        return new File(outputRoot, String.format("case_%03d", i + 1));
+    }
+
+    /**
+     * 每个工况有自己的 outputDir；未指定缓存目录时共用扫描根目录下的结果缓存，重复的工况才能命中
+     */
+    private void shareResultCache(SimulationConfig cfg) {
+        if (cfg.resultCacheDir == null || cfg.resultCacheDir.isEmpty()) {
+            cfg.resultCacheDir = new File(outputRoot, ResultCache.CACHE_DIR).getAbsolutePath();
+        }
+    }
+
+    private static void applyAxisValue(SimulationConfig cfg, String name, String value) {
+        if (FLUID_AXIS.equals(name)) {
+            if (!cfg.applyFluidPreset(value)) {
+                throw new IllegalArgumentException("Unknown fluid preset: " + value);
+            }
+        } else {
+            ConfigManager.setField(cfg, name, value);
+        }
+    }
+
+    /**
+     * 在有界线程池中执行所有工况，并写出汇总 CSV
+     */
+    public List<CaseResult> run(CaseExecutor executor) throws IOException, InterruptedException {
+        final int total = size();
+        outputRoot.mkdirs();
+
+        if (maxWorkers > executor.maxWorkers()) {
+            System.out.println("Warning: executor supports " + executor.maxWorkers() + " worker(s), ignoring --threads "
+                    + maxWorkers);
+        }
+        int workers = Math.min(Math.min(maxWorkers, executor.maxWorkers()), Math.max(1, total));
+        System.out.println("Sweep: " + total + " cases, " + workers + " worker(s), output: "
+                + outputRoot.getAbsolutePath());
+
+        // 每个工作线程循环领取下一个工况序号，领取后才生成该工况的配置
+        final AtomicInteger next = new AtomicInteger();
+        final CaseResult[] slots = new CaseResult[total];
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int w = 0; w < workers; w++) {
+                futures.add(pool.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < total) {
+                        slots[i] = runCase(i, executor);
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    // runCase 自身捕获异常，这里只会是框架错误
+                    throw new IllegalStateException("Sweep task failed unexpectedly", e.getCause());
+                }
+            }
+
+            List<CaseResult> results = new ArrayList<>(total);
+            Collections.addAll(results, slots);
+
+            File summary = new File(outputRoot, SUMMARY_FILE);
+            writeSummary(results, summary);
+            System.out.println("Sweep summary written to: " + summary.getAbsolutePath());
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 单个工况：生成配置、准备目录、保存工况配置、调用执行器并计时。
+     * 配置无法生成（如工况文件中该行有语法错误）时只有这一个工况记为失败
+     */
+    private CaseResult runCase(int i, CaseExecutor executor) {
+        SweepCase sweepCase;
+        try {
+            sweepCase = caseAt(i);
+        } catch (Exception e) {
+            File dir = caseDir(i);
+            SimulationConfig cfg = baseConfig.copy();
+            cfg.outputDir = dir.getAbsolutePath();
+            CaseResult result = new CaseResult(new SweepCase(i, cfg, new LinkedHashMap<>(), dir));
+            result.success = false;
+            result.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            System.out.println("[" + result.sweepCase.id + "] FAILED: " + result.error);
+            return result;
+        }
+
+        CaseResult result = new CaseResult(sweepCase);
+        long t0 = System.nanoTime();
+        try {
+            sweepCase.outputDir.mkdirs();
+            ConfigManager.saveConfig(sweepCase.config, new File(sweepCase.outputDir, "config.json").getPath());
+            System.out.println("[" + sweepCase.id + "] start " + sweepCase.params);
+
+            Map<String, String> metrics = executor.execute(sweepCase);
+            if (metrics != null) {
+                result.metrics.putAll(metrics);
+            }
+            result.success = true;
+        } catch (Throwable e) {
+            result.success = false;
+            result.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            System.out.println("[" + sweepCase.id + "] FAILED: " + result.error);
+        }
+        result.elapsedMs = (System.nanoTime() - t0) / 1_000_000L;
+        System.out.println("[" + sweepCase.id + "] done in " + result.elapsedMs + " ms");
+        return result;
+    }
+
+    /**
+     * 写出汇总表：工况、扫描参数、Re、状态、耗时、指标、错误
+     */
+    public static void writeSummary(List<CaseResult> results, File file) throws IOException {
+        Set<String> paramNames = new LinkedHashSet<>();
+        Set<String> metricNames = new LinkedHashSet<>();
+        for (CaseResult r : results) {
+            paramNames.addAll(r.sweepCase.params.keySet());
+            metricNames.addAll(r.metrics.keySet());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("case");
+        for (String p : paramNames) {
+            sb.append(',').append(csv(p));
+        }
+        sb.append(",reynolds,status,elapsed_s");
+        for (String m : metricNames) {
+            sb.append(',').append(csv(m));
+        }
+        sb.append(",output_dir,error\n");
+
+        for (CaseResult r : results) {
+            sb.append(r.sweepCase.id);
+            for (String p : paramNames) {
+                String v = r.sweepCase.params.get(p);
+                sb.append(',').append(csv(v == null ? "" : v));
+            }
+            sb.append(',').append(String.format("%.4g", r.sweepCase.config.getReynoldsNumber()));
+            sb.append(',').append(r.success ? "OK" : "FAILED");
+            sb.append(',').append(String.format("%.3f", r.elapsedMs / 1000.0));
+            for (String m : metricNames) {
+                String v = r.metrics.get(m);
+                sb.append(',').append(csv(v == null ? "" : v));
+            }
+            sb.append(',').append(csv(r.sweepCase.outputDir.getPath()));
+            sb.append(',').append(csv(r.error == null ? "" : r.error));
+            sb.append('\n');
+        }
+
+        Files.write(file.toPath(), sb.toString().getBytes("UTF-8"));
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0) {
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+        return s;
+    }
+
+    /**
+     * 解析命令行参数并执行扫描
+     * 用法: [--threads N] [--out DIR] axis=v1,v2 [axis=v1,v2 ...]
+     * 或: [--threads N] [--out DIR] --cases cases.jsonl
+     */
+    public static List<CaseResult> runFromArgs(SimulationConfig base, String[] args, CaseExecutor executor)
+            throws IOException, InterruptedException {
+        String out = new File(base.getEffectiveOutputDir(), "sweep").getPath();
+        int threads = 1;
+        String casesPath = null;
+        List<SweepAxis> parsed = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("--out".equals(args[i]) && i + 1 < args.length) {
+                out = args[++i];
+            } else if ("--cases".equals(args[i]) && i + 1 < args.length) {
+                casesPath = args[++i];
+            } else if (args[i].indexOf('=') > 0) {
+                parsed.add(SweepAxis.parse(args[i]));
+            }
+        }
+
+        SweepRunner runner = new SweepRunner(base, out).setMaxWorkers(threads);
+        for (SweepAxis axis : parsed) {
+            runner.addAxis(axis);
+        }
+        if (casesPath == null) {
+            return runner.run(executor);
+        }
+        try (CaseFile cases = ConfigManager.openCaseFile(casesPath)) {
+            runner.setCaseFile(cases);
+            return runner.run(executor);
+        }
+    }
+
+    /**
+     * 测试方法：使用桩执行器（不依赖 COMSOL）跑一遍扫描流程；
+     * 参数中带 --backend lbm 时改用纯 Java 的 LbmBackend 实际求解
+     */
+    public static void main(String[] args) {
+        try {
+            String[] sweepArgs = args.length > 0 ? args
+                    : new String[] { "--threads", "4", "--out", "sweep_dryrun",
+                            "fluid=Air,Water", "inletVelocity=0.01,0.031,0.05" };
+
+            CaseExecutor executor = new CaseExecutor() {
+                @Override
+                public Map<String, String> execute(SweepCase c) {
+                    Map<String, String> metrics = new LinkedHashMap<>();
+                    metrics.put("dynamic_pressure", String.valueOf(c.config.getDynamicPressure()));
+                    return metrics;
+                }
+            };
+            for (int i = 0; i + 1 < sweepArgs.length; i++) {
+                if ("--backend".equals(sweepArgs[i]) && "lbm".equalsIgnoreCase(sweepArgs[i + 1])) {
+                    executor = new BackendCaseExecutor(new LbmBackend());
+                }
+            }
+
+            List<CaseResult> results = runFromArgs(SimulationConfig.getDefault(), sweepArgs, executor);
+            int ok = 0;
+            for (CaseResult r : results) {
+                if (r.success) {
+                    ok++;
+                }
+            }
+            System.out.println("Sweep finished: " + ok + "/" + results.size() + " cases OK");
+
+            // 重复轴、fluid 与其覆盖的字段同时扫描都应在解析时被拒绝
+            String[][] conflicting = {
+                    { "inletVelocity=0.01", "inletVelocity=0.02" },
+                    { "fluid=Air", "density=1.0" },
+                    { "dynamicViscosity=1e-3", "fluid=Water" } };
+            for (String[] axes : conflicting) {
+                try {
+                    runFromArgs(SimulationConfig.getDefault(), axes, executor);
+                    throw new IllegalStateException("Conflicting axes accepted: " + String.join(" ", axes));
+                } catch (IllegalArgumentException expected) {
+                    System.out.println("Rejected: " + expected.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * WarmStart.java - 瞬态计算的初始条件来源
+ * initialCondition:
+ *   Rest    - 从静止开始（默认）
+ *   File    - 使用 initialSolutionFile 指定的解 (COMSOL .mph / LBM 状态文件)
+ *   Nearest - 在同一扫描的其他工况目录和结果缓存中，找几何相同、雷诺数最接近的已完成的解
+ * 网格不同时由各后端把解插值到新网格上，跳过尾流发展的初始瞬态。
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class WarmStart {
+
+    public static final String REST = "Rest";
+    public static final String FILE = "File";
+    public static final String NEAREST = "Nearest";
+
+    private static final double GEOMETRY_EPS = 1e-9;
+
+    /**
+     * 找到的初始解
+     */
+    public static class Source {
+        public final File file;
+        public final SimulationConfig config; // 产生该解的配置（File 模式下未知时为 null）
+
+        Source(File file, SimulationConfig config) {
+            this.file = file;
+            this.config = config;
+        }
+
+        @Override
+        public String toString() {
+            return file + (config != null ? String.format(" (Re=%.4g)", config.getReynoldsNumber()) : "");
+        }
+    }
+
+    /**
+     * 源解与当前工况的速度比 U/U_src：按相同的无量纲场迁移到新的雷诺数
+     */
+    public static double velocityRatio(Source source, SimulationConfig cfg) {
+        if (source == null || source.config == null || source.config.inletVelocity <= 0 || cfg.inletVelocity <= 0) {
+            return 1.0;
+        }
+        return cfg.inletVelocity / source.config.inletVelocity;
+    }
+
+    /**
+     * 压力比 rho U^2 / (rho_src U_src^2)
+     */
+    public static double pressureRatio(Source source, SimulationConfig cfg) {
+        if (source == null || source.config == null || source.config.density <= 0) {
+            return 1.0;
+        }
+        double k = velocityRatio(source, cfg);
+        return k * k * cfg.density / source.config.density;
+    }
+
+    public static boolean isEnabled(SimulationConfig cfg) {
+        return cfg.initialCondition != null && !REST.equalsIgnoreCase(cfg.initialCondition);
+    }
+
+    /**
+     * 按配置查找初始解，没有可用的解时返回 null（从静止开始）
+     *
+     * @param fileName 工况输出目录 <fluid>/ 下的解文件名；null 表示候选工况的 modelFileName (COMSOL)
+     */
+    public static Source resolve(SimulationConfig cfg, String fileName) {
+        if (!isEnabled(cfg)) {
+            return null;
+        }
+        if (FILE.equalsIgnoreCase(cfg.initialCondition)) {
+            File file = new File(cfg.initialSolutionFile);
+            if (!file.isFile()) {
+                System.out.println("Warning: initialSolutionFile not found, starting from rest: " + file);
+                return null;
+            }
+            return new Source(file, null);
+        }
+        if (NEAREST.equalsIgnoreCase(cfg.initialCondition)) {
+            Source source = findNearest(cfg, fileName);
+            if (source == null) {
+                System.out.println("No previous solution with the same geometry found, starting from rest");
+            }
+            return source;
+        }
+        throw new IllegalArgumentException("Unknown initialCondition: " + cfg.initialCondition);
+    }
+
+    /**
+     * 候选：outputDir 的同级目录（扫描中的其他工况，含 config.json）和结果缓存条目
+     */
+    static Source findNearest(SimulationConfig cfg, String fileName) {
+        File own = new File(cfg.getEffectiveOutputDir()).getAbsoluteFile();
+        double re = cfg.getReynoldsNumber();
+        Source best = null;
+        double bestDistance = Double.POSITIVE_INFINITY;
+
+        File parent = own.getParentFile();
+        File[] siblings = parent != null ? parent.listFiles() : null;
+        if (siblings != null) {
+            for (File dir : siblings) {
+                if (!dir.isDirectory() || dir.equals(own)) {
+                    continue;
+                }
+                SimulationConfig other = readConfig(new File(dir, "config.json"));
+                if (other == null || !sameGeometry(cfg, other)) {
+                    continue;
+                }
+                File file = new File(new File(dir, other.fluidName.toLowerCase()),
+                        fileName != null ? fileName : other.modelFileName);
+                double d = distance(re, other.getReynoldsNumber());
+                if (file.isFile() && d < bestDistance) {
+                    best = new Source(file, other);
+                    bestDistance = d;
+                }
+            }
+        }
+
+        File[] entries = new File(cfg.getEffectiveResultCacheDir()).listFiles();
+        if (entries != null && fileName == null) {
+            for (File entry : entries) {
+                SimulationConfig other = readConfig(new File(entry, ResultCache.CONFIG_FILE));
+                File file = new File(entry, ResultCache.MODEL_FILE);
+                if (other == null || !file.isFile() || !sameGeometry(cfg, other)) {
+                    continue;
+                }
+                double d = distance(re, other.getReynoldsNumber());
+                if (d < bestDistance) {
+                    best = new Source(file, other);
+                    bestDistance = d;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 雷诺数按比值比较
+     */
+    private static double distance(double re, double other) {
+        return Math.abs(Math.log(other / re));
+    }
+
+    static boolean sameGeometry(SimulationConfig a, SimulationConfig b) {
+        return Math.abs(a.domainWidth - b.domainWidth) < GEOMETRY_EPS
+                && Math.abs(a.domainHeight - b.domainHeight) < GEOMETRY_EPS
+                && Math.abs(a.cylinderRadius - b.cylinderRadius) < GEOMETRY_EPS
+                && Math.abs(a.cylinderX - b.cylinderX) < GEOMETRY_EPS
+                && Math.abs(a.cylinderY - b.cylinderY) < GEOMETRY_EPS;
+    }
+
+    /**
+     * 静默读取配置（扫描候选目录时不逐个打印），失败返回 null
+     */
+    private static SimulationConfig readConfig(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return ConfigCodec.parse(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // ============================================
+    // 规则网格上的 u/v/p 场（后端之间交换初始解）
+    // ============================================
+
+    /**
+     * 在规则网格上双线性插值，NaN（固体内部或无数据）单元不参与；周围全部无效时返回 NaN
+     *
+     * @param field 行主序 nx*ny，第 0 行为 y = y0
+     */
+    public static double bilinear(double[] field, int nx, int ny, double x0, double y0, double h, double x,
+            double y) {
+        double gx = (x - x0) / h;
+        double gy = (y - y0) / h;
+        int i0 = Math.max(0, Math.min(nx - 2, (int) Math.floor(gx)));
+        int j0 = Math.max(0, Math.min(ny - 2, (int) Math.floor(gy)));
+        double fx = Math.max(0, Math.min(1, gx - i0));
+        double fy = Math.max(0, Math.min(1, gy - j0));
+        double sum = 0;
+        double wSum = 0;
+        for (int dj = 0; dj <= 1; dj++) {
+            for (int di = 0; di <= 1; di++) {
+                double v = field[(j0 + dj) * nx + i0 + di];
+                if (Double.isNaN(v)) {
+                    continue;
+                }
+                double w = (di == 0 ? 1 - fx : fx) * (dj == 0 ? 1 - fy : fy);
+                sum += w * v;
+                wSum += w;
+            }
+        }
+        return wSum > 0 ? sum / wSum : Double.NaN;
+    }
+
+    /**
+     * 规则网格上的速度与压力（物理单位，固体内部为 NaN），LBM 状态文件的内容
+     * 文件格式：文本头 "FIELD1\n" 之后为 big-endian 的 nx, ny (int), x0, y0, h (double)，再依次为 u, v, p
+     */
+    public static class Field {
+        static final String MAGIC = "FIELD1";
+
+        public final int nx;
+        public final int ny;
+        public final double x0;
+        public final double y0;
+        public final double h;
+        public final double[] u;
+        public final double[] v;
+        public final double[] p;
+
+        public Field(int nx, int ny, double x0, double y0, double h) {
+            this.nx = nx;
+            this.ny = ny;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.h = h;
+            this.u = new double[nx * ny];
+            this.v = new double[nx * ny];
+            this.p = new double[nx * ny];
+        }
+
+        public double u(double x, double y) {
+            return bilinear(u, nx, ny, x0, y0, h, x, y);
+        }
+
+        public double v(double x, double y) {
+            return bilinear(v, nx, ny, x0, y0, h, x, y);
+        }
+
+        public double p(double x, double y) {
+            return bilinear(p, nx, ny, x0, y0, h, x, y);
+        }
+
+        /**
+         * 用相邻有效值逐层外推填充 NaN 单元（圆柱内部），使插值函数在壁面附近不被 0 拉偏；
+         * 全部无效时填 0
+         */
+        public void fillSolid() {
+            for (double[] a : new double[][] { u, v, p }) {
+                boolean changed = true;
+                while (changed) {
+                    changed = false;
+                    double[] next = a.clone();
+                    for (int j = 0; j < ny; j++) {
+                        for (int i = 0; i < nx; i++) {
+                            int c = j * nx + i;
+                            if (!Double.isNaN(a[c])) {
+                                continue;
+                            }
+                            double sum = 0;
+                            int n = 0;
+                            int[][] neighbours = { { i - 1, j }, { i + 1, j }, { i, j - 1 }, { i, j + 1 } };
+                            for (int[] nb : neighbours) {
+                                if (nb[0] >= 0 && nb[0] < nx && nb[1] >= 0 && nb[1] < ny
+                                        && !Double.isNaN(a[nb[1] * nx + nb[0]])) {
+                                    sum += a[nb[1] * nx + nb[0]];
+                                    n++;
+                                }
+                            }
+                            if (n > 0) {
+                                next[c] = sum / n;
+                                changed = true;
+                            }
+                        }
+                    }
+                    System.arraycopy(next, 0, a, 0, a.length);
+                }
+                for (int c = 0; c < a.length; c++) {
+                    if (Double.isNaN(a[c])) {
+                        a[c] = 0;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 写成表格文本 (x y u v p，每行一个网格点)，COMSOL 插值函数可直接导入
+         */
+        public void writeTable(File file) throws IOException {
+            StringBuilder sb = new StringBuilder(nx * ny * 64);
+            sb.append("% x y u v p\n");
+            for (int j = 0; j < ny; j++) {
+                for (int i = 0; i < nx; i++) {
+                    int c = j * nx + i;
+                    sb.append(x0 + i * h).append(' ').append(y0 + j * h).append(' ').append(u[c]).append(' ')
+                            .append(v[c]).append(' ').append(p[c]).append('\n');
+                }
+            }
+            Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * 先写临时文件再改名，求解中断时不会留下半个文件被 Nearest 选中
+         */
+        public void write(File file) throws IOException {
+            File tmp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+                out.write((MAGIC + "\n").getBytes(StandardCharsets.US_ASCII));
+                out.writeInt(nx);
+                out.writeInt(ny);
+                out.writeDouble(x0);
+                out.writeDouble(y0);
+                out.writeDouble(h);
+                for (double[] a : new double[][] { u, v, p }) {
+                    for (double d : a) {
+                        out.writeDouble(d);
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        public static Field read(File file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+                byte[] magic = new byte[MAGIC.length() + 1];
+                in.readFully(magic);
+                if (!(MAGIC + "\n").equals(new String(magic, StandardCharsets.US_ASCII))) {
+                    throw new IOException("Not a field file: " + file);
+                }
+                int nx = in.readInt();
+                int ny = in.readInt();
+                Field f = new Field(nx, ny, in.readDouble(), in.readDouble(), in.readDouble());
+                for (double[] a : new double[][] { f.u, f.v, f.p }) {
+                    for (int c = 0; c < a.length; c++) {
+                        a[c] = in.readDouble();
+                    }
+                }
+                return f;
+            }
+        }
+    }
+}
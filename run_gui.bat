@@ -58,6 +58,13 @@ if %ERRORLEVEL% neq 0 (
     exit /b 1
 )
 
+REM Pooled COMSOL server sessions (optional, needs the COMSOL plugins)
+echo Compiling ComsolSessions.java...
+%JAVAC_CMD% -encoding UTF-8 --release 11 -cp ".;%COMSOL_PATH%\plugins\*" ComsolSessions.java
+if %ERRORLEVEL% neq 0 (
+    echo [WARNING] ComsolSessions.java not compiled, simulations will use run_comsol.bat
+)
+
 echo.
 echo ============================================
 echo Compilation successful!